@@ -6,12 +6,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
-import java.util.Properties;
 import javax.swing.ImageIcon;
 import javax.swing.JEditorPane;
 import javax.swing.JOptionPane;
 import org.cytoscape.app.communitydetection.util.JEditorPaneFactory;
 import org.cytoscape.app.communitydetection.util.AppUtils;
+import org.cytoscape.app.communitydetection.util.BundledProperties;
 import org.cytoscape.app.communitydetection.util.ShowDialogUtil;
 import org.cytoscape.application.swing.CySwingApplication;
 import org.cytoscape.model.CyNetwork;
@@ -46,14 +46,8 @@ public class AboutTaskFactoryImpl implements NetworkTaskFactory {
 	loadImageIcon();
 	
 	StringBuilder sb = new StringBuilder();
-	String version = "Unknown";
-	Properties properties = new Properties();
-	try {
-	    properties.load(getClass().getClassLoader().getResourceAsStream(AppUtils.PROP_NAME + ".props"));
-	    version = properties.getProperty(AppUtils.PROP_PROJECT_VERSION, version);
-	} catch(IOException ioex){
-	    
-	}
+	String version = BundledProperties.getInstance().getProperty(AppUtils.PROP_PROJECT_VERSION,
+		"Unknown");
 	sb.append("Community Detection (");
 	sb.append(version);
 	sb.append(") is a Cytoscape App that includes ");
@@ -8,8 +8,10 @@ import static org.cytoscape.work.ServiceProperties.MENU_GRAVITY;
 import static org.cytoscape.work.ServiceProperties.PREFERRED_MENU;
 import static org.cytoscape.work.ServiceProperties.TITLE;
 
+import java.io.File;
 import java.util.Properties;
 import org.cytoscape.app.communitydetection.hierarchy.AboutAlgorithmEditorPaneFactoryImpl;
+import org.cytoscape.app.communitydetection.hierarchy.CommunityDetectionResultCache;
 import org.cytoscape.app.communitydetection.hierarchy.CustomParameterHelpJEditorPaneFactoryImpl;
 import org.cytoscape.app.communitydetection.hierarchy.HierarchyNetworkFactory;
 import org.cytoscape.app.communitydetection.hierarchy.HierarchyNetworkViewFactory;
@@ -21,6 +23,7 @@ import org.cytoscape.app.communitydetection.hierarchy.LauncherDialogAlgorithmFac
 import org.cytoscape.app.communitydetection.hierarchy.LayoutFactory;
 import org.cytoscape.app.communitydetection.hierarchy.VisualStyleFactory;
 import org.cytoscape.app.communitydetection.iquery.IQueryTaskFactoryImpl;
+import org.cytoscape.app.communitydetection.rest.AsyncCDRestClient;
 import org.cytoscape.app.communitydetection.rest.CDRestClient;
 import org.cytoscape.app.communitydetection.subnetwork.ParentNetworkChooserDialog;
 import org.cytoscape.app.communitydetection.subnetwork.ParentNetworkFinder;
@@ -29,12 +32,16 @@ import org.cytoscape.app.communitydetection.tally.TallyAttributesTaskFactoryImpl
 import org.cytoscape.app.communitydetection.tally.TallyDialog;
 import org.cytoscape.app.communitydetection.termmap.NetworkTermMappingTaskFactoryImpl;
 import org.cytoscape.app.communitydetection.termmap.NodeTermMapppingTaskFactoryImpl;
+import org.cytoscape.app.communitydetection.termmap.TermMappingResultCache;
 import org.cytoscape.app.communitydetection.util.AppUtils;
 import org.cytoscape.app.communitydetection.util.CyNetworkUtil;
 import org.cytoscape.app.communitydetection.util.IconJLabelDialogFactory;
 import org.cytoscape.app.communitydetection.util.ImageIconHolderFactory;
+import org.cytoscape.app.communitydetection.util.MemberListLookup;
 import org.cytoscape.app.communitydetection.util.ShowDialogUtil;
+import org.cytoscape.application.CyApplicationConfiguration;
 import org.cytoscape.application.swing.CySwingApplication;
+import org.cytoscape.event.CyEventHelper;
 import org.cytoscape.model.CyNetworkFactory;
 import org.cytoscape.model.CyNetworkManager;
 import org.cytoscape.model.subnetwork.CyRootNetworkManager;
@@ -84,11 +91,27 @@ public class CyActivator extends AbstractCyActivator {
 		final SynchronousTaskManager<?> syncTaskManager = getService(bc, SynchronousTaskManager.class);
 		final CyNetworkNaming networkNaming = getService(bc, CyNetworkNaming.class);
 		final CySwingApplication swingApplication = getService(bc, CySwingApplication.class);
+		final CyEventHelper eventHelper = getService(bc, CyEventHelper.class);
+		final CyApplicationConfiguration appConfig = getService(bc, CyApplicationConfiguration.class);
 		
 		// sets up the PropertiesHelper and links it to properties that a user can
 		// view and edit in Edit => Preferences menu
 		CyProperty<Properties> cyProperties = loadPropertyReaderService(bc);
 		
+		// pooled connections to the CD Service are dropped when its URL changes
+		PropertiesHelper.getInstance().addBaseurlUpdatedListener(CDRestClient.getInstance());
+		
+		// community detection and functional enrichment results cached
+		// on disk are kept under the configuration directory of this app
+		final File appConfigDir = appConfig.getAppConfigurationDirectoryLocation(CyActivator.class);
+		CommunityDetectionResultCache.getInstance().setCacheDirectory(new File(
+				appConfigDir, "communitydetection_cache"));
+		TermMappingResultCache.getInstance().setCacheDirectory(new File(
+				appConfigDir, "functionalenrichment_cache"));
+		
+		// cached member lists are dropped when the networks they came from change
+		registerAllServices(bc, MemberListLookup.getInstance(), new Properties());
+		
 		ShowDialogUtil dialogUtil = new ShowDialogUtil();
 		ImageIconHolderFactory iconHolderFactory = new ImageIconHolderFactory();
 		JEditorPaneFactoryImpl editorPaneFac = new JEditorPaneFactoryImpl();
@@ -99,7 +122,7 @@ public class CyActivator extends AbstractCyActivator {
 		CustomParameterHelpJEditorPaneFactoryImpl customHelpParameterFac = new CustomParameterHelpJEditorPaneFactoryImpl(editorPaneFac);
 		LauncherDialogAlgorithmFactoryImpl algoFac = new LauncherDialogAlgorithmFactoryImpl(CDRestClient.getInstance(), dialogUtil);
 
-		final HierarchyNetworkFactory hierarchyNetworkFactory = new HierarchyNetworkFactory(networkFactory, networkNaming, rootNetworkManager, networkManager);
+		final HierarchyNetworkFactory hierarchyNetworkFactory = new HierarchyNetworkFactory(networkFactory, networkNaming, rootNetworkManager, networkManager, eventHelper);
 		// Add Run Community Detection under Apps => Community Detection
 		// menu
 		Properties taskExecProps = new Properties();
@@ -127,7 +150,7 @@ public class CyActivator extends AbstractCyActivator {
 		LauncherDialog tmAlgoDialog = new LauncherDialog(aboutAlgoFac, customHelpParameterFac, algoFac, dialogUtil,
 		                                                      AppUtils.TM_ALGORITHM_INPUT_TYPES);
 		PropertiesHelper.getInstance().addBaseurlUpdatedListener(tmAlgoDialog);
-		NetworkTermMappingTaskFactoryImpl termFac = new NetworkTermMappingTaskFactoryImpl(swingApplication, tmAlgoDialog); 
+		NetworkTermMappingTaskFactoryImpl termFac = new NetworkTermMappingTaskFactoryImpl(swingApplication, tmAlgoDialog, eventHelper); 
 		registerAllServices(bc, termFac, tmExecProps);
 
 		ParentNetworkFinder parentNetworkFinder = new ParentNetworkFinder();
@@ -197,5 +220,14 @@ public class CyActivator extends AbstractCyActivator {
 		IQueryTaskFactoryImpl iQueryFac = new IQueryTaskFactoryImpl(swingApplication, dialogUtil);
 		registerAllServices(bc, iQueryFac, iQueryCMenuProps);
 	}
+	
+	@Override
+	public void shutDown() {
+		// stop checking on outstanding tasks and close pooled
+		// connections to the CD Service
+		AsyncCDRestClient.getInstance().shutdown();
+		CDRestClient.getInstance().shutdown();
+		super.shutDown();
+	}
 
 }
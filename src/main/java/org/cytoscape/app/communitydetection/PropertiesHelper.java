@@ -25,10 +25,30 @@ public class PropertiesHelper {
 	private int httpSocketTimeoutMillis;
 	private int httpConnectTimeoutMillis;
 	private int httpConnectionRequestTimeoutMillis;
+	private boolean httpGzipRequest;
+	private int httpMaxConnectionsPerRoute;
+	private int httpIdleConnectionTimeoutMillis;
 	private int pollingIntervalTimeMillis;
+	private int pollingInitialIntervalMillis;
+	private int pollingMaxIntervalMillis;
 	private int communityDetectionTimeoutMillis;
 	private int functionalEnrichmentTimeoutMillis;
+	private int functionalEnrichmentBatchSize;
+	private int functionalEnrichmentMaxInFlight;
+	private int functionalEnrichmentApplyBatchSize;
+	private int functionalEnrichmentApplyIntervalMillis;
 	private int submitRetryCount;
+	private int edgeListParallelThreshold;
+	private boolean edgeListDenseNodeIds;
+	private int memberListParallelThreshold;
+	private boolean memberListDirectOnly;
+	private int memberListCacheSize;
+	private boolean hierarchyPipelined;
+	private int functionalEnrichmentCacheSize;
+	private int functionalEnrichmentCacheDiskSize;
+	private int functionalEnrichmentCacheTTLMillis;
+	private int communityDetectionCacheSize;
+	private int communityDetectionCacheTTLMillis;
 	private Set<BaseurlUpdatedListener> baseurlUpdatedListeners;
 
 	private PropertiesHelper() {
@@ -64,6 +84,14 @@ public class PropertiesHelper {
 								AppUtils.PROP_CD_TASK_TIMEOUT, 1800000));
 		setFunctionalEnrichmentTimeoutMillis(getPropertyAsInt(props,
 								AppUtils.PROP_FE_TASK_TIMEOUT, 1800000));
+		setFunctionalEnrichmentBatchSize(getPropertyAsInt(props,
+								AppUtils.PROP_FE_BATCH_SIZE, 500));
+		setFunctionalEnrichmentMaxInFlight(getPropertyAsInt(props,
+								AppUtils.PROP_FE_MAX_IN_FLIGHT, 20));
+		setFunctionalEnrichmentApplyBatchSize(getPropertyAsInt(props,
+								AppUtils.PROP_FE_APPLY_BATCH_SIZE, 1000));
+		setFunctionalEnrichmentApplyIntervalMillis(getPropertyAsInt(props,
+								AppUtils.PROP_FE_APPLY_INTERVAL, 500));
 		setSubmitRetryCount(getPropertyAsInt(props,
 								AppUtils.PROP_SUBMIT_RETRY_COUNT, 2));
 		setHttpSocketTimeoutMillis(getPropertyAsInt(props,
@@ -72,8 +100,40 @@ public class PropertiesHelper {
 								AppUtils.PROP_HTTP_CONNECT_TIMEOUT, 10000));
 		setHttpConnectionRequestTimeoutMillis(getPropertyAsInt(props,
 								AppUtils.PROP_HTTP_CONNECTION_REQUEST_TIMEOUT, 10000));
+		setHttpGzipRequest(Boolean.parseBoolean(props.getProperty(
+								AppUtils.PROP_HTTP_GZIP_REQUEST, "false").trim()));
+		setHttpMaxConnectionsPerRoute(getPropertyAsInt(props,
+								AppUtils.PROP_HTTP_MAX_CONNECTIONS_PER_ROUTE, 20));
+		setHttpIdleConnectionTimeoutMillis(getPropertyAsInt(props,
+								AppUtils.PROP_HTTP_IDLE_CONNECTION_TIMEOUT, 30000));
 		setPollingIntervalTimeMillis(getPropertyAsInt(props,
-								AppUtils.PROP_POLL_INTERVAL_TIME, 1000));		
+								AppUtils.PROP_POLL_INTERVAL_TIME, 1000));
+		setPollingInitialIntervalMillis(getPropertyAsInt(props,
+								AppUtils.PROP_POLL_INITIAL_INTERVAL, 50));
+		setPollingMaxIntervalMillis(getPropertyAsInt(props,
+								AppUtils.PROP_POLL_MAX_INTERVAL, 10000));
+		setEdgeListParallelThreshold(getPropertyAsInt(props,
+								AppUtils.PROP_EDGELIST_PARALLEL_THRESHOLD, 500000));
+		setEdgeListDenseNodeIds(Boolean.parseBoolean(props.getProperty(
+								AppUtils.PROP_EDGELIST_DENSE_NODE_IDS, "false").trim()));
+		setMemberListParallelThreshold(getPropertyAsInt(props,
+								AppUtils.PROP_MEMBERLIST_PARALLEL_THRESHOLD, 0));
+		setMemberListDirectOnly(Boolean.parseBoolean(props.getProperty(
+								AppUtils.PROP_MEMBERLIST_DIRECT_ONLY, "false").trim()));
+		setMemberListCacheSize(getPropertyAsInt(props,
+								AppUtils.PROP_MEMBERLIST_CACHE_SIZE, 1000));
+		setHierarchyPipelined(Boolean.parseBoolean(props.getProperty(
+								AppUtils.PROP_HIERARCHY_PIPELINED, "false").trim()));
+		setFunctionalEnrichmentCacheSize(getPropertyAsInt(props,
+								AppUtils.PROP_FE_CACHE_SIZE, 1000));
+		setFunctionalEnrichmentCacheDiskSize(getPropertyAsInt(props,
+								AppUtils.PROP_FE_CACHE_DISK_SIZE, 0));
+		setFunctionalEnrichmentCacheTTLMillis(getPropertyAsInt(props,
+								AppUtils.PROP_FE_CACHE_TTL, 86400000));
+		setCommunityDetectionCacheSize(getPropertyAsInt(props,
+								AppUtils.PROP_CD_CACHE_SIZE, 50));
+		setCommunityDetectionCacheTTLMillis(getPropertyAsInt(props,
+								AppUtils.PROP_CD_CACHE_TTL, 604800000));
 	}
 	
 	/**
@@ -172,9 +232,66 @@ public class PropertiesHelper {
 		this.httpConnectionRequestTimeoutMillis = httpConnectionRequestTimeoutMillis;
 	}
 
+	/**
+	 * Gets whether the body of requests submitted to the CD Service
+	 * are gzip compressed
+	 * @return {@code true} if compressed, {@code false} otherwise
+	 */
+	public boolean isHttpGzipRequest() {
+		return httpGzipRequest;
+	}
+
+	/**
+	 * Sets whether the body of requests submitted to the CD Service
+	 * are gzip compressed. The service must accept
+	 * {@code Content-Encoding: gzip} for this to work
+	 * @param httpGzipRequest 
+	 */
+	public void setHttpGzipRequest(boolean httpGzipRequest) {
+		this.httpGzipRequest = httpGzipRequest;
+	}
+
+	/**
+	 * Gets maximum number of pooled connections to the CD Service
+	 * that can be in use at once
+	 * @return 
+	 */
+	public int getHttpMaxConnectionsPerRoute() {
+		return httpMaxConnectionsPerRoute;
+	}
+
+	/**
+	 * Sets maximum number of pooled connections to the CD Service
+	 * that can be in use at once
+	 * @param httpMaxConnectionsPerRoute 
+	 */
+	public void setHttpMaxConnectionsPerRoute(int httpMaxConnectionsPerRoute) {
+		this.httpMaxConnectionsPerRoute = httpMaxConnectionsPerRoute;
+	}
+
+	/**
+	 * Gets time in milliseconds a pooled connection can sit idle
+	 * before it is closed
+	 * @return time in milliseconds, a value less then {@code 1} means
+	 *         idle connections are kept until the server closes them
+	 */
+	public int getHttpIdleConnectionTimeoutMillis() {
+		return httpIdleConnectionTimeoutMillis;
+	}
+
+	/**
+	 * Sets time in milliseconds a pooled connection can sit idle
+	 * before it is closed
+	 * @param httpIdleConnectionTimeoutMillis 
+	 */
+	public void setHttpIdleConnectionTimeoutMillis(int httpIdleConnectionTimeoutMillis) {
+		this.httpIdleConnectionTimeoutMillis = httpIdleConnectionTimeoutMillis;
+	}
+
 	/**
 	 * Gets time to wait in milliseconds before checking status of task
-	 * running on CD Service
+	 * running on CD Service. Only used if {@link #getPollingMaxIntervalMillis()}
+	 * is less then {@code 1}, which disables adaptive polling
 	 * @return 
 	 */
 	public int getPollingIntervalTimeMillis() {
@@ -183,13 +300,54 @@ public class PropertiesHelper {
 
 	/**
 	 * Sets time to wait in milliseconds before checking status of task
-	 * running on CD Service
+	 * running on CD Service. Only used if {@link #getPollingMaxIntervalMillis()}
+	 * is less then {@code 1}, which disables adaptive polling
 	 * @param pollingIntervalTimeMillis 
 	 */
 	public void setPollingIntervalTimeMillis(int pollingIntervalTimeMillis) {
 		this.pollingIntervalTimeMillis = pollingIntervalTimeMillis;
 	}
 
+	/**
+	 * Gets time to wait in milliseconds before first check of the
+	 * status of a task running on CD Service
+	 * @return 
+	 */
+	public int getPollingInitialIntervalMillis() {
+		return pollingInitialIntervalMillis;
+	}
+
+	/**
+	 * Sets time to wait in milliseconds before first check of the
+	 * status of a task running on CD Service
+	 * @param pollingInitialIntervalMillis 
+	 */
+	public void setPollingInitialIntervalMillis(int pollingInitialIntervalMillis) {
+		this.pollingInitialIntervalMillis = pollingInitialIntervalMillis;
+	}
+
+	/**
+	 * Gets maximum time to wait in milliseconds between checks of
+	 * the status of a task running on CD Service when polling adaptively.
+	 * A value less then {@code 1} disables adaptive polling in which case
+	 * {@link #getPollingIntervalTimeMillis()} is waited between every check
+	 * @return 
+	 */
+	public int getPollingMaxIntervalMillis() {
+		return pollingMaxIntervalMillis;
+	}
+
+	/**
+	 * Sets maximum time to wait in milliseconds between checks of
+	 * the status of a task running on CD Service when polling adaptively.
+	 * A value less then {@code 1} disables adaptive polling in which case
+	 * {@link #getPollingIntervalTimeMillis()} is waited between every check
+	 * @param pollingMaxIntervalMillis 
+	 */
+	public void setPollingMaxIntervalMillis(int pollingMaxIntervalMillis) {
+		this.pollingMaxIntervalMillis = pollingMaxIntervalMillis;
+	}
+
 	public int getCommunityDetectionTimeoutMillis() {
 		return communityDetectionTimeoutMillis;
 	}
@@ -206,6 +364,85 @@ public class PropertiesHelper {
 		this.functionalEnrichmentTimeoutMillis = functionalEnrichmentTimeoutMillis;
 	}
 
+	/**
+	 * Gets maximum number of communities sent to CD Service in a single
+	 * functional enrichment request. Only used by algorithms that accept
+	 * {@link org.cytoscape.app.communitydetection.util.AppUtils#TM_ALGORITHM_BATCH_INPUT_TYPE}
+	 * @return number of communities, a value less then {@code 1} means
+	 *         all communities are sent in one request
+	 */
+	public int getFunctionalEnrichmentBatchSize() {
+		return functionalEnrichmentBatchSize;
+	}
+
+	/**
+	 * Sets maximum number of communities sent to CD Service in a single
+	 * functional enrichment request
+	 * @param functionalEnrichmentBatchSize number of communities, a value
+	 *        less then {@code 1} puts all communities in one request
+	 */
+	public void setFunctionalEnrichmentBatchSize(int functionalEnrichmentBatchSize) {
+		this.functionalEnrichmentBatchSize = functionalEnrichmentBatchSize;
+	}
+
+	/**
+	 * Gets maximum number of functional enrichment requests that are
+	 * running on CD Service at the same time for a single task
+	 * @return number of requests, a value less then {@code 1} means
+	 *         there is no limit
+	 */
+	public int getFunctionalEnrichmentMaxInFlight() {
+		return functionalEnrichmentMaxInFlight;
+	}
+
+	/**
+	 * Sets maximum number of functional enrichment requests that are
+	 * running on CD Service at the same time for a single task
+	 * @param functionalEnrichmentMaxInFlight number of requests, a value
+	 *        less then {@code 1} removes the limit
+	 */
+	public void setFunctionalEnrichmentMaxInFlight(int functionalEnrichmentMaxInFlight) {
+		this.functionalEnrichmentMaxInFlight = functionalEnrichmentMaxInFlight;
+	}
+
+	/**
+	 * Gets maximum number of nodes whose functional enrichment results
+	 * are written to the node table in one update
+	 * @return number of nodes, a value less then {@code 1} means there
+	 *         is no limit
+	 */
+	public int getFunctionalEnrichmentApplyBatchSize() {
+		return functionalEnrichmentApplyBatchSize;
+	}
+
+	/**
+	 * Sets maximum number of nodes whose functional enrichment results
+	 * are written to the node table in one update
+	 * @param functionalEnrichmentApplyBatchSize number of nodes, a value
+	 *        less then {@code 1} removes the limit
+	 */
+	public void setFunctionalEnrichmentApplyBatchSize(int functionalEnrichmentApplyBatchSize) {
+		this.functionalEnrichmentApplyBatchSize = functionalEnrichmentApplyBatchSize;
+	}
+
+	/**
+	 * Gets maximum time in milliseconds a functional enrichment result
+	 * waits for more results before it is written to the node table
+	 * @return time in milliseconds
+	 */
+	public int getFunctionalEnrichmentApplyIntervalMillis() {
+		return functionalEnrichmentApplyIntervalMillis;
+	}
+
+	/**
+	 * Sets maximum time in milliseconds a functional enrichment result
+	 * waits for more results before it is written to the node table
+	 * @param functionalEnrichmentApplyIntervalMillis time in milliseconds
+	 */
+	public void setFunctionalEnrichmentApplyIntervalMillis(int functionalEnrichmentApplyIntervalMillis) {
+		this.functionalEnrichmentApplyIntervalMillis = functionalEnrichmentApplyIntervalMillis;
+	}
+
 	public int getSubmitRetryCount() {
 		return submitRetryCount;
 	}
@@ -214,6 +451,218 @@ public class PropertiesHelper {
 		this.submitRetryCount = submitRetryCount;
 	}
 
+	/**
+	 * Gets minimum number of edges a network must have for its edge
+	 * list to be encoded in parallel when sent to the CD Service
+	 * @return number of edges, a value less then {@code 1} means the
+	 *         edge list is always encoded on a single thread
+	 */
+	public int getEdgeListParallelThreshold() {
+		return edgeListParallelThreshold;
+	}
+
+	/**
+	 * Sets minimum number of edges a network must have for its edge
+	 * list to be encoded in parallel when sent to the CD Service
+	 * @param edgeListParallelThreshold number of edges, a value less then
+	 *        {@code 1} disables parallel encoding
+	 */
+	public void setEdgeListParallelThreshold(int edgeListParallelThreshold) {
+		this.edgeListParallelThreshold = edgeListParallelThreshold;
+	}
+
+	/**
+	 * Gets whether nodes are sent to the CD Service as dense indices
+	 * from {@code 0} to {@code N-1} instead of SUIDs
+	 * @return {@code true} if indices are sent, {@code false} otherwise
+	 */
+	public boolean isEdgeListDenseNodeIds() {
+		return edgeListDenseNodeIds;
+	}
+
+	/**
+	 * Sets whether nodes are sent to the CD Service as dense indices
+	 * from {@code 0} to {@code N-1} instead of SUIDs
+	 * @param edgeListDenseNodeIds 
+	 */
+	public void setEdgeListDenseNodeIds(boolean edgeListDenseNodeIds) {
+		this.edgeListDenseNodeIds = edgeListDenseNodeIds;
+	}
+
+	/**
+	 * Gets minimum number of nodes a hierarchy network must have for
+	 * its member lists to be built in parallel
+	 * @return number of nodes, a value less then {@code 1} means the
+	 *         member lists are always built on a single thread
+	 */
+	public int getMemberListParallelThreshold() {
+		return memberListParallelThreshold;
+	}
+
+	/**
+	 * Sets minimum number of nodes a hierarchy network must have for
+	 * its member lists to be built in parallel
+	 * @param memberListParallelThreshold number of nodes, a value less then
+	 *        {@code 1} disables parallel building
+	 */
+	public void setMemberListParallelThreshold(int memberListParallelThreshold) {
+		this.memberListParallelThreshold = memberListParallelThreshold;
+	}
+
+	/**
+	 * Gets whether the member list column of a new hierarchy network
+	 * only holds the members of a community that are not also members of
+	 * its child communities
+	 * @return {@code true} if only direct members are stored, {@code false}
+	 *         if every member is stored
+	 */
+	public boolean isMemberListDirectOnly() {
+		return memberListDirectOnly;
+	}
+
+	/**
+	 * Sets whether the member list column of a new hierarchy network
+	 * only holds the members of a community that are not also members of
+	 * its child communities
+	 * @param memberListDirectOnly 
+	 */
+	public void setMemberListDirectOnly(boolean memberListDirectOnly) {
+		this.memberListDirectOnly = memberListDirectOnly;
+	}
+
+	/**
+	 * Gets maximum number of full member lists kept in memory after
+	 * being computed from direct members
+	 * @return number of member lists
+	 */
+	public int getMemberListCacheSize() {
+		return memberListCacheSize;
+	}
+
+	/**
+	 * Sets maximum number of full member lists kept in memory after
+	 * being computed from direct members
+	 * @param memberListCacheSize number of member lists, a value less
+	 *        then {@code 1} disables caching
+	 */
+	public void setMemberListCacheSize(int memberListCacheSize) {
+		this.memberListCacheSize = memberListCacheSize;
+	}
+
+	/**
+	 * Gets whether the stages of creating a hierarchy network overlap.
+	 * If so the result of the algorithm is read straight into the new
+	 * network as it is received, member lists are computed while the
+	 * other columns are filled in and the time taken by each stage is
+	 * reported
+	 * @return {@code true} if stages overlap, {@code false} if each stage
+	 *         runs after the previous one finished
+	 */
+	public boolean isHierarchyPipelined() {
+		return hierarchyPipelined;
+	}
+
+	/**
+	 * Sets whether the stages of creating a hierarchy network overlap
+	 * @param hierarchyPipelined 
+	 */
+	public void setHierarchyPipelined(boolean hierarchyPipelined) {
+		this.hierarchyPipelined = hierarchyPipelined;
+	}
+
+	/**
+	 * Gets maximum number of functional enrichment results kept in memory
+	 * so the same enrichment is not requested again
+	 * @return number of results
+	 */
+	public int getFunctionalEnrichmentCacheSize() {
+		return functionalEnrichmentCacheSize;
+	}
+
+	/**
+	 * Sets maximum number of functional enrichment results kept in memory
+	 * @param functionalEnrichmentCacheSize number of results, a value less
+	 *        then {@code 1} disables caching in memory
+	 */
+	public void setFunctionalEnrichmentCacheSize(int functionalEnrichmentCacheSize) {
+		this.functionalEnrichmentCacheSize = functionalEnrichmentCacheSize;
+	}
+
+	/**
+	 * Gets maximum number of functional enrichment results kept on disk
+	 * under the configuration directory of this app
+	 * @return number of results
+	 */
+	public int getFunctionalEnrichmentCacheDiskSize() {
+		return functionalEnrichmentCacheDiskSize;
+	}
+
+	/**
+	 * Sets maximum number of functional enrichment results kept on disk
+	 * @param functionalEnrichmentCacheDiskSize number of results, a value
+	 *        less then {@code 1} disables caching on disk
+	 */
+	public void setFunctionalEnrichmentCacheDiskSize(int functionalEnrichmentCacheDiskSize) {
+		this.functionalEnrichmentCacheDiskSize = functionalEnrichmentCacheDiskSize;
+	}
+
+	/**
+	 * Gets how long in milliseconds a cached functional enrichment result
+	 * is used before it is requested again
+	 * @return time to live in milliseconds
+	 */
+	public int getFunctionalEnrichmentCacheTTLMillis() {
+		return functionalEnrichmentCacheTTLMillis;
+	}
+
+	/**
+	 * Sets how long in milliseconds a cached functional enrichment result
+	 * is used
+	 * @param functionalEnrichmentCacheTTLMillis time to live in
+	 *        milliseconds, a value less then {@code 1} means results never expire
+	 */
+	public void setFunctionalEnrichmentCacheTTLMillis(int functionalEnrichmentCacheTTLMillis) {
+		this.functionalEnrichmentCacheTTLMillis = functionalEnrichmentCacheTTLMillis;
+	}
+
+	/**
+	 * Gets maximum number of community detection results kept on disk
+	 * under the configuration directory of this app so running the same
+	 * algorithm on an unchanged network does not need CD Service
+	 * @return number of results
+	 */
+	public int getCommunityDetectionCacheSize() {
+		return communityDetectionCacheSize;
+	}
+
+	/**
+	 * Sets maximum number of community detection results kept on disk
+	 * @param communityDetectionCacheSize number of results, a value less
+	 *        then {@code 1} disables caching
+	 */
+	public void setCommunityDetectionCacheSize(int communityDetectionCacheSize) {
+		this.communityDetectionCacheSize = communityDetectionCacheSize;
+	}
+
+	/**
+	 * Gets how long in milliseconds a cached community detection result
+	 * is used before the algorithm is run again
+	 * @return time to live in milliseconds
+	 */
+	public int getCommunityDetectionCacheTTLMillis() {
+		return communityDetectionCacheTTLMillis;
+	}
+
+	/**
+	 * Sets how long in milliseconds a cached community detection result
+	 * is used
+	 * @param communityDetectionCacheTTLMillis time to live in
+	 *        milliseconds, a value less then {@code 1} means results never expire
+	 */
+	public void setCommunityDetectionCacheTTLMillis(int communityDetectionCacheTTLMillis) {
+		this.communityDetectionCacheTTLMillis = communityDetectionCacheTTLMillis;
+	}
+
 	public String getAppName() {
 		return appName;
 	}
@@ -13,6 +13,7 @@ import org.slf4j.LoggerFactory;
 public class CX2NodeAttributesFactory {
 	
 	private final static Logger LOGGER = LoggerFactory.getLogger(CX2NodeAttributesFactory.class);
+	private final static ObjectMapper MAPPER = new ObjectMapper();
 
 	public CX2NodeAttributes getCX2NodeAttributes(JsonNode nodeAttrsAsCX2){
 		if (nodeAttrsAsCX2 == null){
@@ -20,9 +21,8 @@ public class CX2NodeAttributesFactory {
 			return null;
 		}
 		CX2NodeAttributes nodeAttrs = null;
-		ObjectMapper om = new ObjectMapper();
 		try {
-			return om.readValue(nodeAttrsAsCX2.traverse(), CX2NodeAttributes.class);
+			return MAPPER.readValue(nodeAttrsAsCX2.traverse(), CX2NodeAttributes.class);
 		} catch(IOException io){
 			LOGGER.error("caught io exception " + io.getMessage(), io);
 		}
@@ -0,0 +1,146 @@
+package org.cytoscape.app.communitydetection.edgelist;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+
+/**
+ * Assigns each node in a network a dense index from {@code 0} to
+ * {@code N-1} so smaller ids can be sent to the CD Service in place
+ * of SUIDs. The SUIDs are kept sorted in a {@code long[]} which is
+ * binary searched to get the index of a node and indexed directly
+ * to get the SUID back when the result is parsed.
+ * <p>
+ * A map from {@link #createNodeIndexMapByName(org.cytoscape.model.CyNetwork)}
+ * orders the indices by node name instead, so the same network gets the
+ * same indices after its session is reopened and its SUIDs change.
+ * 
+ * @author churas
+ */
+public class NodeIndexMap {
+	
+	private final long[] _suids;
+	private final long[] _sortedSuids;
+	private final int[] _sortedIndices;
+	
+	/**
+	 * Constructor
+	 * @param suids SUIDs of nodes, this array is sorted in place and
+	 *              should not be modified afterwards
+	 */
+	protected NodeIndexMap(long[] suids){
+		_suids = suids;
+		Arrays.sort(_suids);
+		_sortedSuids = _suids;
+		_sortedIndices = null;
+	}
+	
+	/**
+	 * Constructor for indices that do not follow SUID order
+	 * @param suids SUIDs of nodes in index order, this array should
+	 *              not be modified afterwards
+	 * @param sortedIndices indices of {@code suids} sorted by SUID
+	 */
+	private NodeIndexMap(long[] suids, int[] sortedIndices){
+		_suids = suids;
+		_sortedIndices = sortedIndices;
+		_sortedSuids = new long[suids.length];
+		for (int i = 0; i < sortedIndices.length; i++){
+			_sortedSuids[i] = suids[sortedIndices[i]];
+		}
+	}
+	
+	/**
+	 * Creates map containing all nodes in {@code network}
+	 * @param network network whose nodes will be indexed
+	 * @return map or {@code null} if {@code network} is {@code null}
+	 */
+	public static NodeIndexMap createNodeIndexMap(CyNetwork network){
+		if (network == null){
+			return null;
+		}
+		List<CyNode> nodes = network.getNodeList();
+		long[] suids = new long[nodes.size()];
+		int index = 0;
+		for (CyNode node : nodes){
+			suids[index++] = node.getSUID();
+		}
+		return new NodeIndexMap(suids);
+	}
+	
+	/**
+	 * Creates map containing all nodes in {@code network} with indices
+	 * ordered by the {@link CyNetwork#NAME} of each node. Nodes with the
+	 * same name, or none, are ordered by SUID, which keeps the order they
+	 * were added in
+	 * @param network network whose nodes will be indexed
+	 * @return map or {@code null} if {@code network} is {@code null}
+	 */
+	public static NodeIndexMap createNodeIndexMapByName(CyNetwork network){
+		if (network == null){
+			return null;
+		}
+		List<CyNode> nodes = network.getNodeList();
+		final long[] nodeSuids = new long[nodes.size()];
+		final String[] names = new String[nodes.size()];
+		Integer[] order = new Integer[nodes.size()];
+		int index = 0;
+		for (CyNode node : nodes){
+			CyRow row = network.getRow(node);
+			String name = row == null ? null : row.get(CyNetwork.NAME, String.class);
+			nodeSuids[index] = node.getSUID();
+			names[index] = name == null ? "" : name;
+			order[index] = index;
+			index++;
+		}
+		Arrays.sort(order, Comparator.comparing((Integer i) -> names[i])
+				.thenComparingLong((Integer i) -> nodeSuids[i]));
+		final long[] suids = new long[order.length];
+		for (int i = 0; i < order.length; i++){
+			suids[i] = nodeSuids[order[i]];
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparingLong((Integer i) -> suids[i]));
+		int[] sortedIndices = new int[order.length];
+		for (int i = 0; i < order.length; i++){
+			sortedIndices[i] = order[i];
+		}
+		return new NodeIndexMap(suids, sortedIndices);
+	}
+	
+	/**
+	 * Gets dense index for node with {@code suid}
+	 * @param suid SUID of node
+	 * @return index or {@code -1} if node is not in this map
+	 */
+	public int getIndex(long suid){
+		int index = Arrays.binarySearch(_sortedSuids, suid);
+		if (index < 0){
+			return -1;
+		}
+		return _sortedIndices == null ? index : _sortedIndices[index];
+	}
+	
+	/**
+	 * Gets SUID of node with dense {@code index}
+	 * @param index index of node
+	 * @return SUID or {@code -1} if {@code index} is out of range
+	 */
+	public long getSUID(long index){
+		if (index < 0 || index >= _suids.length){
+			return -1;
+		}
+		return _suids[(int)index];
+	}
+	
+	/**
+	 * Gets number of nodes in this map
+	 * @return number of nodes
+	 */
+	public int size(){
+		return _suids.length;
+	}
+}
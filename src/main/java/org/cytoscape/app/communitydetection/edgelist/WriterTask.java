@@ -2,11 +2,20 @@ package org.cytoscape.app.communitydetection.edgelist;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import org.cytoscape.app.communitydetection.util.AppUtils;
 
 import org.cytoscape.io.write.CyWriter;
 import org.cytoscape.model.CyEdge;
 import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
 import org.cytoscape.work.TaskMonitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,67 +23,230 @@ import org.slf4j.LoggerFactory;
 /**
  * Creates output stream from the edge list of the selected interaction network.
  * Implements {@link CyWriter}.
+ * 
+ * Each line is encoded as ASCII directly into a reusable byte buffer
+ * which is written to the output stream only when full and once more
+ * at the end of {@link #run(org.cytoscape.work.TaskMonitor)}
+ * 
+ * If the network has at least {@code parallelThreshold} edges, the edge
+ * list is split into chunks whose weights are read, checked and encoded
+ * on the {@link ForkJoinPool#commonPool()} and then written out in order.
+ * At most {@link #MAX_OUTSTANDING_CHUNKS_PER_THREAD} chunks per pool thread
+ * are encoded or waiting to be written at any one time so memory use
+ * does not grow with the size of the network.
+ * 
+ * In either mode all edges are checked before an error is raised so
+ * the caller gets the SUIDs of every edge with a missing or negative weight
+ * 
+ * If a {@link NodeIndexMap} is given, the dense index of each node is
+ * written in place of its SUID
  *
  */
 public class WriterTask implements CyWriter {
 
 	private final static Logger logger = LoggerFactory.getLogger(WriterTask.class);
 
+	/**
+	 * Size of buffer edges are encoded into before being
+	 * written to the output stream
+	 */
+	public static final int BUFFER_SIZE = 65536;
+	
+	/**
+	 * Smallest number of edges encoded by a single parallel task
+	 */
+	public static final int MIN_CHUNK_SIZE = 8192;
+	
+	/**
+	 * Number of chunks per thread in {@link ForkJoinPool#commonPool()}
+	 * allowed to be encoded or waiting to be written at the same time
+	 */
+	public static final int MAX_OUTSTANDING_CHUNKS_PER_THREAD = 2;
+	
+	/**
+	 * Maximum number of SUIDs listed in error message
+	 */
+	public static final int MAX_REPORTED_SUIDS = 25;
+	
+	/**
+	 * Longest possible line: two signed longs, two tabs and newline
+	 * not counting the weight
+	 */
+	private static final int MAX_LINE_WITHOUT_WEIGHT = 2 * 20 + 3;
+	
 	private final OutputStream outStream;
 	private final CyNetwork network;
 	private final String weightColumn;
-	private final StringBuilder sBuilder;
+	private final int parallelThreshold;
+	private final NodeIndexMap nodeIndexMap;
 	public static final String TAB = "\t";
 	public static final String NEW_LINE = "\n";
+	private static final byte TAB_BYTE = '\t';
+	private static final byte NEW_LINE_BYTE = '\n';
 
 	/**
+	 * Creates writer that always encodes on the calling thread
 	 * @param outStream
 	 * @param network
 	 * @param attribute
 	 */
 	public WriterTask(OutputStream outStream, CyNetwork network, String attribute) {
+		this(outStream, network, attribute, 0);
+	}
+	
+	/**
+	 * @param outStream
+	 * @param network
+	 * @param attribute
+	 * @param parallelThreshold minimum number of edges in {@code network}
+	 *        needed to encode the edge list in parallel. A value less then
+	 *        {@code 1} disables parallel encoding
+	 */
+	public WriterTask(OutputStream outStream, CyNetwork network, String attribute,
+			int parallelThreshold) {
+		this(outStream, network, attribute, parallelThreshold, null);
+	}
+	
+	/**
+	 * @param outStream
+	 * @param network
+	 * @param attribute
+	 * @param parallelThreshold minimum number of edges in {@code network}
+	 *        needed to encode the edge list in parallel. A value less then
+	 *        {@code 1} disables parallel encoding
+	 * @param nodeIndexMap if not {@code null} node indices from this map
+	 *        are written instead of SUIDs
+	 */
+	public WriterTask(OutputStream outStream, CyNetwork network, String attribute,
+			int parallelThreshold, NodeIndexMap nodeIndexMap) {
 		this.outStream = outStream;
 		this.network = network;
 		this.weightColumn = attribute;
-		sBuilder = new StringBuilder();
+		this.parallelThreshold = parallelThreshold;
+		this.nodeIndexMap = nodeIndexMap;
 	}
 
 	@Override
 	public void run(TaskMonitor taskMonitor) throws Exception {
-		
-		if (weightColumn == null || weightColumn.equals(AppUtils.TYPE_NONE_VALUE)) {
-			for (CyEdge edge : network.getEdgeList()) {
-				writeEdgeToStream(edge.getSource().getSUID(),  edge.getTarget().getSUID(), null);
-			}
-		} else {
-			for (CyEdge edge : network.getEdgeList()) {
-				Number cellValue = (Number) network.getRow(edge).get(weightColumn, getColumnType());
-				if (cellValue == null){
-				    throw new Exception(weightColumn + " does not have a value for row with SUID: " + edge.getSUID().toString() +
-					    " Please select a column with values in all cells");
+		List<CyEdge> edges = network.getEdgeList();
+		Class<?> columnType = null;
+		if (weightColumn != null && !weightColumn.equals(AppUtils.TYPE_NONE_VALUE)) {
+			columnType = getColumnType();
+		}
+		if (parallelThreshold > 0 && edges.size() >= parallelThreshold){
+			runParallel(edges, columnType);
+			return;
+		}
+		boolean integralType = isIntegralType(columnType);
+		EdgeListEncoder encoder = new EdgeListEncoder(outStream, BUFFER_SIZE);
+		WeightErrors errors = new WeightErrors();
+		for (CyEdge edge : edges) {
+			Number cellValue = null;
+			if (columnType != null){
+				cellValue = (Number) network.getRow(edge).get(weightColumn, columnType);
+				if (!errors.checkWeight(edge, cellValue)){
+					continue;
 				}
-				if (cellValue.doubleValue() < 0) {
-					throw new Exception(weightColumn
-							+ " contains negative values. Please select a column with non-negative data values");
+			}
+			// once an error is found keep checking but stop writing
+			if (errors.isEmpty()){
+				encoder.appendEdge(getNodeId(nodeIndexMap, edge.getSource()),
+						getNodeId(nodeIndexMap, edge.getTarget()),
+						cellValue, integralType);
+			}
+		}
+		errors.throwIfAny(weightColumn);
+		encoder.flush();
+	}
+	
+	/**
+	 * Splits {@code edges} into chunks that are checked and encoded in
+	 * parallel. Each chunk reads its own weights from the edge table,
+	 * which is safe because {@link org.cytoscape.model.CyTable} reads are
+	 * synchronized by the table. A new chunk is submitted each time the
+	 * oldest outstanding one has been written.
+	 * @param edges edges to write
+	 * @param columnType type of weight column or {@code null} if unweighted
+	 * @throws Exception if any edge has a missing or negative weight
+	 */
+	private void runParallel(final List<CyEdge> edges, Class<?> columnType) throws Exception {
+		final boolean integralType = isIntegralType(columnType);
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		int chunkSize = Math.max(MIN_CHUNK_SIZE,
+				(edges.size() + pool.getParallelism() * 4 - 1) / (pool.getParallelism() * 4));
+		int maxOutstanding = Math.max(2, pool.getParallelism() * MAX_OUTSTANDING_CHUNKS_PER_THREAD);
+		Deque<ForkJoinTask<EdgeChunk>> outstanding = new ArrayDeque<>();
+		
+		// chunks are written in order as they finish, after the first
+		// error the remaining chunks are only encoded to collect bad SUIDs
+		WeightErrors errors = new WeightErrors();
+		int start = 0;
+		while (start < edges.size() || !outstanding.isEmpty()){
+			while (start < edges.size() && outstanding.size() < maxOutstanding){
+				final int chunkStart = start;
+				final int chunkEnd = Math.min(edges.size(), start + chunkSize);
+				outstanding.add(pool.submit(() -> encodeChunk(edges, columnType,
+						integralType, chunkStart, chunkEnd)));
+				start = chunkEnd;
+			}
+			EdgeChunk chunk = outstanding.poll().join();
+			errors.addAll(chunk.errors);
+			if (errors.isEmpty()){
+				chunk.encoder.writeTo(outStream);
+			}
+		}
+		errors.throwIfAny(weightColumn);
+	}
+	
+	/**
+	 * Reads weights of, checks and encodes edges from index {@code start}
+	 * up to, but not including, {@code end}
+	 * @param columnType type of weight column or {@code null} if unweighted
+	 */
+	private EdgeChunk encodeChunk(List<CyEdge> edges, Class<?> columnType,
+			boolean integralType, int start, int end) throws IOException {
+		EdgeChunk chunk = new EdgeChunk((end - start) * 16);
+		for (int i = start; i < end; i++){
+			CyEdge edge = edges.get(i);
+			Number cellValue = null;
+			if (columnType != null){
+				cellValue = (Number) network.getRow(edge).get(weightColumn, columnType);
+				if (!chunk.errors.checkWeight(edge, cellValue)){
+					continue;
 				}
-				writeEdgeToStream(edge.getSource().getSUID(),
-						edge.getTarget().getSUID(),
-						cellValue.toString());
 			}
+			if (chunk.errors.isEmpty()){
+				chunk.encoder.appendEdge(getNodeId(nodeIndexMap, edge.getSource()),
+						getNodeId(nodeIndexMap, edge.getTarget()),
+						cellValue, integralType);
+			}
+		}
+		return chunk;
+	}
+	
+	/**
+	 * Gets id to write for {@code node}
+	 * @param nodeIndexMap map of node indices or {@code null} to use SUIDs
+	 * @param node
+	 * @return index of node from {@code nodeIndexMap} or SUID of node
+	 *         if {@code nodeIndexMap} is {@code null}
+	 * @throws IOException if node is not in {@code nodeIndexMap}
+	 */
+	private static long getNodeId(NodeIndexMap nodeIndexMap, CyNode node) throws IOException {
+		if (nodeIndexMap == null){
+			return node.getSUID();
+		}
+		int index = nodeIndexMap.getIndex(node.getSUID());
+		if (index < 0){
+			throw new IOException("Node with SUID: " + node.getSUID()
+					+ " is not in node index map");
 		}
+		return index;
 	}
 	
-	private void writeEdgeToStream(Long sourceId, Long targetId, String weight) throws Exception {
-		sBuilder.setLength(0);
-		sBuilder.append(sourceId.toString());
-		sBuilder.append(TAB);
-		sBuilder.append(targetId.toString());
-		if (weight != null){
-			sBuilder.append(TAB);
-			sBuilder.append(weight);
-		}
-		sBuilder.append(NEW_LINE);
-		outStream.write(sBuilder.toString().getBytes());
+	private static boolean isIntegralType(Class<?> columnType){
+		return columnType == Integer.class || columnType == Long.class
+				|| columnType == Short.class || columnType == Byte.class;
 	}
 
 	@Override
@@ -92,4 +264,199 @@ public class WriterTask implements CyWriter {
 	private Class<?> getColumnType() {
 		return network.getDefaultEdgeTable().getColumn(weightColumn).getType();
 	}
+	
+	/**
+	 * Encoded edges and any weight errors for a range of edges
+	 */
+	private static class EdgeChunk {
+		private final EdgeListEncoder encoder;
+		private final WeightErrors errors;
+		
+		EdgeChunk(int initialSize){
+			encoder = new EdgeListEncoder(null, Math.max(initialSize, MAX_LINE_WITHOUT_WEIGHT));
+			errors = new WeightErrors();
+		}
+	}
+	
+	/**
+	 * Tracks SUIDs of edges with missing or negative weights
+	 */
+	private static class WeightErrors {
+		private final List<Long> nullSUIDs = new ArrayList<>();
+		private final List<Long> negativeSUIDs = new ArrayList<>();
+		
+		/**
+		 * Records {@code edge} if {@code cellValue} is {@code null} or negative
+		 * @return {@code true} if weight is okay, {@code false} otherwise
+		 */
+		boolean checkWeight(CyEdge edge, Number cellValue){
+			if (cellValue == null){
+				nullSUIDs.add(edge.getSUID());
+				return false;
+			}
+			if (cellValue.doubleValue() < 0){
+				negativeSUIDs.add(edge.getSUID());
+				return false;
+			}
+			return true;
+		}
+		
+		boolean isEmpty(){
+			return nullSUIDs.isEmpty() && negativeSUIDs.isEmpty();
+		}
+		
+		void addAll(WeightErrors other){
+			nullSUIDs.addAll(other.nullSUIDs);
+			negativeSUIDs.addAll(other.negativeSUIDs);
+		}
+		
+		void throwIfAny(final String weightColumn) throws Exception {
+			if (isEmpty()){
+				return;
+			}
+			StringBuilder sb = new StringBuilder();
+			if (nullSUIDs.size() == 1){
+				sb.append(weightColumn).append(" does not have a value for row with SUID: ")
+						.append(nullSUIDs.get(0))
+						.append(" Please select a column with values in all cells");
+			} else if (nullSUIDs.size() > 1){
+				sb.append(weightColumn).append(" does not have a value for ")
+						.append(nullSUIDs.size()).append(" rows with SUIDs: ");
+				appendSUIDs(sb, nullSUIDs);
+				sb.append(" Please select a column with values in all cells");
+			}
+			if (!negativeSUIDs.isEmpty()){
+				if (sb.length() > 0){
+					sb.append(NEW_LINE);
+				}
+				sb.append(weightColumn)
+						.append(" contains negative values. Please select a column with non-negative data values.")
+						.append(" Negative values found in ").append(negativeSUIDs.size())
+						.append(negativeSUIDs.size() == 1 ? " row with SUID: " : " rows with SUIDs: ");
+				appendSUIDs(sb, negativeSUIDs);
+			}
+			throw new Exception(sb.toString());
+		}
+		
+		private void appendSUIDs(StringBuilder sb, List<Long> suids){
+			for (int i = 0; i < suids.size() && i < MAX_REPORTED_SUIDS; i++){
+				if (i > 0){
+					sb.append(", ");
+				}
+				sb.append(suids.get(i));
+			}
+			if (suids.size() > MAX_REPORTED_SUIDS){
+				sb.append(" and ").append(suids.size() - MAX_REPORTED_SUIDS).append(" more");
+			}
+		}
+	}
+	
+	/**
+	 * Encodes edges as ASCII lines of source id tab target id
+	 * optionally followed by tab weight into a byte buffer. If constructed
+	 * with an {@link OutputStream} the buffer is written to it whenever it
+	 * fills up, otherwise the buffer grows as needed.
+	 */
+	private static class EdgeListEncoder {
+		private final OutputStream out;
+		private byte[] buffer;
+		private int count;
+		
+		EdgeListEncoder(OutputStream out, int bufferSize){
+			this.out = out;
+			buffer = new byte[bufferSize];
+			count = 0;
+		}
+		
+		void appendEdge(long sourceId, long targetId, Number weight,
+				boolean integralWeight) throws IOException {
+			ensureCapacity(MAX_LINE_WITHOUT_WEIGHT);
+			appendLong(sourceId);
+			buffer[count++] = TAB_BYTE;
+			appendLong(targetId);
+			if (weight != null){
+				buffer[count++] = TAB_BYTE;
+				if (integralWeight){
+					ensureCapacity(21);
+					appendLong(weight.longValue());
+				} else {
+					appendAscii(weight.toString());
+				}
+				ensureCapacity(1);
+			}
+			buffer[count++] = NEW_LINE_BYTE;
+		}
+
+		/**
+		 * Writes base 10 representation of {@code value} to the buffer
+		 * which must have room for at least 20 bytes
+		 * @param value 
+		 */
+		private void appendLong(long value) {
+			if (value == Long.MIN_VALUE){
+				byte[] minValue = Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+				System.arraycopy(minValue, 0, buffer, count, minValue.length);
+				count += minValue.length;
+				return;
+			}
+			if (value < 0){
+				buffer[count++] = '-';
+				value = -value;
+			}
+			int start = count;
+			do {
+				buffer[count++] = (byte)('0' + (value % 10));
+				value /= 10;
+			} while (value != 0);
+
+			// digits were written least significant first so reverse them
+			for (int i = start, j = count - 1; i < j; i++, j--){
+				byte tmp = buffer[i];
+				buffer[i] = buffer[j];
+				buffer[j] = tmp;
+			}
+		}
+
+		/**
+		 * Writes {@code val}, which is assumed to be the string
+		 * representation of a number and hence ASCII, to the buffer
+		 * @param val 
+		 */
+		private void appendAscii(final String val) throws IOException {
+			int len = val.length();
+			ensureCapacity(len);
+			for (int i = 0; i < len; i++){
+				buffer[count++] = (byte)val.charAt(i);
+			}
+		}
+
+		private void ensureCapacity(int numBytes) throws IOException {
+			if (count + numBytes <= buffer.length){
+				return;
+			}
+			if (out != null){
+				flushBuffer();
+			}
+			if (count + numBytes > buffer.length){
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + numBytes));
+			}
+		}
+		
+		void writeTo(OutputStream outStream) throws IOException {
+			if (count > 0){
+				outStream.write(buffer, 0, count);
+			}
+		}
+		
+		void flush() throws IOException {
+			flushBuffer();
+		}
+
+		private void flushBuffer() throws IOException {
+			if (count > 0){
+				out.write(buffer, 0, count);
+				count = 0;
+			}
+		}
+	}
 }
@@ -12,4 +12,16 @@ public interface WriterTaskFactory {
 
 	CyWriter createWriter(OutputStream os, CyNetwork network, String attribute);
 	
+	/**
+	 * Creates writer that writes node indices from {@code nodeIndexMap}
+	 * in place of node SUIDs
+	 * @param os stream to write edge list to
+	 * @param network network whose edges are written
+	 * @param attribute name of weight column or {@code null} for none
+	 * @param nodeIndexMap node indices to write or {@code null} to write SUIDs
+	 * @return writer
+	 */
+	CyWriter createWriter(OutputStream os, CyNetwork network, String attribute,
+			NodeIndexMap nodeIndexMap);
+	
 }
@@ -2,6 +2,7 @@ package org.cytoscape.app.communitydetection.edgelist;
 
 import java.io.OutputStream;
 
+import org.cytoscape.app.communitydetection.PropertiesHelper;
 import org.cytoscape.app.communitydetection.util.AppUtils;
 import org.cytoscape.io.CyFileFilter;
 import org.cytoscape.io.write.CyNetworkViewWriterFactory;
@@ -23,7 +24,15 @@ public class WriterTaskFactoryImpl implements WriterTaskFactory {
 
 	@Override
 	public CyWriter createWriter(OutputStream os, CyNetwork network, String attribute) {
-		return new WriterTask(os, network, attribute);
+		return createWriter(os, network, attribute, null);
+	}
+
+	@Override
+	public CyWriter createWriter(OutputStream os, CyNetwork network, String attribute,
+			NodeIndexMap nodeIndexMap) {
+		return new WriterTask(os, network, attribute,
+				PropertiesHelper.getInstance().getEdgeListParallelThreshold(),
+				nodeIndexMap);
 	}
 
 }
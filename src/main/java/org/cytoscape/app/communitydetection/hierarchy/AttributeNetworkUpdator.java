@@ -1,9 +1,8 @@
 package org.cytoscape.app.communitydetection.hierarchy;
 
-import java.io.IOException;
 import java.util.Map;
-import java.util.Properties;
 import org.cytoscape.app.communitydetection.util.AppUtils;
+import org.cytoscape.app.communitydetection.util.BundledProperties;
 import org.cytoscape.app.communitydetection.util.CyNetworkUtil;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyTable;
@@ -117,25 +116,24 @@ public class AttributeNetworkUpdator {
 	}
 	
 	/**
-	 * Creates generated by string
+	 * Creates generated by string using the app name and version from
+	 * {@link BundledProperties} which are only read once
 	 * @param algorithm
 	 * @return 
 	 */
 	private String getGeneratedByString(final CommunityDetectionAlgorithm algorithm){
 		StringBuilder generatedBy = new StringBuilder();
 		generatedBy.append("App: ");
-		try {
-			Properties properties = new Properties();
-			properties.load(getClass().getClassLoader().getResourceAsStream(AppUtils.PROP_NAME + ".props"));
-			
-			generatedBy.append(properties.getProperty(AppUtils.PROP_PROJECT_NAME));
+		BundledProperties properties = BundledProperties.getInstance();
+		if (properties.getErrorMessage() == null){
+			generatedBy.append(properties.getProperty(AppUtils.PROP_PROJECT_NAME, null));
 			generatedBy.append(" (");
-			generatedBy.append(properties.getProperty(AppUtils.PROP_PROJECT_VERSION));
+			generatedBy.append(properties.getProperty(AppUtils.PROP_PROJECT_VERSION, null));
 			generatedBy.append(")");
-		} catch(IOException io){
+		} else {
 			LOGGER.error("Unable to get app version and name from properties");
 			generatedBy.append("(Unable to get app name/version from properties: ");
-			generatedBy.append(io.getMessage());
+			generatedBy.append(properties.getErrorMessage());
 			generatedBy.append(")");
 		}
 		generatedBy.append(" Docker Image: ");
@@ -0,0 +1,367 @@
+package org.cytoscape.app.communitydetection.hierarchy;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+import org.cytoscape.app.communitydetection.PropertiesHelper;
+import org.cytoscape.app.communitydetection.rest.CDRequestDataWriter;
+import org.cytoscape.app.communitydetection.rest.CDResultReader;
+import org.cytoscape.app.communitydetection.rest.StreamingJsonFactory;
+import org.cytoscape.app.communitydetection.util.FileCache;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the results of community detection on disk so running the same
+ * algorithm with the same parameters on an unchanged network does not
+ * need a request to CD Service.
+ * <p>
+ * Results are keyed by a SHA-256 hash of the name and docker image of
+ * the algorithm, its custom parameters sorted by name and the edge list
+ * sent to CD Service, which holds the node ids and the weights. The key
+ * is computed by exporting the edge list into the hash only, so a cached
+ * result is found without submitting anything to CD Service. For the key
+ * to stay the same after a session is reopened the node ids must not be
+ * SUIDs, see
+ * {@link org.cytoscape.app.communitydetection.edgelist.NodeIndexMap#createNodeIndexMapByName(org.cytoscape.model.CyNetwork)}.
+ * Each result is
+ * stored as a gzip compressed JSON file via {@link FileCache} in the
+ * directory set with {@link #setCacheDirectory(java.io.File)}; nothing is
+ * cached until that is done. A response being read from CD Service can be
+ * copied byte for byte into its file via {@link ResultCopy}.
+ * <p>
+ * This object is thread safe
+ *
+ * @author churas
+ */
+public class CommunityDetectionResultCache {
+
+	private final static Logger LOGGER = LoggerFactory.getLogger(CommunityDetectionResultCache.class);
+
+	/**
+	 * Suffix of files holding results in cache directory
+	 */
+	public static final String CACHE_FILE_SUFFIX = ".json.gz";
+
+	/**
+	 * Name of field holding the result in a cached file
+	 */
+	public static final String RESULT_FIELD = "result";
+
+	private final ObjectMapper _mapper = new ObjectMapper()
+			.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+	private final JsonFactory _resultJsonFactory = new StreamingJsonFactory(_mapper);
+	private final int _diskSize;
+	private final long _ttlMillis;
+	private FileCache _fileCache;
+
+	/**
+	 * Copies a response from CD Service into a temporary file that is
+	 * stored as the cached result once {@link #commit()} is invoked.
+	 * Errors writing the copy are logged and the copy is dropped, they
+	 * are never thrown to the code reading the response. Closing without
+	 * committing deletes the temporary file
+	 */
+	public static class ResultCopy extends OutputStream {
+		private final String _key;
+		private final FileCache.PendingFile _pendingFile;
+		private final GZIPOutputStream _out;
+		private boolean _failed;
+
+		private ResultCopy(final String key, FileCache.PendingFile pendingFile) throws IOException {
+			_key = key;
+			_pendingFile = pendingFile;
+			_out = new GZIPOutputStream(pendingFile.getOutputStream());
+			_failed = false;
+		}
+
+		@Override
+		public void write(int b) {
+			if (_failed){
+				return;
+			}
+			try {
+				_out.write(b);
+			} catch(IOException io){
+				fail(io);
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			if (_failed){
+				return;
+			}
+			try {
+				_out.write(b, off, len);
+			} catch(IOException io){
+				fail(io);
+			}
+		}
+
+		/**
+		 * Stores the copy as the result under the key unless writing
+		 * it failed or it was closed
+		 */
+		public void commit(){
+			if (_failed){
+				return;
+			}
+			try {
+				_out.finish();
+				_pendingFile.commit();
+			} catch(IOException io){
+				fail(io);
+			}
+		}
+
+		/**
+		 * Deletes the copy if {@link #commit()} was not invoked
+		 */
+		@Override
+		public void close() {
+			_failed = true;
+			_pendingFile.close();
+		}
+
+		private void fail(IOException io){
+			LOGGER.warn("Unable to write cached result " + _key, io);
+			_failed = true;
+			_pendingFile.close();
+		}
+	}
+
+	private static class SingletonHelper {
+		private static final CommunityDetectionResultCache INSTANCE = new CommunityDetectionResultCache(
+				PropertiesHelper.getInstance().getCommunityDetectionCacheSize(),
+				PropertiesHelper.getInstance().getCommunityDetectionCacheTTLMillis());
+	}
+
+	/**
+	 * Gets instance of this object shared by the tasks of this app, its
+	 * limits are set from {@link PropertiesHelper} the first time this
+	 * is invoked
+	 * @return
+	 */
+	public static CommunityDetectionResultCache getInstance(){
+		return SingletonHelper.INSTANCE;
+	}
+
+	/**
+	 * Constructor
+	 * @param diskSize maximum number of results to keep, a value less
+	 *        then {@code 1} disables caching
+	 * @param ttlMillis how long in milliseconds a result can be used, a
+	 *        value less then {@code 1} means results never expire
+	 */
+	public CommunityDetectionResultCache(int diskSize, long ttlMillis){
+		_diskSize = diskSize;
+		_ttlMillis = ttlMillis;
+	}
+
+	/**
+	 * Sets directory where results are written
+	 * @param cacheDir directory, created if it does not exist. Can be
+	 *        {@code null} to stop caching
+	 */
+	public synchronized void setCacheDirectory(File cacheDir){
+		if (cacheDir == null || _diskSize < 1){
+			_fileCache = null;
+			return;
+		}
+		_fileCache = new FileCache(cacheDir, _diskSize, _ttlMillis, CACHE_FILE_SUFFIX);
+	}
+
+	/**
+	 * Tells if results are cached
+	 * @return {@code true} if a cache directory is set and the disk size
+	 *         passed to the constructor is at least {@code 1}
+	 */
+	public synchronized boolean isEnabled(){
+		return _fileCache != null;
+	}
+
+	/**
+	 * Gets key of the result of running {@code algorithm} on the edge
+	 * list written by {@code edgeListWriter}. The edge list is written
+	 * into the hash and not kept
+	 * @param algorithm community detection algorithm
+	 * @param customParameters custom parameters for algorithm, can be {@code null}
+	 * @param edgeListWriter writes the edge list sent to CD Service
+	 * @return hex encoded SHA-256 hash
+	 * @throws IOException if there is an error writing the edge list
+	 */
+	public String getKey(CommunityDetectionAlgorithm algorithm, Map<String, String> customParameters,
+			CDRequestDataWriter edgeListWriter) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		sb.append(algorithm.getName());
+		sb.append('\0');
+		sb.append(algorithm.getDockerImage());
+		sb.append('\0');
+		if (customParameters != null){
+			for (Map.Entry<String, String> entry : new TreeMap<>(customParameters).entrySet()){
+				sb.append(entry.getKey());
+				sb.append('=');
+				sb.append(entry.getValue());
+				sb.append('\0');
+			}
+		}
+		sb.append('\0');
+		final MessageDigest digest = FileCache.getKeyDigest();
+		digest.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+		edgeListWriter.writeData(new OutputStream(){
+			@Override
+			public void write(int b){
+				digest.update((byte)b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len){
+				digest.update(b, off, len);
+			}
+		});
+		return FileCache.getKey(digest);
+	}
+
+	/**
+	 * Gets result stored under {@code key}. Files that can not be read
+	 * are removed
+	 * @param key key from {@link #getKey(org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm, java.util.Map, org.cytoscape.app.communitydetection.rest.CDRequestDataWriter)}
+	 * @return result or {@code null} if there is none or it expired
+	 */
+	public CommunityDetectionResult get(final String key){
+		FileCache fileCache = getFileCache();
+		File cacheFile = fileCache == null ? null : fileCache.get(key);
+		if (cacheFile == null){
+			return null;
+		}
+		try (InputStream fileIn = new FileInputStream(cacheFile);
+				InputStream in = new GZIPInputStream(fileIn)){
+			return _mapper.readValue(in, CommunityDetectionResult.class);
+		} catch(IOException io){
+			LOGGER.warn("Unable to read cached result " + cacheFile.getAbsolutePath(), io);
+			fileCache.remove(key);
+			return null;
+		}
+	}
+
+	/**
+	 * Reads result stored under {@code key} straight from its file with
+	 * {@code reader}. If the file is not valid compressed JSON it is removed
+	 * @param <T> type of object built from the result
+	 * @param key key from {@link #getKey(org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm, java.util.Map, org.cytoscape.app.communitydetection.rest.CDRequestDataWriter)}
+	 * @param reader reads the result
+	 * @return object built by {@code reader} or {@code null} if there is
+	 *         no result or it expired
+	 * @throws IOException if there is an error reading the file or
+	 *         thrown by {@code reader}
+	 */
+	public <T> T get(final String key, CDResultReader<T> reader) throws IOException {
+		FileCache fileCache = getFileCache();
+		File cacheFile = fileCache == null ? null : fileCache.get(key);
+		if (cacheFile == null){
+			return null;
+		}
+		try (InputStream fileIn = new FileInputStream(cacheFile);
+				JsonParser parser = _resultJsonFactory.createParser(
+						new GZIPInputStream(fileIn))){
+			if (parser.nextToken() != JsonToken.START_OBJECT){
+				throw new JsonParseException(parser, "Expected JSON object in "
+						+ cacheFile.getAbsolutePath());
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME){
+				String fieldName = parser.getCurrentName();
+				parser.nextToken();
+				if (RESULT_FIELD.equals(fieldName)){
+					return reader.readResult(parser);
+				}
+				parser.skipChildren();
+			}
+			throw new JsonParseException(parser, "No " + RESULT_FIELD + " found in "
+					+ cacheFile.getAbsolutePath());
+		} catch(JsonProcessingException | ZipException | EOFException corrupt){
+			fileCache.remove(key);
+			throw corrupt;
+		}
+	}
+
+	/**
+	 * Stores {@code cdResult} under {@code key}. Errors are logged and
+	 * otherwise ignored
+	 * @param key key from {@link #getKey(org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm, java.util.Map, org.cytoscape.app.communitydetection.rest.CDRequestDataWriter)}
+	 * @param cdResult result of community detection, ignored if
+	 *        {@code null} or it has no result
+	 */
+	public void put(final String key, CommunityDetectionResult cdResult){
+		if (cdResult == null || cdResult.getResult() == null){
+			return;
+		}
+		write(key, (out) -> _mapper.writeValue(out, cdResult));
+	}
+
+	/**
+	 * Starts a copy of the response holding the result stored under
+	 * {@code key}. The response must be a JSON object with the result in
+	 * its {@value #RESULT_FIELD} field, like those returned by CD Service.
+	 * The caller must close the returned object
+	 * @param key key from {@link #getKey(org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm, java.util.Map, org.cytoscape.app.communitydetection.rest.CDRequestDataWriter)}
+	 * @return copy or {@code null} if caching is not enabled or the
+	 *         temporary file could not be created
+	 */
+	public ResultCopy newResultCopy(final String key){
+		FileCache fileCache = getFileCache();
+		if (fileCache == null){
+			return null;
+		}
+		FileCache.PendingFile pendingFile = null;
+		try {
+			pendingFile = fileCache.newPendingFile(key);
+			return new ResultCopy(key, pendingFile);
+		} catch(IOException io){
+			LOGGER.warn("Unable to write cached result " + key, io);
+			if (pendingFile != null){
+				pendingFile.close();
+			}
+			return null;
+		}
+	}
+
+	private void write(final String key, FileCache.ContentWriter writer){
+		FileCache fileCache = getFileCache();
+		if (fileCache == null){
+			return;
+		}
+		try {
+			fileCache.put(key, (out) -> {
+				GZIPOutputStream gzipOut = new GZIPOutputStream(out);
+				writer.write(gzipOut);
+				gzipOut.finish();
+			});
+		} catch(IOException io){
+			LOGGER.warn("Unable to write cached result " + key, io);
+		}
+	}
+
+	private synchronized FileCache getFileCache(){
+		return _fileCache;
+	}
+}
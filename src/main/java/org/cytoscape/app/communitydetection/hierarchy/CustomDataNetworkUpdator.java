@@ -1,9 +1,17 @@
 package org.cytoscape.app.communitydetection.hierarchy;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import org.cytoscape.app.communitydetection.cx2.CX2NodeAttributes;
+import org.cytoscape.app.communitydetection.util.ColumnBatchWriter;
 import org.cytoscape.app.communitydetection.util.CyNetworkUtil;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNode;
@@ -23,56 +31,136 @@ import org.slf4j.LoggerFactory;
 public class CustomDataNetworkUpdator {
 	
 	private final static Logger LOGGER = LoggerFactory.getLogger(CustomDataNetworkUpdator.class);
+	private final static ObjectMapper MAPPER = new ObjectMapper();
+	private final static TypeReference<List<CxAttributeDeclaration>> DECLARATIONS_TYPE =
+			new TypeReference<List<CxAttributeDeclaration>>(){};
+	private final static String NODE_ID = "id";
+	private final static String NODE_VALUES = "v";
 	private final CyNetworkUtil _cyNetworkUtil;
 	
 	/**
 	 * Constructor
 	 */
 	public CustomDataNetworkUpdator(){
-		_cyNetworkUtil = new CyNetworkUtil();
+		this(new CyNetworkUtil());
 	}
 	
 	/**
-	 * Using {@code nodeAttrs} as input this method creates one or more columns in
-	 * the node table
+	 * Constructor
+	 * @param cyNetworkUtil used to create columns and to get a writer
+	 *                      for the node table
+	 */
+	public CustomDataNetworkUpdator(CyNetworkUtil cyNetworkUtil){
+		_cyNetworkUtil = cyNetworkUtil;
+	}
+	
+	/**
+	 * Using the CX2 fragment in {@code nodeAttrsAsCX2} as input this method
+	 * creates one or more columns in the node table. The fragment is
+	 * streamed by a Jackson parser as described in
+	 * {@link #updateNetworkWithNodeAttributes(org.cytoscape.model.CyNetwork, com.fasterxml.jackson.core.JsonParser, java.util.Map)}
 	 * @param network The network where the columns and data will be added
-	 * @param nodeAttrs Data to add
+	 * @param nodeAttrsAsCX2 CX2 fragment with attributeDeclarations and nodes
 	 * @param nMap Map of node SUID => CyNode
 	 * @throws CommunityDetectionException if there are errors
 	 */
-	protected void updateNetworkWithCustomData(CyNetwork network,
-			CX2NodeAttributes nodeAttrs, Map<Long, CyNode> nMap) throws CommunityDetectionException {
+	protected void updateNetworkWithNodeAttributes(CyNetwork network,
+			JsonNode nodeAttrsAsCX2, Map<Long, CyNode> nMap) throws CommunityDetectionException {
+		if (nodeAttrsAsCX2 == null){
+			throw new CommunityDetectionException("nodeAttrs is null");
+		}
+		try (JsonParser parser = nodeAttrsAsCX2.traverse()){
+			parser.nextToken();
+			updateNetworkWithNodeAttributes(network, parser, nMap);
+		} catch(IOException io){
+			throw new CommunityDetectionException("Error reading node attributes: " + io.getMessage());
+		}
+	}
+	
+	/**
+	 * Reads the CX2 fragment from {@code parser} in a single pass. Columns
+	 * are created from the attributeDeclarations and the values of each
+	 * node are queued in a {@link ColumnBatchWriter} as the node is read,
+	 * so neither the fragment nor the list of nodes is held in memory.
+	 * If nodes come before attributeDeclarations the nodes are buffered
+	 * as tokens until the declarations are read.
+	 * <p>
+	 * Values are converted to the type of the column they are written to,
+	 * values for nodes not in {@code nMap} are skipped
+	 * 
+	 * @param network The network where the columns and data will be added
+	 * @param parser parser whose current token is the start of the CX2 fragment
+	 * @param nMap Map of node SUID => CyNode
+	 * @throws CommunityDetectionException if there are errors
+	 */
+	protected void updateNetworkWithNodeAttributes(CyNetwork network,
+			JsonParser parser, Map<Long, CyNode> nMap) throws CommunityDetectionException {
 		if (network == null){
 			throw new CommunityDetectionException("network is null");
 		}
-		if (nodeAttrs == null){
-			throw new CommunityDetectionException("nodeAttrs is null");
+		if (parser == null){
+			throw new CommunityDetectionException("parser is null");
 		}
 		if (nMap == null){
 			throw new CommunityDetectionException("node map is null");
 		}
 		long startTime = System.currentTimeMillis();
 		try {
-			Map<String, String> aliasMap = createColumnsSuppliedByAlgorithm(network, nodeAttrs);
-			populateColumns(network, nodeAttrs, aliasMap, nMap);
+			if (parser.currentToken() != JsonToken.START_OBJECT){
+				throw new CommunityDetectionException("Node attributes are not a JSON object");
+			}
+			ColumnBatchWriter writer = null;
+			Map<String, String> aliasMap = null;
+			TokenBuffer bufferedNodes = null;
+			long nodeCount = 0;
+			while (parser.nextToken() == JsonToken.FIELD_NAME){
+				String fieldName = parser.getCurrentName();
+				parser.nextToken();
+				if (fieldName.equals(CxAttributeDeclaration.ASPECT_NAME)){
+					aliasMap = createColumnsSuppliedByAlgorithm(network,
+							MAPPER.readValue(parser, DECLARATIONS_TYPE));
+					if (writer == null){
+						writer = _cyNetworkUtil.getColumnBatchWriter(network.getDefaultNodeTable());
+					}
+				} else if (fieldName.equals(CxNode.ASPECT_NAME) && aliasMap == null){
+					bufferedNodes = new TokenBuffer(parser);
+					bufferedNodes.copyCurrentStructure(parser);
+				} else if (fieldName.equals(CxNode.ASPECT_NAME)){
+					nodeCount += populateColumns(network, parser, aliasMap, nMap, writer);
+				} else {
+					parser.skipChildren();
+				}
+			}
+			if (aliasMap == null){
+				throw new CommunityDetectionException("Attribute Declarations missing");
+			}
+			if (bufferedNodes != null){
+				try (JsonParser nodesParser = bufferedNodes.asParser()){
+					nodesParser.nextToken();
+					nodeCount += populateColumns(network, nodesParser, aliasMap, nMap, writer);
+				}
+			}
+			writer.flush();
+			LOGGER.debug("Updated column(s) in " + nodeCount + " nodes");
+		} catch(IOException io){
+			throw new CommunityDetectionException("Error reading node attributes: " + io.getMessage());
 		} finally {
 			LOGGER.debug("Populating custom data took: " + (System.currentTimeMillis() - startTime) + " ms");
 		}
 	}
 	
 	/**
-	 * Adds data to node column(s) from {@code nodeAttrs} to {@code network} passed
-	 * in. 
+	 * Adds node column(s) declared in {@code attribDeclarations} to
+	 * {@code network} passed in. 
 	 * @param network
-	 * @param nodeAttrs
-	 * @return
-	 * @throws CommunityDetectionException if attribute declarations are 
-	 *         missing in {@code nodeAttrs}
+	 * @param attribDeclarations
+	 * @return map of attribute alias to column name
+	 * @throws CommunityDetectionException if {@code attribDeclarations} 
+	 *         is {@code null}
 	 */
 	private Map<String, String> createColumnsSuppliedByAlgorithm(CyNetwork network,
-			CX2NodeAttributes nodeAttrs) throws CommunityDetectionException {
+			List<CxAttributeDeclaration> attribDeclarations) throws CommunityDetectionException {
 
-		List<CxAttributeDeclaration> attribDeclarations = nodeAttrs.getAttributeDeclarations();
 		if (attribDeclarations == null){
 			throw new CommunityDetectionException("Attribute Declarations missing");
 		}
@@ -107,31 +195,107 @@ public class CustomDataNetworkUpdator {
 	}
 
 	/**
-	 * Fill columns with data
+	 * Queues values of each node in the nodes list {@code parser} is at
 	 * @param network Network to update
-	 * @param nodeAttrs Data to load
-	 * @param aliasMap Map of column name to alias name
+	 * @param parser parser whose current token is the start of the nodes list
+	 * @param aliasMap Map of attribute alias to column name
 	 * @param nMap Map of node SUID => CyNode
+	 * @param writer receives the values
+	 * @return number of nodes with values queued
 	 */
-	private void populateColumns(CyNetwork network, CX2NodeAttributes nodeAttrs,
-		Map<String, String> aliasMap, Map<Long, CyNode> nMap){
-		boolean nodeUpdated = false;
+	private long populateColumns(CyNetwork network, JsonParser parser,
+			Map<String, String> aliasMap, Map<Long, CyNode> nMap,
+			ColumnBatchWriter writer) throws IOException, CommunityDetectionException {
+		if (parser.currentToken() != JsonToken.START_ARRAY){
+			throw new CommunityDetectionException("Expected list of nodes");
+		}
+		Map<String, Class<?>> columnTypes = new HashMap<>();
+		for (Map.Entry<String, String> entry : aliasMap.entrySet()){
+			columnTypes.put(entry.getKey(), network.getDefaultNodeTable()
+					.getColumn(entry.getValue()).getType());
+		}
+		List<String> columnNames = new ArrayList<>();
+		List<Object> values = new ArrayList<>();
 		long nodeCount = 0;
-		for (CxNode node : nodeAttrs.getNodes()){
-			nodeUpdated = false;
-			for (String nodeAttrKey: node.getAttributes().keySet()){
-				if (!aliasMap.containsKey(nodeAttrKey)){
-					continue;
+		long skippedCount = 0;
+		while (parser.nextToken() == JsonToken.START_OBJECT){
+			Long nodeId = null;
+			columnNames.clear();
+			values.clear();
+			while (parser.nextToken() == JsonToken.FIELD_NAME){
+				String fieldName = parser.getCurrentName();
+				parser.nextToken();
+				if (fieldName.equals(NODE_ID) && parser.currentToken() == JsonToken.VALUE_NUMBER_INT){
+					nodeId = parser.getLongValue();
+				} else if (fieldName.equals(NODE_VALUES) && parser.currentToken() == JsonToken.START_OBJECT){
+					while (parser.nextToken() == JsonToken.FIELD_NAME){
+						String nodeAttrKey = parser.getCurrentName();
+						parser.nextToken();
+						if (!aliasMap.containsKey(nodeAttrKey)){
+							parser.skipChildren();
+							continue;
+						}
+						columnNames.add(aliasMap.get(nodeAttrKey));
+						values.add(getValue(parser, columnTypes.get(nodeAttrKey),
+								aliasMap.get(nodeAttrKey)));
+					}
+				} else {
+					parser.skipChildren();
 				}
-				network.getRow(nMap.get(node.getId())).set(aliasMap.get(nodeAttrKey),
-						node.getAttributes().get(nodeAttrKey));
-				nodeUpdated = true;
 			}
-			if (nodeUpdated == true){
-				nodeCount++;
+			if (columnNames.isEmpty()){
+				continue;
+			}
+			CyNode node = nodeId == null ? null : nMap.get(nodeId);
+			if (node == null){
+				skippedCount++;
+				continue;
+			}
+			for (int i = 0; i < columnNames.size(); i++){
+				writer.set(node, columnNames.get(i), values.get(i));
 			}
+			nodeCount++;
+		}
+		if (parser.currentToken() != JsonToken.END_ARRAY){
+			throw new CommunityDetectionException("Expected node but found: " + parser.currentToken());
+		}
+		if (skippedCount > 0){
+			LOGGER.warn("Skipped values for " + skippedCount + " node(s) not in hierarchy");
+		}
+		return nodeCount;
+	}
+	
+	/**
+	 * Reads the value {@code parser} is at as {@code type}
+	 * @param parser
+	 * @param type type of column value is written to
+	 * @param columnName name of column value is written to
+	 * @return value or {@code null} if value is JSON null
+	 * @throws CommunityDetectionException if the value cannot be
+	 *         converted to {@code type}
+	 */
+	private Object getValue(JsonParser parser, Class<?> type, final String columnName) throws IOException, CommunityDetectionException {
+		JsonToken token = parser.currentToken();
+		if (token == JsonToken.VALUE_NULL){
+			return null;
+		}
+		if (type == Integer.class && token == JsonToken.VALUE_NUMBER_INT){
+			return parser.getIntValue();
+		}
+		if (type == Long.class && token == JsonToken.VALUE_NUMBER_INT){
+			return parser.getLongValue();
+		}
+		if (type == Double.class && token.isNumeric()){
+			return parser.getDoubleValue();
+		}
+		if (type == Boolean.class && token.isBoolean()){
+			return parser.getBooleanValue();
+		}
+		if (type == String.class && token.isScalarValue()){
+			return parser.getText();
 		}
-		LOGGER.debug("Updated column(s) in " + nodeCount + " nodes");
+		throw new CommunityDetectionException("Invalid value for column "
+				+ columnName + ": " + parser.getText());
 	}
 	
 	/**
@@ -0,0 +1,320 @@
+package org.cytoscape.app.communitydetection.hierarchy;
+
+import java.io.IOException;
+import java.io.Writer;
+import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionException;
+
+/**
+ * Single pass tokenizer for edge lists in
+ * <a href="https://github.com/cytoscape/communitydetection-rest-server/wiki/COMMUNITYDETECTRESULTV-format">COMMUNITYDETECTRESULTV format</a>
+ * which is SOURCE1,TARGET1,NODETYPE;SOURCE2,TARGET2,NODETYPE;...
+ * <p>
+ * Characters can be passed in any size chunks, even splitting an edge
+ * entry, via {@link #write(char[], int, int)} or through the
+ * {@link Writer} returned by {@link #asWriter()} which can be passed to
+ * {@link com.fasterxml.jackson.core.JsonParser#getText(java.io.Writer)}.
+ * A parser from {@link org.cytoscape.app.communitydetection.rest.StreamingJsonFactory}
+ * passes a string value to the writer in chunks as it is read, other
+ * parsers pass it all at once after reading it into memory. The source and
+ * target ids are parsed as they arrive so no string is created per edge,
+ * except the text of an entry when reporting an error. Whitespace around
+ * entries and fields is ignored.
+ * <p>
+ * This object is NOT thread safe
+ *
+ * @author churas
+ */
+public class EdgeListTokenizer {
+
+	/**
+	 * Receives each edge parsed by {@link EdgeListTokenizer}
+	 */
+	public interface EdgeHandler {
+
+		/**
+		 * Called for each edge entry
+		 * @param source id of source node
+		 * @param target id of target node
+		 * @param sourceIsCommunity {@code true} if source node type is {@code c}
+		 * @param targetIsCommunity {@code true} if target node type is {@code c}
+		 *                          otherwise target is a member node
+		 * @param interaction node type field such as {@code c-c} or {@code c-m}
+		 * @param entry text of the edge entry, only meant to be used in
+		 *              error messages
+		 * @throws CommunityDetectionException if the edge cannot be handled
+		 */
+		public void handleEdge(long source, long target, boolean sourceIsCommunity,
+				boolean targetIsCommunity, final String interaction,
+				CharSequence entry) throws CommunityDetectionException;
+	}
+
+	public static final char ENTRY_DELIM = ';';
+	public static final char FIELD_DELIM = ',';
+	public static final char TYPE_DELIM = '-';
+	public static final String COMMUNITY_TO_COMMUNITY = "c-c";
+	public static final String COMMUNITY_TO_MEMBER = "c-m";
+	private static final int NUM_FIELDS = 3;
+	private static final long MAX_BEFORE_MULTIPLY = Long.MAX_VALUE / 10;
+
+	private final EdgeHandler _handler;
+	private final StringBuilder _entry;
+	private final StringBuilder _interaction;
+	private int _fieldIndex;
+	private final long[] _ids;
+	private boolean _hasDigits;
+	private boolean _negative;
+	private boolean _fieldDone;
+	private boolean _invalid;
+	private long _edgeCount;
+
+	/**
+	 * Constructor
+	 * @param handler receives each edge parsed
+	 */
+	public EdgeListTokenizer(EdgeHandler handler){
+		_handler = handler;
+		_entry = new StringBuilder();
+		_interaction = new StringBuilder();
+		_ids = new long[2];
+		resetEntry();
+	}
+
+	/**
+	 * Parses {@code len} characters of {@code cbuf} starting at {@code off}
+	 * @param cbuf characters to parse
+	 * @param off offset of first character
+	 * @param len number of characters
+	 * @throws CommunityDetectionException if an edge entry is invalid or
+	 *         is rejected by the {@link EdgeHandler}
+	 */
+	public void write(char[] cbuf, int off, int len) throws CommunityDetectionException {
+		int end = off + len;
+		for (int i = off; i < end; i++){
+			write(cbuf[i]);
+		}
+	}
+
+	/**
+	 * Parses all characters of {@code str}
+	 * @param str characters to parse
+	 * @throws CommunityDetectionException if an edge entry is invalid or
+	 *         is rejected by the {@link EdgeHandler}
+	 */
+	public void write(final String str) throws CommunityDetectionException {
+		int len = str.length();
+		for (int i = 0; i < len; i++){
+			write(str.charAt(i));
+		}
+	}
+
+	/**
+	 * Handles last edge entry if it was not followed by {@value #ENTRY_DELIM}.
+	 * Must be invoked once all characters have been written
+	 * @throws CommunityDetectionException if the last edge entry is invalid or
+	 *         is rejected by the {@link EdgeHandler}
+	 */
+	public void finish() throws CommunityDetectionException {
+		endEntry();
+	}
+
+	/**
+	 * Gets number of edges passed to {@link EdgeHandler} so far
+	 * @return
+	 */
+	public long getEdgeCount(){
+		return _edgeCount;
+	}
+
+	/**
+	 * Gets a {@link Writer} that passes everything written to it to this
+	 * object. Any {@link CommunityDetectionException} is thrown as the
+	 * cause of an {@link IOException}. Closing the writer invokes
+	 * {@link #finish()}
+	 * @return
+	 */
+	public Writer asWriter(){
+		return new Writer(){
+			@Override
+			public void write(char[] cbuf, int off, int len) throws IOException {
+				try {
+					EdgeListTokenizer.this.write(cbuf, off, len);
+				} catch(CommunityDetectionException cde){
+					throw new IOException(cde.getMessage(), cde);
+				}
+			}
+
+			@Override
+			public void write(final String str, int off, int len) throws IOException {
+				try {
+					for (int i = off; i < off + len; i++){
+						EdgeListTokenizer.this.write(str.charAt(i));
+					}
+				} catch(CommunityDetectionException cde){
+					throw new IOException(cde.getMessage(), cde);
+				}
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() throws IOException {
+				try {
+					finish();
+				} catch(CommunityDetectionException cde){
+					throw new IOException(cde.getMessage(), cde);
+				}
+			}
+		};
+	}
+
+	private void write(char c) throws CommunityDetectionException {
+		if (c == ENTRY_DELIM){
+			endEntry();
+			return;
+		}
+		if (_entry.length() == 0 && Character.isWhitespace(c)){
+			return;
+		}
+		_entry.append(c);
+		if (_invalid){
+			return;
+		}
+		if (c == FIELD_DELIM){
+			endField();
+			return;
+		}
+		if (Character.isWhitespace(c)){
+			if (_hasDigits || _interaction.length() > 0){
+				_fieldDone = true;
+			}
+			return;
+		}
+		if (_fieldDone){
+			_invalid = true;
+			return;
+		}
+		if (_fieldIndex == NUM_FIELDS - 1){
+			_interaction.append(c);
+			return;
+		}
+		if (c >= '0' && c <= '9'){
+			int digit = c - '0';
+			long value = _ids[_fieldIndex];
+			if (value > MAX_BEFORE_MULTIPLY || (value == MAX_BEFORE_MULTIPLY && digit > 7)){
+				_invalid = true;
+				return;
+			}
+			_ids[_fieldIndex] = value * 10 + digit;
+			_hasDigits = true;
+			return;
+		}
+		if (c == TYPE_DELIM && !_hasDigits && !_negative){
+			_negative = true;
+			return;
+		}
+		_invalid = true;
+	}
+
+	private void endField(){
+		if (_fieldIndex >= NUM_FIELDS - 1 || !_hasDigits){
+			_invalid = true;
+			return;
+		}
+		if (_negative){
+			_ids[_fieldIndex] = -_ids[_fieldIndex];
+		}
+		_fieldIndex++;
+		_hasDigits = false;
+		_negative = false;
+		_fieldDone = false;
+	}
+
+	private void endEntry() throws CommunityDetectionException {
+		if (_entry.length() == 0){
+			return;
+		}
+		try {
+			trimEntry();
+			int typeDelimPos = getTypeDelimPosition();
+			if (_invalid || _fieldIndex != NUM_FIELDS - 1 || typeDelimPos < 0){
+				throw new CommunityDetectionException("Invalid edge entry: " + _entry.toString());
+			}
+			boolean sourceIsCommunity = isCommunityType(0, typeDelimPos);
+			boolean targetIsCommunity = isCommunityType(typeDelimPos + 1, _interaction.length());
+			_handler.handleEdge(_ids[0], _ids[1], sourceIsCommunity, targetIsCommunity,
+					getInteraction(), _entry);
+			_edgeCount++;
+		} finally {
+			resetEntry();
+		}
+	}
+
+	/**
+	 * Returns the shared constants for the two node types the service
+	 * returns so no string is created for those
+	 * @return
+	 */
+	private String getInteraction(){
+		if (contentEquals(_interaction, COMMUNITY_TO_MEMBER)){
+			return COMMUNITY_TO_MEMBER;
+		}
+		if (contentEquals(_interaction, COMMUNITY_TO_COMMUNITY)){
+			return COMMUNITY_TO_COMMUNITY;
+		}
+		return _interaction.toString();
+	}
+
+	private int getTypeDelimPosition(){
+		for (int i = 0; i < _interaction.length(); i++){
+			if (_interaction.charAt(i) == TYPE_DELIM){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private boolean isCommunityType(int start, int end){
+		if (end - start != 1){
+			return false;
+		}
+		return Character.toLowerCase(_interaction.charAt(start)) ==
+				EdgeStringNetworkUpdator.COMMUNITY_IDENTIFIER.charAt(0);
+	}
+
+	private static boolean contentEquals(StringBuilder sb, final String str){
+		if (sb.length() != str.length()){
+			return false;
+		}
+		for (int i = 0; i < str.length(); i++){
+			if (sb.charAt(i) != str.charAt(i)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Removes trailing whitespace from text of current entry
+	 */
+	private void trimEntry(){
+		int len = _entry.length();
+		while (len > 0 && Character.isWhitespace(_entry.charAt(len - 1))){
+			len--;
+		}
+		_entry.setLength(len);
+	}
+
+	private void resetEntry(){
+		_entry.setLength(0);
+		_interaction.setLength(0);
+		_fieldIndex = 0;
+		_ids[0] = 0;
+		_ids[1] = 0;
+		_hasDigits = false;
+		_negative = false;
+		_fieldDone = false;
+		_invalid = false;
+	}
+}
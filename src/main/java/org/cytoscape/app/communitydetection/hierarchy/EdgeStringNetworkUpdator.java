@@ -1,8 +1,14 @@
 package org.cytoscape.app.communitydetection.hierarchy;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.Map;
-import org.cytoscape.app.communitydetection.util.AppUtils;
+import org.cytoscape.app.communitydetection.edgelist.NodeIndexMap;
+import org.cytoscape.app.communitydetection.util.ColumnBatchWriter;
+import org.cytoscape.app.communitydetection.util.CyNetworkUtil;
 import org.cytoscape.model.CyEdge;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNode;
@@ -11,7 +17,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Adds nodes and edges to network 
+ * Adds nodes and edges to network. Node names and edge interactions
+ * are written to the node and edge tables in one batch once the whole
+ * edge list has been parsed
  * @author churas
  */
 public class EdgeStringNetworkUpdator {
@@ -22,6 +30,24 @@ public class EdgeStringNetworkUpdator {
 	public static final String SEMI_COLON = ";";
 	public static final String COMMUNITY_IDENTIFIER = "c";
 	public static final String COMMUNITY_CHAR = COMMUNITY_IDENTIFIER.toUpperCase();
+	
+	private final CyNetworkUtil _cyNetworkUtil;
+	
+	/**
+	 * Constructor
+	 */
+	public EdgeStringNetworkUpdator(){
+		this(new CyNetworkUtil());
+	}
+	
+	/**
+	 * Constructor
+	 * @param cyNetworkUtil used to get writers for the node and edge tables
+	 */
+	public EdgeStringNetworkUpdator(CyNetworkUtil cyNetworkUtil){
+		_cyNetworkUtil = cyNetworkUtil;
+	}
+	
 	/**
 	 * Given an edge list as a string {@code edgeStr} this method
 	 * adds appropriate edges and nodes to {@code newNetwork}
@@ -31,65 +57,232 @@ public class EdgeStringNetworkUpdator {
 	 *                SOURCE1,TARGET1,NODETYPE;SOURCE2,TARGET2,NODETYPE;...\n
 	 *                Visit: https://github.com/cytoscape/communitydetection-rest-server/wiki/COMMUNITYDETECTRESULTV-format
 	 *                for full description of format
+	 * @param indexBuilder receives the communities, members and child
+	 *                     communities found in the edge list
+	 * @return a map of CyNode objects added by this method with the SUIDs of those nodes as keys
+	 */
+	protected Map<Long, CyNode> updateNetworkWithEdgeString(CyNetwork parentNetwork,
+			CyNetwork newNetwork, final String  edgeStr, HierarchyIndex.Builder indexBuilder) throws CommunityDetectionException {
+		return updateNetworkWithEdgeString(parentNetwork, newNetwork, edgeStr, null, indexBuilder);
+	}
+	
+	/**
+	 * Given an edge list as a string {@code edgeStr} this method
+	 * adds appropriate edges and nodes to {@code newNetwork}
+	 * @param parentNetwork parent network
+	 * @param newNetwork hierarchy network to update
+	 * @param edgeStr edge string which is assumed to be a string in format of
+	 *                SOURCE1,TARGET1,NODETYPE;SOURCE2,TARGET2,NODETYPE;...\n
+	 * @param nodeIndexMap if not {@code null}, member node ids in {@code edgeStr}
+	 *                     are indices in this map instead of SUIDs
+	 * @param indexBuilder receives the communities, members and child
+	 *                     communities found in the edge list
 	 * @return a map of CyNode objects added by this method with the SUIDs of those nodes as keys
+	 * @throws CommunityDetectionException if the edge list is invalid
 	 */
 	protected Map<Long, CyNode> updateNetworkWithEdgeString(CyNetwork parentNetwork,
-			CyNetwork newNetwork, final String  edgeStr) throws CommunityDetectionException {
+			CyNetwork newNetwork, final String  edgeStr, NodeIndexMap nodeIndexMap,
+			HierarchyIndex.Builder indexBuilder) throws CommunityDetectionException {
+		checkNetworks(parentNetwork, newNetwork, indexBuilder);
+		if (edgeStr == null){
+			throw new CommunityDetectionException("Edge list is null");
+		}
+		NetworkEdgeHandler handler = getNetworkEdgeHandler(parentNetwork, newNetwork,
+				nodeIndexMap, indexBuilder);
+		EdgeListTokenizer tokenizer = new EdgeListTokenizer(handler);
+		long startTime = System.currentTimeMillis();
+		try {
+			tokenizer.write(edgeStr);
+			tokenizer.finish();
+			handler.flush();
+		} finally {
+			LOGGER.debug("Adding " + tokenizer.getEdgeCount() + " edges to network took: "
+					+ (System.currentTimeMillis() - startTime) + " ms");
+		}
+		return handler.getNodeMap();
+	}
+	
+	/**
+	 * Same as {@link #updateNetworkWithEdgeString(org.cytoscape.model.CyNetwork, org.cytoscape.model.CyNetwork, java.lang.String, org.cytoscape.app.communitydetection.edgelist.NodeIndexMap, org.cytoscape.app.communitydetection.hierarchy.HierarchyIndex.Builder)}
+	 * except the edge list is the text value of {@code edgeList} which is
+	 * streamed into the tokenizer by a Jackson parser instead of being
+	 * copied into a {@link String}
+	 * @param parentNetwork parent network
+	 * @param newNetwork hierarchy network to update
+	 * @param edgeList JSON value holding the edge list
+	 * @param nodeIndexMap if not {@code null}, member node ids in {@code edgeList}
+	 *                     are indices in this map instead of SUIDs
+	 * @param indexBuilder receives the communities, members and child
+	 *                     communities found in the edge list
+	 * @return a map of CyNode objects added by this method with the SUIDs of those nodes as keys
+	 * @throws CommunityDetectionException if the edge list is invalid
+	 */
+	protected Map<Long, CyNode> updateNetworkWithEdgeList(CyNetwork parentNetwork,
+			CyNetwork newNetwork, JsonNode edgeList, NodeIndexMap nodeIndexMap,
+			HierarchyIndex.Builder indexBuilder) throws CommunityDetectionException {
+		if (edgeList == null){
+			throw new CommunityDetectionException("Edge list is null");
+		}
+		try (JsonParser parser = edgeList.traverse()){
+			parser.nextToken();
+			return updateNetworkWithEdgeList(parentNetwork, newNetwork, parser, nodeIndexMap, indexBuilder);
+		} catch(IOException io){
+			throw new CommunityDetectionException("Error reading edge list: " + io.getMessage());
+		}
+	}
+	
+	/**
+	 * Same as {@link #updateNetworkWithEdgeString(org.cytoscape.model.CyNetwork, org.cytoscape.model.CyNetwork, java.lang.String, org.cytoscape.app.communitydetection.edgelist.NodeIndexMap, org.cytoscape.app.communitydetection.hierarchy.HierarchyIndex.Builder)}
+	 * except the edge list is the value of the current token of {@code parser}.
+	 * The value is passed to the tokenizer via
+	 * {@link JsonParser#getText(java.io.Writer)}. With a parser from
+	 * {@link org.cytoscape.app.communitydetection.rest.StreamingJsonFactory},
+	 * as used for CD Service responses, edges are added in chunks as the
+	 * value is read and the whole edge list is never held in memory. Other
+	 * parsers read the whole value before passing it on
+	 * @param parentNetwork parent network
+	 * @param newNetwork hierarchy network to update
+	 * @param parser parser whose current token is the edge list
+	 * @param nodeIndexMap if not {@code null}, member node ids in the edge list
+	 *                     are indices in this map instead of SUIDs
+	 * @param indexBuilder receives the communities, members and child
+	 *                     communities found in the edge list
+	 * @return a map of CyNode objects added by this method with the SUIDs of those nodes as keys
+	 * @throws CommunityDetectionException if the edge list is invalid
+	 * @throws IOException if there is an error reading from {@code parser}
+	 */
+	protected Map<Long, CyNode> updateNetworkWithEdgeList(CyNetwork parentNetwork,
+			CyNetwork newNetwork, JsonParser parser, NodeIndexMap nodeIndexMap,
+			HierarchyIndex.Builder indexBuilder) throws CommunityDetectionException, IOException {
+		checkNetworks(parentNetwork, newNetwork, indexBuilder);
+		if (parser == null || parser.currentToken() == null || !parser.currentToken().isScalarValue()){
+			throw new CommunityDetectionException("Edge list is null");
+		}
+		NetworkEdgeHandler handler = getNetworkEdgeHandler(parentNetwork, newNetwork,
+				nodeIndexMap, indexBuilder);
+		EdgeListTokenizer tokenizer = new EdgeListTokenizer(handler);
+		long startTime = System.currentTimeMillis();
+		try {
+			try (Writer writer = tokenizer.asWriter()){
+				parser.getText(writer);
+			}
+			handler.flush();
+		} catch(IOException io){
+			if (io.getCause() instanceof CommunityDetectionException){
+				throw (CommunityDetectionException)io.getCause();
+			}
+			throw io;
+		} finally {
+			LOGGER.debug("Adding " + tokenizer.getEdgeCount() + " edges to network took: "
+					+ (System.currentTimeMillis() - startTime) + " ms");
+		}
+		return handler.getNodeMap();
+	}
+	
+	private NetworkEdgeHandler getNetworkEdgeHandler(CyNetwork parentNetwork,
+			CyNetwork newNetwork, NodeIndexMap nodeIndexMap,
+			HierarchyIndex.Builder indexBuilder) throws CommunityDetectionException {
+		return new NetworkEdgeHandler(parentNetwork, newNetwork, nodeIndexMap, indexBuilder,
+				_cyNetworkUtil.getColumnBatchWriter(newNetwork.getDefaultNodeTable()),
+				_cyNetworkUtil.getColumnBatchWriter(newNetwork.getDefaultEdgeTable()));
+	}
+	
+	private void checkNetworks(CyNetwork parentNetwork, CyNetwork newNetwork,
+			HierarchyIndex.Builder indexBuilder) throws CommunityDetectionException {
 		if (parentNetwork == null){
 			throw new CommunityDetectionException("Parent network is null");
 		}
 		if (newNetwork == null){
 			throw new CommunityDetectionException("New network is null");
 		}
-		if (edgeStr == null){
-			throw new CommunityDetectionException("Edge list is null");
+		if (indexBuilder == null){
+			throw new CommunityDetectionException("Hierarchy index builder is null");
+		}
+	}
+	
+	/**
+	 * Adds nodes and edges to hierarchy network for each edge
+	 * parsed by {@link EdgeListTokenizer}
+	 */
+	private static class NetworkEdgeHandler implements EdgeListTokenizer.EdgeHandler {
+		
+		private final CyNetwork _parentNetwork;
+		private final CyNetwork _newNetwork;
+		private final NodeIndexMap _nodeIndexMap;
+		private final HierarchyIndex.Builder _indexBuilder;
+		private final Map<Long, CyNode> _nMap;
+		private final ColumnBatchWriter _nodeWriter;
+		private final ColumnBatchWriter _edgeWriter;
+		
+		NetworkEdgeHandler(CyNetwork parentNetwork, CyNetwork newNetwork,
+				NodeIndexMap nodeIndexMap, HierarchyIndex.Builder indexBuilder,
+				ColumnBatchWriter nodeWriter, ColumnBatchWriter edgeWriter){
+			_parentNetwork = parentNetwork;
+			_newNetwork = newNetwork;
+			_nodeIndexMap = nodeIndexMap;
+			_indexBuilder = indexBuilder;
+			_nMap = new HashMap<>();
+			_nodeWriter = nodeWriter;
+			_edgeWriter = edgeWriter;
+		}
+		
+		Map<Long, CyNode> getNodeMap(){
+			return _nMap;
+		}
+		
+		/**
+		 * Writes queued node names and edge interactions
+		 */
+		void flush(){
+			_nodeWriter.flush();
+			_edgeWriter.flush();
 		}
-		Map<Long, CyNode> nMap = new HashMap<>();
-		String edges[] = edgeStr.split(SEMI_COLON);
-		LOGGER.debug("Found " + edges.length + " edges to load");
-		long startTime = System.currentTimeMillis();
-		try {
-			for (String line : edges) {
-				if (line.trim().length() <= 0)
-					continue;
-				final String[] parts = line.split(AppUtils.EDGE_LIST_SPLIT_PATTERN);
-				if (parts.length != 3) {
-					throw new CommunityDetectionException("Invalid edge entry: " + line);
-				}
-				long sourceSUID = Long.parseLong(parts[0]);
-				long targetSUID = Long.parseLong(parts[1]);
-				String[] interaction = parts[parts.length - 1].split(HYPHEN);
 
-				if (interaction[0].equalsIgnoreCase(COMMUNITY_IDENTIFIER)) {
-					CyNode sourceNode = nMap.get(sourceSUID);
-					if (sourceNode == null) {
-						sourceNode = newNetwork.addNode();
-						String sourceName = COMMUNITY_CHAR + sourceSUID;
-						newNetwork.getRow(sourceNode).set(CyNetwork.NAME, sourceName);
-						nMap.put(sourceSUID, sourceNode);
+		@Override
+		public void handleEdge(long sourceSUID, long targetSUID, boolean sourceIsCommunity,
+				boolean targetIsCommunity, final String interaction,
+				CharSequence entry) throws CommunityDetectionException {
+			if (sourceIsCommunity) {
+				getOrAddCommunityNode(sourceSUID);
+			}
+			CyNode sourceNode = _nMap.get(sourceSUID);
+			if (sourceNode == null){
+				throw new CommunityDetectionException("Source is not a community in edge entry: "
+						+ entry);
+			}
+			if (targetIsCommunity) {
+				CyNode targetNode = getOrAddCommunityNode(targetSUID);
+				CyEdge edge = _newNetwork.addEdge(sourceNode, targetNode, true);
+				_edgeWriter.set(edge, CyEdge.INTERACTION, interaction);
+				_indexBuilder.addChildCommunity(sourceNode, targetNode);
+			} else {
+				if (_nodeIndexMap != null){
+					long memberSUID = _nodeIndexMap.getSUID(targetSUID);
+					if (memberSUID < 0){
+						throw new CommunityDetectionException("Invalid node index: "
+								+ targetSUID + " in edge entry: " + entry);
 					}
+					targetSUID = memberSUID;
 				}
-				if (interaction[1].equalsIgnoreCase(COMMUNITY_IDENTIFIER)) {
-					CyNode targetNode = nMap.get(targetSUID);
-					if (targetNode == null) {
-						targetNode = newNetwork.addNode();
-						String targetName = COMMUNITY_CHAR + targetSUID;
-						newNetwork.getRow(targetNode).set(CyNetwork.NAME, targetName);
-						nMap.put(targetSUID, targetNode);
-					}
-					CyEdge edge = newNetwork.addEdge(nMap.get(sourceSUID), targetNode, true);
-					newNetwork.getRow(edge).set(CyEdge.INTERACTION, parts[parts.length - 1]);
-					HierarchyHelper.getInstance().addChildNode(nMap.get(sourceSUID), targetNode);
-				} else {
-					HierarchyHelper.getInstance().addMemberNode(parentNetwork.getNode(targetSUID));
-					HierarchyHelper.getInstance().addChildNode(nMap.get(sourceSUID),
-							parentNetwork.getNode(targetSUID));
+				CyNode memberNode = _parentNetwork.getNode(targetSUID);
+				if (memberNode == null){
+					throw new CommunityDetectionException("Node " + targetSUID
+							+ " not found in parent network for edge entry: " + entry);
 				}
+				_indexBuilder.addMember(sourceNode, memberNode);
 			}
-		} finally {
-			LOGGER.debug("Adding nodes and edges to network took: " + (System.currentTimeMillis() - startTime) + " ms");
 		}
-		return nMap;
+		
+		private CyNode getOrAddCommunityNode(long suid){
+			CyNode node = _nMap.get(suid);
+			if (node == null) {
+				node = _newNetwork.addNode();
+				_nodeWriter.set(node, CyNetwork.NAME, COMMUNITY_CHAR + suid);
+				_nMap.put(suid, node);
+				_indexBuilder.addCommunity(node);
+			}
+			return node;
+		}
 	}
 	
 }
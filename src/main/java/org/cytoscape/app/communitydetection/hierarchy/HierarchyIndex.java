@@ -0,0 +1,528 @@
+package org.cytoscape.app.communitydetection.hierarchy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import org.cytoscape.model.CyNode;
+
+/**
+ * Children and members of each community node of a single hierarchy
+ * network. Each hierarchy build gets its own instance so builds running
+ * at the same time cannot see each other's nodes.
+ * <p>
+ * Communities and members are given dense {@code int} indices in the
+ * order they are added to the {@link Builder}. Child communities and
+ * direct members of each community are stored in compressed sparse row
+ * form, an offset array plus a sorted array of indices.
+ * <p>
+ * The members of each community including those of all its descendants
+ * are computed once, bottom up, when the index is built. Communities are
+ * visited in post order using an explicit stack so deep hierarchies cannot
+ * overflow the call stack, and each set is computed once no matter how
+ * many parents the community has. Like the containers of a roaring bitmap
+ * each set is stored as a sorted {@code int} array when sparse and as a
+ * {@link BitSet} when dense, and a community whose members all come from
+ * a single child shares that child's set instead of copying it.
+ * <p>
+ * Instances are created via {@link Builder#build()}, are immutable and
+ * are thread safe.
+ *
+ * @author churas
+ */
+public class HierarchyIndex {
+
+	private static final byte NOT_VISITED = 0;
+	private static final byte IN_PROGRESS = 1;
+	private static final byte DONE = 2;
+
+	private final CyNode[] _communityNodes;
+	private final CyNode[] _memberNodes;
+	private final long[] _sortedCommunitySUIDs;
+	private final int[] _communityIndexBySUID;
+	private final int[] _childOffsets;
+	private final int[] _children;
+	private final int[] _directMemberOffsets;
+	private final int[] _directMembers;
+	private final MemberSet[] _memberships;
+
+	private HierarchyIndex(Builder builder){
+		_communityNodes = builder._communityNodes.toArray(new CyNode[0]);
+		_memberNodes = builder._memberNodes.toArray(new CyNode[0]);
+		int numCommunities = _communityNodes.length;
+
+		_sortedCommunitySUIDs = new long[numCommunities];
+		_communityIndexBySUID = new int[numCommunities];
+		Integer[] order = new Integer[numCommunities];
+		for (int i = 0; i < numCommunities; i++){
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Long.compare(_communityNodes[a].getSUID(),
+				_communityNodes[b].getSUID()));
+		for (int i = 0; i < numCommunities; i++){
+			_sortedCommunitySUIDs[i] = _communityNodes[order[i]].getSUID();
+			_communityIndexBySUID[i] = order[i];
+		}
+
+		_childOffsets = new int[numCommunities + 1];
+		_children = toCompressedRows(builder._childEdgeParents, builder._childEdgeChildren,
+				builder._childEdgeCount, _childOffsets);
+		_directMemberOffsets = new int[numCommunities + 1];
+		_directMembers = toCompressedRows(builder._memberEdgeParents, builder._memberEdgeMembers,
+				builder._memberEdgeCount, _directMemberOffsets);
+		_memberships = new MemberSet[numCommunities];
+		computeMemberships();
+	}
+
+	/**
+	 * Gets number of community nodes
+	 * @return
+	 */
+	public int getCommunityCount(){
+		return _communityNodes.length;
+	}
+
+	/**
+	 * Gets number of distinct member nodes
+	 * @return
+	 */
+	public int getMemberCount(){
+		return _memberNodes.length;
+	}
+
+	/**
+	 * Gets community node with dense index {@code communityIndex}
+	 * @param communityIndex
+	 * @return
+	 * @throws ArrayIndexOutOfBoundsException if index is invalid
+	 */
+	public CyNode getCommunityNode(int communityIndex){
+		return _communityNodes[communityIndex];
+	}
+
+	/**
+	 * Gets member node with dense index {@code memberIndex}
+	 * @param memberIndex
+	 * @return
+	 * @throws ArrayIndexOutOfBoundsException if index is invalid
+	 */
+	public CyNode getMemberNode(int memberIndex){
+		return _memberNodes[memberIndex];
+	}
+
+	/**
+	 * Gets dense index of {@code communityNode}
+	 * @param communityNode
+	 * @return index or {@code -1} if {@code communityNode} is {@code null}
+	 *         or not a community in this index
+	 */
+	public int getCommunityIndex(CyNode communityNode){
+		if (communityNode == null){
+			return -1;
+		}
+		int pos = Arrays.binarySearch(_sortedCommunitySUIDs, communityNode.getSUID());
+		if (pos < 0){
+			return -1;
+		}
+		return _communityIndexBySUID[pos];
+	}
+
+	/**
+	 * Gets indices of the communities that are direct children of
+	 * community {@code communityIndex}
+	 * @param communityIndex
+	 * @return sorted indices, empty if there are none
+	 */
+	public int[] getChildCommunities(int communityIndex){
+		return Arrays.copyOfRange(_children, _childOffsets[communityIndex],
+				_childOffsets[communityIndex + 1]);
+	}
+
+	/**
+	 * Gets indices of the members that are direct children of
+	 * community {@code communityIndex}
+	 * @param communityIndex
+	 * @return sorted indices, empty if there are none
+	 */
+	public int[] getDirectMembers(int communityIndex){
+		return Arrays.copyOfRange(_directMembers, _directMemberOffsets[communityIndex],
+				_directMemberOffsets[communityIndex + 1]);
+	}
+
+	/**
+	 * Gets indices of members of community {@code communityIndex} and
+	 * of all of its descendant communities
+	 * @param communityIndex
+	 * @return copy of the member indices
+	 */
+	public BitSet getMembers(int communityIndex){
+		return _memberships[communityIndex].toBitSet();
+	}
+
+	/**
+	 * Gets indices of members of community {@code communityIndex} and
+	 * of all of its descendant communities
+	 * @param communityIndex
+	 * @return member indices in ascending order
+	 */
+	public int[] getMemberIndices(int communityIndex){
+		return _memberships[communityIndex].toArray();
+	}
+
+	/**
+	 * Gets number of members of community {@code communityIndex} and
+	 * of all of its descendant communities
+	 * @param communityIndex
+	 * @return
+	 */
+	public int getMembersSize(int communityIndex){
+		return _memberships[communityIndex].size();
+	}
+
+	/**
+	 * Gets members of {@code communityNode} and of all of its
+	 * descendant communities
+	 * @param communityNode
+	 * @return member nodes in order of member index, empty if
+	 *         {@code communityNode} is not a community in this index
+	 */
+	public List<CyNode> getMemberNodes(CyNode communityNode){
+		int communityIndex = getCommunityIndex(communityNode);
+		if (communityIndex < 0){
+			return Collections.emptyList();
+		}
+		MemberSet members = _memberships[communityIndex];
+		List<CyNode> memberNodes = new ArrayList<>(members.size());
+		members.forEach((i) -> memberNodes.add(_memberNodes[i]));
+		return memberNodes;
+	}
+
+	/**
+	 * Computes members of every community visiting children before their
+	 * parents. A community that is reached again while its own members
+	 * are being computed, which only happens if the hierarchy has a cycle,
+	 * contributes no members to the community that reached it
+	 */
+	private void computeMemberships(){
+		int numCommunities = _communityNodes.length;
+		byte[] state = new byte[numCommunities];
+		int[] stack = new int[numCommunities];
+		int[] nextChild = new int[numCommunities];
+		for (int start = 0; start < numCommunities; start++){
+			if (state[start] != NOT_VISITED){
+				continue;
+			}
+			int top = 0;
+			stack[top++] = start;
+			state[start] = IN_PROGRESS;
+			nextChild[start] = _childOffsets[start];
+			while (top > 0){
+				int community = stack[top - 1];
+				if (nextChild[community] < _childOffsets[community + 1]){
+					int child = _children[nextChild[community]++];
+					if (state[child] == NOT_VISITED){
+						state[child] = IN_PROGRESS;
+						nextChild[child] = _childOffsets[child];
+						stack[top++] = child;
+					}
+					continue;
+				}
+				top--;
+				_memberships[community] = mergeMembers(community, state);
+				state[community] = DONE;
+			}
+		}
+	}
+
+	/**
+	 * Merges direct members of {@code community} with the members of its
+	 * child communities that are {@link #DONE}
+	 * @param community
+	 * @param state
+	 * @return
+	 */
+	private MemberSet mergeMembers(int community, byte[] state){
+		int directStart = _directMemberOffsets[community];
+		int directEnd = _directMemberOffsets[community + 1];
+		List<MemberSet> childSets = new ArrayList<>();
+		long upperBound = directEnd - directStart;
+		for (int i = _childOffsets[community]; i < _childOffsets[community + 1]; i++){
+			int child = _children[i];
+			if (state[child] != DONE || _memberships[child].size() == 0){
+				continue;
+			}
+			childSets.add(_memberships[child]);
+			upperBound += _memberships[child].size();
+		}
+		if (directStart == directEnd){
+			if (childSets.isEmpty()){
+				return MemberSet.EMPTY;
+			}
+			if (childSets.size() == 1){
+				return childSets.get(0);
+			}
+		}
+		if (MemberSet.isSparse(upperBound, _memberNodes.length)){
+			int[] values = Arrays.copyOfRange(_directMembers, directStart,
+					(int)(directStart + upperBound));
+			int[] pos = {directEnd - directStart};
+			for (MemberSet childSet : childSets){
+				childSet.forEach((i) -> values[pos[0]++] = i);
+			}
+			return MemberSet.fromUnsorted(values);
+		}
+		BitSet bits = new BitSet(_memberNodes.length);
+		for (int i = directStart; i < directEnd; i++){
+			bits.set(_directMembers[i]);
+		}
+		for (MemberSet childSet : childSets){
+			childSet.orInto(bits);
+		}
+		return MemberSet.fromBitSet(bits);
+	}
+
+	/**
+	 * Converts edge list of {@code count} entries into compressed
+	 * sparse rows with duplicate entries in a row removed
+	 * @param rows row of each entry
+	 * @param cols column of each entry
+	 * @param count number of entries
+	 * @param offsets filled in with start of each row, must have length
+	 *                of number of rows plus one
+	 * @return sorted columns of each row
+	 */
+	private static int[] toCompressedRows(int[] rows, int[] cols, int count, int[] offsets){
+		int numRows = offsets.length - 1;
+		int[] rowCounts = new int[numRows + 1];
+		for (int i = 0; i < count; i++){
+			rowCounts[rows[i] + 1]++;
+		}
+		for (int i = 0; i < numRows; i++){
+			rowCounts[i + 1] += rowCounts[i];
+		}
+		int[] values = new int[count];
+		int[] nextPos = Arrays.copyOf(rowCounts, numRows);
+		for (int i = 0; i < count; i++){
+			values[nextPos[rows[i]]++] = cols[i];
+		}
+		int uniqueCount = 0;
+		for (int row = 0; row < numRows; row++){
+			offsets[row] = uniqueCount;
+			Arrays.sort(values, rowCounts[row], rowCounts[row + 1]);
+			for (int i = rowCounts[row]; i < rowCounts[row + 1]; i++){
+				if (i > rowCounts[row] && values[i] == values[i - 1]){
+					continue;
+				}
+				values[uniqueCount++] = values[i];
+			}
+		}
+		offsets[numRows] = uniqueCount;
+		return uniqueCount == count ? values : Arrays.copyOf(values, uniqueCount);
+	}
+
+	/**
+	 * Immutable set of member indices stored as a sorted array when it
+	 * takes less space than a bitmap of the same set, otherwise as a
+	 * {@link BitSet}. Instances can be shared by several communities
+	 */
+	private static final class MemberSet {
+
+		static final MemberSet EMPTY = new MemberSet(new int[0], null);
+
+		private final int[] _sorted;
+		private final BitSet _bits;
+		private final int _size;
+
+		private MemberSet(int[] sorted, BitSet bits){
+			_sorted = sorted;
+			_bits = bits;
+			_size = sorted != null ? sorted.length : bits.cardinality();
+		}
+
+		/**
+		 * Tells if {@code size} indices below {@code maxIndex} take less
+		 * space as an {@code int} array than as a bitmap
+		 * @param size
+		 * @param maxIndex
+		 * @return
+		 */
+		static boolean isSparse(long size, int maxIndex){
+			return size * Integer.SIZE < maxIndex;
+		}
+
+		/**
+		 * Creates set from {@code values} which may contain duplicates,
+		 * {@code values} is sorted in place
+		 * @param values
+		 * @return
+		 */
+		static MemberSet fromUnsorted(int[] values){
+			Arrays.sort(values);
+			int uniqueCount = 0;
+			for (int i = 0; i < values.length; i++){
+				if (i > 0 && values[i] == values[i - 1]){
+					continue;
+				}
+				values[uniqueCount++] = values[i];
+			}
+			return new MemberSet(uniqueCount == values.length ? values :
+					Arrays.copyOf(values, uniqueCount), null);
+		}
+
+		/**
+		 * Creates set from {@code bits} which must not be modified after
+		 * @param bits
+		 * @return
+		 */
+		static MemberSet fromBitSet(BitSet bits){
+			int size = bits.cardinality();
+			if (isSparse(size, bits.length())){
+				return new MemberSet(bits.stream().toArray(), null);
+			}
+			return new MemberSet(null, bits);
+		}
+
+		int size(){
+			return _size;
+		}
+
+		void forEach(IntConsumer consumer){
+			if (_sorted != null){
+				for (int i : _sorted){
+					consumer.accept(i);
+				}
+				return;
+			}
+			for (int i = _bits.nextSetBit(0); i >= 0; i = _bits.nextSetBit(i + 1)){
+				consumer.accept(i);
+			}
+		}
+
+		void orInto(BitSet bits){
+			if (_bits != null){
+				bits.or(_bits);
+				return;
+			}
+			for (int i : _sorted){
+				bits.set(i);
+			}
+		}
+
+		int[] toArray(){
+			if (_sorted != null){
+				return _sorted.clone();
+			}
+			return _bits.stream().toArray();
+		}
+
+		BitSet toBitSet(){
+			if (_bits != null){
+				return (BitSet)_bits.clone();
+			}
+			BitSet bits = new BitSet();
+			orInto(bits);
+			return bits;
+		}
+	}
+
+	/**
+	 * Collects the communities, members and edges of a hierarchy as it is
+	 * parsed. Not thread safe, each hierarchy build should use its own
+	 */
+	public static class Builder {
+
+		private static final int INITIAL_CAPACITY = 16;
+		private final List<CyNode> _communityNodes;
+		private final Map<CyNode, Integer> _communityIndices;
+		private final List<CyNode> _memberNodes;
+		private final Map<CyNode, Integer> _memberIndices;
+		private int[] _childEdgeParents;
+		private int[] _childEdgeChildren;
+		private int _childEdgeCount;
+		private int[] _memberEdgeParents;
+		private int[] _memberEdgeMembers;
+		private int _memberEdgeCount;
+
+		/**
+		 * Constructor
+		 */
+		public Builder(){
+			_communityNodes = new ArrayList<>();
+			_communityIndices = new HashMap<>();
+			_memberNodes = new ArrayList<>();
+			_memberIndices = new HashMap<>();
+			_childEdgeParents = new int[INITIAL_CAPACITY];
+			_childEdgeChildren = new int[INITIAL_CAPACITY];
+			_memberEdgeParents = new int[INITIAL_CAPACITY];
+			_memberEdgeMembers = new int[INITIAL_CAPACITY];
+		}
+
+		/**
+		 * Adds {@code communityNode} if not already added
+		 * @param communityNode
+		 * @return dense index of community
+		 */
+		public int addCommunity(CyNode communityNode){
+			Integer index = _communityIndices.get(communityNode);
+			if (index == null){
+				index = _communityNodes.size();
+				_communityNodes.add(communityNode);
+				_communityIndices.put(communityNode, index);
+			}
+			return index;
+		}
+
+		/**
+		 * Adds {@code childNode} as child community of {@code parentNode}
+		 * adding either community if needed
+		 * @param parentNode
+		 * @param childNode
+		 */
+		public void addChildCommunity(CyNode parentNode, CyNode childNode){
+			int parent = addCommunity(parentNode);
+			int child = addCommunity(childNode);
+			if (_childEdgeCount == _childEdgeParents.length){
+				_childEdgeParents = Arrays.copyOf(_childEdgeParents, _childEdgeCount * 2);
+				_childEdgeChildren = Arrays.copyOf(_childEdgeChildren, _childEdgeCount * 2);
+			}
+			_childEdgeParents[_childEdgeCount] = parent;
+			_childEdgeChildren[_childEdgeCount] = child;
+			_childEdgeCount++;
+		}
+
+		/**
+		 * Adds {@code memberNode} as member of {@code parentNode}
+		 * adding the community if needed
+		 * @param parentNode
+		 * @param memberNode
+		 */
+		public void addMember(CyNode parentNode, CyNode memberNode){
+			int parent = addCommunity(parentNode);
+			Integer member = _memberIndices.get(memberNode);
+			if (member == null){
+				member = _memberNodes.size();
+				_memberNodes.add(memberNode);
+				_memberIndices.put(memberNode, member);
+			}
+			if (_memberEdgeCount == _memberEdgeParents.length){
+				_memberEdgeParents = Arrays.copyOf(_memberEdgeParents, _memberEdgeCount * 2);
+				_memberEdgeMembers = Arrays.copyOf(_memberEdgeMembers, _memberEdgeCount * 2);
+			}
+			_memberEdgeParents[_memberEdgeCount] = parent;
+			_memberEdgeMembers[_memberEdgeCount] = member;
+			_memberEdgeCount++;
+		}
+
+		/**
+		 * Creates the index
+		 * @return
+		 */
+		public HierarchyIndex build(){
+			return new HierarchyIndex(this);
+		}
+	}
+}
@@ -1,11 +1,18 @@
 package org.cytoscape.app.communitydetection.hierarchy;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.io.IOException;
 import java.util.Map;
-import org.cytoscape.app.communitydetection.cx2.CX2NodeAttributes;
-import org.cytoscape.app.communitydetection.cx2.CX2NodeAttributesFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.cytoscape.app.communitydetection.PropertiesHelper;
+import org.cytoscape.app.communitydetection.edgelist.NodeIndexMap;
 import org.cytoscape.app.communitydetection.util.AppUtils;
 import org.cytoscape.app.communitydetection.util.CyNetworkUtil;
+import org.cytoscape.event.CyEventHelper;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNetworkFactory;
 import org.cytoscape.model.CyNetworkManager;
@@ -25,6 +32,18 @@ import org.slf4j.LoggerFactory;
  */
 public class HierarchyNetworkFactory {
 	private final static Logger LOGGER = LoggerFactory.getLogger(HierarchyNetworkFactory.class);
+	
+	/**
+	 * Key in result of algorithm holding the node attributes
+	 */
+	protected static final String NODE_ATTRIBUTES_KEY = "nodeAttributesAsCX2";
+	
+	protected static final String READ_STAGE = "Reading the hierarchy";
+	protected static final String NODE_ATTRIBUTES_STAGE = "Adding node attributes";
+	protected static final String NETWORK_ATTRIBUTES_STAGE = "Setting network attributes";
+	protected static final String BUILD_MEMBER_LISTS_STAGE = "Building member lists";
+	protected static final String WRITE_MEMBER_LISTS_STAGE = "Writing member lists";
+	
 	private CyNetworkFactory _cyNetworkFactory;
 	private CyNetworkNaming _networkNaming;
 	private CyRootNetworkManager _rootNetworkManager;
@@ -39,14 +58,35 @@ public class HierarchyNetworkFactory {
 			CyNetworkNaming networkNaming,
 			CyRootNetworkManager rootNetworkManager,
 			CyNetworkManager networkManager){
+		this(cyNetworkFactory, networkNaming, rootNetworkManager, networkManager, null);
+	}
+	
+	/**
+	 * Constructor
+	 * @param cyNetworkFactory
+	 * @param networkNaming
+	 * @param rootNetworkManager
+	 * @param networkManager
+	 * @param eventHelper used to coalesce the row set events fired while
+	 *                    the node and edge tables are filled in, can be
+	 *                    {@code null}
+	 */
+	public HierarchyNetworkFactory(CyNetworkFactory cyNetworkFactory,
+			CyNetworkNaming networkNaming,
+			CyRootNetworkManager rootNetworkManager,
+			CyNetworkManager networkManager,
+			CyEventHelper eventHelper){
 		_cyNetworkFactory = cyNetworkFactory;
 		_networkNaming = networkNaming;
 		_rootNetworkManager = rootNetworkManager;
 		_networkManager = networkManager;
-		_networkUpdator = new EdgeStringNetworkUpdator();
-		_cyNetworkUtil = new CyNetworkUtil();
-		_customDataNetworkUpdator = new CustomDataNetworkUpdator();
-		_memberListNetworkUpdator = new MemberListNetworkUpdator();
+		_cyNetworkUtil = new CyNetworkUtil(eventHelper);
+		_networkUpdator = new EdgeStringNetworkUpdator(_cyNetworkUtil);
+		_customDataNetworkUpdator = new CustomDataNetworkUpdator(_cyNetworkUtil);
+		_memberListNetworkUpdator = new MemberListNetworkUpdator(
+				PropertiesHelper.getInstance().getMemberListParallelThreshold(),
+				PropertiesHelper.getInstance().isMemberListDirectOnly(),
+				_cyNetworkUtil);
 		_attributeNetworkUpdator = new AttributeNetworkUpdator(_rootNetworkManager, _networkNaming);
 	}
 
@@ -85,7 +125,26 @@ public class HierarchyNetworkFactory {
 	 */
 	public CyNetwork getHierarchyNetwork(CyNetwork parentNetwork, CommunityDetectionResult cdResult,
 				final String weightColumn, CommunityDetectionAlgorithm algorithm,
-				Map<String, String> customParameters) throws CommunityDetectionException {	
+				Map<String, String> customParameters) throws CommunityDetectionException {
+		return getHierarchyNetwork(parentNetwork, cdResult, weightColumn, algorithm,
+				customParameters, null);
+	}
+	
+	/**
+	 * Creates Hierarchy Network from {@code cdResult}
+	 * @param parentNetwork parent network for hierarchy
+	 * @param cdResult Community Detection algorithm result to parse
+	 * @param weightColumn Name of weight column used or {@code null} if none
+	 * @param algorithm The Community Detection Algorithm run
+	 * @param customParameters Any custom parameters or null/empty map if none
+	 * @param nodeIndexMap Map used to convert node ids in {@code cdResult} back
+	 *                     to SUIDs or {@code null} if SUIDs were sent
+	 * @return Hierarchy network with proper columns and annotations added
+	 */
+	public CyNetwork getHierarchyNetwork(CyNetwork parentNetwork, CommunityDetectionResult cdResult,
+				final String weightColumn, CommunityDetectionAlgorithm algorithm,
+				Map<String, String> customParameters,
+				NodeIndexMap nodeIndexMap) throws CommunityDetectionException {	
 
 		if (parentNetwork == null){
 			throw new CommunityDetectionException("parent network is null");
@@ -97,22 +156,9 @@ public class HierarchyNetworkFactory {
 			throw new CommunityDetectionException("algorithm is null");
 		}
 		
-		CyNetwork newNetwork = _cyNetworkFactory.createNetwork();
+		CyNetwork newNetwork = createNetwork(parentNetwork);
 
-		_cyNetworkUtil.createTableColumn(newNetwork.getDefaultNetworkTable(), AppUtils.COLUMN_CD_ORIGINAL_NETWORK, Long.class, false,
-				parentNetwork.getSUID());
-		CyTable nodeTable = newNetwork.getDefaultNodeTable();
-		_cyNetworkUtil.createTableColumn(nodeTable, AppUtils.COLUMN_CD_MEMBER_LIST, String.class, false, null);
-		_cyNetworkUtil.createTableColumn(nodeTable, AppUtils.COLUMN_CD_MEMBER_LIST_SIZE, Integer.class, false, 0);
-		_cyNetworkUtil.createTableColumn(nodeTable, AppUtils.COLUMN_CD_MEMBER_LIST_LOG_SIZE, Double.class, false, 0.0);
-		_cyNetworkUtil.createTableColumn(nodeTable, AppUtils.COLUMN_CD_COMMUNITY_NAME, String.class, false, null);
-		_cyNetworkUtil.createTableColumn(nodeTable, AppUtils.COLUMN_CD_ANNOTATED_MEMBERS, String.class, false, null);
-		_cyNetworkUtil.createTableColumn(nodeTable, AppUtils.COLUMN_CD_ANNOTATED_MEMBERS_SIZE, Integer.class, false, 0);
-		_cyNetworkUtil.createTableColumn(nodeTable, AppUtils.COLUMN_CD_ANNOTATED_OVERLAP, Double.class, false, 0.0);
-		_cyNetworkUtil.createTableColumn(nodeTable, AppUtils.COLUMN_CD_ANNOTATED_PVALUE, Double.class, false, 0.0);
-		_cyNetworkUtil.createTableColumn(nodeTable, AppUtils.COLUMN_CD_LABELED, Boolean.class, true, false);
-
-		String edgeStr;
+		JsonNode edgeList;
 		JsonNode nodeAttrs = null;
 		
 		if (cdResult.getResult() == null){
@@ -126,34 +172,205 @@ public class HierarchyNetworkFactory {
 				throw new CommunityDetectionException("No " + AppUtils.CD_ALGORITHM_OUTPUT_EDGELIST_KEY
 						+ " found in JSON output");
 			}
-			nodeAttrs = cdResult.getResult().get("nodeAttributesAsCX2");
-			edgeStr = cdR.asText().trim();
+			nodeAttrs = cdResult.getResult().get(NODE_ATTRIBUTES_KEY);
+			edgeList = cdR;
 		} else {
 			LOGGER.debug("Node is NOT a container node");
-			edgeStr = cdResult.getResult().asText().trim();
+			edgeList = cdResult.getResult();
 		}
 		
-		Map<Long, CyNode> nMap = _networkUpdator.updateNetworkWithEdgeString(parentNetwork, newNetwork, edgeStr);
+		HierarchyIndex.Builder indexBuilder = new HierarchyIndex.Builder();
+		Map<Long, CyNode> nMap = _networkUpdator.updateNetworkWithEdgeList(parentNetwork, newNetwork,
+				edgeList, nodeIndexMap, indexBuilder);
 		
 		annotateNetwork(newNetwork, nMap, nodeAttrs);
 
 		_networkManager.addNetwork(newNetwork);
-		_memberListNetworkUpdator.createMemberListsInNetwork(newNetwork, parentNetwork, HierarchyHelper.getInstance());
-		HierarchyHelper.getInstance().clearAll();
+		_memberListNetworkUpdator.createMemberListsInNetwork(newNetwork, parentNetwork, indexBuilder.build());
 		_attributeNetworkUpdator.setNetworkAttributes(parentNetwork, newNetwork, weightColumn, algorithm, cdResult, customParameters);
 		return newNetwork;
 	}
+	
+	/**
+	 * Same as {@link #getHierarchyNetwork(org.cytoscape.model.CyNetwork, org.ndexbio.communitydetection.rest.model.CommunityDetectionResult, java.lang.String, org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm, java.util.Map, org.cytoscape.app.communitydetection.edgelist.NodeIndexMap)}
+	 * except the result of the algorithm is read from {@code resultParser}.
+	 * If {@code resultParser} was created by
+	 * {@link org.cytoscape.app.communitydetection.rest.StreamingJsonFactory}
+	 * nodes and edges are added while the edge list is still being
+	 * received, other parsers read the whole edge list string before the
+	 * first edge is added. Once the edge list has been read the member lists are
+	 * built on another thread while the node attributes and network
+	 * attributes are set, and then written.
+	 * @param parentNetwork parent network for hierarchy
+	 * @param resultParser parser whose current token is the first token of
+	 *                     the result, on return its current token is the
+	 *                     last token of the result
+	 * @param weightColumn Name of weight column used or {@code null} if none
+	 * @param algorithm The Community Detection Algorithm run
+	 * @param customParameters Any custom parameters or null/empty map if none
+	 * @param nodeIndexMap Map used to convert node ids in the result back
+	 *                     to SUIDs or {@code null} if SUIDs were sent
+	 * @param stageTimer times each stage
+	 * @return Hierarchy network with proper columns and annotations added
+	 * @throws CommunityDetectionException if the result is invalid
+	 * @throws IOException if there is an error reading from {@code resultParser}
+	 */
+	public CyNetwork getHierarchyNetwork(CyNetwork parentNetwork, JsonParser resultParser,
+				final String weightColumn, CommunityDetectionAlgorithm algorithm,
+				Map<String, String> customParameters, NodeIndexMap nodeIndexMap,
+				StageTimer stageTimer) throws CommunityDetectionException, IOException {
+		if (parentNetwork == null){
+			throw new CommunityDetectionException("parent network is null");
+		}
+		if (resultParser == null){
+			throw new CommunityDetectionException("result parser is null");
+		}
+		if (algorithm == null){
+			throw new CommunityDetectionException("algorithm is null");
+		}
+		if (stageTimer == null){
+			throw new CommunityDetectionException("stage timer is null");
+		}
+		if (resultParser.currentToken() == null || resultParser.currentToken() == JsonToken.VALUE_NULL){
+			throw new CommunityDetectionException("community detection result is null");
+		}
+		stageTimer.start(READ_STAGE);
+		CyNetwork newNetwork = createNetwork(parentNetwork);
+		
+		HierarchyIndex.Builder indexBuilder = new HierarchyIndex.Builder();
+		Map<Long, CyNode> nMap = null;
+		CompletableFuture<MemberListNetworkUpdator.MemberLists> memberLists = null;
+		TokenBuffer nodeAttrs = null;
+		if (resultParser.currentToken() == JsonToken.START_OBJECT){
+			LOGGER.debug("This node is a container node");
+			while (resultParser.nextToken() == JsonToken.FIELD_NAME){
+				String fieldName = resultParser.getCurrentName();
+				resultParser.nextToken();
+				if (fieldName.equals(AppUtils.CD_ALGORITHM_OUTPUT_EDGELIST_KEY)){
+					nMap = _networkUpdator.updateNetworkWithEdgeList(parentNetwork, newNetwork,
+							resultParser, nodeIndexMap, indexBuilder);
+					memberLists = buildMemberListsAsync(newNetwork, parentNetwork,
+							indexBuilder.build(), stageTimer);
+				} else if (fieldName.equals(NODE_ATTRIBUTES_KEY)
+						&& resultParser.currentToken() != JsonToken.VALUE_NULL){
+					if (nMap != null){
+						stageTimer.start(NODE_ATTRIBUTES_STAGE);
+						_customDataNetworkUpdator.updateNetworkWithNodeAttributes(newNetwork,
+								resultParser, nMap);
+						stageTimer.start(READ_STAGE);
+					} else {
+						// the edge list is needed to add node attributes
+						// so hold them until it has been read
+						nodeAttrs = new TokenBuffer(resultParser);
+						nodeAttrs.copyCurrentStructure(resultParser);
+					}
+				} else {
+					resultParser.skipChildren();
+				}
+			}
+			if (nMap == null){
+				throw new CommunityDetectionException("No " + AppUtils.CD_ALGORITHM_OUTPUT_EDGELIST_KEY
+						+ " found in JSON output");
+			}
+		} else {
+			LOGGER.debug("Node is NOT a container node");
+			nMap = _networkUpdator.updateNetworkWithEdgeList(parentNetwork, newNetwork,
+					resultParser, nodeIndexMap, indexBuilder);
+			memberLists = buildMemberListsAsync(newNetwork, parentNetwork,
+					indexBuilder.build(), stageTimer);
+		}
+		
+		if (nodeAttrs != null){
+			stageTimer.start(NODE_ATTRIBUTES_STAGE);
+			try (JsonParser nodeAttrsParser = nodeAttrs.asParser()){
+				nodeAttrsParser.nextToken();
+				_customDataNetworkUpdator.updateNetworkWithNodeAttributes(newNetwork,
+						nodeAttrsParser, nMap);
+			}
+		}
+		stageTimer.start(NETWORK_ATTRIBUTES_STAGE);
+		_networkManager.addNetwork(newNetwork);
+		_attributeNetworkUpdator.setNetworkAttributes(parentNetwork, newNetwork, weightColumn,
+				algorithm, null, customParameters);
+		
+		stageTimer.start(WRITE_MEMBER_LISTS_STAGE);
+		_memberListNetworkUpdator.writeMemberLists(newNetwork, getMemberLists(memberLists));
+		stageTimer.stop();
+		return newNetwork;
+	}
+	
+	/**
+	 * Starts building the member lists of {@code hierarchyNetwork} on
+	 * another thread, the time taken is added to {@code stageTimer}
+	 * @return member lists once built
+	 */
+	private CompletableFuture<MemberListNetworkUpdator.MemberLists> buildMemberListsAsync(
+			CyNetwork hierarchyNetwork, CyNetwork parentNetwork,
+			HierarchyIndex hierarchyIndex, StageTimer stageTimer){
+		return CompletableFuture.supplyAsync(() -> {
+			long startTime = System.currentTimeMillis();
+			try {
+				return _memberListNetworkUpdator.buildMemberLists(hierarchyNetwork,
+						parentNetwork, hierarchyIndex);
+			} catch(CommunityDetectionException cde){
+				throw new CompletionException(cde);
+			} finally {
+				stageTimer.record(BUILD_MEMBER_LISTS_STAGE,
+						System.currentTimeMillis() - startTime);
+			}
+		});
+	}
+	
+	/**
+	 * Waits for member lists started by
+	 * {@link #buildMemberListsAsync(org.cytoscape.model.CyNetwork, org.cytoscape.model.CyNetwork, org.cytoscape.app.communitydetection.hierarchy.HierarchyIndex, org.cytoscape.app.communitydetection.hierarchy.StageTimer)}
+	 * @param memberLists
+	 * @return
+	 * @throws CommunityDetectionException if building the member lists failed
+	 */
+	private MemberListNetworkUpdator.MemberLists getMemberLists(
+			CompletableFuture<MemberListNetworkUpdator.MemberLists> memberLists) throws CommunityDetectionException {
+		try {
+			return memberLists.join();
+		} catch(CompletionException ce){
+			if (ce.getCause() instanceof CommunityDetectionException){
+				throw (CommunityDetectionException)ce.getCause();
+			}
+			throw new CommunityDetectionException("Error building member lists: "
+					+ ce.getCause().getMessage());
+		}
+	}
+	
+	/**
+	 * Creates a new network with the network and node table columns of
+	 * a hierarchy network
+	 * @param parentNetwork parent network for hierarchy
+	 * @return new network
+	 * @throws CommunityDetectionException if unable to create the columns
+	 */
+	private CyNetwork createNetwork(CyNetwork parentNetwork) throws CommunityDetectionException {
+		CyNetwork newNetwork = _cyNetworkFactory.createNetwork();
+
+		_cyNetworkUtil.createTableColumn(newNetwork.getDefaultNetworkTable(), AppUtils.COLUMN_CD_ORIGINAL_NETWORK, Long.class, false,
+				parentNetwork.getSUID());
+		CyTable nodeTable = newNetwork.getDefaultNodeTable();
+		_cyNetworkUtil.createTableColumn(nodeTable, AppUtils.COLUMN_CD_MEMBER_LIST, String.class, false, null);
+		_cyNetworkUtil.createTableColumn(nodeTable, AppUtils.COLUMN_CD_MEMBER_LIST_SIZE, Integer.class, false, 0);
+		_cyNetworkUtil.createTableColumn(nodeTable, AppUtils.COLUMN_CD_MEMBER_LIST_LOG_SIZE, Double.class, false, 0.0);
+		_cyNetworkUtil.createTableColumn(nodeTable, AppUtils.COLUMN_CD_COMMUNITY_NAME, String.class, false, null);
+		_cyNetworkUtil.createTableColumn(nodeTable, AppUtils.COLUMN_CD_ANNOTATED_MEMBERS, String.class, false, null);
+		_cyNetworkUtil.createTableColumn(nodeTable, AppUtils.COLUMN_CD_ANNOTATED_MEMBERS_SIZE, Integer.class, false, 0);
+		_cyNetworkUtil.createTableColumn(nodeTable, AppUtils.COLUMN_CD_ANNOTATED_OVERLAP, Double.class, false, 0.0);
+		_cyNetworkUtil.createTableColumn(nodeTable, AppUtils.COLUMN_CD_ANNOTATED_PVALUE, Double.class, false, 0.0);
+		_cyNetworkUtil.createTableColumn(nodeTable, AppUtils.COLUMN_CD_LABELED, Boolean.class, true, false);
+		return newNetwork;
+	}
 
 	private void annotateNetwork(CyNetwork network, Map<Long, CyNode> nMap, JsonNode nodeAttrsAsCX2) throws CommunityDetectionException {
 		if (nodeAttrsAsCX2 == null){
 			return;
 		}
-		CX2NodeAttributesFactory nodeAttrFac = new CX2NodeAttributesFactory();
-		CX2NodeAttributes nodeAttrs = nodeAttrFac.getCX2NodeAttributes(nodeAttrsAsCX2);
-		if (nodeAttrs == null){
-			LOGGER.error("Errors parsing nodeAttributes");
-		}
-		_customDataNetworkUpdator.updateNetworkWithCustomData(network, nodeAttrs, nMap);
+		_customDataNetworkUpdator.updateNetworkWithNodeAttributes(network, nodeAttrsAsCX2, nMap);
 	}
 }
 
@@ -1,12 +1,16 @@
 package org.cytoscape.app.communitydetection.hierarchy;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.Map;
 import org.cytoscape.app.communitydetection.PropertiesHelper;
+import org.cytoscape.app.communitydetection.edgelist.NodeIndexMap;
 import org.cytoscape.app.communitydetection.edgelist.WriterTask;
 import org.cytoscape.app.communitydetection.edgelist.WriterTaskFactory;
 import org.cytoscape.app.communitydetection.edgelist.WriterTaskFactoryImpl;
+import org.cytoscape.app.communitydetection.rest.CDRequestDataWriter;
+import org.cytoscape.app.communitydetection.rest.CDResultReader;
 import org.cytoscape.app.communitydetection.rest.CDRestClient;
+import org.cytoscape.app.communitydetection.rest.CancellationToken;
 import org.cytoscape.io.write.CyWriter;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.work.AbstractTask;
@@ -20,11 +24,23 @@ import org.slf4j.LoggerFactory;
 /**
  * Wraps {@link WriterTask}. Executes a community
  detection _algorithm on the selected _network.
+ * 
+ * If {@link CommunityDetectionResultCache} is enabled the edge list is
+ * first exported into a hash and, if a result for the same edge list,
+ * algorithm and parameters is cached, the hierarchy is created from it
+ * without contacting the service. The node ids in the edge list are then
+ * dense indices ordered by node name so the hash does not change when
+ * the session is reopened and the nodes get new SUIDs.
  *
  */
 public class HierarchyTask extends AbstractTask {
 
 	private final static Logger LOGGER = LoggerFactory.getLogger(HierarchyTask.class);
+	
+	protected static final String FINGERPRINT_STAGE = "Looking for a cached hierarchy";
+	protected static final String EXPORT_STAGE = "Exporting and uploading the network";
+	protected static final String WAIT_STAGE = "Waiting for the hierarchy";
+	protected static final String VIEW_STAGE = "Creating a view for the network";
 	private final CyNetwork _network;
 	private final CommunityDetectionAlgorithm _algorithm;
 	private final String _weightColumn;
@@ -32,9 +48,11 @@ public class HierarchyTask extends AbstractTask {
 	private WriterTaskFactory _writerFactory;
 	private HierarchyNetworkFactory _networkFactory;
 	private CDRestClient _restClient;
+	private CommunityDetectionResultCache _resultCache;
 	private HierarchyNetworkViewFactory _networkViewFactory;
 	private VisualStyleFactory _styleFactory;
 	private LayoutFactory _layoutFactory;
+	private final CancellationToken _cancelToken;
 	
 
 	public HierarchyTask(HierarchyNetworkFactory networkFactory,
@@ -51,9 +69,11 @@ public class HierarchyTask extends AbstractTask {
 		_writerFactory = new WriterTaskFactoryImpl();
 		_networkFactory = networkFactory;
 		_restClient = CDRestClient.getInstance();
+		_resultCache = CommunityDetectionResultCache.getInstance();
 		_networkViewFactory = networkViewFactory;
 		_styleFactory = styleFactory;
 		_layoutFactory = layoutFactory;
+		_cancelToken = new CancellationToken();
 	}
 	
 	/**
@@ -71,32 +91,51 @@ public class HierarchyTask extends AbstractTask {
 	protected void setAlternateCDRestClient(CDRestClient restClient){
 		_restClient = restClient;
 	}
+	
+	/**
+	 * Sets alternate result cache. Used for testing purposes
+	 * @param resultCache 
+	 */
+	protected void setAlternateResultCache(CommunityDetectionResultCache resultCache){
+		_resultCache = resultCache;
+	}
 
 	@Override
 	public void run(TaskMonitor taskMonitor) throws Exception {
 		if (this._algorithm == null){
 		    return;
 		}
+		if (PropertiesHelper.getInstance().isHierarchyPipelined()){
+			runPipelined(taskMonitor);
+			return;
+		}
 		long startTime = System.currentTimeMillis();
 		taskMonitor.setTitle("Community Detection: Creating Hierarchy Network");
 		taskMonitor.setStatusMessage("Exporting the network");
-		ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-		CyWriter writer = _writerFactory.createWriter(outStream, _network, _weightColumn);
-
-		writer.run(taskMonitor);
-		String resultURI = _restClient.postCDData(_algorithm.getName(),
-			this._customParameters, outStream.toString());		
-		if (cancelled) {
-			_restClient.setTaskCanceled(false);
-			return;
-		}
-		taskMonitor.setProgress(0.1);
-		taskMonitor.setStatusMessage("Network exported, retrieving the hierarchy");
-		CommunityDetectionResult cdResult = _restClient.getCDResult(resultURI, taskMonitor, 0.1f, 0.8f,
-				PropertiesHelper.getInstance().getCommunityDetectionTimeoutMillis());
-		if (cancelled) {
-			_restClient.setTaskCanceled(false);
-			return;
+		
+		// optionally send small dense node indices instead of SUIDs
+		final NodeIndexMap nodeIndexMap = getNodeIndexMap();
+		
+		String cacheKey = getResultCacheKey(taskMonitor, nodeIndexMap);
+		CommunityDetectionResult cdResult = cacheKey == null ? null : _resultCache.get(cacheKey);
+		if (cdResult == null){
+			// edge list is written straight into the body of the request
+			// as it is sent to the service
+			String resultURI = _restClient.postCDData(_algorithm.getName(),
+				this._customParameters, getEdgeListWriter(taskMonitor, nodeIndexMap), _cancelToken);
+			if (cancelled) {
+				return;
+			}
+			taskMonitor.setProgress(0.1);
+			taskMonitor.setStatusMessage("Network exported, retrieving the hierarchy");
+			cdResult = _restClient.getCDResult(resultURI, taskMonitor, 0.1f, 0.8f,
+					PropertiesHelper.getInstance().getCommunityDetectionTimeoutMillis(), _cancelToken);
+			if (cancelled) {
+				return;
+			}
+			if (cacheKey != null){
+				_resultCache.put(cacheKey, cdResult);
+			}
 		}
 		taskMonitor.setProgress(0.9);
 		taskMonitor.setStatusMessage("Received hierarchy in " +
@@ -105,7 +144,7 @@ public class HierarchyTask extends AbstractTask {
 		CyNetwork hierarchyNetwork = null;
 		try {
 			hierarchyNetwork = _networkFactory.getHierarchyNetwork(_network, cdResult,
-				_weightColumn, _algorithm, this._customParameters);
+				_weightColumn, _algorithm, this._customParameters, nodeIndexMap);
 		} catch(CommunityDetectionException cde){
 			throw new Exception(cde);
 		}
@@ -134,11 +173,158 @@ public class HierarchyTask extends AbstractTask {
 		taskMonitor.setStatusMessage("Total time " +
 				Long.toString((System.currentTimeMillis() - startTime)) + " ms");
 	}
+	
+	/**
+	 * Creates the hierarchy network with overlapping stages. The edge
+	 * list is exported straight into the request sent to the service,
+	 * unless a result for it is found in
+	 * {@link CommunityDetectionResultCache}. The result is read into
+	 * the new network as it is received, which holds because
+	 * {@link CDRestClient} parses the response with a
+	 * {@link org.cytoscape.app.communitydetection.rest.StreamingJsonFactory}
+	 * parser that hands the edge list to the tokenizer in chunks, while
+	 * the raw response is copied into {@link CommunityDetectionResultCache}.
+	 * The member lists are built while the other columns are set,
+	 * see {@link HierarchyNetworkFactory#getHierarchyNetwork(org.cytoscape.model.CyNetwork, com.fasterxml.jackson.core.JsonParser, java.lang.String, org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm, java.util.Map, org.cytoscape.app.communitydetection.edgelist.NodeIndexMap, org.cytoscape.app.communitydetection.hierarchy.StageTimer)}.
+	 * The time taken by each stage is set as the status message of
+	 * {@code taskMonitor}
+	 * @param taskMonitor
+	 * @throws Exception 
+	 */
+	private void runPipelined(TaskMonitor taskMonitor) throws Exception {
+		taskMonitor.setTitle("Community Detection: Creating Hierarchy Network");
+		if (_networkFactory == null){
+			throw new Exception("networkFactory is null");
+		}
+		if (_networkViewFactory == null){
+			throw new Exception("networkViewFactory is null");
+		}
+		if (_styleFactory == null){
+			throw new Exception("styleFactory is null");
+		}
+		if (_layoutFactory == null){
+			throw new Exception("layoutFactory is null");
+		}
+		StageTimer stageTimer = new StageTimer(taskMonitor);
+		final NodeIndexMap nodeIndexMap = getNodeIndexMap();
+		CDResultReader<CyNetwork> resultReader = (parser) -> {
+			taskMonitor.setProgress(0.9);
+			try {
+				return _networkFactory.getHierarchyNetwork(_network, parser,
+						_weightColumn, _algorithm, _customParameters,
+						nodeIndexMap, stageTimer);
+			} catch(CommunityDetectionException cde){
+				throw new IOException(cde.getMessage(), cde);
+			}
+		};
+		CyNetwork hierarchyNetwork = null;
+		try {
+			String cacheKey = null;
+			if (_resultCache != null && _resultCache.isEnabled()){
+				stageTimer.start(FINGERPRINT_STAGE);
+				cacheKey = getResultCacheKey(taskMonitor, nodeIndexMap);
+				hierarchyNetwork = _resultCache.get(cacheKey, resultReader);
+			}
+			if (hierarchyNetwork == null){
+				stageTimer.start(EXPORT_STAGE);
+				String taskId = _restClient.postCDData(_algorithm.getName(),
+					this._customParameters, getEdgeListWriter(taskMonitor, nodeIndexMap), _cancelToken);
+				if (cancelled) {
+					return;
+				}
+				taskMonitor.setProgress(0.1);
+				stageTimer.start(WAIT_STAGE);
+				try (CommunityDetectionResultCache.ResultCopy responseCopy = cacheKey == null ?
+						null : _resultCache.newResultCopy(cacheKey)){
+					hierarchyNetwork = _restClient.getCDResult(taskId, taskMonitor, 0.1f, 0.8f,
+						PropertiesHelper.getInstance().getCommunityDetectionTimeoutMillis(),
+						_cancelToken, resultReader, responseCopy);
+					if (hierarchyNetwork != null && responseCopy != null && !cancelled){
+						responseCopy.commit();
+					}
+				}
+			}
+		} catch(IOException io){
+			if (io.getCause() instanceof CommunityDetectionException){
+				throw new Exception(io.getCause());
+			}
+			throw io;
+		}
+		if (cancelled) {
+			return;
+		}
+		if (hierarchyNetwork == null){
+			throw new Exception("Error creating hierarchy from result");
+		}
+		taskMonitor.setProgress(0.95);
+		stageTimer.start(VIEW_STAGE);
+		_networkViewFactory.getHierarchyNetworkView(hierarchyNetwork,
+				_styleFactory.getVisualStyle(),
+				_layoutFactory.getLayoutAlgorithm());
+		stageTimer.stop();
+		taskMonitor.setProgress(1.0);
+		taskMonitor.setStatusMessage(stageTimer.getSummary());
+	}
+	
+	/**
+	 * Gets key of the result in {@link CommunityDetectionResultCache} by
+	 * exporting the edge list into a hash
+	 * @param taskMonitor
+	 * @param nodeIndexMap
+	 * @return key or {@code null} if the cache is not enabled
+	 * @throws IOException if there is an error exporting the edge list
+	 */
+	private String getResultCacheKey(TaskMonitor taskMonitor, final NodeIndexMap nodeIndexMap)
+			throws IOException {
+		if (_resultCache == null || !_resultCache.isEnabled()){
+			return null;
+		}
+		return _resultCache.getKey(_algorithm, _customParameters,
+				getEdgeListWriter(taskMonitor, nodeIndexMap));
+	}
+	
+	/**
+	 * Gets map used to send small dense node indices instead of SUIDs.
+	 * If {@link CommunityDetectionResultCache} is enabled the indices are
+	 * ordered by node name so cached results can be found after the
+	 * session is reopened, otherwise they are only used if enabled via
+	 * {@link PropertiesHelper#isEdgeListDenseNodeIds()}
+	 * @return map or {@code null} if SUIDs are sent
+	 */
+	private NodeIndexMap getNodeIndexMap(){
+		if (_resultCache != null && _resultCache.isEnabled()){
+			return NodeIndexMap.createNodeIndexMapByName(_network);
+		}
+		return PropertiesHelper.getInstance().isEdgeListDenseNodeIds() ?
+				NodeIndexMap.createNodeIndexMap(_network) : null;
+	}
+	
+	/**
+	 * Gets writer that exports the edge list of the network straight
+	 * into the body of the request as it is sent to the service
+	 * @param taskMonitor
+	 * @param nodeIndexMap
+	 * @return 
+	 */
+	private CDRequestDataWriter getEdgeListWriter(TaskMonitor taskMonitor,
+			final NodeIndexMap nodeIndexMap){
+		return (outStream) -> {
+			CyWriter writer = _writerFactory.createWriter(outStream, _network,
+					_weightColumn, nodeIndexMap);
+			try {
+				writer.run(taskMonitor);
+			} catch(IOException io){
+				throw io;
+			} catch(Exception e){
+				throw new IOException(e.getMessage(), e);
+			}
+		};
+	}
 
 	@Override
 	public void cancel() {
-		_restClient.setTaskCanceled(true);
 		super.cancel();
+		_cancelToken.cancel();
 	}
 
 }
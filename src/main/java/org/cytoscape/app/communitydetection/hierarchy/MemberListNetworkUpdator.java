@@ -2,11 +2,15 @@ package org.cytoscape.app.communitydetection.hierarchy;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 import org.cytoscape.app.communitydetection.util.AppUtils;
+import org.cytoscape.app.communitydetection.util.ColumnBatchWriter;
+import org.cytoscape.app.communitydetection.util.CyNetworkUtil;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNode;
 import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionException;
@@ -17,55 +21,326 @@ import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionEx
  */
 public class MemberListNetworkUpdator {
 	
+	private final int _parallelThreshold;
+	private final boolean _directMembersOnly;
+	private final CyNetworkUtil _cyNetworkUtil;
+	
+	/**
+	 * Creates updator that always builds member lists on the calling thread
+	 */
+	public MemberListNetworkUpdator(){
+		this(0);
+	}
+	
+	/**
+	 * @param parallelThreshold minimum number of nodes in the hierarchy
+	 *        network needed to build member lists in parallel. A value
+	 *        less then {@code 1} disables parallel building
+	 */
+	public MemberListNetworkUpdator(int parallelThreshold){
+		this(parallelThreshold, new CyNetworkUtil());
+	}
+	
+	/**
+	 * @param parallelThreshold minimum number of nodes in the hierarchy
+	 *        network needed to build member lists in parallel. A value
+	 *        less then {@code 1} disables parallel building
+	 * @param cyNetworkUtil used to get a writer for the node table
+	 */
+	public MemberListNetworkUpdator(int parallelThreshold, CyNetworkUtil cyNetworkUtil){
+		this(parallelThreshold, false, cyNetworkUtil);
+	}
+	
+	/**
+	 * @param parallelThreshold minimum number of nodes in the hierarchy
+	 *        network needed to build member lists in parallel. A value
+	 *        less then {@code 1} disables parallel building
+	 * @param directMembersOnly if {@code true} the member list of a
+	 *        community only holds members that are not also members of
+	 *        a child community, see
+	 *        {@link org.cytoscape.app.communitydetection.util.MemberListLookup}
+	 * @param cyNetworkUtil used to get a writer for the node table
+	 */
+	public MemberListNetworkUpdator(int parallelThreshold, boolean directMembersOnly,
+			CyNetworkUtil cyNetworkUtil){
+		_parallelThreshold = parallelThreshold;
+		_directMembersOnly = directMembersOnly;
+		_cyNetworkUtil = cyNetworkUtil;
+	}
 	
 	/**
 	 * Creates member list for each node in the hierarchy network.
+	 * <p>
+	 * The name of every member node is read from {@code parentNetwork}
+	 * once and the members are sorted by name once, giving each member a
+	 * rank. The members of each community are then put in name order by
+	 * sorting their ranks instead of comparing names.
+	 * <p>
+	 * If the hierarchy network has at least {@code parallelThreshold}
+	 * nodes the member list strings are built on the
+	 * {@link java.util.concurrent.ForkJoinPool#commonPool()}. The node
+	 * table is only read and written on the calling thread, in one batch
+	 * once all strings are built.
+	 * <p>
+	 * If this updator was created to store direct members only, the
+	 * member list of each community omits members inherited from its
+	 * child communities, unless two of its members share a name in which
+	 * case every member is listed so
+	 * {@link org.cytoscape.app.communitydetection.util.MemberListLookup}
+	 * can tell they are different members. The size columns still count
+	 * every member and the network column
+	 * {@value org.cytoscape.app.communitydetection.util.AppUtils#COLUMN_CD_MEMBER_LIST_DIRECT_ONLY}
+	 * is set to {@code true}
 	 * 
 	 * @param hierarchyNetwork
 	 * @param parentNetwork
-	 * @param helper 
+	 * @param hierarchyIndex members of each community in {@code hierarchyNetwork}
 	 */
 	protected void createMemberListsInNetwork(CyNetwork hierarchyNetwork,
-			CyNetwork parentNetwork, HierarchyHelper helper) throws CommunityDetectionException {
+			CyNetwork parentNetwork, HierarchyIndex hierarchyIndex) throws CommunityDetectionException {
+		writeMemberLists(hierarchyNetwork, buildMemberLists(hierarchyNetwork,
+				parentNetwork, hierarchyIndex));
+	}
+	
+	/**
+	 * Builds the member list of each node in the hierarchy network, as
+	 * described in {@link #createMemberListsInNetwork(org.cytoscape.model.CyNetwork, org.cytoscape.model.CyNetwork, org.cytoscape.app.communitydetection.hierarchy.HierarchyIndex)},
+	 * without writing them. Only the node list of {@code hierarchyNetwork}
+	 * and the names of members in {@code parentNetwork} are read so this
+	 * can run while other columns of the hierarchy network are written
+	 * @param hierarchyNetwork
+	 * @param parentNetwork
+	 * @param hierarchyIndex members of each community in {@code hierarchyNetwork}
+	 * @return member lists to pass to {@link #writeMemberLists(org.cytoscape.model.CyNetwork, org.cytoscape.app.communitydetection.hierarchy.MemberListNetworkUpdator.MemberLists)}
+	 * @throws CommunityDetectionException if any argument is {@code null}
+	 */
+	protected MemberLists buildMemberLists(CyNetwork hierarchyNetwork,
+			CyNetwork parentNetwork, HierarchyIndex hierarchyIndex) throws CommunityDetectionException {
 		if (hierarchyNetwork == null){
 			throw new CommunityDetectionException("hierarchy network is null");
 		}
 		if (parentNetwork == null){
 			throw new CommunityDetectionException("parent network is null");
 		}
-		if (helper == null){
-			throw new CommunityDetectionException("hierarchy helper is null");
+		if (hierarchyIndex == null){
+			throw new CommunityDetectionException("hierarchy index is null");
 		}
-		StringBuilder memberList = new StringBuilder();
+		List<CyNode> hierarchyNodes = hierarchyNetwork.getNodeList();
+		if (hierarchyNodes.isEmpty()){
+			return new MemberLists(hierarchyNodes, new MemberList[0]);
+		}
+		String[] names = getMemberNames(parentNetwork, hierarchyIndex);
+		int[] rankOfMember = getRankOfMembers(names);
+		String[] namesByRank = new String[names.length];
+		for (int i = 0; i < names.length; i++){
+			namesByRank[rankOfMember[i]] = names[i];
+		}
+		final boolean[] sharesName = _directMembersOnly ? getSharedNameRanks(namesByRank) : null;
 		
-		for (CyNode node : hierarchyNetwork.getNodeList()) {
-			// TODO check if helper.getMemberList can ever return null
-			List<CyNode> memberNodes = helper.getMemberList(hierarchyNetwork, node).stream()
-					.collect(Collectors.toList());
-			Collections.sort(memberNodes, new Comparator<CyNode>() {
-				@Override
-				public int compare(CyNode node1, CyNode node2) {
-					return parentNetwork.getRow(node1).get(CyNetwork.NAME, String.class)
-							.compareTo(parentNetwork.getRow(node2).get(CyNetwork.NAME, String.class));
-				}
-			});
-			for (CyNode memberNode : memberNodes) {
-				if (memberList.length() > 0) {
-					memberList.append(" ");
+		final MemberList[] memberLists = new MemberList[hierarchyNodes.size()];
+		IntConsumer builder = (i) -> memberLists[i] = buildMemberList(
+				hierarchyIndex.getCommunityIndex(hierarchyNodes.get(i)),
+				hierarchyIndex, rankOfMember, namesByRank, sharesName);
+		if (_parallelThreshold > 0 && memberLists.length >= _parallelThreshold){
+			IntStream.range(0, memberLists.length).parallel().forEach(builder);
+		} else {
+			for (int i = 0; i < memberLists.length; i++){
+				builder.accept(i);
+			}
+		}
+		return new MemberLists(hierarchyNodes, memberLists);
+	}
+	
+	/**
+	 * Writes member lists built by {@link #buildMemberLists(org.cytoscape.model.CyNetwork, org.cytoscape.model.CyNetwork, org.cytoscape.app.communitydetection.hierarchy.HierarchyIndex)}
+	 * to the node table of {@code hierarchyNetwork} in one batch
+	 * @param hierarchyNetwork
+	 * @param memberLists 
+	 * @throws CommunityDetectionException if unable to create the columns
+	 */
+	protected void writeMemberLists(CyNetwork hierarchyNetwork,
+			MemberLists memberLists) throws CommunityDetectionException {
+		if (memberLists.nodes.isEmpty()){
+			return;
+		}
+		if (_directMembersOnly){
+			_cyNetworkUtil.createTableColumn(hierarchyNetwork.getDefaultNetworkTable(),
+					AppUtils.COLUMN_CD_MEMBER_LIST_DIRECT_ONLY, Boolean.class, false, false);
+			hierarchyNetwork.getRow(hierarchyNetwork).set(AppUtils.COLUMN_CD_MEMBER_LIST_DIRECT_ONLY,
+					true);
+		}
+		ColumnBatchWriter writer = _cyNetworkUtil.getColumnBatchWriter(
+				hierarchyNetwork.getDefaultNodeTable());
+		for (int i = 0; i < memberLists.values.length; i++) {
+			CyNode node = memberLists.nodes.get(i);
+			MemberList memberList = memberLists.values[i];
+			writer.set(node, AppUtils.COLUMN_CD_MEMBER_LIST, memberList.memberList);
+			writer.set(node, AppUtils.COLUMN_CD_MEMBER_LIST_SIZE, memberList.size);
+			writer.set(node, AppUtils.COLUMN_CD_MEMBER_LIST_LOG_SIZE, memberList.logSize);
+		}
+		writer.flush();
+	}
+	
+	/**
+	 * Builds member list of a community, only reads its arguments so
+	 * can be invoked concurrently
+	 * @param communityIndex index of community or {@code -1} if the
+	 *        node is not a community in {@code hierarchyIndex}
+	 * @param hierarchyIndex
+	 * @param rankOfMember rank of each member by member index
+	 * @param namesByRank name of each member by rank
+	 * @param sharesName tells by rank if a member has the same name as
+	 *        another member, {@code null} if no members share a name
+	 * @return 
+	 */
+	private MemberList buildMemberList(int communityIndex, HierarchyIndex hierarchyIndex,
+			int[] rankOfMember, String[] namesByRank, boolean[] sharesName){
+		int[] ranks;
+		int size;
+		if (communityIndex < 0){
+			ranks = new int[0];
+			size = 0;
+		} else if (_directMembersOnly){
+			ranks = hierarchyIndex.getDirectMembers(communityIndex);
+			size = hierarchyIndex.getMembersSize(communityIndex);
+			if (sharesName != null && hasSharedName(hierarchyIndex.getMemberIndices(communityIndex),
+					rankOfMember, namesByRank, sharesName)){
+				ranks = hierarchyIndex.getMemberIndices(communityIndex);
+			}
+		} else {
+			ranks = hierarchyIndex.getMemberIndices(communityIndex);
+			size = ranks.length;
+		}
+		for (int i = 0; i < ranks.length; i++){
+			ranks[i] = rankOfMember[ranks[i]];
+		}
+		Arrays.sort(ranks);
+		StringBuilder memberList = new StringBuilder();
+		for (int rank : ranks) {
+			if (memberList.length() > 0) {
+				memberList.append(" ");
+			}
+			memberList.append(namesByRank[rank]);
+		}
+		BigDecimal bd = new BigDecimal(Double.toString(log2(size)));
+		BigDecimal roundbd = bd.setScale(3, RoundingMode.HALF_UP);
+		return new MemberList(memberList.toString(), size, roundbd.doubleValue());
+	}
+	
+	/**
+	 * Reads name of every member node in {@code hierarchyIndex} from
+	 * {@code parentNetwork}
+	 * @param parentNetwork
+	 * @param hierarchyIndex
+	 * @return names by member index
+	 */
+	private String[] getMemberNames(CyNetwork parentNetwork,
+			HierarchyIndex hierarchyIndex){
+		String[] names = new String[hierarchyIndex.getMemberCount()];
+		for (int i = 0; i < names.length; i++){
+			names[i] = parentNetwork.getRow(hierarchyIndex.getMemberNode(i))
+					.get(CyNetwork.NAME, String.class);
+		}
+		return names;
+	}
+
+	/**
+	 * Ranks members by name, a member without a name ranks first
+	 * @param names name of each member by member index
+	 * @return rank of each member by member index
+	 */
+	private int[] getRankOfMembers(String[] names){
+		Integer[] order = new Integer[names.length];
+		for (int i = 0; i < order.length; i++){
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparing((Integer i) -> names[i],
+				Comparator.nullsFirst(Comparator.naturalOrder())));
+		int[] rankOfMember = new int[names.length];
+		for (int rank = 0; rank < order.length; rank++){
+			rankOfMember[order[rank]] = rank;
+		}
+		return rankOfMember;
+	}
+
+	/**
+	 * Finds members whose name is the same as that of another member
+	 * @param namesByRank name of each member by rank, sorted
+	 * @return {@code true} by rank for each member sharing a name with
+	 *         another member or {@code null} if there are none
+	 */
+	private boolean[] getSharedNameRanks(String[] namesByRank){
+		boolean[] sharesName = null;
+		for (int rank = 1; rank < namesByRank.length; rank++){
+			if (Objects.equals(namesByRank[rank - 1], namesByRank[rank])){
+				if (sharesName == null){
+					sharesName = new boolean[namesByRank.length];
 				}
-				String name = parentNetwork.getRow(memberNode).get(CyNetwork.NAME, String.class);
-				memberList.append(name);
+				sharesName[rank - 1] = true;
+				sharesName[rank] = true;
 			}
-			hierarchyNetwork.getRow(node).set(AppUtils.COLUMN_CD_MEMBER_LIST, memberList.toString());
-			hierarchyNetwork.getRow(node).set(AppUtils.COLUMN_CD_MEMBER_LIST_SIZE, memberNodes.size());
-			BigDecimal bd = new BigDecimal(Double.toString(log2(memberNodes.size())));
-			BigDecimal roundbd = bd.setScale(3, RoundingMode.HALF_UP);
-			hierarchyNetwork.getRow(node).set(AppUtils.COLUMN_CD_MEMBER_LIST_LOG_SIZE, roundbd.doubleValue());
-			memberList.setLength(0); // clear member list for next node
 		}
+		return sharesName;
 	}
 	
+	/**
+	 * Tells if any two of {@code memberIndices} have the same name
+	 * @param memberIndices members of a community
+	 * @param rankOfMember rank of each member by member index
+	 * @param namesByRank name of each member by rank
+	 * @param sharesName from {@link #getSharedNameRanks(java.lang.String[])}
+	 * @return 
+	 */
+	private boolean hasSharedName(int[] memberIndices, int[] rankOfMember,
+			String[] namesByRank, boolean[] sharesName){
+		int[] sharedRanks = new int[memberIndices.length];
+		int count = 0;
+		for (int memberIndex : memberIndices){
+			int rank = rankOfMember[memberIndex];
+			if (sharesName[rank]){
+				sharedRanks[count++] = rank;
+			}
+		}
+		// members with the same name have adjacent ranks
+		Arrays.sort(sharedRanks, 0, count);
+		for (int i = 1; i < count; i++){
+			if (Objects.equals(namesByRank[sharedRanks[i - 1]], namesByRank[sharedRanks[i]])){
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private double log2(double x) {
 		return (Math.log(x) / Math.log(2));
 	}
+	
+	/**
+	 * Member lists of the nodes of a hierarchy network that have been
+	 * built, but not yet written
+	 */
+	protected static class MemberLists {
+		private final List<CyNode> nodes;
+		private final MemberList[] values;
+		
+		MemberLists(List<CyNode> nodes, MemberList[] values){
+			this.nodes = nodes;
+			this.values = values;
+		}
+	}
+	
+	/**
+	 * Values written to the member list columns of one node
+	 */
+	private static class MemberList {
+		private final String memberList;
+		private final int size;
+		private final double logSize;
+		
+		MemberList(final String memberList, int size, double logSize){
+			this.memberList = memberList;
+			this.size = size;
+			this.logSize = logSize;
+		}
+	}
 }
@@ -0,0 +1,123 @@
+package org.cytoscape.app.communitydetection.hierarchy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.cytoscape.work.TaskMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures how long each stage of creating a hierarchy network takes.
+ * The name of a stage is set as the status message of the
+ * {@link TaskMonitor} when it starts and its duration when it ends.
+ * <p>
+ * Stages started via {@link #start(java.lang.String)} run one after
+ * another. Stages that ran concurrently with them, on another thread, are
+ * added with {@link #record(java.lang.String, long)}
+ * <p>
+ * This object is thread safe
+ *
+ * @author churas
+ */
+public class StageTimer {
+
+	private final static Logger LOGGER = LoggerFactory.getLogger(StageTimer.class);
+
+	private final TaskMonitor _taskMonitor;
+	private final Map<String, Long> _durations;
+	private final long _startTime;
+	private String _stage;
+	private long _stageStartTime;
+
+	/**
+	 * Constructor
+	 * @param taskMonitor receives the status messages, can be {@code null}
+	 */
+	public StageTimer(TaskMonitor taskMonitor){
+		_taskMonitor = taskMonitor;
+		_durations = new LinkedHashMap<>();
+		_startTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Ends the current stage, if any, and starts {@code stage}
+	 * @param stage name of stage
+	 */
+	public synchronized void start(final String stage){
+		stop();
+		_stage = stage;
+		_stageStartTime = System.currentTimeMillis();
+		if (_taskMonitor != null){
+			_taskMonitor.setStatusMessage(stage);
+		}
+	}
+
+	/**
+	 * Ends the current stage, if any
+	 */
+	public synchronized void stop(){
+		if (_stage == null){
+			return;
+		}
+		long duration = System.currentTimeMillis() - _stageStartTime;
+		String stage = _stage;
+		_stage = null;
+		record(stage, duration);
+		if (_taskMonitor != null){
+			_taskMonitor.setStatusMessage(stage + " took " + duration + " ms");
+		}
+	}
+
+	/**
+	 * Adds the duration of a stage that was not started via
+	 * {@link #start(java.lang.String)}. If {@code stage} was already
+	 * recorded the durations are summed
+	 * @param stage name of stage
+	 * @param durationMillis how long the stage took in milliseconds
+	 */
+	public synchronized void record(final String stage, long durationMillis){
+		_durations.merge(stage, durationMillis, Long::sum);
+		LOGGER.debug(stage + " took " + durationMillis + " ms");
+	}
+
+	/**
+	 * Gets how long each stage that ended took
+	 * @return durations in milliseconds by stage in the order the stages
+	 *         ended
+	 */
+	public synchronized Map<String, Long> getDurations(){
+		return new LinkedHashMap<>(_durations);
+	}
+
+	/**
+	 * Gets milliseconds elapsed since this object was created
+	 * @return
+	 */
+	public long getTotalTime(){
+		return System.currentTimeMillis() - _startTime;
+	}
+
+	/**
+	 * Gets total time and the duration of each stage that ended
+	 * @return summary such as
+	 *         {@code Total time 10 ms (Stage one: 4 ms, Stage two: 6 ms)}
+	 */
+	public synchronized String getSummary(){
+		StringBuilder sb = new StringBuilder("Total time ");
+		sb.append(getTotalTime());
+		sb.append(" ms (");
+		boolean first = true;
+		for (Map.Entry<String, Long> entry : _durations.entrySet()){
+			if (!first){
+				sb.append(", ");
+			}
+			first = false;
+			sb.append(entry.getKey());
+			sb.append(": ");
+			sb.append(entry.getValue());
+			sb.append(" ms");
+		}
+		sb.append(")");
+		return sb.toString();
+	}
+}
@@ -1,10 +1,10 @@
 package org.cytoscape.app.communitydetection.hierarchy;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.util.Set;
 import org.cytoscape.task.read.LoadVizmapFileTaskFactory;
 import org.cytoscape.view.vizmap.VisualMappingManager;
 import org.cytoscape.view.vizmap.VisualStyle;
@@ -12,7 +12,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Factory to get and load CDAPS Hierarchy Style
+ * Factory to get and load CDAPS Hierarchy Style.
+ * <p>
+ * The style resource is read into memory and loaded at most once for
+ * the life of this factory
  * @author churas
  */
 public class VisualStyleFactory {
@@ -26,6 +29,7 @@ public class VisualStyleFactory {
 	
 	private VisualMappingManager _visualMappingManager;
 	private LoadVizmapFileTaskFactory _vizmapFileTaskFactory;
+	private VisualStyle _loadedStyle;
 	
 	public VisualStyleFactory(VisualMappingManager visualMappingManager,
 			LoadVizmapFileTaskFactory vizmapFileTaskFactory){
@@ -33,28 +37,56 @@ public class VisualStyleFactory {
 		_vizmapFileTaskFactory = vizmapFileTaskFactory;
 	}
 	
-	public VisualStyle getVisualStyle(){
+	/**
+	 * Gets the {@link #DEFAULT_STYLE_NAME} style from the
+	 * {@link VisualMappingManager}. If it is not there the style is
+	 * loaded from {@link #DEFAULT_STYLE_RESOURCEPATH}, unless this was
+	 * done by an earlier call in which case the style loaded then is
+	 * added back to the {@link VisualMappingManager}
+	 * @return style or {@code null} if it could not be loaded
+	 */
+	public synchronized VisualStyle getVisualStyle(){
 		for (VisualStyle style : _visualMappingManager.getAllVisualStyles()) {
 			if (style.getTitle().equalsIgnoreCase(DEFAULT_STYLE_NAME)) {
 				return style;
 			}
 		}
-		File styleFile = null;
-		try {
-			InputStream resourceStream = getClass().getClassLoader().getResourceAsStream(DEFAULT_STYLE_RESOURCEPATH);
-			styleFile = File.createTempFile(DEFAULT_STYLE_PREFIX, DEFAULT_STYLE_SUFFIX);
-			Files.copy(resourceStream, styleFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-			LOGGER.debug("Style set size: " + _vizmapFileTaskFactory.loadStyles(styleFile).size());
-
-			return _vizmapFileTaskFactory.loadStyles(styleFile).iterator().next();
+		if (_loadedStyle != null){
+			_visualMappingManager.addVisualStyle(_loadedStyle);
+			return _loadedStyle;
+		}
+		try (InputStream resourceStream = new ByteArrayInputStream(getStyleResource())){
+			Set<VisualStyle> styles = _vizmapFileTaskFactory.loadStyles(resourceStream);
+			LOGGER.debug("Style set size: " + styles.size());
+			for (VisualStyle style : styles){
+				if (_loadedStyle == null || style.getTitle().equalsIgnoreCase(DEFAULT_STYLE_NAME)){
+					_loadedStyle = style;
+				}
+			}
+			return _loadedStyle;
 		} catch(IOException io){
 			LOGGER.error("Error loading style", io);
 		}
-		finally {
-			if (styleFile != null){
-				styleFile.delete();
+		return null;
+	}
+	
+	/**
+	 * Reads {@link #DEFAULT_STYLE_RESOURCEPATH} into memory
+	 * @return contents of style resource
+	 * @throws IOException if the resource could not be read
+	 */
+	private byte[] getStyleResource() throws IOException {
+		try (InputStream resourceStream = getClass().getClassLoader().getResourceAsStream(DEFAULT_STYLE_RESOURCEPATH)){
+			if (resourceStream == null){
+				throw new IOException("Resource " + DEFAULT_STYLE_RESOURCEPATH + " not found");
 			}
+			ByteArrayOutputStream styleData = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int numRead;
+			while ((numRead = resourceStream.read(buffer)) != -1){
+				styleData.write(buffer, 0, numRead);
+			}
+			return styleData.toByteArray();
 		}
-		return null;
 	}
 }
@@ -8,6 +8,7 @@ import org.cytoscape.app.communitydetection.DoNothingTask;
 import org.cytoscape.app.communitydetection.PropertiesHelper;
 import org.cytoscape.app.communitydetection.util.AppUtils;
 import org.cytoscape.app.communitydetection.util.DesktopUtil;
+import org.cytoscape.app.communitydetection.util.MemberListLookup;
 import org.cytoscape.app.communitydetection.util.ShowDialogUtil;
 import org.cytoscape.application.swing.CySwingApplication;
 import org.cytoscape.model.CyNetwork;
@@ -71,17 +72,16 @@ public class IQueryTaskFactoryImpl extends AbstractNodeViewTaskFactory implement
 	}
 	
 	/**
-	 * Creates term list by getting data from node column named 
-	 * {@literal org.cytoscape.app.communitydetection.util.AppUtils#COLUMN_CD_MEMBER_LIST}
-	 * and replacing the default delimiter with {@literal %20} so it can be put in
-	 * a web link
+	 * Creates term list by getting members of selected node from
+	 * {@link MemberListLookup} and joining them with {@literal %20}
+	 * so it can be put in a web link
 	 * @param networkView
 	 * @return 
 	 */
 	private String getTermList(CyNetworkView networkView){
 		CyNetwork network = networkView.getModel();
 		List<CyNode> selectedNodes = CyTableUtil.getSelectedNodes(network);
-		String termlist = network.getRow(selectedNodes.get(0)).get(AppUtils.COLUMN_CD_MEMBER_LIST, String.class);
+		String termlist = MemberListLookup.getInstance().getMemberListAsString(network, selectedNodes.get(0));
 		if (termlist == null || termlist.trim().isEmpty()){
 			return null;
 		}
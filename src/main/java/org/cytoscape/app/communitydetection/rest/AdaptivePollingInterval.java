@@ -0,0 +1,104 @@
+package org.cytoscape.app.communitydetection.rest;
+
+import org.cytoscape.app.communitydetection.PropertiesHelper;
+
+/**
+ * Calculates how long to wait between status checks of a task running
+ * on the CD Service. The first wait is short so quick tasks are picked
+ * up right away, after which the wait grows by {@link #BACKOFF_FACTOR}
+ * up to a ceiling. Once the task reports progress, the time left is
+ * estimated from the progress made so far and the next check is moved
+ * up if the task looks like it will finish before the backoff wait
+ * is over.
+ * <p>
+ * Setting the initial and maximum wait to the same value gives a fixed
+ * wait between checks, which is what {@link #fromProperties(org.cytoscape.app.communitydetection.PropertiesHelper)}
+ * does when adaptive polling is disabled.
+ * <p>
+ * Instances hold state for a single task and are NOT thread safe.
+ *
+ * @author churas
+ */
+public class AdaptivePollingInterval {
+
+	/**
+	 * Amount wait time is multiplied by after each check
+	 */
+	protected static final double BACKOFF_FACTOR = 2.0;
+
+	private final long _initialMillis;
+	private final long _maxMillis;
+	private long _backoffMillis;
+
+	/**
+	 * Constructor
+	 * @param initialMillis time to wait before first check, values
+	 *                      less then {@code 1} are set to {@code 1}
+	 * @param maxMillis maximum time to wait between checks, values less
+	 *                  then {@code initialMillis} are set to {@code initialMillis}
+	 */
+	public AdaptivePollingInterval(long initialMillis, long maxMillis){
+		_initialMillis = Math.max(1, initialMillis);
+		_maxMillis = Math.max(_initialMillis, maxMillis);
+		_backoffMillis = _initialMillis;
+	}
+
+	/**
+	 * Creates polling interval from the settings in {@code pHelper}. The
+	 * wait starts at {@link PropertiesHelper#getPollingInitialIntervalMillis()}
+	 * and grows up to {@link PropertiesHelper#getPollingMaxIntervalMillis()},
+	 * unless that is less then {@code 1} in which case every wait is
+	 * {@link PropertiesHelper#getPollingIntervalTimeMillis()}
+	 * @param pHelper settings to use
+	 * @return 
+	 */
+	public static AdaptivePollingInterval fromProperties(PropertiesHelper pHelper){
+		if (pHelper.getPollingMaxIntervalMillis() < 1){
+			return new AdaptivePollingInterval(pHelper.getPollingIntervalTimeMillis(),
+					pHelper.getPollingIntervalTimeMillis());
+		}
+		return new AdaptivePollingInterval(pHelper.getPollingInitialIntervalMillis(),
+				pHelper.getPollingMaxIntervalMillis());
+	}
+
+	/**
+	 * Gets time to wait before the first check
+	 * @return time in milliseconds
+	 */
+	public long getInitialDelayMillis(){
+		return _initialMillis;
+	}
+
+	/**
+	 * Gets time to wait before the next check
+	 * @param elapsedMillis time in milliseconds since polling began
+	 * @param progress progress of task as reported by
+	 *        {@link org.ndexbio.communitydetection.rest.model.CommunityDetectionResult#getProgress()}
+	 *        which is expected to be in range of {@code 0} to {@code 100}
+	 * @return time in milliseconds, never less then initial wait time
+	 *         or greater then maximum wait time
+	 */
+	public long getNextDelayMillis(long elapsedMillis, int progress){
+		_backoffMillis = Math.min(_maxMillis,
+				(long)Math.ceil((double)_backoffMillis * BACKOFF_FACTOR));
+		long estimate = getEstimatedRemainingMillis(elapsedMillis, progress);
+		if (estimate < 0){
+			return _backoffMillis;
+		}
+		return Math.max(_initialMillis, Math.min(_backoffMillis, estimate));
+	}
+
+	/**
+	 * Assumes the task progresses at a constant rate to estimate time
+	 * until it completes
+	 * @param elapsedMillis time in milliseconds since polling began
+	 * @param progress progress of task in range of {@code 0} to {@code 100}
+	 * @return time in milliseconds or {@code -1} if no estimate can be made
+	 */
+	protected long getEstimatedRemainingMillis(long elapsedMillis, int progress){
+		if (elapsedMillis <= 0 || progress <= 0 || progress >= 100){
+			return -1;
+		}
+		return Math.round((double)elapsedMillis * (double)(100 - progress) / (double)progress);
+	}
+}
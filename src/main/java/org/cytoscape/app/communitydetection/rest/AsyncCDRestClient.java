@@ -0,0 +1,309 @@
+package org.cytoscape.app.communitydetection.rest;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import org.cytoscape.app.communitydetection.PropertiesHelper;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResultStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous client for CD Service built on top of {@link CDRestClient}.
+ * Submission of tasks and every status check run on a single
+ * {@link ScheduledExecutorService}. Between status checks a task is
+ * just an entry in the scheduler queue, so no thread sleeps while the
+ * CD Service works, and thousands of outstanding tasks only need
+ * the handful of threads set by
+ * {@link org.cytoscape.app.communitydetection.PropertiesHelper#getThreadcount()}.
+ * The wait between status checks is set by {@link AdaptivePollingInterval}
+ * just as with {@link CDRestClient#getCDResult(java.lang.String, org.cytoscape.work.TaskMonitor, float, float, int)}
+ *
+ * @author churas
+ */
+public class AsyncCDRestClient {
+
+	private final static Logger LOGGER = LoggerFactory.getLogger(AsyncCDRestClient.class);
+	private final CDRestClient _restClient;
+	private final ScheduledExecutorService _scheduler;
+
+	private AsyncCDRestClient(){
+		this(CDRestClient.getInstance(), createScheduler());
+	}
+
+	/**
+	 * Constructor
+	 * @param restClient client used to make the requests to CD Service
+	 * @param scheduler runs submissions and status checks
+	 */
+	protected AsyncCDRestClient(CDRestClient restClient, ScheduledExecutorService scheduler){
+		_restClient = restClient;
+		_scheduler = scheduler;
+	}
+
+	private static class SingletonHelper {
+		private static final AsyncCDRestClient INSTANCE = new AsyncCDRestClient();
+	}
+
+	/**
+	 * Gets instance of this object
+	 * @return
+	 */
+	public static AsyncCDRestClient getInstance() {
+		return SingletonHelper.INSTANCE;
+	}
+
+	/**
+	 * Submits task to CD Service and waits for it to complete without
+	 * blocking the caller
+	 * @param algorithm name of algorithm to run
+	 * @param customParameters custom parameters or {@code null} if none
+	 * @param data data to pass to CD Service
+	 * @param totalRuntime Maximum time in milliseconds to wait for completion of task.
+	 *                     If {@code 0} the task is checked once and if negative
+	 *                     there is no limit
+	 * @param progressListener if not {@code null} is passed
+	 *        {@link CommunityDetectionResult#getProgress()} after each status check
+	 * @param cancelToken canceling this completes the future with {@code null}
+	 *        and deletes the task on CD Service. If {@code null} the task
+	 *        can only be canceled via the returned future
+	 * @return future that completes with the result, with {@code null} if
+	 *         {@code cancelToken} was canceled, or exceptionally with
+	 *         {@link CDRestClientException} or {@link java.io.IOException}
+	 *         if the task failed or timed out. Canceling this future
+	 *         deletes the task on CD Service
+	 */
+	public CompletableFuture<CommunityDetectionResult> submitAndAwait(final String algorithm,
+			Map<String, String> customParameters, final String data,
+			int totalRuntime, IntConsumer progressListener, CancellationToken cancelToken){
+		final CancellationToken token = cancelToken == null ? new CancellationToken() : cancelToken;
+		return submitAndAwait(() -> _restClient.postCDData(algorithm, customParameters, data, token),
+				totalRuntime, progressListener, token);
+	}
+
+	/**
+	 * Same as {@link #submitAndAwait(java.lang.String, java.util.Map, java.lang.String, int, java.util.function.IntConsumer, org.cytoscape.app.communitydetection.rest.CancellationToken)}
+	 * except the data is streamed into the request by {@code dataWriter}
+	 * @param algorithm name of algorithm to run
+	 * @param customParameters custom parameters or {@code null} if none
+	 * @param dataWriter writes the raw data for the request
+	 * @param totalRuntime Maximum time in milliseconds to wait for completion of task
+	 * @param progressListener if not {@code null} is passed progress after each status check
+	 * @param cancelToken canceling this completes the future with {@code null},
+	 *        can be {@code null}
+	 * @return future that completes with the result
+	 */
+	public CompletableFuture<CommunityDetectionResult> submitAndAwait(final String algorithm,
+			Map<String, String> customParameters, CDRequestDataWriter dataWriter,
+			int totalRuntime, IntConsumer progressListener, CancellationToken cancelToken){
+		final CancellationToken token = cancelToken == null ? new CancellationToken() : cancelToken;
+		return submitAndAwait(() -> _restClient.postCDData(algorithm, customParameters, dataWriter, token),
+				totalRuntime, progressListener, token);
+	}
+
+	/**
+	 * Waits for task already submitted to CD Service to complete without
+	 * blocking the caller
+	 * @param taskId id of task
+	 * @param totalRuntime Maximum time in milliseconds to wait for completion of task
+	 * @param progressListener if not {@code null} is passed progress after each status check
+	 * @param cancelToken canceling this completes the future with {@code null},
+	 *        can be {@code null}
+	 * @return future that completes with the result
+	 * @throws IllegalArgumentException if {@code taskId} is {@code null}
+	 */
+	public CompletableFuture<CommunityDetectionResult> awaitResult(final String taskId,
+			int totalRuntime, IntConsumer progressListener, CancellationToken cancelToken){
+		if (taskId == null){
+			throw new IllegalArgumentException("task id cannot be null");
+		}
+		CompletableFuture<CommunityDetectionResult> resultFuture = new CompletableFuture<>();
+		ResultPoller poller = new ResultPoller(taskId, resultFuture, totalRuntime, progressListener,
+				cancelToken == null ? new CancellationToken() : cancelToken);
+		poller.start();
+		return resultFuture;
+	}
+
+	/**
+	 * Stops the scheduler. Outstanding futures are completed exceptionally
+	 * the next time they would have been checked
+	 */
+	public void shutdown(){
+		_scheduler.shutdownNow();
+	}
+
+	private CompletableFuture<CommunityDetectionResult> submitAndAwait(final TaskSubmitter submitter,
+			int totalRuntime, IntConsumer progressListener, CancellationToken cancelToken){
+		CompletableFuture<CommunityDetectionResult> resultFuture = new CompletableFuture<>();
+		try {
+			_scheduler.execute(() -> {
+				if (resultFuture.isDone()){
+					return;
+				}
+				if (cancelToken.isCanceled()){
+					resultFuture.complete(null);
+					return;
+				}
+				try {
+					String taskId = submitter.submit();
+					if (taskId == null){
+						if (cancelToken.isCanceled()){
+							resultFuture.complete(null);
+						} else {
+							resultFuture.completeExceptionally(new CDRestClientException("No task id returned from CD Service"));
+						}
+						return;
+					}
+					new ResultPoller(taskId, resultFuture, totalRuntime, progressListener,
+							cancelToken).start();
+				} catch(Exception ex){
+					resultFuture.completeExceptionally(ex);
+				}
+			});
+		} catch(RejectedExecutionException ree){
+			resultFuture.completeExceptionally(ree);
+		}
+		return resultFuture;
+	}
+
+	/**
+	 * Creates scheduler with daemon threads
+	 * @return
+	 */
+	private static ScheduledExecutorService createScheduler(){
+		int threadCount = 1;
+		try {
+			threadCount = Math.max(1, Integer.parseInt(PropertiesHelper.getInstance().getThreadcount()));
+		} catch(NumberFormatException nfe){
+			LOGGER.warn("Unable to parse thread count, using 1 thread", nfe);
+		}
+		final AtomicInteger threadNum = new AtomicInteger(0);
+		ThreadFactory threadFactory = (runnable) -> {
+			Thread t = new Thread(runnable, "CDRestClient-async-" + threadNum.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+		return Executors.newScheduledThreadPool(threadCount, threadFactory);
+	}
+
+	/**
+	 * Submits task to CD Service
+	 */
+	@FunctionalInterface
+	private interface TaskSubmitter {
+		String submit() throws Exception;
+	}
+
+	/**
+	 * Checks status of a single task on CD Service and reschedules
+	 * itself until the task completes, fails, times out, or
+	 * is canceled
+	 */
+	private class ResultPoller implements Runnable {
+
+		private final String _taskId;
+		private final CompletableFuture<CommunityDetectionResult> _resultFuture;
+		private final IntConsumer _progressListener;
+		private final CancellationToken _cancelToken;
+		private final Runnable _cancelListener;
+		private final AdaptivePollingInterval _pollInterval;
+		private final long _startTime;
+		private final long _deadline;
+		private volatile ScheduledFuture<?> _nextPoll;
+
+		ResultPoller(final String taskId, CompletableFuture<CommunityDetectionResult> resultFuture,
+				int totalRuntime, IntConsumer progressListener, CancellationToken cancelToken){
+			_taskId = taskId;
+			_resultFuture = resultFuture;
+			_progressListener = progressListener;
+			_cancelToken = cancelToken;
+			_cancelListener = () -> _resultFuture.complete(null);
+			PropertiesHelper pHelper = PropertiesHelper.getInstance();
+			_pollInterval = AdaptivePollingInterval.fromProperties(pHelper);
+			_startTime = System.currentTimeMillis();
+			_deadline = totalRuntime < 0 ? Long.MAX_VALUE : _startTime + totalRuntime;
+		}
+
+		/**
+		 * Schedules first status check and arranges for task on CD Service
+		 * to be deleted right away if the future or token is canceled
+		 */
+		void start(){
+			_resultFuture.whenComplete((result, err) -> {
+				_cancelToken.removeCancelListener(_cancelListener);
+				if (_resultFuture.isCancelled() || (result == null && err == null)){
+					ScheduledFuture<?> nextPoll = _nextPoll;
+					if (nextPoll != null){
+						nextPoll.cancel(false);
+					}
+					LOGGER.debug("Canceled task: " + _taskId);
+					deleteTaskInBackground();
+				}
+			});
+			_cancelToken.addCancelListener(_cancelListener);
+			schedule(Math.min(_pollInterval.getInitialDelayMillis(),
+					Math.max(0, _deadline - System.currentTimeMillis())));
+		}
+
+		@Override
+		public void run() {
+			if (_resultFuture.isDone()){
+				return;
+			}
+			try {
+				CommunityDetectionResult cdResult = _restClient.checkCDResult(_taskId, _cancelToken);
+				if (cdResult == null){
+					// canceled, task is deleted once future completes
+					_resultFuture.complete(null);
+					return;
+				}
+				if (cdResult.getStatus().equals(CommunityDetectionResultStatus.COMPLETE_STATUS)){
+					_restClient.silentlyDeleteTask(_taskId);
+					_resultFuture.complete(cdResult);
+					return;
+				}
+				if (_progressListener != null){
+					_progressListener.accept(cdResult.getProgress());
+				}
+				long curTime = System.currentTimeMillis();
+				if (curTime >= _deadline){
+					_restClient.silentlyDeleteTask(_taskId);
+					_resultFuture.completeExceptionally(
+							new CDRestClientException(CDRestClient.TIMEOUT_ERROR_MESSAGE, cdResult));
+					return;
+				}
+				schedule(Math.min(_pollInterval.getNextDelayMillis(curTime - _startTime,
+						cdResult.getProgress()), _deadline - curTime));
+			} catch(Exception ex){
+				_restClient.silentlyDeleteTask(_taskId);
+				_resultFuture.completeExceptionally(ex);
+			}
+		}
+
+		private void schedule(long delayMillis){
+			try {
+				_nextPoll = _scheduler.schedule(this, delayMillis, TimeUnit.MILLISECONDS);
+			} catch(RejectedExecutionException ree){
+				_resultFuture.completeExceptionally(new CompletionException("Unable to check status of task: "
+						+ _taskId, ree));
+			}
+		}
+
+		private void deleteTaskInBackground(){
+			try {
+				_scheduler.execute(() -> _restClient.silentlyDeleteTask(_taskId));
+			} catch(RejectedExecutionException ree){
+				LOGGER.warn("Unable to delete task: " + _taskId, ree);
+			}
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package org.cytoscape.app.communitydetection.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Callback used by
+ * {@link CDRestClient#postCDData(java.lang.String, java.util.Map, org.cytoscape.app.communitydetection.rest.CDRequestDataWriter)}
+ * to write the raw data of a request straight into the body of the
+ * HTTP POST. Implementations can be invoked more then once if the
+ * submission is retried so they must write the same data every time.
+ *
+ * @author churas
+ */
+public interface CDRequestDataWriter {
+
+	/**
+	 * Writes raw data, for example an edge list, to {@code out}. The
+	 * data is escaped and wrapped in the JSON request by the caller
+	 * so implementations should NOT do any escaping themselves.
+	 * Implementations should also NOT close {@code out}
+	 *
+	 * @param out stream to write data to
+	 * @throws IOException if there is an error writing the data
+	 */
+	public void writeData(OutputStream out) throws IOException;
+}
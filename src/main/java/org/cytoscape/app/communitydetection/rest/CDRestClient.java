@@ -10,7 +10,10 @@ import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
 import org.cytoscape.app.communitydetection.PropertiesHelper;
+import org.cytoscape.app.communitydetection.event.BaseurlUpdatedEvent;
+import org.cytoscape.app.communitydetection.event.BaseurlUpdatedListener;
 import org.cytoscape.work.TaskMonitor;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithms;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
@@ -18,12 +21,19 @@ import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionResultStatus;
 import org.ndexbio.communitydetection.rest.model.Task;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.entity.GzipCompressingEntity;
 import org.ndexbio.communitydetection.rest.model.ErrorResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,11 +42,16 @@ import org.slf4j.LoggerFactory;
  * REST API client for CD service. Implements GET, POST and DELETE.
  *
  */
-public class CDRestClient {
+public class CDRestClient implements BaseurlUpdatedListener {
 
 	private final static Logger LOGGER = LoggerFactory.getLogger(CDRestClient.class);
 	private final ObjectMapper mapper;
-	private boolean isTaskCanceled;
+	
+	/**
+	 * Creates parsers for task results that stream string values
+	 * into {@link JsonParser#getText(java.io.Writer)}
+	 */
+	private final JsonFactory _resultJsonFactory;
 	private HttpClientFactory _httpClientFactory;
 	
 	/**
@@ -49,10 +64,30 @@ public class CDRestClient {
 	 * {@link org.ndexbio.communitydetection.rest.model.CommunityDetectionResult#getResult()}
 	 */
 	protected final static int TRUNCATE_ERROR_MESSAGE_RESULT_LEN = 255;
+	
+	/**
+	 * Value of Accept-Encoding header sent with requests whose responses
+	 * can be large. The {@link HttpClient} created by
+	 * {@link HttpClientFactoryImpl} decompresses these responses as they
+	 * are read
+	 */
+	protected final static String ACCEPT_ENCODING = "gzip, deflate";
+	
+	/**
+	 * Name of field in the response holding the result of a task
+	 */
+	protected final static String RESULT_FIELD = "result";
+	
+	/**
+	 * Message set in {@link CDRestClientException} when task does
+	 * not complete in time
+	 */
+	protected final static String TIMEOUT_ERROR_MESSAGE = "Request timed out. This could be due to "
+				+ "heavy server load or too large of a task to run";
 
 	private CDRestClient() {
 		mapper = new ObjectMapper();
-		isTaskCanceled = false;
+		_resultJsonFactory = new StreamingJsonFactory(mapper);
 		_httpClientFactory = new HttpClientFactoryImpl();
 	}
 
@@ -88,6 +123,24 @@ public class CDRestClient {
 	public String postCDData(final String algorithm,
 			Map<String,String> customParameters,
 			final String data) throws CDRestClientException, IOException {
+		return postCDData(algorithm, customParameters, data, new CancellationToken());
+	}
+	
+	/**
+	 * Same as {@link #postCDData(java.lang.String, java.util.Map, java.lang.String)}
+	 * except the submission can be canceled via {@code cancelToken}
+	 * @param algorithm name of the algorithm to run
+	 * @param customParameters Map of custom parameters
+	 * @param data Data in String format to pass to CD REST Service
+	 * @param cancelToken canceling this aborts the submission
+	 * @return id of task or {@code null} if task was canceled
+	 * @throws CDRestClientException higher level error with CD REST Service
+	 * @throws IOException low level http error
+	 * @throws IllegalArgumentException if algorithm or cancelToken is null
+	 */
+	public String postCDData(final String algorithm,
+			Map<String,String> customParameters,
+			final String data, CancellationToken cancelToken) throws CDRestClientException, IOException {
 
 		if (algorithm == null){
 			throw new IllegalArgumentException("algorithm cannot be null");
@@ -99,25 +152,123 @@ public class CDRestClient {
 		    request.setCustomParameters(customParameters);
 		}
 		StringEntity body = new StringEntity(mapper.writeValueAsString(request));
+		return submitTask(algorithm, () -> body, cancelToken);
+	}
 
+	/**
+	 * Same as {@link #postCDData(java.lang.String, java.util.Map, java.lang.String)}
+	 * except the data is written by {@code dataWriter} straight into a
+	 * chunked POST body via {@link StreamingCDRequestEntity}. This
+	 * avoids holding the data, and its JSON encoded copy, in memory which
+	 * matters for large networks.
+	 * 
+	 * @param algorithm name of the algorithm to run as set in 
+	 *                  {@link org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm#getName()}
+	 * @param customParameters Map of custom parameters with set to name of parameter and value set to the value of parameter
+	 * @param dataWriter Writes the data to pass to CD REST Service. This is
+	 *                   invoked once per submission attempt
+	 * @return id of task or {@code null} if task was canceled
+	 * @throws CDRestClientException higher level error with CD REST Service
+	 * @throws IOException low level http error or error raised by {@code dataWriter}
+	 * @throws IllegalArgumentException if algorithm or dataWriter is null
+	 */
+	public String postCDData(final String algorithm,
+			Map<String,String> customParameters,
+			CDRequestDataWriter dataWriter) throws CDRestClientException, IOException {
+		return postCDData(algorithm, customParameters, dataWriter, new CancellationToken());
+	}
+	
+	/**
+	 * Same as {@link #postCDData(java.lang.String, java.util.Map, org.cytoscape.app.communitydetection.rest.CDRequestDataWriter)}
+	 * except the submission can be canceled via {@code cancelToken}
+	 * @param algorithm name of the algorithm to run
+	 * @param customParameters Map of custom parameters
+	 * @param dataWriter Writes the data to pass to CD REST Service
+	 * @param cancelToken canceling this aborts the submission, even
+	 *                    while the data is being sent
+	 * @return id of task or {@code null} if task was canceled
+	 * @throws CDRestClientException higher level error with CD REST Service
+	 * @throws IOException low level http error or error raised by {@code dataWriter}
+	 * @throws IllegalArgumentException if algorithm, dataWriter, or cancelToken is null
+	 */
+	public String postCDData(final String algorithm,
+			Map<String,String> customParameters,
+			CDRequestDataWriter dataWriter, CancellationToken cancelToken) throws CDRestClientException, IOException {
+		if (algorithm == null){
+			throw new IllegalArgumentException("algorithm cannot be null");
+		}
+		if (dataWriter == null){
+			throw new IllegalArgumentException("data writer cannot be null");
+		}
+		return submitTask(algorithm, () -> new StreamingCDRequestEntity(mapper,
+				algorithm, customParameters, dataWriter), cancelToken);
+	}
+	
+	/**
+	 * Supplies body for each POST attempt made by
+	 * {@link #submitTask(java.lang.String, org.cytoscape.app.communitydetection.rest.CDRestClient.RequestBodySupplier, org.cytoscape.app.communitydetection.rest.CancellationToken)}
+	 */
+	private interface RequestBodySupplier {
+		HttpEntity getBody() throws IOException;
+	}
+	
+	/**
+	 * Submits task to CD Service retrying up to 
+	 * {@link org.cytoscape.app.communitydetection.PropertiesHelper#getSubmitRetryCount()}
+	 * times
+	 * @param algorithm name of algorithm, used for logging
+	 * @param bodySupplier supplies body of POST request for each attempt
+	 * @param cancelToken canceling this aborts the POST request
+	 * @return id of task or {@code null} if task was canceled
+	 * @throws CDRestClientException higher level error with CD REST Service
+	 * @throws IOException low level http error
+	 */
+	private String submitTask(final String algorithm,
+			RequestBodySupplier bodySupplier, CancellationToken cancelToken) throws CDRestClientException, IOException {
+		if (cancelToken == null){
+			throw new IllegalArgumentException("cancel token cannot be null");
+		}
 		HttpClient client = getClient();
 		HttpPost postRequest = new HttpPost(getBaseurl());
 		postRequest.addHeader("accept", "application/json");
 		postRequest.addHeader("Content-Type", "application/json");
-		postRequest.setEntity(body);
 
+		boolean gzipRequest = PropertiesHelper.getInstance().isHttpGzipRequest();
 		HttpResponse httpPostResponse = null;
 		int statusCode = 0;
 		for (int count = 0; count < PropertiesHelper.getInstance().getSubmitRetryCount(); count++) {
-			if (isTaskCanceled == true){
+			if (cancelToken.isCanceled()){
 				return null;
 			}
-			httpPostResponse = client.execute(postRequest);
+			HttpEntity body = bodySupplier.getBody();
+			postRequest.setEntity(gzipRequest ? new GzipCompressingEntity(body) : body);
+			cancelToken.registerRequest(postRequest);
+			try {
+				httpPostResponse = client.execute(postRequest);
+			} catch(IOException io){
+				if (cancelToken.isCanceled()){
+					LOGGER.debug("Submission of " + algorithm + " task canceled");
+					return null;
+				}
+				// if the data writer failed report that error
+				// instead of what the http client wrapped it in
+				if (body instanceof StreamingCDRequestEntity &&
+						((StreamingCDRequestEntity)body).getDataWriterException() != null){
+					throw ((StreamingCDRequestEntity)body).getDataWriterException();
+				}
+				throw io;
+			} finally {
+				cancelToken.unregisterRequest(postRequest);
+			}
 			
 			statusCode = httpPostResponse.getStatusLine().getStatusCode();
 			if (statusCode == HttpStatus.SC_ACCEPTED) {
 				break;
 			} else {
+				if (count + 1 < PropertiesHelper.getInstance().getSubmitRetryCount()){
+					// release connection back to pool before retrying
+					EntityUtils.consumeQuietly(httpPostResponse.getEntity());
+				}
 				LOGGER.debug("Try # " + Integer.toString(count+1) +
 						" received HTTP CODE: " + Integer.toString(statusCode) +
 						" when attempting to submit " + algorithm + " task");
@@ -129,8 +280,7 @@ public class CDRestClient {
 					+ statusCode,
 					this.getErrorResponse(httpPostResponse));
 		}
-		BufferedReader reader = new BufferedReader(new InputStreamReader(httpPostResponse.getEntity().getContent()));
-		Task serviceTask = mapper.readValue(reader, Task.class);
+		Task serviceTask = readResponse(httpPostResponse.getEntity(), Task.class);
 		LOGGER.debug("Task ID: " + serviceTask.getId());
 		return serviceTask.getId();
 	}
@@ -154,71 +304,240 @@ public class CDRestClient {
 		if (deleteResponse.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
 			LOGGER.info("Could not delete task: " + taskId);
 		}
+		EntityUtils.consumeQuietly(deleteResponse.getEntity());
 	}
 	
 	public CommunityDetectionResult getCDResult(final String taskId, int totalRuntime) throws CDRestClientException, IOException {
-		return getCDResult(taskId, null, 0.0f, 0.0f, totalRuntime);
+		return getCDResult(taskId, null, 0.0f, 0.0f, totalRuntime, new CancellationToken());
 	}
-
+	
 	/**
-	 * Polls CD Service checking for completion of task specified by {@code taskId}
-	 * using {@link org.cytoscape.app.communitydetection.PropertiesHelper#getPollingIntervalTimeMillis()} 
+	 * Same as {@link #getCDResult(java.lang.String, org.cytoscape.work.TaskMonitor, float, float, int, org.cytoscape.app.communitydetection.rest.CancellationToken)}
+	 * except the polling cannot be canceled
 	 * @param taskId
 	 * @param taskMonitor
 	 * @param currentProgress
 	 * @param totalProgress
 	 * @param totalRuntime Maximum time in milliseconds to wait for completion of task
 	 * @return
-	 * @throws IllegalArgumentException if taskId is null
 	 * @throws CDRestClientException if task fails or if there is a high level error from CD Service
 	 * @throws IOException if there is a low level http error
 	 */
 	public CommunityDetectionResult getCDResult(String taskId, TaskMonitor taskMonitor, float currentProgress,
 			float totalProgress, int totalRuntime) throws CDRestClientException, IOException {
+		return getCDResult(taskId, taskMonitor, currentProgress, totalProgress,
+				totalRuntime, new CancellationToken());
+	}
+
+	/**
+	 * Polls CD Service checking for completion of task specified by {@code taskId}.
+	 * The first check is made after 
+	 * {@link org.cytoscape.app.communitydetection.PropertiesHelper#getPollingInitialIntervalMillis()}
+	 * and the wait between checks then grows, as computed by
+	 * {@link AdaptivePollingInterval}, up to
+	 * {@link org.cytoscape.app.communitydetection.PropertiesHelper#getPollingMaxIntervalMillis()}.
+	 * If adaptive polling is disabled every wait is
+	 * {@link org.cytoscape.app.communitydetection.PropertiesHelper#getPollingIntervalTimeMillis()}
+	 * @param taskId
+	 * @param taskMonitor
+	 * @param currentProgress
+	 * @param totalProgress
+	 * @param totalRuntime Maximum time in milliseconds to wait for completion of task.
+	 *                     If {@code 0} the task is checked once and if negative
+	 *                     there is no limit
+	 * @param cancelToken canceling this stops the polling right away and
+	 *                    deletes the task on CD Service
+	 * @return result or {@code null} if canceled
+	 * @throws IllegalArgumentException if taskId or cancelToken is null
+	 * @throws CDRestClientException if task fails or if there is a high level error from CD Service
+	 * @throws IOException if there is a low level http error
+	 */
+	public CommunityDetectionResult getCDResult(String taskId, TaskMonitor taskMonitor, float currentProgress,
+			float totalProgress, int totalRuntime, CancellationToken cancelToken) throws CDRestClientException, IOException {
+		CommunityDetectionResult cdResult = pollUntilComplete(taskId, taskMonitor,
+				currentProgress, totalProgress, totalRuntime, cancelToken,
+				(client) -> this.getCDResult(client, taskId, cancelToken));
+		if (cdResult != null){
+			silentlyDeleteTask(taskId);
+		}
+		return cdResult;
+	}
+	
+	/**
+	 * Same as {@link #getCDResult(java.lang.String, org.cytoscape.work.TaskMonitor, float, float, int, org.cytoscape.app.communitydetection.rest.CancellationToken)}
+	 * except only the status of the task is fetched while polling and,
+	 * once the task completes, the result is handed to {@code resultReader}
+	 * as it is read from the response instead of being parsed into a
+	 * {@link CommunityDetectionResult} first
+	 * @param <T> type of object built by {@code resultReader}
+	 * @param taskId
+	 * @param taskMonitor
+	 * @param currentProgress
+	 * @param totalProgress
+	 * @param totalRuntime Maximum time in milliseconds to wait for completion of task.
+	 *                     If {@code 0} the task is checked once and if negative
+	 *                     there is no limit
+	 * @param cancelToken canceling this stops the polling right away and
+	 *                    deletes the task on CD Service
+	 * @param resultReader reads the result of the task
+	 * @return value returned by {@code resultReader} or {@code null} if canceled
+	 * @throws IllegalArgumentException if taskId, cancelToken or resultReader is null
+	 * @throws CDRestClientException if task fails or if there is a high level error from CD Service
+	 * @throws IOException if there is a low level http error or error raised by {@code resultReader}
+	 */
+	public <T> T getCDResult(String taskId, TaskMonitor taskMonitor, float currentProgress,
+			float totalProgress, int totalRuntime, CancellationToken cancelToken,
+			CDResultReader<T> resultReader) throws CDRestClientException, IOException {
+		return getCDResult(taskId, taskMonitor, currentProgress, totalProgress,
+				totalRuntime, cancelToken, resultReader, null);
+	}
+	
+	/**
+	 * Same as {@link #getCDResult(java.lang.String, org.cytoscape.work.TaskMonitor, float, float, int, org.cytoscape.app.communitydetection.rest.CancellationToken, org.cytoscape.app.communitydetection.rest.CDResultReader)}
+	 * except every byte of the response holding the result, after it is
+	 * decompressed, is also written to {@code responseCopy} as it is read.
+	 * Once {@code resultReader} returns the rest of the response is read
+	 * into {@code responseCopy}, if that fails {@code responseCopy} is
+	 * closed. Errors writing to {@code responseCopy} are not caught, so
+	 * it should not throw any
+	 * @param <T> type of object built by {@code resultReader}
+	 * @param taskId
+	 * @param taskMonitor
+	 * @param currentProgress
+	 * @param totalProgress
+	 * @param totalRuntime Maximum time in milliseconds to wait for completion of task.
+	 *                     If {@code 0} the task is checked once and if negative
+	 *                     there is no limit
+	 * @param cancelToken canceling this stops the polling right away and
+	 *                    deletes the task on CD Service
+	 * @param resultReader reads the result of the task
+	 * @param responseCopy receives a copy of the response, can be {@code null}
+	 * @return value returned by {@code resultReader} or {@code null} if canceled
+	 * @throws IllegalArgumentException if taskId, cancelToken or resultReader is null
+	 * @throws CDRestClientException if task fails or if there is a high level error from CD Service
+	 * @throws IOException if there is a low level http error or error raised by {@code resultReader}
+	 */
+	public <T> T getCDResult(String taskId, TaskMonitor taskMonitor, float currentProgress,
+			float totalProgress, int totalRuntime, CancellationToken cancelToken,
+			CDResultReader<T> resultReader, OutputStream responseCopy) throws CDRestClientException, IOException {
+		if (resultReader == null){
+			throw new IllegalArgumentException("result reader cannot be null");
+		}
+		CommunityDetectionResultStatus status = pollUntilComplete(taskId, taskMonitor,
+				currentProgress, totalProgress, totalRuntime, cancelToken,
+				(client) -> this.getCDResultStatus(client, taskId, cancelToken));
+		if (status == null){
+			return null;
+		}
+		try {
+			return readCDResult(taskId, resultReader, cancelToken, responseCopy);
+		} finally {
+			silentlyDeleteTask(taskId);
+		}
+	}
+	
+	/**
+	 * Checks status of a task for
+	 * {@link CDRestClient#pollUntilComplete(java.lang.String, org.cytoscape.work.TaskMonitor, float, float, int, org.cytoscape.app.communitydetection.rest.CancellationToken, org.cytoscape.app.communitydetection.rest.CDRestClient.StatusCheck)}
+	 * @param <S> type of status returned
+	 */
+	private interface StatusCheck<S extends CommunityDetectionResultStatus> {
+		S checkStatus(HttpClient client) throws CDRestClientException, IOException;
+	}
+	
+	/**
+	 * Polls CD Service via {@code statusCheck} until the task specified
+	 * by {@code taskId} completes. The task is deleted if canceled or if
+	 * it does not complete in time, otherwise deleting it is left to
+	 * the caller. Interrupting the polling thread cancels {@code cancelToken}
+	 * @return status of completed task or {@code null} if canceled
+	 */
+	private <S extends CommunityDetectionResultStatus> S pollUntilComplete(String taskId,
+			TaskMonitor taskMonitor, float currentProgress, float totalProgress,
+			int totalRuntime, CancellationToken cancelToken,
+			StatusCheck<S> statusCheck) throws CDRestClientException, IOException {
 
 		if (taskId == null){
 			throw new IllegalArgumentException("task id cannot be null");
 		}
-		CommunityDetectionResult cdResult = null;
-		int waitTime = PropertiesHelper.getInstance().getPollingIntervalTimeMillis();
-		long retryLimit = -1;
+		if (cancelToken == null){
+			throw new IllegalArgumentException("cancel token cannot be null");
+		}
+		S cdResult = null;
+		PropertiesHelper pHelper = PropertiesHelper.getInstance();
+		AdaptivePollingInterval pollInterval = AdaptivePollingInterval.fromProperties(pHelper);
 		
-		if (totalRuntime == 0){
-			retryLimit = 1;
-		}else if (totalRuntime > 0){
-			retryLimit = Math.round((double)totalRuntime /(double)waitTime);
+		long startTime = System.currentTimeMillis();
+		long deadline = Long.MAX_VALUE;
+		if (totalRuntime >= 0){
+			deadline = startTime + totalRuntime;
 		}
 		
 		HttpClient client = getClient();
-		int retryCount = 0;
+		int pollCount = 0;
+		long waitTime = pollInterval.getInitialDelayMillis();
 		
 		float progressScaler = 0.0f;
 		if (taskMonitor != null){
 			progressScaler = (totalProgress - currentProgress)/100.0f;
 		}
-		LOGGER.debug("For Task: " + taskId + " RetryCount => " + Integer.toString(retryCount) + 
-				     " RetryLimit => " + Long.toString(retryLimit));
-		while(retryLimit < 0 || retryCount < retryLimit){
-			this.threadSleep(waitTime);
-			if (isTaskCanceled) {
+		LOGGER.debug("For Task: " + taskId + " Timeout => " + Integer.toString(totalRuntime));
+		while(true){
+			cancelToken.awaitCancel(Math.min(waitTime,
+					Math.max(0, deadline - System.currentTimeMillis())));
+			if (!cancelToken.isCanceled()) {
+				cdResult = statusCheck.checkStatus(client);
+			}
+			if (cancelToken.isCanceled()) {
 				LOGGER.debug("User canceled task: " + taskId);
+				
+				// an interrupt cancels the token, clear it so the
+				// delete request is not cut short and restore it after
+				boolean interrupted = Thread.interrupted();
 				silentlyDeleteTask(taskId);
+				if (interrupted){
+					Thread.currentThread().interrupt();
+				}
 				return null;
 			}
-			cdResult = this.getCDResult(client, taskId);
 			if (cdResult.getStatus().equals(CommunityDetectionResultStatus.COMPLETE_STATUS)) {
-				silentlyDeleteTask(taskId);
 				return cdResult;
 			}
 
 			if (taskMonitor != null){
 				taskMonitor.setProgress(currentProgress + ((float)cdResult.getProgress()*progressScaler));	
 			}
-			retryCount++;
+			pollCount++;
+			long curTime = System.currentTimeMillis();
+			if (curTime >= deadline){
+				break;
+			}
+			waitTime = pollInterval.getNextDelayMillis(curTime - startTime,
+					cdResult.getProgress());
 		}
+		LOGGER.debug("Task: " + taskId + " timed out after " + Integer.toString(pollCount) + " checks");
 		silentlyDeleteTask(taskId);
-		throw new CDRestClientException("Request timed out. This could be due to "
-				+ "heavy server load or too large of a task to run", cdResult);
+		throw new CDRestClientException(TIMEOUT_ERROR_MESSAGE,
+				cdResult instanceof CommunityDetectionResult ? (CommunityDetectionResult)cdResult : null);
+	}
+	
+	/**
+	 * Checks status of task specified by {@code taskId} once without
+	 * waiting
+	 * @param taskId id of task
+	 * @param cancelToken canceling this aborts the request, can be {@code null}
+	 * @return result of task which may still be running or {@code null}
+	 *         if canceled
+	 * @throws IllegalArgumentException if taskId is null
+	 * @throws CDRestClientException if task failed or if there is a high level error from CD Service
+	 * @throws IOException if there is a low level http error
+	 */
+	public CommunityDetectionResult checkCDResult(final String taskId,
+			CancellationToken cancelToken) throws CDRestClientException, IOException {
+		if (taskId == null){
+			throw new IllegalArgumentException("task id cannot be null");
+		}
+		return getCDResult(getClient(), taskId, cancelToken);
 	}
 
 	public CommunityDetectionAlgorithms getAlgorithms(boolean refreshCache) throws CDRestClientException, IOException {
@@ -226,7 +545,7 @@ public class CDRestClient {
 			return this._cachedCommunityDetectionAlgorithms;
 		}
 		HttpClient client = getClient();
-		HttpResponse httpGetResponse = client.execute(new HttpGet(getBaseurl() + "/" + "algorithms"));
+		HttpResponse httpGetResponse = client.execute(getCompressibleGet(getBaseurl() + "/" + "algorithms"));
 		int statuscode = httpGetResponse.getStatusLine().getStatusCode();
 		if (statuscode != HttpStatus.SC_OK){
 			throw new CDRestClientException("Unable to get list of "
@@ -234,17 +553,31 @@ public class CDRestClient {
 					Integer.toString(statuscode) + ")",
 					this.getErrorResponse(httpGetResponse));
 		}
-		BufferedReader reader = new BufferedReader(new InputStreamReader(httpGetResponse.getEntity().getContent()));
-		this._cachedCommunityDetectionAlgorithms = mapper.readValue(reader, CommunityDetectionAlgorithms.class);
+		this._cachedCommunityDetectionAlgorithms = readResponse(httpGetResponse.getEntity(),
+				CommunityDetectionAlgorithms.class);
 		return this._cachedCommunityDetectionAlgorithms;
 	}
 
-	public boolean getIsTaskCanceled() {
-		return isTaskCanceled;
+	/**
+	 * Releases pooled http connections held by this client. Should
+	 * be called when the App is stopped
+	 */
+	public void shutdown() {
+		if (_httpClientFactory != null){
+			_httpClientFactory.shutdown();
+		}
 	}
-
-	public void setTaskCanceled(boolean isCanceled) {
-		isTaskCanceled = isCanceled;
+	
+	/**
+	 * Drops idle pooled connections to the old REST service URL. Requests
+	 * already in flight on other threads are left to finish
+	 * @param event 
+	 */
+	@Override
+	public void urlUpdatedEvent(BaseurlUpdatedEvent event) {
+		if (_httpClientFactory != null){
+			_httpClientFactory.closeIdleConnections();
+		}
 	}
 
 	/**
@@ -315,8 +648,7 @@ public class CDRestClient {
 				return null;
 			}
 			
-			BufferedReader reader = new BufferedReader(new InputStreamReader(entity.getContent()));
-			return mapper.readValue(reader, ErrorResponse.class);
+			return readResponse(entity, ErrorResponse.class);
 		} catch(IOException ex){
 			LOGGER.info("caught exception trying to parse error response from server", ex);
 		}
@@ -328,7 +660,7 @@ public class CDRestClient {
 	 * at warning level and return
 	 * @param taskId 
 	 */
-	private void silentlyDeleteTask(final String taskId){
+	protected void silentlyDeleteTask(final String taskId){
 		try {
 			deleteTask(taskId);
 		} catch(IllegalArgumentException iae){
@@ -338,39 +670,240 @@ public class CDRestClient {
 		}
 	}
 
-	/**
-	 * Tell this thread to sleep for {@code sleepTimeInMillis}. This 
-	 * method catches {@link java.lang.InterruptedException} and ignores
-	 * it
-	 * @param sleepTimeInMillis 
-	 */
-	private void threadSleep(long sleepTimeInMillis){
-		try {
-			Thread.sleep(sleepTimeInMillis);
-		} catch(InterruptedException ie){
-				
-		}
-	}
-	
 	/**
 	 * Low level call that makes a get request to obtain {@link org.ndexbio.communitydetection.rest.model.CommunityDetectionResult}
 
      * @param client HTTP Client already configured
 	 * @param taskId id of task
+	 * @param cancelToken canceling this aborts the request, can be {@code null}
 	 * @return {@link org.ndexbio.communitydetection.rest.model.CommunityDetectionResult} from CD Service
+	 *         or {@code null} if canceled
 	 * @throws CDRestClientException If CD Service said the request failed or other higher level error
 	 * @throws IOException If there was a lower level HTTP error
 	 */
-	private CommunityDetectionResult getCDResult(HttpClient client, final String taskId) throws CDRestClientException, IOException{
-		HttpResponse httpGetResponse = client.execute(new HttpGet(getBaseurl() + "/" + taskId));
-		BufferedReader reader = new BufferedReader(new InputStreamReader(httpGetResponse.getEntity().getContent()));
-		CommunityDetectionResult cdResult = mapper.readValue(reader, CommunityDetectionResult.class);
+	private CommunityDetectionResult getCDResult(HttpClient client, final String taskId,
+			CancellationToken cancelToken) throws CDRestClientException, IOException{
+		HttpGet getRequest = getCompressibleGet(getBaseurl() + "/" + taskId);
+		CommunityDetectionResult cdResult = null;
+		if (cancelToken != null){
+			cancelToken.registerRequest(getRequest);
+		}
+		try {
+			HttpResponse httpGetResponse = client.execute(getRequest);
+			cdResult = readResponse(httpGetResponse.getEntity(), CommunityDetectionResult.class);
+		} catch(IOException io){
+			if (cancelToken != null && cancelToken.isCanceled()){
+				return null;
+			}
+			throw io;
+		} finally {
+			if (cancelToken != null){
+				cancelToken.unregisterRequest(getRequest);
+			}
+		}
 		if (cdResult.getStatus().equals(CommunityDetectionResultStatus.FAILED_STATUS)) {
 			throw new CDRestClientException(getErrorMessageFromResult(cdResult), cdResult);
 		}
 		return cdResult;
 	}
 	
+	/**
+	 * Low level call that makes a get request to obtain the status of a
+	 * task without its result. If the task failed, the full result is
+	 * fetched so the error reported by the task can be raised
+	 * @param client HTTP Client already configured
+	 * @param taskId id of task
+	 * @param cancelToken canceling this aborts the request
+	 * @return status of task or {@code null} if canceled
+	 * @throws CDRestClientException If CD Service said the request failed or other higher level error
+	 * @throws IOException If there was a lower level HTTP error
+	 */
+	private CommunityDetectionResultStatus getCDResultStatus(HttpClient client, final String taskId,
+			CancellationToken cancelToken) throws CDRestClientException, IOException {
+		HttpGet getRequest = new HttpGet(getBaseurl() + "/" + taskId + "/status");
+		CommunityDetectionResultStatus status = null;
+		cancelToken.registerRequest(getRequest);
+		try {
+			HttpResponse httpGetResponse = client.execute(getRequest);
+			status = readResponse(httpGetResponse.getEntity(), CommunityDetectionResultStatus.class);
+		} catch(IOException io){
+			if (cancelToken.isCanceled()){
+				return null;
+			}
+			throw io;
+		} finally {
+			cancelToken.unregisterRequest(getRequest);
+		}
+		if (status.getStatus().equals(CommunityDetectionResultStatus.FAILED_STATUS)) {
+			return getCDResult(client, taskId, cancelToken);
+		}
+		return status;
+	}
+	
+	/**
+	 * Gets the result of a completed task passing the value of its
+	 * {@code result} field to {@code resultReader} while the response
+	 * is being read. Every other field of the response is skipped.
+	 * The parser is created by {@link StreamingJsonFactory} so a string
+	 * result read via {@link JsonParser#getText(java.io.Writer)} is
+	 * passed on in chunks as it arrives
+	 * @param <T> type of object built by {@code resultReader}
+	 * @param taskId id of task
+	 * @param resultReader reads the result
+	 * @param cancelToken canceling this aborts the request
+	 * @param responseCopy receives a copy of the response, can be {@code null}
+	 * @return value returned by {@code resultReader} or {@code null} if canceled
+	 * @throws CDRestClientException if the response has no result
+	 * @throws IOException if there was a lower level HTTP error or error
+	 *                     raised by {@code resultReader}
+	 */
+	private <T> T readCDResult(final String taskId, CDResultReader<T> resultReader,
+			CancellationToken cancelToken, OutputStream responseCopy) throws CDRestClientException, IOException {
+		HttpGet getRequest = getCompressibleGet(getBaseurl() + "/" + taskId);
+		HttpEntity entity = null;
+		cancelToken.registerRequest(getRequest);
+		try {
+			entity = getClient().execute(getRequest).getEntity();
+			InputStream content = entity.getContent();
+			if (responseCopy != null){
+				content = new CopyingInputStream(content, responseCopy);
+			}
+			try (JsonParser parser = _resultJsonFactory.createParser(content)){
+				if (parser.nextToken() != JsonToken.START_OBJECT){
+					throw new CDRestClientException("Response for task " + taskId
+							+ " is not a JSON object");
+				}
+				while (parser.nextToken() == JsonToken.FIELD_NAME){
+					String fieldName = parser.getCurrentName();
+					parser.nextToken();
+					if (RESULT_FIELD.equals(fieldName)){
+						T value = resultReader.readResult(parser);
+						parser.skipChildren();
+						if (responseCopy != null){
+							copyRemainder(content, responseCopy);
+						}
+						return value;
+					}
+					parser.skipChildren();
+				}
+			}
+		} catch(IOException io){
+			if (cancelToken.isCanceled()){
+				return null;
+			}
+			throw io;
+		} finally {
+			cancelToken.unregisterRequest(getRequest);
+			if (entity != null){
+				EntityUtils.consumeQuietly(entity);
+			}
+		}
+		throw new CDRestClientException("No " + RESULT_FIELD
+				+ " found in response for task " + taskId);
+	}
+	
+	/**
+	 * Reads the rest of {@code content} so it is written to
+	 * {@code responseCopy}. If that fails {@code responseCopy} is closed
+	 * since the copy is incomplete
+	 * @param content stream created as a {@link CopyingInputStream}
+	 * @param responseCopy
+	 */
+	private void copyRemainder(InputStream content, OutputStream responseCopy){
+		try {
+			byte[] buffer = new byte[8192];
+			while (content.read(buffer) != -1){
+			}
+		} catch(IOException io){
+			LOGGER.warn("Unable to read rest of response", io);
+			try {
+				responseCopy.close();
+			} catch(IOException closeError){
+				LOGGER.warn("Unable to close copy of response", closeError);
+			}
+		}
+	}
+	
+	/**
+	 * Writes every byte read from the wrapped stream to another stream
+	 */
+	private static class CopyingInputStream extends FilterInputStream {
+		private final OutputStream _copy;
+
+		CopyingInputStream(InputStream in, OutputStream copy){
+			super(in);
+			_copy = copy;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1){
+				_copy.write(b);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int numRead = super.read(b, off, len);
+			if (numRead > 0){
+				_copy.write(b, off, numRead);
+			}
+			return numRead;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			// skipped bytes must be copied too
+			byte[] buffer = new byte[(int)Math.min(8192, Math.max(0, n))];
+			long skipped = 0;
+			while (skipped < n){
+				int numRead = read(buffer, 0, (int)Math.min(buffer.length, n - skipped));
+				if (numRead < 0){
+					break;
+				}
+				skipped += numRead;
+			}
+			return skipped;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+	}
+	
+	/**
+	 * Parses JSON in {@code entity} into {@code valueType}. The entity
+	 * is always fully consumed so the connection goes back to the pool
+	 * @param <T>
+	 * @param entity body of response to read
+	 * @param valueType type to parse body into
+	 * @return parsed object
+	 * @throws IOException if there is an error reading or parsing the body
+	 */
+	private <T> T readResponse(HttpEntity entity, Class<T> valueType) throws IOException {
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(entity.getContent()));
+			return mapper.readValue(reader, valueType);
+		} finally {
+			EntityUtils.consumeQuietly(entity);
+		}
+	}
+	
+	/**
+	 * Creates GET request that tells the server a compressed
+	 * response is acceptable
+	 * @param url
+	 * @return 
+	 */
+	private HttpGet getCompressibleGet(final String url){
+		HttpGet getRequest = new HttpGet(url);
+		getRequest.addHeader("Accept-Encoding", ACCEPT_ENCODING);
+		return getRequest;
+	}
+	
 	private String getBaseurl() {
 		String baseURL = PropertiesHelper.getInstance().getBaseurl();
 		if (baseURL == null){
@@ -0,0 +1,30 @@
+package org.cytoscape.app.communitydetection.rest;
+
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+
+/**
+ * Callback used by
+ * {@link CDRestClient#getCDResult(java.lang.String, org.cytoscape.work.TaskMonitor, float, float, int, org.cytoscape.app.communitydetection.rest.CancellationToken, org.cytoscape.app.communitydetection.rest.CDResultReader)}
+ * to read the result of a completed task straight from the body of the
+ * HTTP response, so the result can be processed while it is still
+ * being received instead of after it has been parsed into memory.
+ *
+ * @author churas
+ * @param <T> type of object built from the result
+ */
+public interface CDResultReader<T> {
+
+	/**
+	 * Reads the result of a task from {@code parser} whose current token
+	 * is the first token of the result. When this method returns the
+	 * current token must be the last token of the result, as left by
+	 * {@link JsonParser#skipChildren()}. Implementations should NOT
+	 * close {@code parser}
+	 *
+	 * @param parser parser positioned on the result
+	 * @return object built from the result
+	 * @throws IOException if there is an error reading or processing the result
+	 */
+	public T readResult(JsonParser parser) throws IOException;
+}
@@ -0,0 +1,140 @@
+package org.cytoscape.app.communitydetection.rest;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread safe handle used to cancel work submitted to CD Service via
+ * {@link CDRestClient} or {@link AsyncCDRestClient}. Each analysis
+ * should create its own token so canceling it does not affect any other
+ * analysis running at the same time. Once canceled a token stays canceled.
+ * <p>
+ * Invoking {@link #cancel()} aborts any HTTP request made with this
+ * token that is in flight, wakes up any thread waiting to check the
+ * status of a task, and runs any registered cancel listeners. The
+ * tasks on CD Service are then deleted by the client that submitted them.
+ *
+ * @author churas
+ */
+public class CancellationToken {
+
+	private final static Logger LOGGER = LoggerFactory.getLogger(CancellationToken.class);
+	private final Object _lock;
+	private volatile boolean _canceled;
+	private final Set<HttpRequestBase> _inflightRequests;
+	private final Set<Runnable> _cancelListeners;
+
+	/**
+	 * Constructor
+	 */
+	public CancellationToken(){
+		_lock = new Object();
+		_canceled = false;
+		_inflightRequests = ConcurrentHashMap.newKeySet();
+		_cancelListeners = ConcurrentHashMap.newKeySet();
+	}
+
+	/**
+	 * Tells whether {@link #cancel()} has been invoked
+	 * @return {@code true} if canceled
+	 */
+	public boolean isCanceled(){
+		return _canceled;
+	}
+
+	/**
+	 * Cancels this token. Subsequent calls do nothing
+	 */
+	public void cancel(){
+		synchronized(_lock){
+			if (_canceled){
+				return;
+			}
+			_canceled = true;
+			_lock.notifyAll();
+		}
+		for (HttpRequestBase request : _inflightRequests){
+			request.abort();
+		}
+		for (Runnable listener : _cancelListeners){
+			try {
+				listener.run();
+			} catch(RuntimeException re){
+				LOGGER.warn("Cancel listener raised error", re);
+			}
+		}
+	}
+
+	/**
+	 * Adds {@code listener} to be run when this token is canceled. If the
+	 * token is already canceled {@code listener} is run right away
+	 * @param listener
+	 */
+	public void addCancelListener(Runnable listener){
+		_cancelListeners.add(listener);
+		if (_canceled && _cancelListeners.remove(listener)){
+			listener.run();
+		}
+	}
+
+	/**
+	 * Removes {@code listener} added via {@link #addCancelListener(java.lang.Runnable)}
+	 * @param listener
+	 */
+	public void removeCancelListener(Runnable listener){
+		_cancelListeners.remove(listener);
+	}
+
+	/**
+	 * Waits until {@code timeoutMillis} has elapsed or this token is canceled.
+	 * If the waiting thread is interrupted this token is canceled and the
+	 * interrupt status of the thread is kept
+	 * @param timeoutMillis time to wait in milliseconds
+	 * @return {@code true} if token is canceled
+	 */
+	protected boolean awaitCancel(long timeoutMillis){
+		long endTime = System.currentTimeMillis() + timeoutMillis;
+		synchronized(_lock){
+			long remaining = timeoutMillis;
+			while (!_canceled && remaining > 0){
+				try {
+					_lock.wait(remaining);
+				} catch(InterruptedException ie){
+					Thread.currentThread().interrupt();
+					break;
+				}
+				remaining = endTime - System.currentTimeMillis();
+			}
+			if (_canceled || !Thread.currentThread().isInterrupted()){
+				return _canceled;
+			}
+		}
+		LOGGER.debug("Thread interrupted while waiting, canceling");
+		cancel();
+		return true;
+	}
+
+	/**
+	 * Registers {@code request} so it is aborted if this token is
+	 * canceled. If the token is already canceled the request is
+	 * aborted right away which makes executing it fail
+	 * @param request
+	 */
+	protected void registerRequest(HttpRequestBase request){
+		_inflightRequests.add(request);
+		if (_canceled){
+			request.abort();
+		}
+	}
+
+	/**
+	 * Removes {@code request} added via {@link #registerRequest(org.apache.http.client.methods.HttpRequestBase)}
+	 * @param request
+	 */
+	protected void unregisterRequest(HttpRequestBase request){
+		_inflightRequests.remove(request);
+	}
+}
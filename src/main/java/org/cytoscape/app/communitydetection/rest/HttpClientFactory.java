@@ -15,4 +15,15 @@ import org.apache.http.client.config.RequestConfig;
 public interface HttpClientFactory {
     
     public HttpClient getHttpClient(RequestConfig config);
+	
+	/**
+	 * Closes pooled connections that are not currently in use. Requests
+	 * in flight on other threads are not affected
+	 */
+	public void closeIdleConnections();
+	
+	/**
+	 * Releases any clients and pooled connections held by this factory
+	 */
+	public void shutdown();
 }
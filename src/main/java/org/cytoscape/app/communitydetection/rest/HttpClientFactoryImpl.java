@@ -5,21 +5,192 @@
  */
 package org.cytoscape.app.communitydetection.rest;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.cytoscape.app.communitydetection.PropertiesHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
+ * Hands out a single {@link HttpClient} backed by a
+ * {@link PoolingHttpClientConnectionManager} so connections to the
+ * CD Service are kept alive and reused across calls and threads.
+ * 
+ * The client is rebuilt if the timeouts in the {@link RequestConfig}
+ * passed in, or the pool settings in {@link PropertiesHelper}, change
+ * and after {@link #shutdown()} is invoked, which is only done when the
+ * App is stopped. A client replaced due to a settings change is not closed
+ * right away since other threads may still be using it, instead it is
+ * closed once none of its connections are leased. Idle connections are
+ * closed after {@link PropertiesHelper#getHttpIdleConnectionTimeoutMillis()}
  *
  * @author churas
  */
 public class HttpClientFactoryImpl implements HttpClientFactory {
 
-    @Override
-    public HttpClient getHttpClient(RequestConfig config) {
-	if (config == null){
-	    return HttpClientBuilder.create().build();
+	private final static Logger LOGGER = LoggerFactory.getLogger(HttpClientFactoryImpl.class);
+	
+	/**
+	 * Pooled connections idle longer then this are checked before reuse
+	 */
+	public static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 500;
+	
+	/**
+	 * Number of routes the pool is sized for. Requests only go to the
+	 * CD Service, but when its URL is changed requests to the old URL may
+	 * still be in flight while new ones are made, so the pool allows
+	 * {@link PropertiesHelper#getHttpMaxConnectionsPerRoute()} connections
+	 * for each of the two
+	 */
+	public static final int MAX_ROUTES = 2;
+	
+	/**
+	 * A client that was replaced and its connection manager
+	 */
+	private static class RetiredClient {
+		private final CloseableHttpClient _client;
+		private final PoolingHttpClientConnectionManager _connManager;
+		
+		RetiredClient(CloseableHttpClient client, PoolingHttpClientConnectionManager connManager){
+			_client = client;
+			_connManager = connManager;
+		}
 	}
-	return HttpClientBuilder.create().setDefaultRequestConfig(config).build();
+	
+	private CloseableHttpClient _client;
+	private PoolingHttpClientConnectionManager _connManager;
+	private final List<RetiredClient> _retiredClients = new ArrayList<>();
+	private RequestConfig _clientConfig;
+	private int _clientMaxPerRoute;
+	private int _clientIdleTimeoutMillis;
+
+    @Override
+    public synchronized HttpClient getHttpClient(RequestConfig config) {
+		PropertiesHelper pHelper = PropertiesHelper.getInstance();
+		int maxPerRoute = Math.max(1, pHelper.getHttpMaxConnectionsPerRoute());
+		int idleTimeoutMillis = pHelper.getHttpIdleConnectionTimeoutMillis();
+		closeRetiredClients(false);
+		if (_client != null && isSameConfig(config, _clientConfig)
+				&& maxPerRoute == _clientMaxPerRoute
+				&& idleTimeoutMillis == _clientIdleTimeoutMillis){
+			return _client;
+		}
+		if (_client != null){
+			_retiredClients.add(new RetiredClient(_client, _connManager));
+			closeRetiredClients(false);
+		}
+		PoolingHttpClientConnectionManager connManager = new PoolingHttpClientConnectionManager();
+		connManager.setDefaultMaxPerRoute(maxPerRoute);
+		connManager.setMaxTotal(maxPerRoute * MAX_ROUTES);
+		
+		// submissions stream a non repeatable body so check connections
+		// that sat idle are still open before handing them out
+		connManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+		
+		HttpClientBuilder builder = HttpClientBuilder.create()
+				.setConnectionManager(connManager)
+				.evictExpiredConnections();
+		if (idleTimeoutMillis > 0){
+			builder.evictIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+		}
+		if (config != null){
+			builder.setDefaultRequestConfig(config);
+		}
+		LOGGER.debug("Creating pooled http client with " + maxPerRoute
+				+ " max connections per route");
+		_client = builder.build();
+		_connManager = connManager;
+		_clientConfig = config;
+		_clientMaxPerRoute = maxPerRoute;
+		_clientIdleTimeoutMillis = idleTimeoutMillis;
+		return _client;
     }
+	
+	/**
+	 * Closes pooled connections of the current client that are not
+	 * leased, which {@link CDRestClient} does when the REST service URL
+	 * is updated. Requests in flight on other threads are left alone
+	 */
+	@Override
+	public synchronized void closeIdleConnections() {
+		if (_connManager != null){
+			_connManager.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+			_connManager.closeExpiredConnections();
+		}
+		closeRetiredClients(false);
+	}
+	
+	/**
+	 * Closes the current client, any replaced clients and their pooled
+	 * connections, aborting any requests still in flight. The next call to
+	 * {@link #getHttpClient(org.apache.http.client.config.RequestConfig)}
+	 * creates a new client
+	 */
+	@Override
+	public synchronized void shutdown() {
+		closeRetiredClients(true);
+		if (_client == null){
+			return;
+		}
+		closeClient(_client);
+		_client = null;
+		_connManager = null;
+		_clientConfig = null;
+	}
+	
+	/**
+	 * Gets number of replaced clients not yet closed
+	 * @return 
+	 */
+	protected synchronized int getRetiredClientCount(){
+		return _retiredClients.size();
+	}
+	
+	/**
+	 * Closes replaced clients with no leased connections, or all of them
+	 * if {@code force} is {@code true}. Idle connections of the
+	 * others are closed
+	 */
+	private void closeRetiredClients(boolean force){
+		Iterator<RetiredClient> iter = _retiredClients.iterator();
+		while (iter.hasNext()){
+			RetiredClient retired = iter.next();
+			if (force || retired._connManager.getTotalStats().getLeased() == 0){
+				closeClient(retired._client);
+				iter.remove();
+			} else {
+				retired._connManager.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+	
+	private void closeClient(CloseableHttpClient client){
+		try {
+			client.close();
+		} catch(IOException io){
+			LOGGER.warn("Error closing http client", io);
+		}
+	}
+	
+	/**
+	 * Compares the timeouts of {@code config} and {@code otherConfig}
+	 * since {@link RequestConfig} does not implement equals
+	 * @return {@code true} if both are {@code null} or the timeouts match
+	 */
+	private boolean isSameConfig(RequestConfig config, RequestConfig otherConfig){
+		if (config == null || otherConfig == null){
+			return config == otherConfig;
+		}
+		return config.getConnectTimeout() == otherConfig.getConnectTimeout()
+				&& config.getConnectionRequestTimeout() == otherConfig.getConnectionRequestTimeout()
+				&& config.getSocketTimeout() == otherConfig.getSocketTimeout();
+	}
 }
@@ -0,0 +1,188 @@
+package org.cytoscape.app.communitydetection.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.apache.http.entity.AbstractHttpEntity;
+
+/**
+ * HTTP entity that writes a
+ * {@link org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest}
+ * as JSON directly to the connection. The {@code data} field is
+ * generated by a {@link CDRequestDataWriter} and escaped on the fly so
+ * the request is never held in memory in full. The entity is sent
+ * chunked since its length is not known ahead of time.
+ *
+ * @author churas
+ */
+public class StreamingCDRequestEntity extends AbstractHttpEntity {
+
+	private static final byte[] JSON_SUFFIX = "\"}".getBytes(StandardCharsets.UTF_8);
+	private final byte[] _jsonPrefix;
+	private final CDRequestDataWriter _dataWriter;
+	private IOException _dataWriterException;
+
+	/**
+	 * Constructor
+	 * @param mapper used to serialize {@code algorithm} and {@code customParameters}
+	 * @param algorithm name of algorithm to run
+	 * @param customParameters custom parameters or {@code null} if none
+	 * @param dataWriter writes the raw data for the request
+	 * @throws IOException if there is an error serializing the parameters
+	 */
+	public StreamingCDRequestEntity(ObjectMapper mapper, final String algorithm,
+			Map<String, String> customParameters,
+			CDRequestDataWriter dataWriter) throws IOException {
+		StringBuilder sb = new StringBuilder("{\"algorithm\":");
+		sb.append(mapper.writeValueAsString(algorithm));
+		if (customParameters != null){
+			sb.append(",\"customParameters\":");
+			sb.append(mapper.writeValueAsString(customParameters));
+		}
+		sb.append(",\"data\":\"");
+		_jsonPrefix = sb.toString().getBytes(StandardCharsets.UTF_8);
+		_dataWriter = dataWriter;
+		setContentType("application/json");
+		setChunked(true);
+	}
+
+	/**
+	 * Gets the exception raised by the {@link CDRequestDataWriter} the
+	 * last time {@link #writeTo(java.io.OutputStream)} was invoked
+	 * @return exception or {@code null} if the data writer did not fail
+	 */
+	public IOException getDataWriterException() {
+		return _dataWriterException;
+	}
+
+	/**
+	 * The {@link CDRequestDataWriter} is invoked each time this entity
+	 * is written and the caller decides when to do that, so the HTTP
+	 * client is not allowed to resend this entity on its own
+	 * @return {@code false}
+	 */
+	@Override
+	public boolean isRepeatable() {
+		return false;
+	}
+
+	/**
+	 * Length is not known until the data has been written
+	 * @return {@code -1}
+	 */
+	@Override
+	public long getContentLength() {
+		return -1;
+	}
+
+	/**
+	 * Not supported since this entity is only ever written
+	 * @return nothing
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public InputStream getContent() throws IOException, UnsupportedOperationException {
+		throw new UnsupportedOperationException("Streaming request entity does not implement getContent()");
+	}
+
+	@Override
+	public void writeTo(OutputStream outStream) throws IOException {
+		if (outStream == null){
+			throw new IllegalArgumentException("Output stream cannot be null");
+		}
+		_dataWriterException = null;
+		outStream.write(_jsonPrefix);
+		JsonStringOutputStream jsonStream = new JsonStringOutputStream(outStream);
+		try {
+			_dataWriter.writeData(jsonStream);
+		} catch(IOException io){
+			_dataWriterException = io;
+			throw io;
+		}
+		jsonStream.flush();
+		outStream.write(JSON_SUFFIX);
+		outStream.flush();
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+
+	/**
+	 * Buffered {@link java.io.OutputStream} that escapes UTF-8 bytes
+	 * written to it so they are valid within a JSON string. Closing
+	 * this stream does NOT close the wrapped stream.
+	 */
+	protected static class JsonStringOutputStream extends OutputStream {
+
+		private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+		private final OutputStream _outStream;
+		private final byte[] _buffer;
+		private int _count;
+
+		protected JsonStringOutputStream(OutputStream outStream){
+			_outStream = outStream;
+			_buffer = new byte[8192];
+			_count = 0;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (_count + 6 > _buffer.length){
+				flushBuffer();
+			}
+			b = b & 0xff;
+			if (b == '"' || b == '\\'){
+				_buffer[_count++] = '\\';
+				_buffer[_count++] = (byte)b;
+			} else if (b >= 0x20){
+				_buffer[_count++] = (byte)b;
+			} else if (b == '\n'){
+				_buffer[_count++] = '\\';
+				_buffer[_count++] = 'n';
+			} else if (b == '\t'){
+				_buffer[_count++] = '\\';
+				_buffer[_count++] = 't';
+			} else if (b == '\r'){
+				_buffer[_count++] = '\\';
+				_buffer[_count++] = 'r';
+			} else {
+				_buffer[_count++] = '\\';
+				_buffer[_count++] = 'u';
+				_buffer[_count++] = '0';
+				_buffer[_count++] = '0';
+				_buffer[_count++] = HEX[b >> 4];
+				_buffer[_count++] = HEX[b & 0xf];
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			for (int i = off; i < off + len; i++){
+				write(b[i]);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			flushBuffer();
+			_outStream.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			flushBuffer();
+		}
+
+		private void flushBuffer() throws IOException {
+			if (_count > 0){
+				_outStream.write(_buffer, 0, _count);
+				_count = 0;
+			}
+		}
+	}
+}
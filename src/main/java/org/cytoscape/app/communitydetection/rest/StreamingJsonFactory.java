@@ -0,0 +1,68 @@
+package org.cytoscape.app.communitydetection.rest;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.io.IOContext;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link JsonFactory} whose byte based parsers pass string values to
+ * {@link JsonParser#getText(java.io.Writer)} in chunks as the bytes are
+ * read. The parsers created by {@link JsonFactory} read the whole string
+ * value into memory before the first character reaches the writer, which
+ * for an edge list in a CD Service response means holding the entire
+ * result in memory and not starting on it until it has all arrived.
+ * <p>
+ * Byte input is assumed to be UTF-8 without a byte order mark, which is
+ * what the CD Service returns and what JSON requires. Parsers created from
+ * a {@link java.io.Reader} or {@link String} are the regular ones.
+ *
+ * @author churas
+ */
+public class StreamingJsonFactory extends JsonFactory {
+
+	/**
+	 * Constructor
+	 */
+	public StreamingJsonFactory(){
+		super();
+	}
+
+	/**
+	 * Constructor
+	 * @param codec codec used by parsers to read objects and trees
+	 */
+	public StreamingJsonFactory(ObjectCodec codec){
+		super(codec);
+	}
+
+	/**
+	 * Copy constructor
+	 * @param src factory to copy settings from
+	 * @param codec codec used by parsers to read objects and trees
+	 */
+	protected StreamingJsonFactory(StreamingJsonFactory src, ObjectCodec codec){
+		super(src, codec);
+	}
+
+	@Override
+	public JsonFactory copy() {
+		return new StreamingJsonFactory(this, null);
+	}
+
+	@Override
+	protected JsonParser _createParser(InputStream in, IOContext ctxt) throws IOException {
+		return new StreamingUTF8JsonParser(ctxt, _parserFeatures, in, _objectCodec,
+				_byteSymbolCanonicalizer.makeChild(_factoryFeatures),
+				ctxt.allocReadIOBuffer(), 0, 0, true);
+	}
+
+	@Override
+	protected JsonParser _createParser(byte[] data, int offset, int len, IOContext ctxt) throws IOException {
+		return new StreamingUTF8JsonParser(ctxt, _parserFeatures, null, _objectCodec,
+				_byteSymbolCanonicalizer.makeChild(_factoryFeatures),
+				data, offset, offset + len, false);
+	}
+}
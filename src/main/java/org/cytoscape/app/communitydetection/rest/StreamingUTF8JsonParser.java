@@ -0,0 +1,142 @@
+package org.cytoscape.app.communitydetection.rest;
+
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.io.IOContext;
+import com.fasterxml.jackson.core.json.UTF8StreamJsonParser;
+import com.fasterxml.jackson.core.sym.ByteQuadsCanonicalizer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+
+/**
+ * UTF-8 parser that decodes a string value straight from its input buffer
+ * into the {@link Writer} passed to {@link #getText(java.io.Writer)},
+ * refilling the buffer from the input as needed, instead of first reading
+ * the whole value. Created by {@link StreamingJsonFactory}.
+ * <p>
+ * The text of a string value streamed this way is not kept, so
+ * {@link #getText()} returns an empty string for it afterwards.
+ *
+ * @author churas
+ */
+class StreamingUTF8JsonParser extends UTF8StreamJsonParser {
+
+	/**
+	 * Number of characters passed to the writer at a time
+	 */
+	protected static final int CHUNK_SIZE = 8192;
+
+	StreamingUTF8JsonParser(IOContext ctxt, int features, InputStream in,
+			ObjectCodec codec, ByteQuadsCanonicalizer sym, byte[] inputBuffer,
+			int start, int end, boolean bufferRecyclable){
+		super(ctxt, features, in, codec, sym, inputBuffer, start, end, bufferRecyclable);
+	}
+
+	/**
+	 * If the current token is a string value that has not been read
+	 * yet, decodes it into {@code writer} in chunks of up to
+	 * {@link #CHUNK_SIZE} characters as it is read from the input,
+	 * otherwise does the same as {@link UTF8StreamJsonParser#getText(java.io.Writer)}
+	 * @param writer receives the text
+	 * @return number of characters written
+	 * @throws IOException if there is an error reading the input,
+	 *         writing to {@code writer} or the string value is invalid
+	 */
+	@Override
+	public int getText(Writer writer) throws IOException {
+		if (_currToken != JsonToken.VALUE_STRING || !_tokenIncomplete){
+			return super.getText(writer);
+		}
+		_tokenIncomplete = false;
+		_textBuffer.resetWithEmpty();
+		final char[] chunk = new char[CHUNK_SIZE];
+		int chunkLen = 0;
+		int total = 0;
+		while (true){
+			if (_inputPtr >= _inputEnd && !_loadMore()){
+				_reportInvalidEOF(": was expecting closing quote for a string value",
+						JsonToken.VALUE_STRING);
+			}
+			// leave room for a surrogate pair
+			if (chunkLen >= chunk.length - 1){
+				writer.write(chunk, 0, chunkLen);
+				total += chunkLen;
+				chunkLen = 0;
+			}
+
+			// copy plain ASCII without any other checks
+			final byte[] inputBuffer = _inputBuffer;
+			int ptr = _inputPtr;
+			final int end = Math.min(_inputEnd, ptr + (chunk.length - 1 - chunkLen));
+			while (ptr < end){
+				int c = inputBuffer[ptr];
+				if (c < 0x20 || c == '"' || c == '\\'){
+					break;
+				}
+				chunk[chunkLen++] = (char)c;
+				ptr++;
+			}
+			_inputPtr = ptr;
+			if (ptr == end){
+				continue;
+			}
+
+			int c = inputBuffer[_inputPtr++] & 0xFF;
+			if (c == '"'){
+				break;
+			}
+			if (c == '\\'){
+				chunk[chunkLen++] = _decodeEscaped();
+				continue;
+			}
+			if (c < 0x20){
+				_throwUnquotedSpace(c, "string value");
+			}
+			int numContinuationBytes = 0;
+			if ((c & 0xE0) == 0xC0){
+				c &= 0x1F;
+				numContinuationBytes = 1;
+			} else if ((c & 0xF0) == 0xE0){
+				c &= 0x0F;
+				numContinuationBytes = 2;
+			} else if ((c & 0xF8) == 0xF0){
+				c &= 0x07;
+				numContinuationBytes = 3;
+			} else {
+				_reportInvalidInitial(c);
+			}
+			for (int i = 0; i < numContinuationBytes; i++){
+				c = (c << 6) | nextContinuationByte();
+			}
+			if (numContinuationBytes == 3){
+				c -= 0x10000;
+				chunk[chunkLen++] = (char)(0xD800 | (c >> 10));
+				c = 0xDC00 | (c & 0x3FF);
+			}
+			chunk[chunkLen++] = (char)c;
+		}
+		if (chunkLen > 0){
+			writer.write(chunk, 0, chunkLen);
+			total += chunkLen;
+		}
+		return total;
+	}
+
+	/**
+	 * Reads next byte of a multi byte UTF-8 character
+	 * @return low 6 bits of the byte
+	 * @throws IOException if there is no more input or the byte is not
+	 *         a continuation byte
+	 */
+	private int nextContinuationByte() throws IOException {
+		if (_inputPtr >= _inputEnd && !_loadMore()){
+			_reportInvalidEOF(" in a string value", JsonToken.VALUE_STRING);
+		}
+		int d = _inputBuffer[_inputPtr++];
+		if ((d & 0xC0) != 0x80){
+			_reportInvalidOther(d & 0xFF);
+		}
+		return d & 0x3F;
+	}
+}
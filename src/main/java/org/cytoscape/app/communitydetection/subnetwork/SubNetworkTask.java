@@ -1,12 +1,12 @@
 package org.cytoscape.app.communitydetection.subnetwork;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import org.cytoscape.app.communitydetection.util.AppUtils;
+import org.cytoscape.app.communitydetection.util.MemberListLookup;
 import org.cytoscape.model.CyColumn;
 import org.cytoscape.model.CyEdge;
 import org.cytoscape.model.CyNetwork;
@@ -144,12 +144,12 @@ public class SubNetworkTask extends AbstractTask {
 
 	private Set<CyNode> getMemberList(CyNetwork originalNetwork, CyNode selectedNode) throws Exception {
 		Set<CyNode> leafNodes = new HashSet<CyNode>();
-		List<String> memberList = Arrays.asList(hierarchyNetwork.getRow(selectedNode)
-				.get(AppUtils.COLUMN_CD_MEMBER_LIST, String.class).split(AppUtils.CD_MEMBER_LIST_DELIMITER));
-		if (memberList == null) {
+		List<String> memberNames = MemberListLookup.getInstance().getMemberList(hierarchyNetwork, selectedNode);
+		if (memberNames == null) {
 			// TODO create the whole list again
 			throw new Exception(AppUtils.COLUMN_CD_MEMBER_LIST + " does not exist!");
 		}
+		Set<String> memberList = new HashSet<>(memberNames);
 		for (CyNode node : originalNetwork.getNodeList()) {
 			if (memberList.contains(originalNetwork.getRow(node).get(CyNetwork.NAME, String.class))) {
 				leafNodes.add(node);
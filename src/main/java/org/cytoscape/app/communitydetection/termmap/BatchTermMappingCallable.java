@@ -0,0 +1,276 @@
+package org.cytoscape.app.communitydetection.termmap;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.cytoscape.app.communitydetection.PropertiesHelper;
+import org.cytoscape.app.communitydetection.rest.AsyncCDRestClient;
+import org.cytoscape.app.communitydetection.rest.CDRequestDataWriter;
+import org.cytoscape.app.communitydetection.rest.CancellationToken;
+import org.cytoscape.app.communitydetection.util.AppUtils;
+import org.cytoscape.app.communitydetection.util.ColumnBatchWriter;
+import org.cytoscape.app.communitydetection.util.MemberListLookup;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs term mapping on many nodes with a single request to CD Service.
+ * Only works with algorithms whose input format is
+ * {@link AppUtils#TM_ALGORITHM_BATCH_INPUT_TYPE}.
+ * <p>
+ * The data sent is a JSON object with the SUID of each node as key and
+ * the comma delimited member list of that node as value:
+ * <pre>
+ * {"123": "GENE1,GENE2", "124": "GENE3,GENE4,GENE5"}
+ * </pre>
+ * The result is expected to be a JSON object keyed the same way where
+ * each value is what a {@link AppUtils#TM_ALGORITHM_INPUT_TYPE} algorithm
+ * would return for that node. Nodes missing from the result are updated
+ * as having no term.
+ * <p>
+ * Nodes whose result is in {@link TermMappingResultCache} are updated
+ * from the cache and left out of the request. Duplicate nodes passed to
+ * the constructor are never sent and get the result of the node they
+ * duplicate.
+ *
+ * @author churas
+ */
+public class BatchTermMappingCallable {
+
+	private final static Logger LOGGER = LoggerFactory.getLogger(BatchTermMappingCallable.class);
+	private static final JsonFactory JSON_FACTORY = new JsonFactory()
+			.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+	private final CommunityDetectionAlgorithm _algorithm;
+	private final Map<String, String> _customParameters;
+	private final CyNetwork _network;
+	private final List<CyNode> _nodes;
+	private final Map<CyNode, List<CyNode>> _duplicateNodes;
+	private final CancellationToken _cancelToken;
+	private TermMappingResultApplier _resultApplier;
+
+	/**
+	 * Constructor
+	 * @param network network containing nodes
+	 * @param algorithm term mapping algorithm to run, must accept
+	 *        {@link AppUtils#TM_ALGORITHM_BATCH_INPUT_TYPE}
+	 * @param customParameters custom parameters for algorithm
+	 * @param nodes nodes to run term mapping on
+	 * @param cancelToken canceling this stops the term mapping
+	 */
+	public BatchTermMappingCallable(CyNetwork network, CommunityDetectionAlgorithm algorithm,
+		Map<String,String> customParameters, List<CyNode> nodes, CancellationToken cancelToken) {
+		this(network, algorithm, customParameters, nodes, Collections.emptyMap(), cancelToken);
+	}
+
+	/**
+	 * Constructor
+	 * @param network network containing nodes
+	 * @param algorithm term mapping algorithm to run, must accept
+	 *        {@link AppUtils#TM_ALGORITHM_BATCH_INPUT_TYPE}
+	 * @param customParameters custom parameters for algorithm
+	 * @param nodes nodes to run term mapping on
+	 * @param duplicateNodes map of node in {@code nodes} to nodes with the
+	 *        same members that are updated with its result, nodes
+	 *        without duplicates can be left out
+	 * @param cancelToken canceling this stops the term mapping
+	 */
+	public BatchTermMappingCallable(CyNetwork network, CommunityDetectionAlgorithm algorithm,
+		Map<String,String> customParameters, List<CyNode> nodes,
+		Map<CyNode, List<CyNode>> duplicateNodes, CancellationToken cancelToken) {
+		this._algorithm = algorithm;
+		this._network = network;
+		this._customParameters = customParameters;
+		this._nodes = nodes;
+		this._duplicateNodes = duplicateNodes;
+		this._cancelToken = cancelToken;
+	}
+
+	/**
+	 * Sets applier that writes the results to the node table instead
+	 * of the thread that receives them
+	 * @param resultApplier started applier or {@code null} to write
+	 *        results directly
+	 */
+	public void setResultApplier(TermMappingResultApplier resultApplier){
+		_resultApplier = resultApplier;
+	}
+
+	/**
+	 * Tells whether {@code algorithm} accepts many member lists in a
+	 * single request
+	 * @param algorithm
+	 * @return {@code true} if input format of {@code algorithm} is
+	 *         {@link AppUtils#TM_ALGORITHM_BATCH_INPUT_TYPE}
+	 */
+	public static boolean isBatchAlgorithm(CommunityDetectionAlgorithm algorithm){
+		return algorithm != null &&
+				AppUtils.TM_ALGORITHM_BATCH_INPUT_TYPE.equals(algorithm.getInputDataFormat());
+	}
+
+	/**
+	 * Submits term mapping for all nodes passed in via the constructor
+	 * via {@code asyncClient} and updates the nodes once the result
+	 * comes back. Nodes with a cached result are not submitted and if
+	 * every node has one no request is made
+	 * @param asyncClient client to run the term mapping with
+	 * @return future that completes with {@code true} once the nodes have
+	 *         been updated or {@code false} if the task was canceled
+	 */
+	public CompletableFuture<Boolean> callAsync(AsyncCDRestClient asyncClient) {
+		if (_cancelToken.isCanceled()) {
+			return CompletableFuture.completedFuture(false);
+		}
+		final Map<CyNode, String> rawMemberLists = getRawMemberLists();
+		final TermMappingResultCache cache = getResultCache();
+		final Map<CyNode, String> cacheKeys = new LinkedHashMap<>();
+		final Map<CyNode, JsonNode> cachedResults = new LinkedHashMap<>();
+		final Map<CyNode, String> uncachedMemberLists = new LinkedHashMap<>();
+		for (Map.Entry<CyNode, String> entry : rawMemberLists.entrySet()){
+			String cacheKey = cache.getKey(_algorithm, _customParameters, entry.getValue());
+			JsonNode cachedResult = cache.get(cacheKey);
+			if (cachedResult != null){
+				cachedResults.put(entry.getKey(), cachedResult);
+			} else {
+				cacheKeys.put(entry.getKey(), cacheKey);
+				uncachedMemberLists.put(entry.getKey(), entry.getValue());
+			}
+		}
+		if (uncachedMemberLists.isEmpty()){
+			updateNodesWithResults(cachedResults, rawMemberLists);
+			return CompletableFuture.completedFuture(true);
+		}
+		return asyncClient.submitAndAwait(_algorithm.getName(), _customParameters,
+				getRequestDataWriter(uncachedMemberLists),
+				PropertiesHelper.getInstance().getFunctionalEnrichmentTimeoutMillis(), null,
+				_cancelToken)
+				.thenApply((cdResult) -> {
+					if (cdResult == null){
+						return false;
+					}
+					Map<CyNode, JsonNode> nodeResults = getNodeResults(cdResult,
+							uncachedMemberLists.keySet());
+					for (Map.Entry<CyNode, JsonNode> entry : nodeResults.entrySet()){
+						cache.put(cacheKeys.get(entry.getKey()), entry.getValue());
+					}
+					nodeResults.putAll(cachedResults);
+					updateNodesWithResults(nodeResults, rawMemberLists);
+					return true;
+				});
+	}
+
+	/**
+	 * Gets cache holding results of earlier term mappings
+	 * @return 
+	 */
+	protected TermMappingResultCache getResultCache(){
+		return TermMappingResultCache.getInstance();
+	}
+
+	/**
+	 * Gets the member list of every node passed in via the constructor
+	 * @return map of node to its members as stored in network, with
+	 *         iteration in the order nodes were passed in
+	 */
+	protected Map<CyNode, String> getRawMemberLists(){
+		Map<CyNode, String> rawMemberLists = new LinkedHashMap<>();
+		MemberListLookup lookup = MemberListLookup.getInstance();
+		for (CyNode node : _nodes){
+			rawMemberLists.put(node, lookup.getMemberListAsString(_network, node));
+		}
+		return rawMemberLists;
+	}
+
+	/**
+	 * Gets writer that writes the JSON object of SUID to comma delimited
+	 * member list described in the class documentation
+	 * @param rawMemberLists map of node to its members as stored in network
+	 * @return writer
+	 */
+	protected CDRequestDataWriter getRequestDataWriter(final Map<CyNode, String> rawMemberLists){
+		return (out) -> {
+			try (JsonGenerator jsonGen = JSON_FACTORY.createGenerator(out)){
+				jsonGen.writeStartObject();
+				for (Map.Entry<CyNode, String> entry : rawMemberLists.entrySet()){
+					String rawMemberList = entry.getValue();
+					jsonGen.writeStringField(Long.toString(entry.getKey().getSUID()),
+							rawMemberList == null ? "" : rawMemberList.replaceAll(AppUtils.CD_MEMBER_LIST_DELIMITER, ","));
+				}
+				jsonGen.writeEndObject();
+			}
+		};
+	}
+
+	/**
+	 * Gets the entry of each node in {@code nodes} from the result of
+	 * {@code cdResult}
+	 * @param cdResult result of batch term mapping
+	 * @param nodes nodes to get entries for
+	 * @return map of node to its entry, nodes without an entry are left out
+	 */
+	protected Map<CyNode, JsonNode> getNodeResults(CommunityDetectionResult cdResult,
+			Collection<CyNode> nodes){
+		Map<CyNode, JsonNode> nodeResults = new LinkedHashMap<>();
+		JsonNode batchResult = cdResult == null ? null : cdResult.getResult();
+		if (batchResult == null){
+			return nodeResults;
+		}
+		if (!batchResult.isObject()){
+			LOGGER.warn("Expected JSON object as result of " + _algorithm.getName()
+					+ " but got: " + batchResult.getNodeType());
+			return nodeResults;
+		}
+		for (CyNode node : nodes){
+			JsonNode termNode = batchResult.get(Long.toString(node.getSUID()));
+			if (termNode != null && !termNode.isNull()){
+				nodeResults.put(node, termNode);
+			}
+		}
+		return nodeResults;
+	}
+
+	/**
+	 * Updates every node in {@code rawMemberLists}, and its duplicates,
+	 * with its entry in {@code nodeResults}, nodes without an entry are
+	 * updated as having no term. The values of all the nodes are written to the node table
+	 * in one batch, or queued in the {@link TermMappingResultApplier} if one is set
+	 * @param nodeResults map of node to its term mapping result
+	 * @param rawMemberLists map of node to its members as stored in network
+	 */
+	protected void updateNodesWithResults(final Map<CyNode, JsonNode> nodeResults,
+			final Map<CyNode, String> rawMemberLists){
+		List<TermMappingResultApplier.NodeResult> results = new ArrayList<>();
+		for (Map.Entry<CyNode, String> entry : rawMemberLists.entrySet()){
+			CommunityDetectionResult nodeResult = null;
+			JsonNode termNode = nodeResults.get(entry.getKey());
+			if (termNode != null){
+				nodeResult = new CommunityDetectionResult();
+				nodeResult.setResult(termNode);
+			}
+			TermMappingCallable nodeUpdater = new TermMappingCallable(_network, _algorithm,
+					_customParameters, entry.getKey(),
+					_duplicateNodes.getOrDefault(entry.getKey(), Collections.emptyList()),
+					_cancelToken);
+			results.addAll(nodeUpdater.getNodeResults(nodeResult, entry.getValue()));
+		}
+		if (_resultApplier != null){
+			_resultApplier.add(results);
+			return;
+		}
+		ColumnBatchWriter writer = new ColumnBatchWriter(_network.getDefaultNodeTable(), null);
+		for (TermMappingResultApplier.NodeResult result : results){
+			result.writeTo(writer);
+		}
+		writer.flush();
+	}
+}
@@ -7,6 +7,7 @@ import org.cytoscape.app.communitydetection.hierarchy.LauncherDialog;
 
 import org.cytoscape.app.communitydetection.util.AppUtils;
 import org.cytoscape.application.swing.CySwingApplication;
+import org.cytoscape.event.CyEventHelper;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.task.NetworkTaskFactory;
 import org.cytoscape.work.TaskIterator;
@@ -25,11 +26,13 @@ public class NetworkTermMappingTaskFactoryImpl implements NetworkTaskFactory {
 
 	private LauncherDialog _dialog;
 	private CySwingApplication _swingApplication;
+	private CyEventHelper _eventHelper;
 
 	public NetworkTermMappingTaskFactoryImpl(CySwingApplication swingApplication,
-		LauncherDialog dialog) {
+		LauncherDialog dialog, CyEventHelper eventHelper) {
 		this._dialog = dialog;
 		this._swingApplication = swingApplication;
+		this._eventHelper = eventHelper;
 	}
 
 	@Override
@@ -77,7 +80,7 @@ public class NetworkTermMappingTaskFactoryImpl implements NetworkTaskFactory {
 				    customParameters.toString()));
 
 		    return new TaskIterator(new TermMappingTask(network, cda, customParameters,
-			    _dialog.runOnSelectedNodes()));
+			    _dialog.runOnSelectedNodes(), _eventHelper));
 		} else {
 		   LOGGER.error("Couldnt get algorithm from dialog...");
 		}
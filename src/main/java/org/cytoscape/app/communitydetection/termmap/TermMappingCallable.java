@@ -2,9 +2,14 @@ package org.cytoscape.app.communitydetection.termmap;
 
 import java.util.Iterator;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
+import org.cytoscape.app.communitydetection.rest.AsyncCDRestClient;
 import org.cytoscape.app.communitydetection.rest.CDRestClient;
+import org.cytoscape.app.communitydetection.rest.CancellationToken;
 import org.cytoscape.app.communitydetection.util.AppUtils;
+import org.cytoscape.app.communitydetection.util.ColumnBatchWriter;
+import org.cytoscape.app.communitydetection.util.MemberListLookup;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNode;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
@@ -12,7 +17,11 @@ import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
 import com.fasterxml.jackson.databind.JsonNode;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import org.cytoscape.app.communitydetection.PropertiesHelper;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
@@ -23,17 +32,86 @@ public class TermMappingCallable implements Callable<Boolean> {
 	private final Map<String, String> _customParameters;
 	private final CyNetwork _network;
 	private final CyNode _node;
+	private final List<CyNode> _duplicateNodes;
+	private final CancellationToken _cancelToken;
+	private TermMappingResultApplier _resultApplier;
 
 	public TermMappingCallable(CyNetwork network, CommunityDetectionAlgorithm algorithm,
 		Map<String,String> customParameters, CyNode node) {
+		this(network, algorithm, customParameters, node, new CancellationToken());
+	}
+	
+	/**
+	 * Constructor
+	 * @param network network containing node
+	 * @param algorithm term mapping algorithm to run
+	 * @param customParameters custom parameters for algorithm
+	 * @param node node to run term mapping on
+	 * @param cancelToken canceling this stops the term mapping
+	 */
+	public TermMappingCallable(CyNetwork network, CommunityDetectionAlgorithm algorithm,
+		Map<String,String> customParameters, CyNode node, CancellationToken cancelToken) {
+		this(network, algorithm, customParameters, node, Collections.emptyList(), cancelToken);
+	}
+	
+	/**
+	 * Constructor
+	 * @param network network containing node
+	 * @param algorithm term mapping algorithm to run
+	 * @param customParameters custom parameters for algorithm
+	 * @param node node to run term mapping on
+	 * @param duplicateNodes nodes with the same members as {@code node},
+	 *        as told by {@link MemberListLookup#getCanonicalMemberList(java.lang.String)},
+	 *        that are updated with the result of {@code node} instead of
+	 *        running term mapping on them
+	 * @param cancelToken canceling this stops the term mapping
+	 */
+	public TermMappingCallable(CyNetwork network, CommunityDetectionAlgorithm algorithm,
+		Map<String,String> customParameters, CyNode node, List<CyNode> duplicateNodes,
+		CancellationToken cancelToken) {
 		this._algorithm = algorithm;
 		this._network = network;
 		this._customParameters = customParameters;
 		this._node = node;
+		this._duplicateNodes = duplicateNodes;
+		this._cancelToken = cancelToken;
 	}
 
+	/**
+	 * Sets applier that writes the results to the node table instead
+	 * of the thread that receives them
+	 * @param resultApplier started applier or {@code null} to write
+	 *        results directly
+	 */
+	public void setResultApplier(TermMappingResultApplier resultApplier){
+		_resultApplier = resultApplier;
+	}
+	
 	protected String getRawMemberList(){
-		return _network.getRow(_node).get(AppUtils.COLUMN_CD_MEMBER_LIST, String.class);
+		return MemberListLookup.getInstance().getMemberListAsString(_network, _node);
+	}
+	
+	/**
+	 * Gets cache holding results of earlier term mappings
+	 * @return 
+	 */
+	protected TermMappingResultCache getResultCache(){
+		return TermMappingResultCache.getInstance();
+	}
+	
+	/**
+	 * Gets result stored under {@code cacheKey} in {@link #getResultCache()}
+	 * @param cacheKey key of result in {@link #getResultCache()}
+	 * @return result or {@code null} if not cached
+	 */
+	protected CommunityDetectionResult getCachedResult(final String cacheKey){
+		JsonNode result = getResultCache().get(cacheKey);
+		if (result == null){
+			return null;
+		}
+		CommunityDetectionResult cdResult = new CommunityDetectionResult();
+		cdResult.setResult(result);
+		return cdResult;
 	}
 	
 	protected String getCommaDelimitedMemberList(final String rawMemberList){
@@ -86,18 +164,124 @@ public class TermMappingCallable implements Callable<Boolean> {
 	
 	@Override
 	public Boolean call() throws Exception {
-		if (CDRestClient.getInstance().getIsTaskCanceled()) {
+		if (_cancelToken.isCanceled()) {
 			return false;
 		}
 		String rawMemberList = getRawMemberList();
+		String cacheKey = getResultCache().getKey(_algorithm, _customParameters, rawMemberList);
+		CommunityDetectionResult cachedResult = getCachedResult(cacheKey);
+		if (cachedResult != null){
+			updateNodeWithResult(cachedResult, rawMemberList);
+			return true;
+		}
 		String memberList = getCommaDelimitedMemberList(rawMemberList);
 		String taskId = CDRestClient.getInstance().postCDData(_algorithm.getName(),
-			_customParameters, memberList);
+			_customParameters, memberList, _cancelToken);
 		if (taskId == null) {
 			return false;
 		}
 		CommunityDetectionResult cdResult = CDRestClient.getInstance().getCDResult(taskId,
-				PropertiesHelper.getInstance().getFunctionalEnrichmentTimeoutMillis());
+				null, 0.0f, 0.0f,
+				PropertiesHelper.getInstance().getFunctionalEnrichmentTimeoutMillis(),
+				_cancelToken);
+		if (_cancelToken.isCanceled()) {
+			return false;
+		}
+		if (cdResult != null){
+			getResultCache().put(cacheKey, cdResult.getResult());
+		}
+		updateNodeWithResult(cdResult, rawMemberList);
+		return true;
+	}
+	
+	/**
+	 * Same as {@link #call()} except the term mapping is submitted and
+	 * waited on via {@code asyncClient} so no thread is held while
+	 * CD Service runs the task. If the result is cached the node is
+	 * updated without a request to CD Service
+	 * @param asyncClient client to run the term mapping with
+	 * @return future that completes with {@code true} once the node has
+	 *         been updated or {@code false} if the task was canceled
+	 */
+	public CompletableFuture<Boolean> callAsync(AsyncCDRestClient asyncClient) {
+		if (_cancelToken.isCanceled()) {
+			return CompletableFuture.completedFuture(false);
+		}
+		final String rawMemberList = getRawMemberList();
+		final String cacheKey = getResultCache().getKey(_algorithm, _customParameters, rawMemberList);
+		CommunityDetectionResult cachedResult = getCachedResult(cacheKey);
+		if (cachedResult != null){
+			updateNodeWithResult(cachedResult, rawMemberList);
+			return CompletableFuture.completedFuture(true);
+		}
+		return asyncClient.submitAndAwait(_algorithm.getName(), _customParameters,
+				getCommaDelimitedMemberList(rawMemberList),
+				PropertiesHelper.getInstance().getFunctionalEnrichmentTimeoutMillis(), null,
+				_cancelToken)
+				.thenApply((cdResult) -> {
+					if (cdResult == null){
+						return false;
+					}
+					getResultCache().put(cacheKey, cdResult.getResult());
+					updateNodeWithResult(cdResult, rawMemberList);
+					return true;
+				});
+	}
+	
+	/**
+	 * Updates the node and duplicate nodes passed in via the constructor
+	 * with the term mapping in {@code cdResult}. If a
+	 * {@link TermMappingResultApplier} is set the values are queued
+	 * in it and written later
+	 * @param cdResult result of term mapping, can be {@code null}
+	 * @param rawMemberList members of node as stored in network
+	 */
+	protected void updateNodeWithResult(CommunityDetectionResult cdResult, final String rawMemberList){
+		if (_resultApplier != null){
+			_resultApplier.add(getNodeResults(cdResult, rawMemberList));
+			return;
+		}
+		ColumnBatchWriter writer = new ColumnBatchWriter(_network.getDefaultNodeTable(), null);
+		updateNodeWithResult(cdResult, rawMemberList, writer);
+		writer.flush();
+	}
+	
+	/**
+	 * Queues the term mapping in {@code cdResult} for the node and
+	 * duplicate nodes passed in via the constructor in {@code writer},
+	 * the caller must invoke {@link ColumnBatchWriter#flush()}
+	 * @param cdResult result of term mapping, can be {@code null}
+	 * @param rawMemberList members of node as stored in network
+	 * @param writer writer for node table of network passed in via the constructor
+	 */
+	protected void updateNodeWithResult(CommunityDetectionResult cdResult, final String rawMemberList,
+			ColumnBatchWriter writer){
+		for (TermMappingResultApplier.NodeResult nodeResult : getNodeResults(cdResult, rawMemberList)){
+			nodeResult.writeTo(writer);
+		}
+	}
+	
+	/**
+	 * Gets the column values for the node and duplicate nodes passed in
+	 * via the constructor from the term mapping in {@code cdResult}
+	 * @param cdResult result of term mapping, can be {@code null}
+	 * @param rawMemberList members of node as stored in network
+	 * @return values of node followed by values of each duplicate node
+	 */
+	protected List<TermMappingResultApplier.NodeResult> getNodeResults(CommunityDetectionResult cdResult,
+			final String rawMemberList){
+		List<TermMappingResultApplier.NodeResult> nodeResults = new ArrayList<>(1 + _duplicateNodes.size());
+		nodeResults.add(getNodeResult(_node, cdResult, rawMemberList));
+		MemberListLookup lookup = MemberListLookup.getInstance();
+		for (CyNode duplicateNode : _duplicateNodes){
+			nodeResults.add(getNodeResult(duplicateNode, cdResult,
+					lookup.getMemberListAsString(_network, duplicateNode)));
+		}
+		return nodeResults;
+	}
+	
+	private TermMappingResultApplier.NodeResult getNodeResult(CyNode node, CommunityDetectionResult cdResult,
+			final String rawMemberList){
 		String name = AppUtils.TYPE_NONE_VALUE;
 		StringBuilder annotatedList = new StringBuilder();
 		int counter = 0;
@@ -135,34 +319,35 @@ public class TermMappingCallable implements Callable<Boolean> {
 				}
 			}
 		}
-		_network.getRow(_node).set(AppUtils.COLUMN_CD_ANNOTATED_SOURCE, sourcedb);
-		_network.getRow(_node).set(AppUtils.COLUMN_CD_ANNOTATED_SOURCE_TERM, sourceterm);
-		_network.getRow(_node).set(AppUtils.COLUMN_CD_COMMUNITY_NAME, name);
-		_network.getRow(_node).set(AppUtils.COLUMN_CD_ANNOTATED_ALGORITHM, getAnnotatedAlgorithmString());
-		_network.getRow(_node).set(AppUtils.COLUMN_CD_NONANNOTATED_MEMBERS, 
+		Map<String, Object> values = new LinkedHashMap<>();
+		values.put(AppUtils.COLUMN_CD_ANNOTATED_SOURCE, sourcedb);
+		values.put(AppUtils.COLUMN_CD_ANNOTATED_SOURCE_TERM, sourceterm);
+		values.put(AppUtils.COLUMN_CD_COMMUNITY_NAME, name);
+		values.put(AppUtils.COLUMN_CD_ANNOTATED_ALGORITHM, getAnnotatedAlgorithmString());
+		values.put(AppUtils.COLUMN_CD_NONANNOTATED_MEMBERS, 
 				getNonIntersectingMemberList(intersectedTermsHash, rawMemberList));
 		
-		_network.getRow(_node).set(AppUtils.COLUMN_CD_ANNOTATED_MEMBERS, annotatedList.toString());
-		_network.getRow(_node).set(AppUtils.COLUMN_CD_ANNOTATED_MEMBERS_SIZE, counter);
-		_network.getRow(_node).set(AppUtils.COLUMN_CD_ANNOTATED_PVALUE, pvalue);
+		values.put(AppUtils.COLUMN_CD_ANNOTATED_MEMBERS, annotatedList.toString());
+		values.put(AppUtils.COLUMN_CD_ANNOTATED_MEMBERS_SIZE, counter);
+		values.put(AppUtils.COLUMN_CD_ANNOTATED_PVALUE, pvalue);
 		double overlap = 0.0;
-		double inputGeneSize = _network.getRow(_node).get(AppUtils.COLUMN_CD_MEMBER_LIST_SIZE,
+		double inputGeneSize = _network.getRow(node).get(AppUtils.COLUMN_CD_MEMBER_LIST_SIZE,
 			Integer.class);
 		
 		if (inputGeneSize > 0){
 		    overlap = (double)counter/inputGeneSize;
 		}
 		if (jaccardSet == true){
-			_network.getRow(_node).set(AppUtils.COLUMN_CD_ANNOTATED_OVERLAP, jaccard);
+			values.put(AppUtils.COLUMN_CD_ANNOTATED_OVERLAP, jaccard);
 		} else {
 			BigDecimal bd = new BigDecimal(Double.toString(overlap));
 			BigDecimal roundbd = bd.setScale(3, RoundingMode.HALF_UP);
-			_network.getRow(_node).set(AppUtils.COLUMN_CD_ANNOTATED_OVERLAP, roundbd.doubleValue());
+			values.put(AppUtils.COLUMN_CD_ANNOTATED_OVERLAP, roundbd.doubleValue());
 		}
 		if (name != AppUtils.TYPE_NONE_VALUE) {
-			_network.getRow(_node).set(AppUtils.COLUMN_CD_LABELED, true);
+			values.put(AppUtils.COLUMN_CD_LABELED, true);
 		}
-		return true;
+		return new TermMappingResultApplier.NodeResult(node, values);
 	}
 
 }
@@ -0,0 +1,214 @@
+package org.cytoscape.app.communitydetection.termmap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.cytoscape.app.communitydetection.util.ColumnBatchWriter;
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the results of term mapping to the node table from a single
+ * thread. The threads that receive results from CD Service only add
+ * {@link NodeResult} objects via {@link #add(java.util.Collection)}, the
+ * applier thread takes them off the queue once there are as many as
+ * the batch size or the flush interval has passed since the first one
+ * was queued, and writes them with one {@link ColumnBatchWriter} so
+ * listeners see a single update per batch.
+ * <p>
+ * {@link #start()} starts the applier thread and {@link #close()} waits
+ * for every queued result to be written before stopping it.
+ *
+ * @author churas
+ */
+public class TermMappingResultApplier implements AutoCloseable {
+
+	private final static Logger LOGGER = LoggerFactory.getLogger(TermMappingResultApplier.class);
+
+	/**
+	 * Column values of one node computed from a term mapping result.
+	 * This object is immutable
+	 */
+	public static final class NodeResult {
+		private final CyNode _node;
+		private final Map<String, Object> _values;
+
+		/**
+		 * Constructor
+		 * @param node node to update
+		 * @param values map of column name to value, copied
+		 */
+		public NodeResult(CyNode node, Map<String, Object> values){
+			_node = node;
+			_values = Collections.unmodifiableMap(new LinkedHashMap<>(values));
+		}
+
+		/**
+		 * Gets node to update
+		 * @return
+		 */
+		public CyNode getNode(){
+			return _node;
+		}
+
+		/**
+		 * Gets values to write
+		 * @return unmodifiable map of column name to value
+		 */
+		public Map<String, Object> getValues(){
+			return _values;
+		}
+
+		/**
+		 * Queues values of this object in {@code writer}
+		 * @param writer writer for node table
+		 */
+		public void writeTo(ColumnBatchWriter writer){
+			for (Map.Entry<String, Object> entry : _values.entrySet()){
+				writer.set(_node, entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private static final NodeResult END_OF_RESULTS = new NodeResult(null, Collections.emptyMap());
+
+	private final CyTable _table;
+	private final CyEventHelper _eventHelper;
+	private final int _batchSize;
+	private final long _flushIntervalMillis;
+	private final BlockingQueue<NodeResult> _queue;
+	private Thread _applierThread;
+	private volatile int _batchCount;
+	private volatile RuntimeException _error;
+
+	/**
+	 * Constructor
+	 * @param table node table to write to
+	 * @param eventHelper used to fire one event per batch, can be {@code null}
+	 * @param batchSize maximum number of results written in one batch, a
+	 *        value less then {@code 1} means there is no limit
+	 * @param flushIntervalMillis maximum time in milliseconds a result waits
+	 *        in the queue for more results before being written
+	 */
+	public TermMappingResultApplier(CyTable table, CyEventHelper eventHelper,
+			int batchSize, long flushIntervalMillis){
+		_table = table;
+		_eventHelper = eventHelper;
+		_batchSize = batchSize < 1 ? Integer.MAX_VALUE : batchSize;
+		_flushIntervalMillis = Math.max(0L, flushIntervalMillis);
+		_queue = new LinkedBlockingQueue<>();
+		_batchCount = 0;
+	}
+
+	/**
+	 * Starts the applier thread
+	 * @throws IllegalStateException if already started
+	 */
+	public synchronized void start(){
+		if (_applierThread != null){
+			throw new IllegalStateException("Applier already started");
+		}
+		_applierThread = new Thread(this::applyResults, "TermMapping-applier");
+		_applierThread.setDaemon(true);
+		_applierThread.start();
+	}
+
+	/**
+	 * Queues {@code results} to be written, can be invoked from any thread
+	 * @param results results to write
+	 */
+	public void add(Collection<NodeResult> results){
+		_queue.addAll(results);
+	}
+
+	/**
+	 * Gets number of batches written so far
+	 * @return
+	 */
+	public int getBatchCount(){
+		return _batchCount;
+	}
+
+	/**
+	 * Writes every queued result and stops the applier thread. Does
+	 * nothing if {@link #start()} was not invoked
+	 * @throws RuntimeException the first error hit writing results, if any
+	 */
+	@Override
+	public void close(){
+		Thread applierThread;
+		synchronized (this){
+			applierThread = _applierThread;
+		}
+		if (applierThread == null){
+			return;
+		}
+		_queue.add(END_OF_RESULTS);
+		try {
+			applierThread.join();
+		} catch(InterruptedException ie){
+			applierThread.interrupt();
+			Thread.currentThread().interrupt();
+		}
+		if (_error != null){
+			throw _error;
+		}
+	}
+
+	private void applyResults(){
+		ColumnBatchWriter writer = new ColumnBatchWriter(_table, _eventHelper);
+		List<NodeResult> batch = new ArrayList<>();
+		boolean done = false;
+		try {
+			while (!done){
+				NodeResult result = _queue.take();
+				long deadline = System.currentTimeMillis() + _flushIntervalMillis;
+				while (result != END_OF_RESULTS){
+					batch.add(result);
+					long waitMillis = deadline - System.currentTimeMillis();
+					if (batch.size() >= _batchSize || waitMillis <= 0){
+						break;
+					}
+					result = _queue.poll(waitMillis, TimeUnit.MILLISECONDS);
+					if (result == null){
+						break;
+					}
+				}
+				done = result == END_OF_RESULTS;
+				writeBatch(writer, batch);
+			}
+		} catch(InterruptedException ie){
+			LOGGER.warn("Interrupted with " + (batch.size() + _queue.size())
+					+ " term mapping results not written");
+		}
+	}
+
+	private void writeBatch(ColumnBatchWriter writer, List<NodeResult> batch){
+		if (batch.isEmpty()){
+			return;
+		}
+		try {
+			for (NodeResult result : batch){
+				result.writeTo(writer);
+			}
+			writer.flush();
+			_batchCount++;
+		} catch(RuntimeException ex){
+			LOGGER.error("Unable to write " + batch.size() + " term mapping results", ex);
+			if (_error == null){
+				_error = ex;
+			}
+		} finally {
+			batch.clear();
+		}
+	}
+}
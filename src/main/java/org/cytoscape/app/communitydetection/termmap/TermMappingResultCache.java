@@ -0,0 +1,243 @@
+package org.cytoscape.app.communitydetection.termmap;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.cytoscape.app.communitydetection.PropertiesHelper;
+import org.cytoscape.app.communitydetection.util.AppUtils;
+import org.cytoscape.app.communitydetection.util.FileCache;
+import org.cytoscape.app.communitydetection.util.MemberListLookup;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the results of term mapping so running the same term mapping
+ * again on the same members does not need a request to CD Service.
+ * <p>
+ * Results are keyed by a SHA-256 hash of the name and docker image of
+ * the algorithm, its custom parameters sorted by name and its members
+ * sorted with duplicates removed, so the order of members does not
+ * matter. The most recently used results are kept in memory and,
+ * if a directory is set via {@link #setCacheDirectory(java.io.File)},
+ * also written to that directory as one {@code <key>.json} file per
+ * result, via {@link FileCache}, so they are kept across restarts of
+ * Cytoscape. Results older than the time to live are ignored and
+ * removed.
+ * <p>
+ * This object is thread safe
+ *
+ * @author churas
+ */
+public class TermMappingResultCache {
+
+	private final static Logger LOGGER = LoggerFactory.getLogger(TermMappingResultCache.class);
+
+	/**
+	 * Suffix of files holding results in cache directory
+	 */
+	public static final String CACHE_FILE_SUFFIX = ".json";
+
+	private final ObjectMapper _mapper = new ObjectMapper()
+			.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+	private final int _memorySize;
+	private final int _diskSize;
+	private final long _ttlMillis;
+	private final Map<String, CacheEntry> _cache;
+	private FileCache _fileCache;
+
+	private static class SingletonHelper {
+		private static final TermMappingResultCache INSTANCE = new TermMappingResultCache(
+				PropertiesHelper.getInstance().getFunctionalEnrichmentCacheSize(),
+				PropertiesHelper.getInstance().getFunctionalEnrichmentCacheDiskSize(),
+				PropertiesHelper.getInstance().getFunctionalEnrichmentCacheTTLMillis());
+	}
+
+	/**
+	 * Gets instance of this object shared by the tasks of this app, its
+	 * limits are set from {@link PropertiesHelper} the first time this
+	 * is invoked
+	 * @return
+	 */
+	public static TermMappingResultCache getInstance(){
+		return SingletonHelper.INSTANCE;
+	}
+
+	private static class CacheEntry {
+		private final JsonNode _result;
+		private final long _createTime;
+
+		CacheEntry(JsonNode result, long createTime){
+			_result = result;
+			_createTime = createTime;
+		}
+	}
+
+	/**
+	 * Constructor
+	 * @param memorySize maximum number of results to keep in memory, a
+	 *        value less then {@code 1} disables the memory cache
+	 * @param diskSize maximum number of results to keep in the cache
+	 *        directory, a value less then {@code 1} disables the disk cache
+	 * @param ttlMillis how long in milliseconds a result can be used, a
+	 *        value less then {@code 1} means results never expire
+	 */
+	public TermMappingResultCache(int memorySize, int diskSize, long ttlMillis){
+		_memorySize = memorySize;
+		_diskSize = diskSize;
+		_ttlMillis = ttlMillis;
+		_cache = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true){
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest){
+				return size() > _memorySize;
+			}
+		};
+	}
+
+	/**
+	 * Sets directory where results are written. Nothing is written if
+	 * this is not set or disk size passed to the constructor is less
+	 * then {@code 1}
+	 * @param cacheDir directory, created if it does not exist. Can be
+	 *        {@code null} to stop using the disk cache
+	 */
+	public synchronized void setCacheDirectory(File cacheDir){
+		if (cacheDir == null || _diskSize < 1){
+			_fileCache = null;
+			return;
+		}
+		_fileCache = new FileCache(cacheDir, _diskSize, _ttlMillis, CACHE_FILE_SUFFIX);
+	}
+
+	/**
+	 * Gets key of the result of running {@code algorithm} on
+	 * {@code rawMemberList}
+	 * @param algorithm term mapping algorithm
+	 * @param customParameters custom parameters for algorithm, can be {@code null}
+	 * @param rawMemberList members as stored in network, delimited by
+	 *        {@link AppUtils#CD_MEMBER_LIST_DELIMITER}
+	 * @return hex encoded SHA-256 hash
+	 */
+	public String getKey(CommunityDetectionAlgorithm algorithm, Map<String, String> customParameters,
+			final String rawMemberList){
+		StringBuilder sb = new StringBuilder();
+		sb.append(algorithm.getName());
+		sb.append('\0');
+		sb.append(algorithm.getDockerImage());
+		sb.append('\0');
+		if (customParameters != null){
+			for (Map.Entry<String, String> entry : new TreeMap<>(customParameters).entrySet()){
+				sb.append(entry.getKey());
+				sb.append('=');
+				sb.append(entry.getValue());
+				sb.append('\0');
+			}
+		}
+		sb.append('\0');
+		if (rawMemberList != null){
+			sb.append(MemberListLookup.getCanonicalMemberList(rawMemberList));
+		}
+		MessageDigest digest = FileCache.getKeyDigest();
+		digest.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+		return FileCache.getKey(digest);
+	}
+
+	/**
+	 * Gets result stored under {@code key}, looking in memory first and
+	 * then in the cache directory. The returned object is shared and
+	 * must not be modified
+	 * @param key key from {@link #getKey(org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm, java.util.Map, java.lang.String)}
+	 * @return result or {@code null} if there is none or it expired
+	 */
+	public JsonNode get(final String key){
+		long now = getCurrentTimeMillis();
+		synchronized (_cache){
+			CacheEntry entry = _cache.get(key);
+			if (entry != null){
+				if (!isExpired(entry._createTime, now)){
+					return entry._result;
+				}
+				_cache.remove(key);
+			}
+		}
+		FileCache fileCache = getFileCache();
+		File cacheFile = fileCache == null ? null : fileCache.get(key);
+		if (cacheFile == null){
+			return null;
+		}
+		try {
+			JsonNode result = _mapper.readTree(cacheFile);
+			putInMemory(key, new CacheEntry(result, cacheFile.lastModified()));
+			return result;
+		} catch(IOException io){
+			LOGGER.warn("Unable to read cached result " + cacheFile.getAbsolutePath(), io);
+			fileCache.remove(key);
+			return null;
+		}
+	}
+
+	/**
+	 * Stores {@code result} under {@code key} in memory and in the cache
+	 * directory, if set. Errors writing to the cache directory are logged
+	 * and otherwise ignored
+	 * @param key key from {@link #getKey(org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm, java.util.Map, java.lang.String)}
+	 * @param result result of term mapping, ignored if {@code null}
+	 */
+	public void put(final String key, JsonNode result){
+		if (result == null){
+			return;
+		}
+		putInMemory(key, new CacheEntry(result, getCurrentTimeMillis()));
+		FileCache fileCache = getFileCache();
+		if (fileCache == null){
+			return;
+		}
+		try {
+			fileCache.put(key, (out) -> _mapper.writeValue(out, result));
+		} catch(IOException io){
+			LOGGER.warn("Unable to write cached result " + key, io);
+		}
+	}
+
+	/**
+	 * Removes all results kept in memory, results in the cache
+	 * directory are left alone
+	 */
+	public void clear(){
+		synchronized (_cache){
+			_cache.clear();
+		}
+	}
+
+	/**
+	 * Gets current time, tests can override this
+	 * @return milliseconds since epoch
+	 */
+	protected long getCurrentTimeMillis(){
+		return System.currentTimeMillis();
+	}
+
+	private boolean isExpired(long createTime, long now){
+		return _ttlMillis > 0 && now - createTime > _ttlMillis;
+	}
+
+	private void putInMemory(final String key, CacheEntry entry){
+		if (_memorySize < 1){
+			return;
+		}
+		synchronized (_cache){
+			_cache.put(key, entry);
+		}
+	}
+
+	private synchronized FileCache getFileCache(){
+		return _fileCache;
+	}
+}
@@ -0,0 +1,160 @@
+package org.cytoscape.app.communitydetection.termmap;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.IntConsumer;
+import org.cytoscape.app.communitydetection.rest.CancellationToken;
+
+/**
+ * Runs term mapping jobs in the order they were added while keeping at
+ * most a fixed number of them in flight. A new job is started each time
+ * one completes and progress is reported in the order jobs complete,
+ * not the order they were started, so one slow job does not hold back
+ * progress of the others.
+ * <p>
+ * This object has no threads of its own, jobs are started and their
+ * completions handled on the thread that invokes {@link #run(java.util.function.IntConsumer)}.
+ * Once that method returns no further jobs are started.
+ *
+ * @author churas
+ */
+public class TermMappingScheduler {
+
+	/**
+	 * A term mapping job
+	 */
+	public interface Job {
+
+		/**
+		 * Starts the job
+		 * @return future that completes with {@code true} once the job is
+		 *         done or {@code false} if it was canceled
+		 */
+		public CompletableFuture<Boolean> start();
+	}
+
+	private static class PendingJob {
+		private final Job _job;
+		private final int _nodeCount;
+
+		PendingJob(Job job, int nodeCount){
+			_job = job;
+			_nodeCount = nodeCount;
+		}
+	}
+
+	private static class Completion {
+		private final PendingJob _pendingJob;
+		private final Boolean _success;
+		private final Throwable _error;
+
+		Completion(PendingJob pendingJob, Boolean success, Throwable error){
+			_pendingJob = pendingJob;
+			_success = success;
+			_error = error;
+		}
+	}
+
+	private final int _maxInFlight;
+	private final CancellationToken _cancelToken;
+	private final List<PendingJob> _pendingJobs;
+
+	/**
+	 * Constructor
+	 * @param maxInFlight maximum number of jobs running at the same time,
+	 *        a value less then {@code 1} means there is no limit
+	 * @param cancelToken token passed to the jobs, canceled if a job fails
+	 */
+	public TermMappingScheduler(int maxInFlight, CancellationToken cancelToken){
+		_maxInFlight = maxInFlight;
+		_cancelToken = cancelToken;
+		_pendingJobs = new ArrayList<>();
+	}
+
+	/**
+	 * Adds {@code job} after the jobs already added
+	 * @param job job to run
+	 * @param nodeCount number of nodes updated by {@code job}, added to
+	 *        the progress once it completes
+	 */
+	public void add(Job job, int nodeCount){
+		_pendingJobs.add(new PendingJob(job, nodeCount));
+	}
+
+	/**
+	 * Runs the jobs added via {@link #add(org.cytoscape.app.communitydetection.termmap.TermMappingScheduler.Job, int)}
+	 * and waits for them to complete
+	 * @param progressListener if not {@code null} is passed the number of
+	 *        nodes updated so far each time a job completes
+	 * @return {@code true} if every job completed or {@code false} if a
+	 *         job was canceled, in which case remaining jobs are not started
+	 * @throws ExecutionException if a job failed, the cancel token passed
+	 *         in via the constructor is canceled to stop the other jobs
+	 * @throws InterruptedException if interrupted while waiting, the
+	 *         cancel token passed in via the constructor is canceled
+	 */
+	public boolean run(IntConsumer progressListener) throws ExecutionException, InterruptedException {
+		final BlockingQueue<Completion> completions = new LinkedBlockingQueue<>();
+		Iterator<PendingJob> pendingIter = _pendingJobs.iterator();
+		int inFlight = 0;
+		int completedNodes = 0;
+		try {
+			while (true){
+				while (pendingIter.hasNext() && (_maxInFlight < 1 || inFlight < _maxInFlight)){
+					if (_cancelToken.isCanceled()){
+						return false;
+					}
+					PendingJob pendingJob = pendingIter.next();
+					startJob(pendingJob).whenComplete((success, error) -> {
+						completions.add(new Completion(pendingJob, success, error));
+					});
+					inFlight++;
+				}
+				if (inFlight == 0){
+					return true;
+				}
+				Completion completion = completions.take();
+				inFlight--;
+				if (completion._error != null){
+					Throwable cause = completion._error;
+					if (cause instanceof CompletionException && cause.getCause() != null){
+						cause = cause.getCause();
+					}
+					if (cause instanceof CancellationException){
+						return false;
+					}
+					// stop remaining term mappings
+					_cancelToken.cancel();
+					throw new ExecutionException(cause);
+				}
+				if (!Boolean.TRUE.equals(completion._success)){
+					return false;
+				}
+				completedNodes += completion._pendingJob._nodeCount;
+				if (progressListener != null){
+					progressListener.accept(completedNodes);
+				}
+			}
+		} catch(InterruptedException ie){
+			_cancelToken.cancel();
+			throw ie;
+		}
+	}
+
+	private CompletableFuture<Boolean> startJob(PendingJob pendingJob){
+		try {
+			return pendingJob._job.start();
+		} catch(RuntimeException ex){
+			CompletableFuture<Boolean> failed = new CompletableFuture<>();
+			failed.completeExceptionally(ex);
+			return failed;
+		}
+	}
+}
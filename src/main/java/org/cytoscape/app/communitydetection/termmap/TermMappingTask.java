@@ -1,21 +1,28 @@
 package org.cytoscape.app.communitydetection.termmap;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 
 import org.cytoscape.app.communitydetection.PropertiesHelper;
-import org.cytoscape.app.communitydetection.rest.CDRestClient;
+import org.cytoscape.app.communitydetection.rest.AsyncCDRestClient;
+import org.cytoscape.app.communitydetection.rest.CancellationToken;
 import org.cytoscape.app.communitydetection.util.AppUtils;
+import org.cytoscape.app.communitydetection.util.MemberListLookup;
+import org.cytoscape.event.CyEventHelper;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.CyTable;
 import org.cytoscape.model.CyTableUtil;
 import org.cytoscape.work.AbstractTask;
 import org.cytoscape.work.TaskMonitor;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Task to run a term mapping algorithm on the selected network or nodes.
@@ -23,12 +30,16 @@ import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
  */
 public class TermMappingTask extends AbstractTask {
 
+	private final static Logger LOGGER = LoggerFactory.getLogger(TermMappingTask.class);
 	private CommunityDetectionAlgorithm _algorithm;
 	private Map<String, String> _customParameters;
 	private final CyNetwork _network;
 	private final boolean _useSelectedNodes;
 	private static final String ON_SELECTED_NODES = "on Selected Nodes";
 	private static final String ON_ALL_NODES = "on All Nodes";
+	private AsyncCDRestClient _asyncClient;
+	private final CancellationToken _cancelToken;
+	private final CyEventHelper _eventHelper;
 
 	/**
 	 * Constructor that creates a Task to run Term Mapping aka 
@@ -42,10 +53,39 @@ public class TermMappingTask extends AbstractTask {
 	 */
 	public TermMappingTask(CyNetwork network, CommunityDetectionAlgorithm algorithm,
 		Map<String, String> customParameters, boolean useSelectedNodes) {
+		this(network, algorithm, customParameters, useSelectedNodes, null);
+	}
+	
+	/**
+	 * Constructor that creates a Task to run Term Mapping aka 
+	 * Functional Enrichment on selected or all nodes of the given network.
+	 * 
+	 * @param network network to run term mapping on
+	 * @param algorithm The algorithm to use
+	 * @param customParameters a Map of custom parameters
+	 * @param useSelectedNodes If true only process the selected nodes otherwise
+	 *                         process all nodes
+	 * @param eventHelper used to fire one event per batch of results written
+	 *                    to the node table, can be {@code null}
+	 */
+	public TermMappingTask(CyNetwork network, CommunityDetectionAlgorithm algorithm,
+		Map<String, String> customParameters, boolean useSelectedNodes,
+		CyEventHelper eventHelper) {
 		this._algorithm = algorithm;
 		this._network = network;
 		this._customParameters = customParameters;
 		this._useSelectedNodes = useSelectedNodes;
+		this._asyncClient = AsyncCDRestClient.getInstance();
+		this._cancelToken = new CancellationToken();
+		this._eventHelper = eventHelper;
+	}
+	
+	/**
+	 * Sets alternate async REST client. Used for testing purposes
+	 * @param asyncClient 
+	 */
+	protected void setAlternateAsyncCDRestClient(AsyncCDRestClient asyncClient){
+		_asyncClient = asyncClient;
 	}
 
 	/**
@@ -53,7 +93,15 @@ public class TermMappingTask extends AbstractTask {
 	 * to CD Service. If the algorithm passed in via constructor is
 	 * null then this method does nothing and returns immediately. What
 	 * is run by this method is all defined by the constructor of this
-	 * class. For improved
+	 * class. If the algorithm accepts
+	 * {@link AppUtils#TM_ALGORITHM_BATCH_INPUT_TYPE} the nodes are sent
+	 * in batches of {@link PropertiesHelper#getFunctionalEnrichmentBatchSize()}
+	 * otherwise one request is made per node. Nodes with the same members
+	 * are only submitted once and all of them get that result. Requests are
+	 * made in the order set by {@link #getNodesInPriorityOrder(java.util.Map)}
+	 * with at most {@link PropertiesHelper#getFunctionalEnrichmentMaxInFlight()}
+	 * running at the same time. Results are written to the node table in
+	 * batches by a {@link TermMappingResultApplier}
 	 * @param taskMonitor
 	 * @throws Exception 
 	 */
@@ -83,32 +131,58 @@ public class TermMappingTask extends AbstractTask {
 		//adds needed columns to network
 		add_columns_to_network();
 
-		// use a threadpool to run TermMappingCallable objects to 
-		// perform term mapping
-		int processorCount = Integer.parseInt(PropertiesHelper.getInstance().getThreadcount());
-		ExecutorService executor = Executors.newFixedThreadPool(processorCount);
-		List<Future<Boolean>> futureList = new ArrayList<>();
-		for (CyNode node : selectedNodes) {
-			TermMappingCallable tmTask = new TermMappingCallable(_network, _algorithm,
-				_customParameters, node);
-			Future<Boolean> future = executor.submit(tmTask);
-			futureList.add(future);
-		}
-		int progress = 1;
-		int totalTasks = selectedNodes.size();
-		String totalTaskStr = " of " + Integer.toString(totalTasks) + " complete)";
-		taskMonitor.setProgress((double) progress / totalTasks);
-		for (Future<Boolean> future : futureList) {
-			if (future.get()) {
+		// only submit one of the nodes that have the same members
+		Map<CyNode, List<CyNode>> nodeGroups = groupNodesByMemberList(selectedNodes);
+		List<CyNode> uniqueNodes = getNodesInPriorityOrder(nodeGroups);
+		String submissionStr = "Submitting " + Integer.toString(uniqueNodes.size()) +
+			" member lists for " + Integer.toString(selectedNodes.size()) + " nodes";
+		taskMonitor.setStatusMessage(submissionStr);
+		LOGGER.debug(submissionStr);
+
+		// run the term mappings via the async client which waits for
+		// them using a few shared threads, the results are written to
+		// the node table by a single applier thread
+		PropertiesHelper props = PropertiesHelper.getInstance();
+		boolean success;
+		try (TermMappingResultApplier resultApplier = new TermMappingResultApplier(
+			_network.getDefaultNodeTable(), _eventHelper,
+			props.getFunctionalEnrichmentApplyBatchSize(),
+			props.getFunctionalEnrichmentApplyIntervalMillis())) {
+			resultApplier.start();
+			TermMappingScheduler scheduler = new TermMappingScheduler(
+				props.getFunctionalEnrichmentMaxInFlight(), _cancelToken);
+			if (BatchTermMappingCallable.isBatchAlgorithm(_algorithm)) {
+				for (List<CyNode> batch : get_node_batches(uniqueNodes)) {
+					BatchTermMappingCallable tmTask = new BatchTermMappingCallable(_network,
+						_algorithm, _customParameters, batch, nodeGroups, _cancelToken);
+					tmTask.setResultApplier(resultApplier);
+					int nodeCount = 0;
+					for (CyNode node : batch) {
+						nodeCount += 1 + nodeGroups.get(node).size();
+					}
+					scheduler.add(() -> tmTask.callAsync(_asyncClient), nodeCount);
+				}
+			} else {
+				for (CyNode node : uniqueNodes) {
+					TermMappingCallable tmTask = new TermMappingCallable(_network, _algorithm,
+						_customParameters, node, nodeGroups.get(node), _cancelToken);
+					tmTask.setResultApplier(resultApplier);
+					scheduler.add(() -> tmTask.callAsync(_asyncClient),
+						1 + nodeGroups.get(node).size());
+				}
+			}
+			final int totalTasks = selectedNodes.size();
+			final String totalTaskStr = " of " + Integer.toString(totalTasks) + " complete)";
+			taskMonitor.setProgress(0.0);
+			success = scheduler.run((progress) -> {
 				taskMonitor.setProgress((double) progress / totalTasks);
 				taskMonitor.setStatusMessage("Running " +
 					_algorithm.getDisplayName() + " (" +
 					Integer.toString(progress) + totalTaskStr);
-				progress++;
-			} else {
-				CDRestClient.getInstance().setTaskCanceled(false);
-				return;
-			}
+			});
+		}
+		if (!success) {
+			return;
 		}
 		System.out.println(
 				"Time elapsed by TermMappingTask: " +
@@ -118,12 +192,13 @@ public class TermMappingTask extends AbstractTask {
 
 	/**
 	 * Called when user cancels task. When that happens this object
-	 * tells the service that the task has been canceled
+	 * cancels the term mappings it submitted which also deletes them
+	 * on the service
 	 */
 	@Override
 	public void cancel() {
-		CDRestClient.getInstance().setTaskCanceled(true);
 		super.cancel();
+		_cancelToken.cancel();
 	}
 	
 	/**
@@ -151,6 +226,92 @@ public class TermMappingTask extends AbstractTask {
 	    return _network.getNodeList();
 	}
 	
+	/**
+	 * Groups {@code nodes} that have the same members, ignoring order and
+	 * repeated members, as told by
+	 * {@link MemberListLookup#getCanonicalMemberList(java.lang.String)}.
+	 * Nodes without a member list are never grouped
+	 * @param nodes nodes to group
+	 * @return map of first node of each group to the other nodes in that
+	 *         group, with iteration in the order of {@code nodes}
+	 */
+	protected Map<CyNode, List<CyNode>> groupNodesByMemberList(List<CyNode> nodes){
+	    MemberListLookup lookup = MemberListLookup.getInstance();
+	    Map<String, CyNode> firstNodes = new HashMap<>();
+	    Map<CyNode, List<CyNode>> nodeGroups = new LinkedHashMap<>();
+	    for (CyNode node : nodes){
+		String memberList = MemberListLookup.getCanonicalMemberList(
+			lookup.getMemberListAsString(_network, node));
+		CyNode firstNode = memberList == null ? null : firstNodes.putIfAbsent(memberList, node);
+		if (firstNode == null){
+		    nodeGroups.put(node, new ArrayList<>());
+		} else {
+		    nodeGroups.get(firstNode).add(node);
+		}
+	    }
+	    return nodeGroups;
+	}
+	
+	/**
+	 * Orders the first node of each group in {@code nodeGroups} so the
+	 * term mappings users are most likely looking at are run first. Groups
+	 * with a selected node come first, then groups are ordered by
+	 * {@link AppUtils#COLUMN_CD_MEMBER_LIST_SIZE} from largest to smallest.
+	 * Ties keep the order of {@code nodeGroups}
+	 * @param nodeGroups groups from {@link #groupNodesByMemberList(java.util.List)}
+	 * @return first node of each group in the order to run them
+	 */
+	protected List<CyNode> getNodesInPriorityOrder(Map<CyNode, List<CyNode>> nodeGroups){
+	    CyTable nodeTable = _network.getDefaultNodeTable();
+	    boolean hasSelected = nodeTable.getColumn(CyNetwork.SELECTED) != null;
+	    boolean hasSize = nodeTable.getColumn(AppUtils.COLUMN_CD_MEMBER_LIST_SIZE) != null;
+	    Map<CyNode, Boolean> selected = new HashMap<>();
+	    Map<CyNode, Integer> sizes = new HashMap<>();
+	    for (Map.Entry<CyNode, List<CyNode>> entry : nodeGroups.entrySet()){
+		boolean isSelected = false;
+		if (hasSelected){
+		    isSelected = isSelected(entry.getKey());
+		    for (CyNode duplicateNode : entry.getValue()){
+			isSelected = isSelected || isSelected(duplicateNode);
+		    }
+		}
+		selected.put(entry.getKey(), isSelected);
+		Integer size = null;
+		if (hasSize){
+		    size = _network.getRow(entry.getKey()).get(AppUtils.COLUMN_CD_MEMBER_LIST_SIZE,
+			    Integer.class);
+		}
+		sizes.put(entry.getKey(), size == null ? 0 : size);
+	    }
+	    List<CyNode> nodes = new ArrayList<>(nodeGroups.keySet());
+	    nodes.sort(Comparator.comparing((CyNode node) -> !selected.get(node))
+		    .thenComparing((CyNode node) -> sizes.get(node), Comparator.reverseOrder()));
+	    return nodes;
+	}
+	
+	private boolean isSelected(CyNode node){
+	    CyRow row = _network.getRow(node);
+	    return Boolean.TRUE.equals(row.get(CyNetwork.SELECTED, Boolean.class));
+	}
+	
+	/**
+	 * Splits {@code nodes} into lists no larger then
+	 * {@link PropertiesHelper#getFunctionalEnrichmentBatchSize()}
+	 * @param nodes nodes to split
+	 * @return 
+	 */
+	private List<List<CyNode>> get_node_batches(List<CyNode> nodes){
+	    int batchSize = PropertiesHelper.getInstance().getFunctionalEnrichmentBatchSize();
+	    if (batchSize < 1){
+		batchSize = nodes.size();
+	    }
+	    List<List<CyNode>> batches = new ArrayList<>();
+	    for (int i = 0; i < nodes.size(); i += batchSize){
+		batches.add(nodes.subList(i, Math.min(nodes.size(), i + batchSize)));
+	    }
+	    return batches;
+	}
+	
 	/**
 	 * Adds new columns to network that will be filled by this
 	 * task
@@ -15,13 +15,34 @@ public class AppUtils {
 	public static final String PROP_PROJECT_NAME = "project.name";
 	public static final String PROP_CD_TASK_TIMEOUT = "communitydetection.timeout.millis";
 	public static final String PROP_FE_TASK_TIMEOUT = "functionalenrichment.timeout.millis";
+	public static final String PROP_FE_BATCH_SIZE = "functionalenrichment.batch.size";
+	public static final String PROP_FE_MAX_IN_FLIGHT = "functionalenrichment.max.inflight";
+	public static final String PROP_FE_APPLY_BATCH_SIZE = "functionalenrichment.apply.batch.size";
+	public static final String PROP_FE_APPLY_INTERVAL = "functionalenrichment.apply.interval.millis";
+	public static final String PROP_FE_CACHE_SIZE = "functionalenrichment.cache.size";
+	public static final String PROP_FE_CACHE_DISK_SIZE = "functionalenrichment.cache.disk.size";
+	public static final String PROP_FE_CACHE_TTL = "functionalenrichment.cache.ttl.millis";
+	public static final String PROP_CD_CACHE_SIZE = "communitydetection.cache.size";
+	public static final String PROP_CD_CACHE_TTL = "communitydetection.cache.ttl.millis";
 	public static final String PROP_SUBMIT_RETRY_COUNT = "submit.retry.count";
 	
 	public static final String PROP_HTTP_SOCKET_TIMEOUT = "http.socket.timeout.millis";
 	public static final String PROP_HTTP_CONNECT_TIMEOUT = "http.connect.timeout.millis";
 	public static final String PROP_HTTP_CONNECTION_REQUEST_TIMEOUT = "http.connection.request.timeout.millis";
+	public static final String PROP_HTTP_GZIP_REQUEST = "http.gzip.request";
+	public static final String PROP_HTTP_MAX_CONNECTIONS_PER_ROUTE = "http.max.connections.per.route";
+	public static final String PROP_HTTP_IDLE_CONNECTION_TIMEOUT = "http.idle.connection.timeout.millis";
 
 	public static final String PROP_POLL_INTERVAL_TIME = "polling.interval.time.millis";
+	public static final String PROP_POLL_INITIAL_INTERVAL = "polling.initial.interval.millis";
+	public static final String PROP_POLL_MAX_INTERVAL = "polling.max.interval.millis";
+	
+	public static final String PROP_EDGELIST_PARALLEL_THRESHOLD = "edgelist.parallel.edge.threshold";
+	public static final String PROP_EDGELIST_DENSE_NODE_IDS = "edgelist.dense.node.ids";
+	public static final String PROP_MEMBERLIST_PARALLEL_THRESHOLD = "memberlist.parallel.community.threshold";
+	public static final String PROP_MEMBERLIST_DIRECT_ONLY = "memberlist.direct.only";
+	public static final String PROP_MEMBERLIST_CACHE_SIZE = "memberlist.cache.size";
+	public static final String PROP_HIERARCHY_PIPELINED = "hierarchy.pipelined";
 	
 	public static final String TOP_MENU = "Apps.Community Detection";
 	public static final String TOP_MENU_CD = TOP_MENU + ".Community Detection";
@@ -42,6 +63,7 @@ public class AppUtils {
 	public final static String COLUMN_CD_MEMBER_LIST = "CD_MemberList";
 	public final static String COLUMN_CD_MEMBER_LIST_SIZE = "CD_MemberList_Size";
 	public final static String COLUMN_CD_MEMBER_LIST_LOG_SIZE = "CD_MemberList_LogSize";
+	public final static String COLUMN_CD_MEMBER_LIST_DIRECT_ONLY = "CD_MemberList_DirectOnly";
 	public final static String COLUMN_CD_ORIGINAL_NETWORK = "__CD_OriginalNetwork";
 	public final static String COLUMN_CD_COMMUNITY_NAME = "CD_CommunityName";
 	public final static String COLUMN_CD_ANNOTATED_ALGORITHM = "CD_AnnotatedAlgorithm";
@@ -81,7 +103,9 @@ public class AppUtils {
 		                                                                                   CD_ALGORITHM_INPUT_TYPE_V2));
 	
 	public final static String TM_ALGORITHM_INPUT_TYPE = "GENELIST";
-	public final static Set<String> TM_ALGORITHM_INPUT_TYPES = new HashSet<>(Arrays.asList(TM_ALGORITHM_INPUT_TYPE));
+	public final static String TM_ALGORITHM_BATCH_INPUT_TYPE = "GENELISTS";
+	public final static Set<String> TM_ALGORITHM_INPUT_TYPES = new HashSet<>(Arrays.asList(TM_ALGORITHM_INPUT_TYPE,
+		                                                                                   TM_ALGORITHM_BATCH_INPUT_TYPE));
 	public final static String CANCEL = "Cancel";
 	public final static String APPLY = "Apply";
 	public final static String CLOSE = "Close";
@@ -0,0 +1,78 @@
+package org.cytoscape.app.communitydetection.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the properties in the {@value AppUtils#PROP_NAME}.props resource
+ * packaged with the app, such as the name and version of the app. Unlike
+ * {@link org.cytoscape.app.communitydetection.PropertiesHelper} these
+ * values are not changed by the user.
+ * <p>
+ * The resource is read once, the first time {@link #getInstance()} is
+ * invoked after the bundle is started
+ *
+ * @author churas
+ */
+public class BundledProperties {
+
+	private final static Logger LOGGER = LoggerFactory.getLogger(BundledProperties.class);
+
+	private final Properties _properties;
+	private final String _errorMessage;
+
+	private static class SingletonHelper {
+		private static final BundledProperties INSTANCE = new BundledProperties(
+				BundledProperties.class.getClassLoader(), AppUtils.PROP_NAME + ".props");
+	}
+
+	/**
+	 * Gets instance of this object
+	 * @return
+	 */
+	public static BundledProperties getInstance(){
+		return SingletonHelper.INSTANCE;
+	}
+
+	/**
+	 * Constructor that reads properties from {@code resourceName}
+	 * @param classLoader used to get the resource
+	 * @param resourceName name of resource
+	 */
+	protected BundledProperties(ClassLoader classLoader, final String resourceName){
+		Properties properties = new Properties();
+		String errorMessage = null;
+		try (InputStream resourceStream = classLoader.getResourceAsStream(resourceName)){
+			if (resourceStream == null){
+				throw new IOException("Resource " + resourceName + " not found");
+			}
+			properties.load(resourceStream);
+		} catch(IOException io){
+			LOGGER.error("Unable to load properties from " + resourceName, io);
+			errorMessage = io.getMessage();
+		}
+		_properties = properties;
+		_errorMessage = errorMessage;
+	}
+
+	/**
+	 * Gets value of property
+	 * @param key name of property
+	 * @param defaultValue returned if property is not set
+	 * @return
+	 */
+	public String getProperty(final String key, final String defaultValue){
+		return _properties.getProperty(key, defaultValue);
+	}
+
+	/**
+	 * Gets error encountered reading the resource
+	 * @return error message or {@code null} if resource was read
+	 */
+	public String getErrorMessage(){
+		return _errorMessage;
+	}
+}
@@ -0,0 +1,132 @@
+package org.cytoscape.app.communitydetection.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.model.CyIdentifiable;
+import org.cytoscape.model.CyRow;
+import org.cytoscape.model.CyTable;
+import org.cytoscape.model.events.RowSetRecord;
+import org.cytoscape.model.events.RowsSetEvent;
+
+/**
+ * Collects cell values for a {@link CyTable} and writes them column by
+ * column when {@link #flush()} is invoked.
+ * <p>
+ * Each {@link CyRow#set(java.lang.String, java.lang.Object)} normally adds
+ * a row set payload that listeners, such as the table browser, process
+ * one at a time. If a {@link CyEventHelper} is given, the table is silenced
+ * while the values are written and a single {@link RowsSetEvent} holding
+ * every value written is fired afterwards, so listeners see one update.
+ * <p>
+ * This object is NOT thread safe
+ *
+ * @author churas
+ */
+public class ColumnBatchWriter {
+
+	private final CyTable _table;
+	private final CyEventHelper _eventHelper;
+	private final Map<String, ColumnValues> _columns;
+	private int _size;
+
+	/**
+	 * Constructor
+	 * @param table table to write to
+	 * @param eventHelper used to coalesce row set events, can be {@code null}
+	 *                    in which case each value fires its own payload
+	 */
+	public ColumnBatchWriter(CyTable table, CyEventHelper eventHelper){
+		_table = table;
+		_eventHelper = eventHelper;
+		_columns = new LinkedHashMap<>();
+		_size = 0;
+	}
+
+	/**
+	 * Queues {@code value} to be written to column {@code columnName} of
+	 * the row for {@code entry}
+	 * @param entry node, edge or network whose row is updated
+	 * @param columnName name of column
+	 * @param value value to write
+	 */
+	public void set(CyIdentifiable entry, final String columnName, Object value){
+		ColumnValues column = _columns.get(columnName);
+		if (column == null){
+			column = new ColumnValues();
+			_columns.put(columnName, column);
+		}
+		column.keys.add(entry.getSUID());
+		column.values.add(value);
+		_size++;
+	}
+
+	/**
+	 * Gets number of values queued and not yet written
+	 * @return
+	 */
+	public int size(){
+		return _size;
+	}
+
+	/**
+	 * Writes all queued values to the table. If a {@link CyEventHelper}
+	 * was given, pending payload events are delivered first so listeners
+	 * see earlier changes before this batch
+	 */
+	public void flush(){
+		if (_size == 0){
+			return;
+		}
+		if (_eventHelper == null){
+			writeValues(null);
+			return;
+		}
+		List<RowSetRecord> records = new ArrayList<>(_size);
+		_eventHelper.flushPayloadEvents();
+		_eventHelper.silenceEventSource(_table);
+		try {
+			writeValues(records);
+		} finally {
+			_eventHelper.unsilenceEventSource(_table);
+			if (!records.isEmpty()){
+				_eventHelper.fireEvent(new RowsSetEvent(_table, records));
+			}
+		}
+	}
+
+	/**
+	 * Writes queued values column by column clearing the queue
+	 * @param records if not {@code null} a record of every value
+	 *                written is added
+	 */
+	private void writeValues(List<RowSetRecord> records){
+		try {
+			for (Map.Entry<String, ColumnValues> column : _columns.entrySet()){
+				String columnName = column.getKey();
+				List<Long> keys = column.getValue().keys;
+				List<Object> values = column.getValue().values;
+				for (int i = 0; i < keys.size(); i++){
+					CyRow row = _table.getRow(keys.get(i));
+					row.set(columnName, values.get(i));
+					if (records != null){
+						records.add(new RowSetRecord(row, columnName, values.get(i), values.get(i)));
+					}
+				}
+			}
+		} finally {
+			_columns.clear();
+			_size = 0;
+		}
+	}
+
+	/**
+	 * Row keys and values queued for one column
+	 */
+	private static class ColumnValues {
+		private final List<Long> keys = new ArrayList<>();
+		private final List<Object> values = new ArrayList<>();
+	}
+}
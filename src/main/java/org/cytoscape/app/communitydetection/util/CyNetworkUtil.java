@@ -1,7 +1,7 @@
 package org.cytoscape.app.communitydetection.util;
 
-import java.util.Arrays;
 import java.util.List;
+import org.cytoscape.event.CyEventHelper;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNode;
 import org.cytoscape.model.CyTable;
@@ -15,6 +15,40 @@ import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionEx
  */
 public class CyNetworkUtil {
 
+	private final CyEventHelper _eventHelper;
+
+	/**
+	 * Constructor, writers from {@link #getColumnBatchWriter(org.cytoscape.model.CyTable)}
+	 * will not coalesce row set events
+	 */
+	public CyNetworkUtil(){
+		this(null);
+	}
+
+	/**
+	 * Constructor
+	 * @param eventHelper passed to writers from
+	 *        {@link #getColumnBatchWriter(org.cytoscape.model.CyTable)}
+	 *        to coalesce row set events, can be {@code null}
+	 */
+	public CyNetworkUtil(CyEventHelper eventHelper){
+		_eventHelper = eventHelper;
+	}
+
+	/**
+	 * Gets a writer that queues values for {@code table} and writes them
+	 * in one batch
+	 * @param table table to write to
+	 * @return
+	 * @throws CommunityDetectionException if {@code table} is {@code null}
+	 */
+	public ColumnBatchWriter getColumnBatchWriter(CyTable table) throws CommunityDetectionException {
+		if (table == null){
+			throw new CommunityDetectionException("table is null");
+		}
+		return new ColumnBatchWriter(table, _eventHelper);
+	}
+
 	/**
 	 * Creates column in table passed in if it does <b>NOT</b> already exist
 	 * @param <T> type of column
@@ -83,14 +117,15 @@ public class CyNetworkUtil {
 	}
 	
 	/**
-	 * This method extracts the list of node names from the 
-	 * AppUtils.COLUMN_CD_MEMBER_LIST column for the selected node. This is
-	 * assumed to be a string that has AppUtils.CD_MEMBER_LIST_DELIMITER as
-	 * a delimiter
+	 * This method gets the list of node names in the 
+	 * AppUtils.COLUMN_CD_MEMBER_LIST column for the selected node via
+	 * {@link MemberListLookup#getInstance()} which also handles hierarchy
+	 * networks that only store direct members
 	 * 
 	 * @param hierarchyNetwork The hierarchy network
 	 * @param selectedNode The node to examine
-	 * @return List of node members for selected node
+	 * @return List of node members for selected node or {@code null} if
+	 *         the node has no member list
 	 * @throws Exception 
 	 * @throws CommunityDetectionException if hierarchy, or node is {@code null}
 	 */
@@ -103,8 +138,7 @@ public class CyNetworkUtil {
 			throw new CommunityDetectionException("selected node is null");
 		}
 		
-		return Arrays.asList(hierarchyNetwork.getRow(selectedNode)
-				.get(AppUtils.COLUMN_CD_MEMBER_LIST, String.class).split(AppUtils.CD_MEMBER_LIST_DELIMITER));
+		return MemberListLookup.getInstance().getMemberList(hierarchyNetwork, selectedNode);
 	}
 	
 	public CyNode getNodeMatchingName(CyNetwork network, final String name){
@@ -0,0 +1,265 @@
+package org.cytoscape.app.communitydetection.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores cached values as one {@code <key><suffix>} file per key in a
+ * directory. Files older than the time to live are treated as missing
+ * and removed, and once there are more files than allowed the oldest
+ * are removed.
+ * <p>
+ * Files are written to a temporary file first and then moved in place
+ * so a file that exists is always complete.
+ * <p>
+ * This object is thread safe
+ *
+ * @author churas
+ */
+public class FileCache {
+
+	private final static Logger LOGGER = LoggerFactory.getLogger(FileCache.class);
+
+	/**
+	 * Writes the content of a cached file
+	 */
+	public interface ContentWriter {
+
+		/**
+		 * Writes content to {@code out}, implementations should NOT
+		 * close {@code out}
+		 * @param out stream to write to
+		 * @throws IOException if there is an error writing
+		 */
+		public void write(OutputStream out) throws IOException;
+	}
+
+	/**
+	 * File being written for a key. Content is written to a temporary
+	 * file via {@link #getOutputStream()} and only stored under the key
+	 * once {@link #commit()} is invoked. Closing without committing
+	 * deletes the temporary file
+	 */
+	public class PendingFile implements Closeable {
+		private final String _key;
+		private final File _tmpFile;
+		private final OutputStream _out;
+		private boolean _done;
+
+		private PendingFile(final String key) throws IOException {
+			_key = key;
+			Files.createDirectories(_cacheDir.toPath());
+			_tmpFile = File.createTempFile(key, ".tmp", _cacheDir);
+			try {
+				_out = new FileOutputStream(_tmpFile);
+			} catch(IOException io){
+				Files.deleteIfExists(_tmpFile.toPath());
+				throw io;
+			}
+			_done = false;
+		}
+
+		/**
+		 * Gets stream writing to the temporary file
+		 * @return
+		 */
+		public OutputStream getOutputStream(){
+			return _out;
+		}
+
+		/**
+		 * Closes the temporary file and moves it in place of any file
+		 * stored under the key. Does nothing if already committed or closed
+		 * @throws IOException if there is an error closing or moving the file
+		 */
+		public synchronized void commit() throws IOException {
+			if (_done){
+				return;
+			}
+			_done = true;
+			try {
+				_out.close();
+				File cacheFile = getFile(_key);
+				boolean exists = cacheFile.isFile();
+				Files.move(_tmpFile.toPath(), cacheFile.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+				if (!exists){
+					updateFileCount();
+				}
+			} finally {
+				Files.deleteIfExists(_tmpFile.toPath());
+			}
+		}
+
+		/**
+		 * Deletes the temporary file if {@link #commit()} was not invoked
+		 */
+		@Override
+		public synchronized void close(){
+			if (_done){
+				return;
+			}
+			_done = true;
+			try {
+				_out.close();
+				Files.deleteIfExists(_tmpFile.toPath());
+			} catch(IOException io){
+				LOGGER.warn("Unable to delete temporary file " + _tmpFile.getAbsolutePath(), io);
+			}
+		}
+	}
+
+	private final File _cacheDir;
+	private final int _maxFiles;
+	private final long _ttlMillis;
+	private final String _suffix;
+	private int _fileCount;
+
+	/**
+	 * Constructor
+	 * @param cacheDir directory holding the files, created when the
+	 *        first file is written
+	 * @param maxFiles maximum number of files to keep
+	 * @param ttlMillis how long in milliseconds a file can be used, a
+	 *        value less then {@code 1} means files never expire
+	 * @param suffix appended to the key to get the name of a file
+	 */
+	public FileCache(File cacheDir, int maxFiles, long ttlMillis, final String suffix){
+		_cacheDir = cacheDir;
+		_maxFiles = maxFiles;
+		_ttlMillis = ttlMillis;
+		_suffix = suffix;
+		_fileCount = -1;
+	}
+
+	/**
+	 * Gets a new SHA-256 digest for computing keys
+	 * @return
+	 */
+	public static MessageDigest getKeyDigest(){
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch(NoSuchAlgorithmException nsae){
+			// every Java platform is required to support SHA-256
+			throw new IllegalStateException(nsae);
+		}
+	}
+
+	/**
+	 * Gets the hash computed by {@code digest} as a key
+	 * @param digest
+	 * @return lower case hex encoded hash
+	 */
+	public static String getKey(MessageDigest digest){
+		byte[] hash = digest.digest();
+		StringBuilder hex = new StringBuilder(hash.length * 2);
+		for (byte b : hash){
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+			hex.append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * Gets the file stored under {@code key}
+	 * @param key
+	 * @return file or {@code null} if there is none or it expired, in
+	 *         which case it is removed
+	 */
+	public File get(final String key){
+		File cacheFile = getFile(key);
+		if (!cacheFile.isFile()){
+			return null;
+		}
+		if (_ttlMillis > 0 &&
+				System.currentTimeMillis() - cacheFile.lastModified() > _ttlMillis){
+			remove(key);
+			return null;
+		}
+		return cacheFile;
+	}
+
+	/**
+	 * Writes the file stored under {@code key}, replacing any existing file
+	 * @param key
+	 * @param writer writes the content of the file
+	 * @throws IOException if there is an error writing the file
+	 */
+	public void put(final String key, ContentWriter writer) throws IOException {
+		try (PendingFile pendingFile = newPendingFile(key)){
+			writer.write(pendingFile.getOutputStream());
+			pendingFile.commit();
+		}
+	}
+
+	/**
+	 * Starts writing the file stored under {@code key}, for content that
+	 * is produced bit by bit by the caller. The caller must close the
+	 * returned object
+	 * @param key
+	 * @return pending file
+	 * @throws IOException if the temporary file cannot be created
+	 */
+	public PendingFile newPendingFile(final String key) throws IOException {
+		return new PendingFile(key);
+	}
+
+	/**
+	 * Removes the file stored under {@code key}, if any
+	 * @param key
+	 */
+	public void remove(final String key){
+		if (getFile(key).delete()){
+			synchronized (this){
+				if (_fileCount > 0){
+					_fileCount--;
+				}
+			}
+		}
+	}
+
+	private File getFile(final String key){
+		return new File(_cacheDir, key + _suffix);
+	}
+
+	/**
+	 * Counts a new file and, once there are more than the maximum number
+	 * of files, removes the oldest files until only 90% of that number
+	 * remain so the directory is not listed on every write
+	 */
+	private synchronized void updateFileCount(){
+		if (_fileCount < 0){
+			_fileCount = listFiles().length;
+		} else {
+			_fileCount++;
+		}
+		if (_fileCount <= _maxFiles){
+			return;
+		}
+		File[] cacheFiles = listFiles();
+		Arrays.sort(cacheFiles, Comparator.comparingLong(File::lastModified));
+		int numToDelete = cacheFiles.length - (int)(_maxFiles * 0.9);
+		for (int i = 0; i < numToDelete; i++){
+			if (!cacheFiles[i].delete()){
+				LOGGER.warn("Unable to delete cached file " + cacheFiles[i].getAbsolutePath());
+			}
+		}
+		_fileCount = listFiles().length;
+	}
+
+	private File[] listFiles(){
+		File[] cacheFiles = _cacheDir.listFiles((dir, name) -> name.endsWith(_suffix));
+		return cacheFiles == null ? new File[0] : cacheFiles;
+	}
+}
@@ -0,0 +1,362 @@
+package org.cytoscape.app.communitydetection.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.cytoscape.app.communitydetection.PropertiesHelper;
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.events.AddedEdgesEvent;
+import org.cytoscape.model.events.AddedEdgesListener;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedEvent;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedListener;
+import org.cytoscape.model.events.RemovedEdgesEvent;
+import org.cytoscape.model.events.RemovedEdgesListener;
+import org.cytoscape.model.events.RemovedNodesEvent;
+import org.cytoscape.model.events.RemovedNodesListener;
+import org.cytoscape.model.events.RowsSetEvent;
+import org.cytoscape.model.events.RowsSetListener;
+
+/**
+ * Gets the members of a community node in a hierarchy network from the
+ * {@value AppUtils#COLUMN_CD_MEMBER_LIST} column.
+ * <p>
+ * Normally that column holds every member of a community. If the network
+ * column {@value AppUtils#COLUMN_CD_MEMBER_LIST_DIRECT_ONLY} is
+ * {@code true} the column only holds the members that are not also
+ * members of a child community, or every member if two of them share a
+ * name, as written by
+ * {@link org.cytoscape.app.communitydetection.hierarchy.MemberListNetworkUpdator}.
+ * In that case the full member list is the union of the member lists of
+ * the community and of every community reachable from it by following
+ * edges from source to target, where a name appears as many times as it
+ * does in any one of those lists. This gives the same list, duplicate
+ * names included, as a network storing every member. Those lists are
+ * computed when requested and the most recently used ones are kept in a
+ * bounded cache.
+ * <p>
+ * The shared instance is registered as a listener so cached member lists
+ * of a network are dropped when its edges or nodes change or it is
+ * destroyed, and every cached list is dropped when any
+ * {@value AppUtils#COLUMN_CD_MEMBER_LIST} or
+ * {@value AppUtils#COLUMN_CD_MEMBER_LIST_DIRECT_ONLY} value is set.
+ * <p>
+ * This object is thread safe
+ *
+ * @author churas
+ */
+public class MemberListLookup implements RowsSetListener, AddedEdgesListener,
+		RemovedEdgesListener, RemovedNodesListener, NetworkAboutToBeDestroyedListener {
+
+	private final int _cacheSize;
+	private final Map<CacheKey, List<String>> _cache;
+
+	private static class SingletonHelper {
+		private static final MemberListLookup INSTANCE = new MemberListLookup(
+				PropertiesHelper.getInstance().getMemberListCacheSize());
+	}
+
+	/**
+	 * Gets instance of this object shared by the tasks of this app, the
+	 * size of its cache is set from
+	 * {@link PropertiesHelper#getMemberListCacheSize()} the first time
+	 * this is invoked
+	 * @return
+	 */
+	public static MemberListLookup getInstance(){
+		return SingletonHelper.INSTANCE;
+	}
+
+	/**
+	 * Constructor
+	 * @param cacheSize maximum number of full member lists to keep, a
+	 *        value less then {@code 1} disables caching
+	 */
+	public MemberListLookup(int cacheSize){
+		_cacheSize = cacheSize;
+		_cache = new LinkedHashMap<CacheKey, List<String>>(16, 0.75f, true){
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<CacheKey, List<String>> eldest){
+				return size() > _cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Tells if {@code hierarchyNetwork} only stores direct members in
+	 * {@value AppUtils#COLUMN_CD_MEMBER_LIST}
+	 * @param hierarchyNetwork
+	 * @return {@code true} if only direct members are stored
+	 */
+	public boolean isDirectMemberList(CyNetwork hierarchyNetwork){
+		if (hierarchyNetwork.getDefaultNetworkTable()
+				.getColumn(AppUtils.COLUMN_CD_MEMBER_LIST_DIRECT_ONLY) == null){
+			return false;
+		}
+		return Boolean.TRUE.equals(hierarchyNetwork.getRow(hierarchyNetwork)
+				.get(AppUtils.COLUMN_CD_MEMBER_LIST_DIRECT_ONLY, Boolean.class));
+	}
+
+	/**
+	 * Gets the members of {@code node}. If {@code hierarchyNetwork} stores
+	 * every member this is the value of
+	 * {@value AppUtils#COLUMN_CD_MEMBER_LIST} split on
+	 * {@link AppUtils#CD_MEMBER_LIST_DELIMITER}, otherwise it is the
+	 * sorted union of the member lists of {@code node} and of its
+	 * descendants as described in the class documentation
+	 * @param hierarchyNetwork hierarchy network
+	 * @param node community node
+	 * @return members or {@code null} if the column does not exist or
+	 *         {@code node} has no value
+	 */
+	public List<String> getMemberList(CyNetwork hierarchyNetwork, CyNode node){
+		if (!isDirectMemberList(hierarchyNetwork)){
+			String rawMemberList = getRawMemberList(hierarchyNetwork, node);
+			if (rawMemberList == null){
+				return null;
+			}
+			return Arrays.asList(rawMemberList.split(AppUtils.CD_MEMBER_LIST_DELIMITER));
+		}
+		if (getRawMemberList(hierarchyNetwork, node) == null){
+			return null;
+		}
+		CacheKey key = new CacheKey(hierarchyNetwork, node);
+		List<String> memberList = getCachedMemberList(key);
+		if (memberList != null){
+			return memberList;
+		}
+		memberList = computeMemberList(hierarchyNetwork, node);
+		if (_cacheSize > 0){
+			synchronized (_cache){
+				_cache.put(key, memberList);
+			}
+		}
+		return memberList;
+	}
+
+	/**
+	 * Gets the members of {@code node} as a single string. If
+	 * {@code hierarchyNetwork} stores every member the value of
+	 * {@value AppUtils#COLUMN_CD_MEMBER_LIST} is returned as is, otherwise
+	 * the members from {@link #getMemberList(org.cytoscape.model.CyNetwork, org.cytoscape.model.CyNode)}
+	 * are joined with a space
+	 * @param hierarchyNetwork hierarchy network
+	 * @param node community node
+	 * @return members or {@code null} if the column does not exist or
+	 *         {@code node} has no value
+	 */
+	public String getMemberListAsString(CyNetwork hierarchyNetwork, CyNode node){
+		if (!isDirectMemberList(hierarchyNetwork)){
+			return getRawMemberList(hierarchyNetwork, node);
+		}
+		List<String> memberList = getMemberList(hierarchyNetwork, node);
+		if (memberList == null){
+			return null;
+		}
+		return String.join(" ", memberList);
+	}
+
+	/**
+	 * Gets {@code rawMemberList} in a form where lists with the same
+	 * members are equal no matter the order of the members or how often
+	 * they appear
+	 * @param rawMemberList members delimited by
+	 *        {@link AppUtils#CD_MEMBER_LIST_DELIMITER}, can be {@code null}
+	 * @return distinct members sorted and joined with a space or
+	 *         {@code null} if {@code rawMemberList} is {@code null}
+	 */
+	public static String getCanonicalMemberList(final String rawMemberList){
+		if (rawMemberList == null){
+			return null;
+		}
+		TreeSet<String> members = new TreeSet<>(Arrays.asList(
+				rawMemberList.split(AppUtils.CD_MEMBER_LIST_DELIMITER)));
+		members.remove("");
+		return String.join(" ", members);
+	}
+
+	/**
+	 * Removes all cached member lists
+	 */
+	public void clear(){
+		synchronized (_cache){
+			_cache.clear();
+		}
+	}
+
+	/**
+	 * Removes cached member lists of nodes in {@code network}
+	 * @param network
+	 */
+	public void clear(CyNetwork network){
+		if (network == null){
+			return;
+		}
+		final long networkSUID = network.getSUID();
+		synchronized (_cache){
+			_cache.keySet().removeIf((key) -> key.networkSUID == networkSUID);
+		}
+	}
+
+	/**
+	 * Drops all cached member lists if a member list value was set
+	 * @param e
+	 */
+	@Override
+	public void handleEvent(RowsSetEvent e) {
+		if (e.containsColumn(AppUtils.COLUMN_CD_MEMBER_LIST)
+				|| e.containsColumn(AppUtils.COLUMN_CD_MEMBER_LIST_DIRECT_ONLY)){
+			clear();
+		}
+	}
+
+	/**
+	 * Drops cached member lists of the network edges were added to
+	 * @param e
+	 */
+	@Override
+	public void handleEvent(AddedEdgesEvent e) {
+		clear(e.getSource());
+	}
+
+	/**
+	 * Drops cached member lists of the network edges were removed from
+	 * @param e
+	 */
+	@Override
+	public void handleEvent(RemovedEdgesEvent e) {
+		clear(e.getSource());
+	}
+
+	/**
+	 * Drops cached member lists of the network nodes were removed from
+	 * @param e
+	 */
+	@Override
+	public void handleEvent(RemovedNodesEvent e) {
+		clear(e.getSource());
+	}
+
+	/**
+	 * Drops cached member lists of the network being destroyed
+	 * @param e
+	 */
+	@Override
+	public void handleEvent(NetworkAboutToBeDestroyedEvent e) {
+		clear(e.getNetwork());
+	}
+
+	private List<String> getCachedMemberList(CacheKey key){
+		synchronized (_cache){
+			return _cache.get(key);
+		}
+	}
+
+	private String getRawMemberList(CyNetwork hierarchyNetwork, CyNode node){
+		if (hierarchyNetwork.getDefaultNodeTable().getColumn(AppUtils.COLUMN_CD_MEMBER_LIST) == null){
+			return null;
+		}
+		return hierarchyNetwork.getRow(node).get(AppUtils.COLUMN_CD_MEMBER_LIST, String.class);
+	}
+
+	/**
+	 * Walks the communities reachable from {@code node} collecting their
+	 * member lists. A descendant whose full member list is already
+	 * cached is not walked
+	 * @param hierarchyNetwork
+	 * @param node
+	 * @return unmodifiable sorted list of members
+	 */
+	private List<String> computeMemberList(CyNetwork hierarchyNetwork, CyNode node){
+		Map<String, Integer> memberCounts = new TreeMap<>();
+		Set<CyNode> visited = new HashSet<>();
+		Deque<CyNode> toVisit = new ArrayDeque<>();
+		visited.add(node);
+		toVisit.push(node);
+		while (!toVisit.isEmpty()){
+			CyNode community = toVisit.pop();
+			if (community != node){
+				List<String> cached = getCachedMemberList(new CacheKey(hierarchyNetwork, community));
+				if (cached != null){
+					addMembers(memberCounts, cached);
+					continue;
+				}
+			}
+			String rawMemberList = getRawMemberList(hierarchyNetwork, community);
+			if (rawMemberList != null){
+				addMembers(memberCounts, Arrays.asList(
+						rawMemberList.split(AppUtils.CD_MEMBER_LIST_DELIMITER)));
+			}
+			for (CyEdge edge : hierarchyNetwork.getAdjacentEdgeList(community, CyEdge.Type.OUTGOING)){
+				if (visited.add(edge.getTarget())){
+					toVisit.push(edge.getTarget());
+				}
+			}
+		}
+		List<String> members = new ArrayList<>();
+		for (Map.Entry<String, Integer> entry : memberCounts.entrySet()){
+			for (int i = 0; i < entry.getValue(); i++){
+				members.add(entry.getKey());
+			}
+		}
+		return Collections.unmodifiableList(members);
+	}
+
+	/**
+	 * Adds the names in {@code memberList} to {@code memberCounts} keeping
+	 * the larger of the count already there and the number of times the
+	 * name appears in {@code memberList}
+	 * @param memberCounts number of times each member name appears
+	 * @param memberList member names of one community
+	 */
+	private void addMembers(Map<String, Integer> memberCounts, List<String> memberList){
+		Map<String, Integer> listCounts = new HashMap<>();
+		for (String member : memberList){
+			if (!member.isEmpty()){
+				listCounts.merge(member, 1, Integer::sum);
+			}
+		}
+		for (Map.Entry<String, Integer> entry : listCounts.entrySet()){
+			memberCounts.merge(entry.getKey(), entry.getValue(), Math::max);
+		}
+	}
+
+	/**
+	 * Identifies a node in a network by SUIDs so the cache does not keep
+	 * networks from being garbage collected
+	 */
+	private static class CacheKey {
+		private final long networkSUID;
+		private final long nodeSUID;
+
+		CacheKey(CyNetwork network, CyNode node){
+			this.networkSUID = network.getSUID();
+			this.nodeSUID = node.getSUID();
+		}
+
+		@Override
+		public boolean equals(Object o){
+			if (!(o instanceof CacheKey)){
+				return false;
+			}
+			CacheKey other = (CacheKey)o;
+			return networkSUID == other.networkSUID && nodeSUID == other.nodeSUID;
+		}
+
+		@Override
+		public int hashCode(){
+			return Long.hashCode(networkSUID) * 31 + Long.hashCode(nodeSUID);
+		}
+	}
+}
@@ -42,6 +42,27 @@ public class PropertiesHelperTest {
 		ph.setSubmitRetryCount(5);
 		ph.setCommunityDetectionTimeoutMillis(6);
 		ph.setFunctionalEnrichmentTimeoutMillis(7);
+		ph.setEdgeListParallelThreshold(8);
+		ph.setEdgeListDenseNodeIds(true);
+		ph.setHttpGzipRequest(true);
+		ph.setHttpMaxConnectionsPerRoute(10);
+		ph.setHttpIdleConnectionTimeoutMillis(11);
+		ph.setPollingIntervalTimeMillis(12);
+		ph.setPollingInitialIntervalMillis(13);
+		ph.setFunctionalEnrichmentBatchSize(14);
+		ph.setMemberListParallelThreshold(15);
+		ph.setMemberListDirectOnly(true);
+		ph.setMemberListCacheSize(16);
+		ph.setHierarchyPipelined(true);
+		ph.setFunctionalEnrichmentCacheSize(17);
+		ph.setFunctionalEnrichmentCacheDiskSize(18);
+		ph.setFunctionalEnrichmentCacheTTLMillis(19);
+		ph.setCommunityDetectionCacheSize(20);
+		ph.setCommunityDetectionCacheTTLMillis(21);
+		ph.setFunctionalEnrichmentMaxInFlight(22);
+		ph.setFunctionalEnrichmentApplyBatchSize(23);
+		ph.setFunctionalEnrichmentApplyIntervalMillis(24);
+		ph.setPollingMaxIntervalMillis(25);
 		assertEquals("appy", ph.getAppName());
 		assertEquals("version", ph.getAppVersion());
 		assertEquals("url", ph.getBaseurl());
@@ -54,6 +75,27 @@ public class PropertiesHelperTest {
 		assertEquals(5, ph.getSubmitRetryCount());
 		assertEquals(6, ph.getCommunityDetectionTimeoutMillis());
 		assertEquals(7, ph.getFunctionalEnrichmentTimeoutMillis());
+		assertEquals(8, ph.getEdgeListParallelThreshold());
+		assertTrue(ph.isEdgeListDenseNodeIds());
+		assertTrue(ph.isHttpGzipRequest());
+		assertEquals(10, ph.getHttpMaxConnectionsPerRoute());
+		assertEquals(11, ph.getHttpIdleConnectionTimeoutMillis());
+		assertEquals(12, ph.getPollingIntervalTimeMillis());
+		assertEquals(13, ph.getPollingInitialIntervalMillis());
+		assertEquals(14, ph.getFunctionalEnrichmentBatchSize());
+		assertEquals(15, ph.getMemberListParallelThreshold());
+		assertTrue(ph.isMemberListDirectOnly());
+		assertEquals(16, ph.getMemberListCacheSize());
+		assertTrue(ph.isHierarchyPipelined());
+		assertEquals(17, ph.getFunctionalEnrichmentCacheSize());
+		assertEquals(18, ph.getFunctionalEnrichmentCacheDiskSize());
+		assertEquals(19, ph.getFunctionalEnrichmentCacheTTLMillis());
+		assertEquals(20, ph.getCommunityDetectionCacheSize());
+		assertEquals(21, ph.getCommunityDetectionCacheTTLMillis());
+		assertEquals(22, ph.getFunctionalEnrichmentMaxInFlight());
+		assertEquals(23, ph.getFunctionalEnrichmentApplyBatchSize());
+		assertEquals(24, ph.getFunctionalEnrichmentApplyIntervalMillis());
+		assertEquals(25, ph.getPollingMaxIntervalMillis());
 		
 		ph.setBaseurl(null);
 		assertEquals("", ph.getBaseurlHostNameOnly());
@@ -78,6 +120,27 @@ public class PropertiesHelperTest {
 		assertEquals(2, ph.getSubmitRetryCount());
 		assertEquals(1800000, ph.getCommunityDetectionTimeoutMillis());
 		assertEquals(1800000, ph.getFunctionalEnrichmentTimeoutMillis());
+		assertEquals(500000, ph.getEdgeListParallelThreshold());
+		assertFalse(ph.isEdgeListDenseNodeIds());
+		assertFalse(ph.isHttpGzipRequest());
+		assertEquals(20, ph.getHttpMaxConnectionsPerRoute());
+		assertEquals(30000, ph.getHttpIdleConnectionTimeoutMillis());
+		assertEquals(1000, ph.getPollingIntervalTimeMillis());
+		assertEquals(50, ph.getPollingInitialIntervalMillis());
+		assertEquals(10000, ph.getPollingMaxIntervalMillis());
+		assertEquals(500, ph.getFunctionalEnrichmentBatchSize());
+		assertEquals(0, ph.getMemberListParallelThreshold());
+		assertFalse(ph.isMemberListDirectOnly());
+		assertEquals(1000, ph.getMemberListCacheSize());
+		assertFalse(ph.isHierarchyPipelined());
+		assertEquals(1000, ph.getFunctionalEnrichmentCacheSize());
+		assertEquals(0, ph.getFunctionalEnrichmentCacheDiskSize());
+		assertEquals(86400000, ph.getFunctionalEnrichmentCacheTTLMillis());
+		assertEquals(50, ph.getCommunityDetectionCacheSize());
+		assertEquals(604800000, ph.getCommunityDetectionCacheTTLMillis());
+		assertEquals(20, ph.getFunctionalEnrichmentMaxInFlight());
+		assertEquals(1000, ph.getFunctionalEnrichmentApplyBatchSize());
+		assertEquals(500, ph.getFunctionalEnrichmentApplyIntervalMillis());
 	}
 	
 	@Test
@@ -105,6 +168,26 @@ public class PropertiesHelperTest {
 		props.setProperty(AppUtils.PROP_HTTP_SOCKET_TIMEOUT, "6");
 		props.setProperty(AppUtils.PROP_POLL_INTERVAL_TIME, "7");
 		props.setProperty(AppUtils.PROP_SUBMIT_RETRY_COUNT, "8");
+		props.setProperty(AppUtils.PROP_EDGELIST_PARALLEL_THRESHOLD, "9");
+		props.setProperty(AppUtils.PROP_EDGELIST_DENSE_NODE_IDS, "true");
+		props.setProperty(AppUtils.PROP_HTTP_GZIP_REQUEST, "true");
+		props.setProperty(AppUtils.PROP_HTTP_MAX_CONNECTIONS_PER_ROUTE, "10");
+		props.setProperty(AppUtils.PROP_HTTP_IDLE_CONNECTION_TIMEOUT, "11");
+		props.setProperty(AppUtils.PROP_POLL_INITIAL_INTERVAL, "12");
+		props.setProperty(AppUtils.PROP_FE_BATCH_SIZE, "13");
+		props.setProperty(AppUtils.PROP_MEMBERLIST_PARALLEL_THRESHOLD, "14");
+		props.setProperty(AppUtils.PROP_MEMBERLIST_DIRECT_ONLY, "true");
+		props.setProperty(AppUtils.PROP_MEMBERLIST_CACHE_SIZE, "15");
+		props.setProperty(AppUtils.PROP_HIERARCHY_PIPELINED, "true");
+		props.setProperty(AppUtils.PROP_FE_CACHE_SIZE, "16");
+		props.setProperty(AppUtils.PROP_FE_CACHE_DISK_SIZE, "17");
+		props.setProperty(AppUtils.PROP_FE_CACHE_TTL, "18");
+		props.setProperty(AppUtils.PROP_CD_CACHE_SIZE, "19");
+		props.setProperty(AppUtils.PROP_CD_CACHE_TTL, "20");
+		props.setProperty(AppUtils.PROP_FE_MAX_IN_FLIGHT, "21");
+		props.setProperty(AppUtils.PROP_FE_APPLY_BATCH_SIZE, "22");
+		props.setProperty(AppUtils.PROP_FE_APPLY_INTERVAL, "23");
+		props.setProperty(AppUtils.PROP_POLL_MAX_INTERVAL, "24");
 
 		PropertiesHelper ph = PropertiesHelper.getInstance();
 		
@@ -118,6 +201,27 @@ public class PropertiesHelperTest {
 		assertEquals(8, ph.getSubmitRetryCount());
 		assertEquals(2, ph.getCommunityDetectionTimeoutMillis());
 		assertEquals(3, ph.getFunctionalEnrichmentTimeoutMillis());
+		assertEquals(9, ph.getEdgeListParallelThreshold());
+		assertTrue(ph.isEdgeListDenseNodeIds());
+		assertTrue(ph.isHttpGzipRequest());
+		assertEquals(10, ph.getHttpMaxConnectionsPerRoute());
+		assertEquals(11, ph.getHttpIdleConnectionTimeoutMillis());
+		assertEquals(12, ph.getPollingInitialIntervalMillis());
+		assertEquals(13, ph.getFunctionalEnrichmentBatchSize());
+		assertEquals(14, ph.getMemberListParallelThreshold());
+		assertTrue(ph.isMemberListDirectOnly());
+		assertEquals(15, ph.getMemberListCacheSize());
+		assertTrue(ph.isHierarchyPipelined());
+		assertEquals(16, ph.getFunctionalEnrichmentCacheSize());
+		assertEquals(17, ph.getFunctionalEnrichmentCacheDiskSize());
+		assertEquals(18, ph.getFunctionalEnrichmentCacheTTLMillis());
+		assertEquals(19, ph.getCommunityDetectionCacheSize());
+		assertEquals(20, ph.getCommunityDetectionCacheTTLMillis());
+		assertEquals(21, ph.getFunctionalEnrichmentMaxInFlight());
+		assertEquals(22, ph.getFunctionalEnrichmentApplyBatchSize());
+		assertEquals(23, ph.getFunctionalEnrichmentApplyIntervalMillis());
+		assertEquals(24, ph.getPollingMaxIntervalMillis());
+		ph.updateViaProperties(null);
 	}
 	
 	@Test
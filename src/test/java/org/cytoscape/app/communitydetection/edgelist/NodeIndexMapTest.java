@@ -0,0 +1,114 @@
+package org.cytoscape.app.communitydetection.edgelist;
+
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.NetworkTestSupport;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author churas
+ */
+public class NodeIndexMapTest {
+	private NetworkTestSupport _nts = new NetworkTestSupport();
+	
+	@Test
+	public void testCreateNodeIndexMapNullNetwork(){
+		assertNull(NodeIndexMap.createNodeIndexMap(null));
+	}
+	
+	@Test
+	public void testCreateNodeIndexMapEmptyNetwork(){
+		NodeIndexMap nim = NodeIndexMap.createNodeIndexMap(_nts.getNetwork());
+		assertEquals(0, nim.size());
+		assertEquals(-1, nim.getIndex(1L));
+		assertEquals(-1L, nim.getSUID(0));
+	}
+	
+	@Test
+	public void testCreateNodeIndexMap(){
+		CyNetwork network = _nts.getNetwork();
+		CyNode nodeOne = network.addNode();
+		CyNode nodeTwo = network.addNode();
+		CyNode nodeThree = network.addNode();
+		NodeIndexMap nim = NodeIndexMap.createNodeIndexMap(network);
+		assertEquals(3, nim.size());
+		for (CyNode node : network.getNodeList()){
+			int index = nim.getIndex(node.getSUID());
+			assertTrue(index >= 0 && index < 3);
+			assertEquals((long)node.getSUID(), nim.getSUID(index));
+		}
+		assertNotEquals(nim.getIndex(nodeOne.getSUID()), nim.getIndex(nodeTwo.getSUID()));
+		assertNotEquals(nim.getIndex(nodeTwo.getSUID()), nim.getIndex(nodeThree.getSUID()));
+		assertEquals(-1, nim.getIndex(nodeThree.getSUID() + 1000L));
+		assertEquals(-1L, nim.getSUID(-1));
+		assertEquals(-1L, nim.getSUID(3));
+	}
+	
+	@Test
+	public void testCreateNodeIndexMapByNameNullNetwork(){
+		assertNull(NodeIndexMap.createNodeIndexMapByName(null));
+	}
+	
+	@Test
+	public void testCreateNodeIndexMapByName(){
+		CyNetwork network = _nts.getNetwork();
+		CyNode nodeC = network.addNode();
+		network.getRow(nodeC).set(CyNetwork.NAME, "c");
+		CyNode nodeA = network.addNode();
+		network.getRow(nodeA).set(CyNetwork.NAME, "a");
+		CyNode nodeB = network.addNode();
+		network.getRow(nodeB).set(CyNetwork.NAME, "b");
+		CyNode otherB = network.addNode();
+		network.getRow(otherB).set(CyNetwork.NAME, "b");
+		CyNode noName = network.addNode();
+		NodeIndexMap nim = NodeIndexMap.createNodeIndexMapByName(network);
+		assertEquals(5, nim.size());
+		
+		// unnamed first, then by name with ties in SUID order
+		assertEquals(0, nim.getIndex(noName.getSUID()));
+		assertEquals(1, nim.getIndex(nodeA.getSUID()));
+		assertEquals(2, nim.getIndex(nodeB.getSUID()));
+		assertEquals(3, nim.getIndex(otherB.getSUID()));
+		assertEquals(4, nim.getIndex(nodeC.getSUID()));
+		for (CyNode node : network.getNodeList()){
+			assertEquals((long)node.getSUID(), nim.getSUID(nim.getIndex(node.getSUID())));
+		}
+		assertEquals(-1, nim.getIndex(noName.getSUID() + 1000L));
+		assertEquals(-1L, nim.getSUID(5));
+	}
+	
+	@Test
+	public void testCreateNodeIndexMapByNameIgnoresSUIDs(){
+		CyNetwork network = _nts.getNetwork();
+		CyNode y = network.addNode();
+		network.getRow(y).set(CyNetwork.NAME, "y");
+		CyNode x = network.addNode();
+		network.getRow(x).set(CyNetwork.NAME, "x");
+		
+		// same nodes added in another order get other SUIDs
+		CyNetwork reloaded = _nts.getNetwork();
+		CyNode reloadedX = reloaded.addNode();
+		reloaded.getRow(reloadedX).set(CyNetwork.NAME, "x");
+		CyNode reloadedY = reloaded.addNode();
+		reloaded.getRow(reloadedY).set(CyNetwork.NAME, "y");
+		NodeIndexMap nim = NodeIndexMap.createNodeIndexMapByName(network);
+		NodeIndexMap reloadedNim = NodeIndexMap.createNodeIndexMapByName(reloaded);
+		assertEquals(0, nim.getIndex(x.getSUID()));
+		assertEquals(0, reloadedNim.getIndex(reloadedX.getSUID()));
+		assertEquals(1, nim.getIndex(y.getSUID()));
+		assertEquals(1, reloadedNim.getIndex(reloadedY.getSUID()));
+	}
+	
+	@Test
+	public void testIndicesFollowSUIDOrder(){
+		NodeIndexMap nim = new NodeIndexMap(new long[]{500L, 20L, 9000L});
+		assertEquals(0, nim.getIndex(20L));
+		assertEquals(1, nim.getIndex(500L));
+		assertEquals(2, nim.getIndex(9000L));
+		assertEquals(20L, nim.getSUID(0));
+		assertEquals(500L, nim.getSUID(1));
+		assertEquals(9000L, nim.getSUID(2));
+	}
+}
@@ -3,6 +3,9 @@ package org.cytoscape.app.communitydetection.edgelist;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import org.cytoscape.model.CyEdge;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNode;
@@ -10,6 +13,7 @@ import org.cytoscape.model.NetworkTestSupport;
 import org.cytoscape.work.TaskMonitor;
 import org.junit.Test;
 import static org.junit.Assert.*;
+import static org.junit.Assume.*;
 import static org.mockito.Mockito.*;
 
 /**
@@ -126,6 +130,307 @@ public class WriterTaskTest {
 		verifyNoInteractions(mockMonitor);
 		assertEquals(0, bos.size());
 	}
+
+	@Test
+	public void testRunOnNetworkWithCoupleNodesAndOneEdgeWithDoubleWeight() throws Exception {
+		CyNetwork network = _nts.getNetwork();
+		CyNode nodeOne = network.addNode();
+		CyNode nodeTwo = network.addNode();
+		CyEdge edge = network.addEdge(nodeOne, nodeTwo, true);
+		network.getDefaultEdgeTable().createColumn("foo", Double.class, false);
+		network.getRow(edge).set("foo", 1.0);
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		TaskMonitor mockMonitor = mock(TaskMonitor.class);
+		WriterTask wt = new WriterTask(bos, network, "foo");
+		wt.run(mockMonitor);
+		assertEquals(nodeOne.getSUID().toString()
+				+ "\t" + nodeTwo.getSUID().toString() + "\t1.0\n", bos.toString());
+	}
+	
+	@Test
+	public void testRunOnNetworkWithCoupleNodesAndOneEdgeWithLongWeight() throws Exception {
+		CyNetwork network = _nts.getNetwork();
+		CyNode nodeOne = network.addNode();
+		CyNode nodeTwo = network.addNode();
+		CyEdge edge = network.addEdge(nodeOne, nodeTwo, true);
+		network.getDefaultEdgeTable().createColumn("foo", Long.class, false);
+		network.getRow(edge).set("foo", Long.MAX_VALUE);
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		TaskMonitor mockMonitor = mock(TaskMonitor.class);
+		WriterTask wt = new WriterTask(bos, network, "foo");
+		wt.run(mockMonitor);
+		assertEquals(nodeOne.getSUID().toString()
+				+ "\t" + nodeTwo.getSUID().toString() + "\t"
+				+ Long.toString(Long.MAX_VALUE) + "\n", bos.toString());
+	}
+	
+	@Test
+	public void testRunOnNetworkLargerThenBuffer() throws Exception {
+		CyNetwork network = _nts.getNetwork();
+		network.getDefaultEdgeTable().createColumn("foo", Integer.class, false);
+		List<CyNode> nodes = new ArrayList<>();
+		for (int i = 0; i < 1000; i++){
+			nodes.add(network.addNode());
+		}
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 10000; i++){
+			CyNode src = nodes.get(i % nodes.size());
+			CyNode target = nodes.get((i * 7) % nodes.size());
+			CyEdge edge = network.addEdge(src, target, true);
+			network.getRow(edge).set("foo", i);
+			expected.append(src.getSUID()).append("\t").append(target.getSUID())
+					.append("\t").append(i).append("\n");
+		}
+		assertTrue(expected.length() > WriterTask.BUFFER_SIZE);
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		OutputStream mockStream = mock(OutputStream.class);
+		doAnswer(invocation -> {
+			bos.write((byte[])invocation.getArgument(0),
+					(int)invocation.getArgument(1),
+					(int)invocation.getArgument(2));
+			return null;
+		}).when(mockStream).write(any(byte[].class), anyInt(), anyInt());
+		WriterTask wt = new WriterTask(mockStream, network, "foo");
+		wt.run(mock(TaskMonitor.class));
+		assertEquals(expected.toString(), bos.toString());
+		
+		// edges should be written in chunks not one at a time
+		verify(mockStream, atMost(expected.length() / (WriterTask.BUFFER_SIZE / 2) + 1)).write(any(byte[].class), anyInt(), anyInt());
+		verify(mockStream, never()).write(anyInt());
+		
+		// running again should produce the same output
+		ByteArrayOutputStream secondBos = new ByteArrayOutputStream();
+		wt = new WriterTask(secondBos, network, "foo");
+		wt.run(mock(TaskMonitor.class));
+		assertEquals(expected.toString(), secondBos.toString());
+	}
+	
+	@Test
+	public void testRunWithMultipleNullAndNegativeWeights() throws Exception {
+		CyNetwork network = _nts.getNetwork();
+		CyNode nodeOne = network.addNode();
+		CyNode nodeTwo = network.addNode();
+		network.getDefaultEdgeTable().createColumn("foo", Integer.class, false);
+		List<Long> nullSUIDs = new ArrayList<>();
+		List<Long> negSUIDs = new ArrayList<>();
+		for (int i = 0; i < 40; i++){
+			CyEdge edge = network.addEdge(nodeOne, nodeTwo, true);
+			if (i % 4 == 1){
+				nullSUIDs.add(edge.getSUID());
+			} else if (i == 6 || i == 10){
+				network.getRow(edge).set("foo", -1);
+				negSUIDs.add(edge.getSUID());
+			} else {
+				network.getRow(edge).set("foo", i);
+			}
+		}
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		WriterTask wt = new WriterTask(bos, network, "foo");
+		try {
+			wt.run(mock(TaskMonitor.class));
+			fail("Expected exception");
+		} catch(Exception e){
+			assertTrue(e.getMessage(), e.getMessage().contains("foo does not have a value for 10 rows with SUIDs: "
+					+ nullSUIDs.get(0) + ", " + nullSUIDs.get(1) + ", "));
+			assertTrue(e.getMessage(), e.getMessage().contains(nullSUIDs.get(9).toString()));
+			assertTrue(e.getMessage(), e.getMessage().contains("foo contains negative values."));
+			assertTrue(e.getMessage(), e.getMessage().contains("Negative values found in 2 rows with SUIDs: "
+					+ negSUIDs.get(0) + ", " + negSUIDs.get(1)));
+		}
+	}
+	
+	@Test
+	public void testRunWithTooManyNullWeightsToList() throws Exception {
+		CyNetwork network = _nts.getNetwork();
+		CyNode nodeOne = network.addNode();
+		CyNode nodeTwo = network.addNode();
+		network.getDefaultEdgeTable().createColumn("foo", Integer.class, false);
+		List<Long> nullSUIDs = new ArrayList<>();
+		for (int i = 0; i < WriterTask.MAX_REPORTED_SUIDS + 5; i++){
+			nullSUIDs.add(network.addEdge(nodeOne, nodeTwo, true).getSUID());
+		}
+		WriterTask wt = new WriterTask(new ByteArrayOutputStream(), network, "foo");
+		try {
+			wt.run(mock(TaskMonitor.class));
+			fail("Expected exception");
+		} catch(Exception e){
+			assertTrue(e.getMessage(), e.getMessage().contains(
+					nullSUIDs.get(WriterTask.MAX_REPORTED_SUIDS - 1) + " and 5 more"));
+			assertFalse(e.getMessage(), e.getMessage().contains(
+					nullSUIDs.get(WriterTask.MAX_REPORTED_SUIDS).toString()));
+		}
+	}
+	
+	@Test
+	public void testRunParallelMatchesSingleThreaded() throws Exception {
+		CyNetwork network = _nts.getNetwork();
+		network.getDefaultEdgeTable().createColumn("foo", Double.class, false);
+		List<CyNode> nodes = new ArrayList<>();
+		for (int i = 0; i < 100; i++){
+			nodes.add(network.addNode());
+		}
+		for (int i = 0; i < WriterTask.MIN_CHUNK_SIZE * 3 + 17; i++){
+			CyEdge edge = network.addEdge(nodes.get(i % nodes.size()),
+					nodes.get((i * 13) % nodes.size()), true);
+			network.getRow(edge).set("foo", (double)i / 3.0);
+		}
+		for (String weightCol : new String[]{null, "foo"}){
+			ByteArrayOutputStream singleBos = new ByteArrayOutputStream();
+			WriterTask wt = new WriterTask(singleBos, network, weightCol);
+			wt.run(mock(TaskMonitor.class));
+			
+			ByteArrayOutputStream parallelBos = new ByteArrayOutputStream();
+			wt = new WriterTask(parallelBos, network, weightCol, 1);
+			wt.run(mock(TaskMonitor.class));
+			assertTrue(singleBos.size() > 0);
+			assertEquals(singleBos.toString(), parallelBos.toString());
+		}
+	}
+	
+	@Test
+	public void testRunParallelWithMoreChunksThenOutstandingLimit() throws Exception {
+		CyNetwork network = _nts.getNetwork();
+		network.getDefaultEdgeTable().createColumn("foo", Integer.class, false);
+		List<CyNode> nodes = new ArrayList<>();
+		for (int i = 0; i < 100; i++){
+			nodes.add(network.addNode());
+		}
+		int numChunks = ForkJoinPool.commonPool().getParallelism()
+				* WriterTask.MAX_OUTSTANDING_CHUNKS_PER_THREAD * 2 + 1;
+		for (int i = 0; i < WriterTask.MIN_CHUNK_SIZE * numChunks; i++){
+			CyEdge edge = network.addEdge(nodes.get(i % nodes.size()),
+					nodes.get((i * 7) % nodes.size()), true);
+			network.getRow(edge).set("foo", i);
+		}
+		ByteArrayOutputStream singleBos = new ByteArrayOutputStream();
+		WriterTask wt = new WriterTask(singleBos, network, "foo");
+		wt.run(mock(TaskMonitor.class));
+
+		ByteArrayOutputStream parallelBos = new ByteArrayOutputStream();
+		wt = new WriterTask(parallelBos, network, "foo", 1);
+		wt.run(mock(TaskMonitor.class));
+		assertTrue(singleBos.size() > 0);
+		assertEquals(singleBos.toString(), parallelBos.toString());
+	}
+	
+	@Test
+	public void testRunParallelBelowThresholdOnEmptyNetwork() throws Exception {
+		CyNetwork network = _nts.getNetwork();
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		WriterTask wt = new WriterTask(bos, network, null, 1);
+		wt.run(mock(TaskMonitor.class));
+		assertEquals(0, bos.size());
+	}
+	
+	@Test
+	public void testRunParallelCombinesErrorsFromAllChunks() throws Exception {
+		CyNetwork network = _nts.getNetwork();
+		CyNode nodeOne = network.addNode();
+		CyNode nodeTwo = network.addNode();
+		network.getDefaultEdgeTable().createColumn("foo", Integer.class, false);
+		List<Long> nullSUIDs = new ArrayList<>();
+		int numEdges = WriterTask.MIN_CHUNK_SIZE * 4;
+		for (int i = 0; i < numEdges; i++){
+			CyEdge edge = network.addEdge(nodeOne, nodeTwo, true);
+			if (i == 5 || i == numEdges - 1){
+				nullSUIDs.add(edge.getSUID());
+			} else {
+				network.getRow(edge).set("foo", 1);
+			}
+		}
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		WriterTask wt = new WriterTask(bos, network, "foo", 1);
+		try {
+			wt.run(mock(TaskMonitor.class));
+			fail("Expected exception");
+		} catch(Exception e){
+			assertEquals("foo does not have a value for 2 rows with SUIDs: "
+					+ nullSUIDs.get(0) + ", " + nullSUIDs.get(1)
+					+ " Please select a column with values in all cells",
+					e.getMessage());
+		}
+		assertEquals(0, bos.size());
+	}
+	
+	@Test
+	public void testRunWithNodeIndexMap() throws Exception {
+		CyNetwork network = _nts.getNetwork();
+		CyNode nodeOne = network.addNode();
+		CyNode nodeTwo = network.addNode();
+		CyNode nodeThree = network.addNode();
+		network.addEdge(nodeOne, nodeTwo, true);
+		network.addEdge(nodeThree, nodeOne, true);
+		NodeIndexMap nim = NodeIndexMap.createNodeIndexMap(network);
+		for (int threshold : new int[]{0, 1}){
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			WriterTask wt = new WriterTask(bos, network, null, threshold, nim);
+			wt.run(mock(TaskMonitor.class));
+			assertEquals(nim.getIndex(nodeOne.getSUID()) + "\t" + nim.getIndex(nodeTwo.getSUID())
+					+ "\n" + nim.getIndex(nodeThree.getSUID()) + "\t"
+					+ nim.getIndex(nodeOne.getSUID()) + "\n", bos.toString());
+		}
+	}
+	
+	@Test
+	public void testRunWithNodeIndexMapMissingNode() throws Exception {
+		CyNetwork network = _nts.getNetwork();
+		NodeIndexMap nim = NodeIndexMap.createNodeIndexMap(network);
+		CyNode nodeOne = network.addNode();
+		CyNode nodeTwo = network.addNode();
+		network.addEdge(nodeOne, nodeTwo, true);
+		WriterTask wt = new WriterTask(new ByteArrayOutputStream(), network, null, 0, nim);
+		try {
+			wt.run(mock(TaskMonitor.class));
+			fail("Expected IOException");
+		} catch(IOException io){
+			assertEquals("Node with SUID: " + nodeOne.getSUID()
+					+ " is not in node index map", io.getMessage());
+		}
+	}
+	
+	/**
+	 * Measures edges/second written for 1 million and 10 million
+	 * edge networks. This is skipped unless {@code -Dcd.benchmark=true}
+	 * is set and the larger network needs a few gigabytes of heap
+	 * @throws Exception 
+	 */
+	@Test
+	public void benchmarkRunOnLargeNetworks() throws Exception {
+		assumeTrue(Boolean.getBoolean("cd.benchmark"));
+		for (int numEdges : new int[]{1000000, 10000000}){
+			CyNetwork network = _nts.getNetwork();
+			network.getDefaultEdgeTable().createColumn("foo", Double.class, false);
+			int numNodes = numEdges / 10;
+			List<CyNode> nodes = new ArrayList<>(numNodes);
+			for (int i = 0; i < numNodes; i++){
+				nodes.add(network.addNode());
+			}
+			for (int i = 0; i < numEdges; i++){
+				CyEdge edge = network.addEdge(nodes.get(i % numNodes),
+						nodes.get((int)((i * 31L) % numNodes)), true);
+				network.getRow(edge).set("foo", (double)(i % 100) / 10.0);
+			}
+			for (String weightCol : new String[]{null, "foo"}){
+				for (int threshold : new int[]{0, 1}){
+					WriterTask wt = new WriterTask(new OutputStream(){
+						@Override
+						public void write(int b) throws IOException {
+						}
+						@Override
+						public void write(byte[] b, int off, int len) throws IOException {
+						}
+					}, network, weightCol, threshold);
+					long start = System.nanoTime();
+					wt.run(mock(TaskMonitor.class));
+					double seconds = (double)(System.nanoTime() - start) / 1.0e9;
+					System.out.println("WriterTask " + numEdges + " edges, weight column: "
+							+ weightCol + ", parallel: " + (threshold > 0) + " took "
+							+ seconds + " seconds ("
+							+ (long)((double)numEdges / seconds) + " edges/second)");
+				}
+			}
+		}
+	}
 	
 	
 }
@@ -0,0 +1,194 @@
+package org.cytoscape.app.communitydetection.hierarchy;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import org.cytoscape.app.communitydetection.rest.CDRequestDataWriter;
+import org.cytoscape.app.communitydetection.rest.CDResultReader;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+
+/**
+ *
+ * @author churas
+ */
+public class CommunityDetectionResultCacheTest {
+
+	@Rule
+	public TemporaryFolder _folder = new TemporaryFolder();
+
+	private ObjectMapper _mapper = new ObjectMapper();
+
+	private CommunityDetectionResultCache getCache(){
+		CommunityDetectionResultCache cache = new CommunityDetectionResultCache(10, 0);
+		cache.setCacheDirectory(new File(_folder.getRoot(), "cache"));
+		return cache;
+	}
+
+	private CDRequestDataWriter getEdgeListWriter(final String edgeList){
+		return (out) -> out.write(edgeList.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private CommunityDetectionResult getResult(final String result){
+		CommunityDetectionResult cdResult = new CommunityDetectionResult();
+		cdResult.setStatus(CommunityDetectionResult.COMPLETE_STATUS);
+		cdResult.setResult(_mapper.getNodeFactory().textNode(result));
+		return cdResult;
+	}
+
+	private final CDResultReader<String> _textReader = (parser) -> parser.getText();
+
+	@Test
+	public void testIsEnabled(){
+		CommunityDetectionResultCache cache = new CommunityDetectionResultCache(10, 0);
+		assertFalse(cache.isEnabled());
+		cache.setCacheDirectory(_folder.getRoot());
+		assertTrue(cache.isEnabled());
+		cache.setCacheDirectory(null);
+		assertFalse(cache.isEnabled());
+
+		cache = new CommunityDetectionResultCache(0, 0);
+		cache.setCacheDirectory(_folder.getRoot());
+		assertFalse(cache.isEnabled());
+		cache.put("key", getResult("1,2,c-m;"));
+		assertNull(cache.get("key"));
+		assertEquals(0, _folder.getRoot().listFiles().length);
+	}
+
+	@Test
+	public void testGetKey() throws Exception {
+		CommunityDetectionResultCache cache = getCache();
+		CommunityDetectionAlgorithm algo = new CommunityDetectionAlgorithm();
+		algo.setName("louvain");
+		algo.setDockerImage("image:1");
+		Map<String, String> params = new HashMap<>();
+		params.put("--a", "1");
+		params.put("--b", "2");
+		String key = cache.getKey(algo, params, getEdgeListWriter("1\t2\t1.0\n"));
+		assertTrue(key.matches("[0-9a-f]{64}"));
+
+		Map<String, String> otherParams = new HashMap<>();
+		otherParams.put("--b", "2");
+		otherParams.put("--a", "1");
+		assertEquals(key, cache.getKey(algo, otherParams, getEdgeListWriter("1\t2\t1.0\n")));
+
+		// weight, edges, parameters and algorithm are all part of key
+		assertNotEquals(key, cache.getKey(algo, params, getEdgeListWriter("1\t2\t2.0\n")));
+		assertNotEquals(key, cache.getKey(algo, params, getEdgeListWriter("1\t3\t1.0\n")));
+		assertNotEquals(key, cache.getKey(algo, null, getEdgeListWriter("1\t2\t1.0\n")));
+		algo.setDockerImage("image:2");
+		assertNotEquals(key, cache.getKey(algo, params, getEdgeListWriter("1\t2\t1.0\n")));
+	}
+
+	@Test
+	public void testPutAndGet() throws Exception {
+		CommunityDetectionResultCache cache = getCache();
+		assertNull(cache.get("key"));
+		assertNull(cache.get("key", _textReader));
+		cache.put("key", null);
+		cache.put("key", new CommunityDetectionResult());
+		assertNull(cache.get("key"));
+
+		cache.put("key", getResult("1,2,c-m;"));
+		File cacheFile = new File(new File(_folder.getRoot(), "cache"),
+				"key" + CommunityDetectionResultCache.CACHE_FILE_SUFFIX);
+		assertTrue(cacheFile.isFile());
+
+		CommunityDetectionResult cdResult = cache.get("key");
+		assertEquals(CommunityDetectionResult.COMPLETE_STATUS, cdResult.getStatus());
+		assertEquals("1,2,c-m;", cdResult.getResult().asText());
+		assertEquals("1,2,c-m;", cache.get("key", _textReader));
+	}
+
+	@Test
+	public void testGetKeyWriteError() throws Exception {
+		CommunityDetectionAlgorithm algo = new CommunityDetectionAlgorithm();
+		algo.setName("louvain");
+		try {
+			getCache().getKey(algo, null, (dataOut) -> {
+				dataOut.write('1');
+				throw new IOException("failed");
+			});
+			fail("Expected exception");
+		} catch(IOException io){
+			assertEquals("failed", io.getMessage());
+		}
+	}
+
+	@Test
+	public void testResultCopy() throws Exception {
+		assertNull(new CommunityDetectionResultCache(10, 0).newResultCopy("key"));
+
+		CommunityDetectionResultCache cache = getCache();
+		byte[] response = "{\"id\": \"task\", \"status\": \"complete\", \"result\": \"1,2,c-m;\", \"progress\": 100}"
+				.getBytes(StandardCharsets.UTF_8);
+		try (CommunityDetectionResultCache.ResultCopy copy = cache.newResultCopy("key")){
+			copy.write(response, 0, 10);
+		}
+		assertNull(cache.get("key"));
+
+		try (CommunityDetectionResultCache.ResultCopy copy = cache.newResultCopy("key")){
+			copy.write(response[0]);
+			copy.write(response, 1, response.length - 1);
+			assertNull(cache.get("key"));
+			copy.commit();
+		}
+		assertEquals("1,2,c-m;", cache.get("key", _textReader));
+		CommunityDetectionResult cdResult = cache.get("key");
+		assertEquals(CommunityDetectionResult.COMPLETE_STATUS, cdResult.getStatus());
+		assertEquals("1,2,c-m;", cdResult.getResult().asText());
+
+		// commit after close does not replace the stored result
+		CommunityDetectionResultCache.ResultCopy copy = cache.newResultCopy("key");
+		copy.write("{\"result\": \"x\"}".getBytes(StandardCharsets.UTF_8));
+		copy.close();
+		copy.commit();
+		assertEquals("1,2,c-m;", cache.get("key", _textReader));
+	}
+
+	@Test
+	public void testCorruptFileIsRemoved() throws Exception {
+		CommunityDetectionResultCache cache = getCache();
+		cache.put("key", getResult("1,2,c-m;"));
+		File cacheFile = new File(new File(_folder.getRoot(), "cache"),
+				"key" + CommunityDetectionResultCache.CACHE_FILE_SUFFIX);
+		Files.write(cacheFile.toPath(), "not gzip".getBytes(StandardCharsets.UTF_8));
+		try {
+			cache.get("key", _textReader);
+			fail("Expected exception");
+		} catch(IOException io){
+			// expected
+		}
+		assertFalse(cacheFile.exists());
+
+		cache.put("key", getResult("1,2,c-m;"));
+		Files.write(cacheFile.toPath(), "not gzip".getBytes(StandardCharsets.UTF_8));
+		assertNull(cache.get("key"));
+		assertFalse(cacheFile.exists());
+	}
+
+	@Test
+	public void testReaderErrorKeepsFile() throws Exception {
+		CommunityDetectionResultCache cache = getCache();
+		cache.put("key", getResult("1,2,c-m;"));
+		try {
+			cache.get("key", (parser) -> {
+				throw new IOException("failed");
+			});
+			fail("Expected exception");
+		} catch(IOException io){
+			assertEquals("failed", io.getMessage());
+			assertFalse(io instanceof JsonParseException);
+		}
+		assertEquals("1,2,c-m;", cache.get("key", _textReader));
+	}
+}
@@ -1,5 +1,9 @@
 package org.cytoscape.app.communitydetection.hierarchy;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -26,44 +30,23 @@ import org.ndexbio.cxio.aspects.datamodels.ATTRIBUTE_DATA_TYPE;
 public class CustomDataNetworkUpdatorTest {
 	
 	private NetworkTestSupport _nts = new NetworkTestSupport();
-
-	@Test
-	public void testUpdateNetworkWithCustomDataWithNullArgs(){
-		CustomDataNetworkUpdator updator = new CustomDataNetworkUpdator();
-		CX2NodeAttributes nodeAttrs = new CX2NodeAttributes();
-		Map<Long, CyNode> nMap = new LinkedHashMap<>();
-		CyNetwork network = mock(CyNetwork.class);
-		
-		try {
-			updator.updateNetworkWithCustomData(null, nodeAttrs, nMap);
-			fail("Expected exception");
-		} catch (CommunityDetectionException cde){
-			assertEquals("network is null", cde.getMessage());
-		}
-		
-		try {
-			updator.updateNetworkWithCustomData(network, null, nMap);
-			fail("Expected exception");
-		} catch (CommunityDetectionException cde){
-			assertEquals("nodeAttrs is null", cde.getMessage());
-		}
-		
-		try {
-			updator.updateNetworkWithCustomData(network, nodeAttrs, null);
-			fail("Expected exception");
-		} catch (CommunityDetectionException cde){
-			assertEquals("node map is null", cde.getMessage());
-		}
-	}
 	
+	/**
+	 * Converts {@code nodeAttrs} to the CX2 fragment returned by the
+	 * CD Service
+	 */
+	private JsonNode toJson(CX2NodeAttributes nodeAttrs){
+		return new ObjectMapper().valueToTree(nodeAttrs);
+	}
+
 	@Test
-	public void testUpdateNetworkWithCustomDataWithEmptyNodeAttrs() throws CommunityDetectionException {
+	public void testUpdateNetworkWithNodeAttributesEmptyNodeAttrs() throws CommunityDetectionException {
 		CustomDataNetworkUpdator updator = new CustomDataNetworkUpdator();
 		CX2NodeAttributes nodeAttrs = new CX2NodeAttributes();
 		Map<Long, CyNode> nMap = new LinkedHashMap<>();
 		CyNetwork network = mock(CyNetwork.class);
 		try {
-			updator.updateNetworkWithCustomData(network, nodeAttrs, nMap);
+			updator.updateNetworkWithNodeAttributes(network, toJson(nodeAttrs), nMap);
 			fail("Expected exception");
 		} catch(CommunityDetectionException cde){
 			assertEquals("Attribute Declarations missing", cde.getMessage());
@@ -108,7 +91,7 @@ public class CustomDataNetworkUpdatorTest {
 		nMap.put(nodeTwo.getSUID(), nodeTwo);
 		nMap.put(nodeThree.getSUID(), nodeThree);
 		CustomDataNetworkUpdator updator = new CustomDataNetworkUpdator();
-		updator.updateNetworkWithCustomData(network, nodeAttrs, nMap);
+		updator.updateNetworkWithNodeAttributes(network, toJson(nodeAttrs), nMap);
 		
 		assertEquals((Integer)1, (Integer)network.getRow(nodeOne).get(hidefColName, Integer.class));
 		assertEquals((Integer)2, (Integer)network.getRow(nodeTwo).get(hidefColName, Integer.class));
@@ -155,7 +138,7 @@ public class CustomDataNetworkUpdatorTest {
 		nMap.put(nodeTwo.getSUID(), nodeTwo);
 		nMap.put(nodeThree.getSUID(), nodeThree);
 		CustomDataNetworkUpdator updator = new CustomDataNetworkUpdator();
-		updator.updateNetworkWithCustomData(network, nodeAttrs, nMap);
+		updator.updateNetworkWithNodeAttributes(network, toJson(nodeAttrs), nMap);
 		
 		assertEquals((Double)1.0, (Double)network.getRow(nodeOne).get(hidefColName, Double.class), 0.1);
 		assertEquals((Double)2.0, (Double)network.getRow(nodeTwo).get(hidefColName, Double.class), 0.1);
@@ -218,8 +201,140 @@ public class CustomDataNetworkUpdatorTest {
 		nMap.put(nodeOne.getSUID(), nodeOne);
 	
 		CustomDataNetworkUpdator updator = new CustomDataNetworkUpdator();
-		updator.updateNetworkWithCustomData(network, nodeAttrs, nMap);
+		updator.updateNetworkWithNodeAttributes(network, toJson(nodeAttrs), nMap);
 		
 		assertEquals(theObj, network.getRow(nodeOne).get(colName, theClass));
 	}
+	
+	private Map<Long, CyNode> getNodeMap(CyNode... nodes){
+		Map<Long, CyNode> nMap = new HashMap<>();
+		for (CyNode node : nodes){
+			nMap.put(node.getSUID(), node);
+		}
+		return nMap;
+	}
+	
+	@Test
+	public void testUpdateNetworkWithNodeAttributesNullArgs() throws Exception {
+		CustomDataNetworkUpdator updator = new CustomDataNetworkUpdator();
+		CyNetwork network = mock(CyNetwork.class);
+		JsonNode nodeAttrs = new ObjectMapper().readTree("{}");
+		try {
+			updator.updateNetworkWithNodeAttributes(network, (JsonNode)null, new HashMap<>());
+			fail("Expected exception");
+		} catch (CommunityDetectionException cde){
+			assertEquals("nodeAttrs is null", cde.getMessage());
+		}
+		try {
+			updator.updateNetworkWithNodeAttributes(null, nodeAttrs, new HashMap<>());
+			fail("Expected exception");
+		} catch (CommunityDetectionException cde){
+			assertEquals("network is null", cde.getMessage());
+		}
+		try {
+			updator.updateNetworkWithNodeAttributes(network, (JsonParser)null, new HashMap<>());
+			fail("Expected exception");
+		} catch (CommunityDetectionException cde){
+			assertEquals("parser is null", cde.getMessage());
+		}
+		try {
+			updator.updateNetworkWithNodeAttributes(network, nodeAttrs, null);
+			fail("Expected exception");
+		} catch (CommunityDetectionException cde){
+			assertEquals("node map is null", cde.getMessage());
+		}
+	}
+	
+	@Test
+	public void testUpdateNetworkWithNodeAttributesMissingDeclarations() throws Exception {
+		CustomDataNetworkUpdator updator = new CustomDataNetworkUpdator();
+		CyNetwork network = _nts.getNetwork();
+		CyNode node = network.addNode();
+		JsonNode nodeAttrs = new ObjectMapper().readTree("{\"nodes\": [{\"id\": "
+				+ node.getSUID() + ", \"v\": {\"p1\": 1}}]}");
+		try {
+			updator.updateNetworkWithNodeAttributes(network, nodeAttrs, getNodeMap(node));
+			fail("Expected exception");
+		} catch(CommunityDetectionException cde){
+			assertEquals("Attribute Declarations missing", cde.getMessage());
+		}
+		
+		try {
+			updator.updateNetworkWithNodeAttributes(network,
+					new ObjectMapper().readTree("[]"), getNodeMap(node));
+			fail("Expected exception");
+		} catch(CommunityDetectionException cde){
+			assertEquals("Node attributes are not a JSON object", cde.getMessage());
+		}
+	}
+	
+	@Test
+	public void testUpdateNetworkWithNodeAttributesValidData() throws Exception {
+		CyNetwork network = _nts.getNetwork();
+		CyNode nodeOne = network.addNode();
+		CyNode nodeTwo = network.addNode();
+		CyNode nodeThree = network.addNode();
+		String json = "{\"attributeDeclarations\": [{\"nodes\": {"
+				+ "\"HiDeF_persistence\": {\"d\": \"integer\", \"a\": \"p1\", \"v\": 0},"
+				+ "\"score\": {\"d\": \"double\", \"a\": \"p2\", \"v\": 0.0},"
+				+ "\"flag\": {\"d\": \"boolean\", \"v\": false},"
+				+ "\"label\": {\"d\": \"string\"}}},"
+				+ "{\"edges\": {\"weight\": {\"d\": \"double\"}}}],"
+				+ "\"metaData\": [{\"name\": \"nodes\"}],"
+				+ "\"nodes\": [{\"id\": " + nodeOne.getSUID()
+				+ ", \"v\": {\"p1\": 1, \"p2\": 3, \"flag\": true, \"label\": \"one\", \"other\": [1, 2]}, \"x\": 1.0},"
+				+ "{\"v\": {\"p1\": 2, \"p2\": 0.5, \"label\": null}, \"id\": " + nodeTwo.getSUID() + "},"
+				+ "{\"id\": 999999, \"v\": {\"p1\": 3}}]}";
+		JsonNode nodeAttrs = new ObjectMapper().readTree(json);
+		CustomDataNetworkUpdator updator = new CustomDataNetworkUpdator();
+		updator.updateNetworkWithNodeAttributes(network, nodeAttrs,
+				getNodeMap(nodeOne, nodeTwo, nodeThree));
+		
+		assertNull(network.getDefaultNodeTable().getColumn("weight"));
+		assertNull(network.getDefaultNodeTable().getColumn("other"));
+		assertEquals(1, (int)network.getRow(nodeOne).get("HiDeF_persistence", Integer.class));
+		assertEquals(3.0, network.getRow(nodeOne).get("score", Double.class), 0.01);
+		assertTrue(network.getRow(nodeOne).get("flag", Boolean.class));
+		assertEquals("one", network.getRow(nodeOne).get("label", String.class));
+		assertEquals(2, (int)network.getRow(nodeTwo).get("HiDeF_persistence", Integer.class));
+		assertEquals(0.5, network.getRow(nodeTwo).get("score", Double.class), 0.01);
+		assertFalse(network.getRow(nodeTwo).get("flag", Boolean.class));
+		assertNull(network.getRow(nodeTwo).get("label", String.class));
+		assertEquals(0, (int)network.getRow(nodeThree).get("HiDeF_persistence", Integer.class));
+	}
+	
+	@Test
+	public void testUpdateNetworkWithNodeAttributesNodesBeforeDeclarations() throws Exception {
+		CyNetwork network = _nts.getNetwork();
+		CyNode nodeOne = network.addNode();
+		String json = "{\"nodes\": [{\"id\": " + nodeOne.getSUID() + ", \"v\": {\"p1\": 5}}],"
+				+ "\"attributeDeclarations\": [{\"nodes\": {"
+				+ "\"count\": {\"d\": \"long\", \"a\": \"p1\", \"v\": 0}}}]}";
+		
+		// use parser directly to check nothing relies on the tree
+		try (JsonParser parser = new JsonFactory().createParser(json)){
+			parser.nextToken();
+			CustomDataNetworkUpdator updator = new CustomDataNetworkUpdator();
+			updator.updateNetworkWithNodeAttributes(network, parser, getNodeMap(nodeOne));
+		}
+		assertEquals(5L, (long)network.getRow(nodeOne).get("count", Long.class));
+	}
+	
+	@Test
+	public void testUpdateNetworkWithNodeAttributesInvalidValue() throws Exception {
+		CyNetwork network = _nts.getNetwork();
+		CyNode nodeOne = network.addNode();
+		String json = "{\"attributeDeclarations\": [{\"nodes\": {"
+				+ "\"count\": {\"d\": \"integer\", \"a\": \"p1\", \"v\": 0}}}],"
+				+ "\"nodes\": [{\"id\": " + nodeOne.getSUID() + ", \"v\": {\"p1\": \"abc\"}}]}";
+		CustomDataNetworkUpdator updator = new CustomDataNetworkUpdator();
+		try {
+			updator.updateNetworkWithNodeAttributes(network,
+					new ObjectMapper().readTree(json), getNodeMap(nodeOne));
+			fail("Expected exception");
+		} catch(CommunityDetectionException cde){
+			assertEquals("Invalid value for column count: abc", cde.getMessage());
+		}
+		assertEquals(0, (int)network.getRow(nodeOne).get("count", Integer.class));
+	}
 }
@@ -0,0 +1,142 @@
+package org.cytoscape.app.communitydetection.hierarchy;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionException;
+
+/**
+ *
+ * @author churas
+ */
+public class EdgeListTokenizerTest {
+
+	/**
+	 * Collects edges as strings of format
+	 * SOURCE,TARGET,SOURCEISCOMMUNITY,TARGETISCOMMUNITY,INTERACTION
+	 */
+	private static class CollectingHandler implements EdgeListTokenizer.EdgeHandler {
+		List<String> edges = new ArrayList<>();
+		List<String> interactions = new ArrayList<>();
+
+		@Override
+		public void handleEdge(long source, long target, boolean sourceIsCommunity,
+				boolean targetIsCommunity, String interaction, CharSequence entry) {
+			edges.add(source + "," + target + "," + sourceIsCommunity + ","
+					+ targetIsCommunity + "," + interaction);
+			interactions.add(interaction);
+		}
+	}
+
+	@Test
+	public void testEmptyAndWhitespaceOnly() throws CommunityDetectionException {
+		CollectingHandler handler = new CollectingHandler();
+		EdgeListTokenizer tokenizer = new EdgeListTokenizer(handler);
+		tokenizer.write("");
+		tokenizer.write(" ;\n; ;;");
+		tokenizer.finish();
+		assertEquals(0, handler.edges.size());
+		assertEquals(0, tokenizer.getEdgeCount());
+	}
+
+	@Test
+	public void testValidEdges() throws CommunityDetectionException {
+		CollectingHandler handler = new CollectingHandler();
+		EdgeListTokenizer tokenizer = new EdgeListTokenizer(handler);
+		tokenizer.write("10,11,c-c;10,1,c-m;\n 11 , 2 , C-M ;9223372036854775807,-3,c-x");
+		tokenizer.finish();
+		assertEquals(4, tokenizer.getEdgeCount());
+		assertEquals("10,11,true,true,c-c", handler.edges.get(0));
+		assertEquals("10,1,true,false,c-m", handler.edges.get(1));
+		assertEquals("11,2,true,false,C-M", handler.edges.get(2));
+		assertEquals("9223372036854775807,-3,true,false,c-x", handler.edges.get(3));
+
+		// the common types reuse the same string
+		assertSame(EdgeListTokenizer.COMMUNITY_TO_COMMUNITY, handler.interactions.get(0));
+		assertSame(EdgeListTokenizer.COMMUNITY_TO_MEMBER, handler.interactions.get(1));
+	}
+
+	@Test
+	public void testEntrySplitAcrossWrites() throws CommunityDetectionException {
+		CollectingHandler handler = new CollectingHandler();
+		EdgeListTokenizer tokenizer = new EdgeListTokenizer(handler);
+		char[] edgeList = "123,456,c-c;123,7,c-m;".toCharArray();
+		for (int i = 0; i < edgeList.length; i++){
+			tokenizer.write(edgeList, i, 1);
+		}
+		tokenizer.finish();
+		assertEquals(2, handler.edges.size());
+		assertEquals("123,456,true,true,c-c", handler.edges.get(0));
+		assertEquals("123,7,true,false,c-m", handler.edges.get(1));
+	}
+
+	@Test
+	public void testInvalidEntries(){
+		String[] invalidEntries = {"hi,bye", "1,2", "1,2,c-c,4", "1,,c-c", "1,2,cc",
+				"1 2,3,c-c", "1,2,c c-c", "9223372036854775808,1,c-c", "1-,2,c-c",
+				"--1,2,c-c"};
+		for (String entry : invalidEntries){
+			CollectingHandler handler = new CollectingHandler();
+			EdgeListTokenizer tokenizer = new EdgeListTokenizer(handler);
+			try {
+				tokenizer.write("1,2,c-c;" + entry + "  ;3,4,c-c;");
+				fail("Expected exception for: " + entry);
+			} catch(CommunityDetectionException cde){
+				assertEquals("Invalid edge entry: " + entry, cde.getMessage());
+			}
+			assertEquals(1, handler.edges.size());
+		}
+	}
+
+	@Test
+	public void testInvalidLastEntryFoundByFinish() throws CommunityDetectionException {
+		EdgeListTokenizer tokenizer = new EdgeListTokenizer(new CollectingHandler());
+		tokenizer.write("1,2,c-c;3,4");
+		try {
+			tokenizer.finish();
+			fail("Expected exception");
+		} catch(CommunityDetectionException cde){
+			assertEquals("Invalid edge entry: 3,4", cde.getMessage());
+		}
+	}
+
+	@Test
+	public void testWriterFedByJsonParser() throws IOException {
+		CollectingHandler handler = new CollectingHandler();
+		EdgeListTokenizer tokenizer = new EdgeListTokenizer(handler);
+		StringBuilder sb = new StringBuilder("{\"communityDetectionResult\": \"");
+		for (int i = 0; i < 10000; i++){
+			sb.append("1,").append(i).append(",c-m;");
+		}
+		sb.append("2,3,c-c\"}");
+		try (JsonParser parser = new JsonFactory().createParser(sb.toString())){
+			parser.nextToken();
+			parser.nextToken();
+			parser.nextToken();
+			try (Writer writer = tokenizer.asWriter()){
+				parser.getText(writer);
+			}
+		}
+		assertEquals(10001, handler.edges.size());
+		assertEquals("1,9999,true,false,c-m", handler.edges.get(9999));
+		assertEquals("2,3,true,true,c-c", handler.edges.get(10000));
+	}
+
+	@Test
+	public void testWriterWrapsError() throws IOException {
+		EdgeListTokenizer tokenizer = new EdgeListTokenizer(new CollectingHandler());
+		Writer writer = tokenizer.asWriter();
+		try {
+			writer.write("1,x,c-c;");
+			fail("Expected exception");
+		} catch(IOException io){
+			assertTrue(io.getCause() instanceof CommunityDetectionException);
+			assertEquals("Invalid edge entry: 1,x,c-c", io.getMessage());
+		}
+	}
+}
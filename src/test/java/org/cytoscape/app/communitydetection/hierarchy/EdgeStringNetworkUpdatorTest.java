@@ -1,9 +1,14 @@
 package org.cytoscape.app.communitydetection.hierarchy;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.TextNode;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import org.cytoscape.app.communitydetection.edgelist.NodeIndexMap;
+import org.cytoscape.model.CyEdge;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNode;
 import org.cytoscape.model.NetworkTestSupport;
@@ -27,25 +32,32 @@ public class EdgeStringNetworkUpdatorTest {
 		String edgeStr = "hi";
 		EdgeStringNetworkUpdator updator = new EdgeStringNetworkUpdator();
 		try {
-			updator.updateNetworkWithEdgeString(null, newNetwork, edgeStr);
+			updator.updateNetworkWithEdgeString(null, newNetwork, edgeStr, new HierarchyIndex.Builder());
 			fail("Expected exception");
 		} catch(CommunityDetectionException cde){
 			assertEquals("Parent network is null", cde.getMessage());
 		}
 
 		try {
-			updator.updateNetworkWithEdgeString(parentNetwork, null, edgeStr);
+			updator.updateNetworkWithEdgeString(parentNetwork, null, edgeStr, new HierarchyIndex.Builder());
 			fail("Expected exception");
 		} catch(CommunityDetectionException cde){
 			assertEquals("New network is null", cde.getMessage());
 		}
 		
 		try {
-			updator.updateNetworkWithEdgeString(parentNetwork, newNetwork, null);
+			updator.updateNetworkWithEdgeString(parentNetwork, newNetwork, null, new HierarchyIndex.Builder());
 			fail("Expected exception");
 		} catch(CommunityDetectionException cde){
 			assertEquals("Edge list is null", cde.getMessage());
 		}
+		
+		try {
+			updator.updateNetworkWithEdgeString(parentNetwork, newNetwork, edgeStr, null);
+			fail("Expected exception");
+		} catch(CommunityDetectionException cde){
+			assertEquals("Hierarchy index builder is null", cde.getMessage());
+		}
 		verifyNoInteractions(parentNetwork);
 		verifyNoInteractions(newNetwork);
 	}
@@ -55,7 +67,8 @@ public class EdgeStringNetworkUpdatorTest {
 		CyNetwork parentNetwork = _nts.getNetwork();
 		CyNetwork newNetwork = _nts.getNetwork();
 		EdgeStringNetworkUpdator updator = new EdgeStringNetworkUpdator();
-		Map<Long, CyNode> res = updator.updateNetworkWithEdgeString(parentNetwork, newNetwork, "");
+		Map<Long, CyNode> res = updator.updateNetworkWithEdgeString(parentNetwork, newNetwork, "",
+				new HierarchyIndex.Builder());
 		assertEquals(0, res.size());
 		
 	}
@@ -66,7 +79,8 @@ public class EdgeStringNetworkUpdatorTest {
 		CyNetwork newNetwork = _nts.getNetwork();
 		EdgeStringNetworkUpdator updator = new EdgeStringNetworkUpdator();
 		try {
-			updator.updateNetworkWithEdgeString(parentNetwork, newNetwork, "hi,bye;there");
+			updator.updateNetworkWithEdgeString(parentNetwork, newNetwork, "hi,bye;there",
+					new HierarchyIndex.Builder());
 			fail("Expected Exception");
 		} catch(CommunityDetectionException cde){
 			assertEquals("Invalid edge entry: hi,bye", cde.getMessage());
@@ -116,9 +130,10 @@ public class EdgeStringNetworkUpdatorTest {
 			edgeStr += "," + nodeId + ",c-m;";
 		}
 		edgeStr += ";";
-		HierarchyHelper helper = HierarchyHelper.getInstance();
-		helper.clearAll();
-		Map<Long, CyNode> nMap = updator.updateNetworkWithEdgeString(parentNetwork, newNetwork, edgeStr);
+		HierarchyIndex.Builder indexBuilder = new HierarchyIndex.Builder();
+		Map<Long, CyNode> nMap = updator.updateNetworkWithEdgeString(parentNetwork, newNetwork,
+				edgeStr, indexBuilder);
+		HierarchyIndex index = indexBuilder.build();
 		
 		assertEquals(2, newNetwork.getNodeCount());
 		assertEquals(1, newNetwork.getEdgeCount());
@@ -133,9 +148,123 @@ public class EdgeStringNetworkUpdatorTest {
 		assertEquals(EdgeStringNetworkUpdator.COMMUNITY_CHAR + newNodeTwo,
 				newNetwork.getRow(nodeTwo).get(CyNetwork.NAME, String.class));
 
-		assertEquals(3, helper.getMemberList(newNetwork, nodeTwo).size());
+		assertEquals(3, index.getMemberNodes(nodeTwo).size());
 		
-		assertEquals(4, helper.getMemberList(newNetwork, nodeOne).size());
+		assertEquals(4, index.getMemberNodes(nodeOne).size());
+		
+	}
+	
+	@Test
+	public void testUpdateNetworkWithNodeIndexMapSuccess() throws CommunityDetectionException {
+		CyNetwork parentNetwork = _nts.getNetwork();
+		CyNode pNodeOne = parentNetwork.addNode();
+		CyNode pNodeTwo = parentNetwork.addNode();
+		CyNode pNodeThree = parentNetwork.addNode();
+		NodeIndexMap nim = NodeIndexMap.createNodeIndexMap(parentNetwork);
 		
+		CyNetwork newNetwork = _nts.getNetwork();
+		EdgeStringNetworkUpdator updator = new EdgeStringNetworkUpdator();
+		String edgeStr = "3,4,c-c;3," + nim.getIndex(pNodeOne.getSUID()) + ",c-m;4,"
+				+ nim.getIndex(pNodeTwo.getSUID()) + ",c-m;4,"
+				+ nim.getIndex(pNodeThree.getSUID()) + ",c-m;";
+		HierarchyIndex.Builder indexBuilder = new HierarchyIndex.Builder();
+		Map<Long, CyNode> nMap = updator.updateNetworkWithEdgeString(parentNetwork,
+				newNetwork, edgeStr, nim, indexBuilder);
+		HierarchyIndex index = indexBuilder.build();
+		assertEquals(2, newNetwork.getNodeCount());
+		assertEquals(1, newNetwork.getEdgeCount());
+		CyNode nodeOne = nMap.get(3L);
+		assertEquals(EdgeStringNetworkUpdator.COMMUNITY_CHAR + "3",
+				newNetwork.getRow(nodeOne).get(CyNetwork.NAME, String.class));
+		CyNode nodeTwo = nMap.get(4L);
+		assertEquals(2, index.getMemberNodes(nodeTwo).size());
+		assertTrue(index.getMemberNodes(nodeTwo).contains(pNodeTwo));
+		assertTrue(index.getMemberNodes(nodeTwo).contains(pNodeThree));
+		assertEquals(3, index.getMemberNodes(nodeOne).size());
+		assertTrue(index.getMemberNodes(nodeOne).contains(pNodeOne));
+	}
+	
+	@Test
+	public void testUpdateNetworkWithNodeIndexMapInvalidIndex() throws CommunityDetectionException {
+		CyNetwork parentNetwork = _nts.getNetwork();
+		parentNetwork.addNode();
+		NodeIndexMap nim = NodeIndexMap.createNodeIndexMap(parentNetwork);
+		EdgeStringNetworkUpdator updator = new EdgeStringNetworkUpdator();
+		try {
+			updator.updateNetworkWithEdgeString(parentNetwork, _nts.getNetwork(),
+					"3,5,c-m;", nim, new HierarchyIndex.Builder());
+			fail("Expected exception");
+		} catch(CommunityDetectionException cde){
+			assertEquals("Invalid node index: 5 in edge entry: 3,5,c-m", cde.getMessage());
+		}
+	}
+	
+	@Test
+	public void testUpdateNetworkWithUnknownMemberOrSource() throws CommunityDetectionException {
+		CyNetwork parentNetwork = _nts.getNetwork();
+		EdgeStringNetworkUpdator updator = new EdgeStringNetworkUpdator();
+		try {
+			updator.updateNetworkWithEdgeString(parentNetwork, _nts.getNetwork(),
+					"3,123456,c-m;", new HierarchyIndex.Builder());
+			fail("Expected exception");
+		} catch(CommunityDetectionException cde){
+			assertEquals("Node 123456 not found in parent network for edge entry: 3,123456,c-m",
+					cde.getMessage());
+		}
+		try {
+			updator.updateNetworkWithEdgeString(parentNetwork, _nts.getNetwork(),
+					"3,4,m-c;", new HierarchyIndex.Builder());
+			fail("Expected exception");
+		} catch(CommunityDetectionException cde){
+			assertEquals("Source is not a community in edge entry: 3,4,m-c",
+					cde.getMessage());
+		}
+	}
+	
+	@Test
+	public void testUpdateNetworkWithEdgeListJsonNode() throws Exception {
+		CyNetwork parentNetwork = _nts.getNetwork();
+		CyNode pNodeOne = parentNetwork.addNode();
+		CyNode pNodeTwo = parentNetwork.addNode();
+		CyNetwork newNetwork = _nts.getNetwork();
+		EdgeStringNetworkUpdator updator = new EdgeStringNetworkUpdator();
+		HierarchyIndex.Builder indexBuilder = new HierarchyIndex.Builder();
+		JsonNode edgeList = new TextNode("\n100,101,c-c;100," + pNodeOne.getSUID()
+				+ ",c-m;101," + pNodeTwo.getSUID() + ",c-m;\n");
+		Map<Long, CyNode> nMap = updator.updateNetworkWithEdgeList(parentNetwork,
+				newNetwork, edgeList, null, indexBuilder);
+		HierarchyIndex index = indexBuilder.build();
+		assertEquals(2, newNetwork.getNodeCount());
+		assertEquals(1, newNetwork.getEdgeCount());
+		assertEquals("c-c", newNetwork.getRow(newNetwork.getEdgeList().get(0))
+				.get(CyEdge.INTERACTION, String.class));
+		assertEquals(2, index.getMemberNodes(nMap.get(100L)).size());
+		assertEquals(1, index.getMemberNodes(nMap.get(101L)).size());
+	}
+	
+	@Test
+	public void testUpdateNetworkWithEdgeListInvalid() throws Exception {
+		EdgeStringNetworkUpdator updator = new EdgeStringNetworkUpdator();
+		try {
+			updator.updateNetworkWithEdgeList(_nts.getNetwork(), _nts.getNetwork(),
+					(JsonNode)null, null, new HierarchyIndex.Builder());
+			fail("Expected exception");
+		} catch(CommunityDetectionException cde){
+			assertEquals("Edge list is null", cde.getMessage());
+		}
+		try {
+			updator.updateNetworkWithEdgeList(_nts.getNetwork(), _nts.getNetwork(),
+					new ObjectMapper().createObjectNode(), null, new HierarchyIndex.Builder());
+			fail("Expected exception");
+		} catch(CommunityDetectionException cde){
+			assertEquals("Edge list is null", cde.getMessage());
+		}
+		try {
+			updator.updateNetworkWithEdgeList(_nts.getNetwork(), _nts.getNetwork(),
+					new TextNode("hi,bye;there"), null, new HierarchyIndex.Builder());
+			fail("Expected exception");
+		} catch(CommunityDetectionException cde){
+			assertEquals("Invalid edge entry: hi,bye", cde.getMessage());
+		}
 	}
 }
@@ -0,0 +1,244 @@
+package org.cytoscape.app.communitydetection.hierarchy;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.NetworkTestSupport;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author churas
+ */
+public class HierarchyIndexTest {
+
+	private NetworkTestSupport _nts = new NetworkTestSupport();
+
+	@Test
+	public void testEmptyIndex(){
+		HierarchyIndex index = new HierarchyIndex.Builder().build();
+		CyNode node = _nts.getNetwork().addNode();
+		assertEquals(0, index.getCommunityCount());
+		assertEquals(0, index.getMemberCount());
+		assertEquals(-1, index.getCommunityIndex(node));
+		assertEquals(-1, index.getCommunityIndex(null));
+		assertTrue(index.getMemberNodes(node).isEmpty());
+	}
+
+	@Test
+	public void testChildrenAndDirectMembers(){
+		CyNetwork hierarchyNetwork = _nts.getNetwork();
+		CyNetwork parentNetwork = _nts.getNetwork();
+		CyNode root = hierarchyNetwork.addNode();
+		CyNode childOne = hierarchyNetwork.addNode();
+		CyNode childTwo = hierarchyNetwork.addNode();
+		CyNode memberOne = parentNetwork.addNode();
+		CyNode memberTwo = parentNetwork.addNode();
+
+		HierarchyIndex.Builder builder = new HierarchyIndex.Builder();
+		assertEquals(0, builder.addCommunity(root));
+		assertEquals(0, builder.addCommunity(root));
+		builder.addChildCommunity(root, childTwo);
+		builder.addChildCommunity(root, childOne);
+		builder.addChildCommunity(root, childTwo);
+		builder.addMember(childOne, memberOne);
+		builder.addMember(childOne, memberOne);
+		builder.addMember(root, memberTwo);
+		HierarchyIndex index = builder.build();
+
+		assertEquals(3, index.getCommunityCount());
+		assertEquals(2, index.getMemberCount());
+		int rootIndex = index.getCommunityIndex(root);
+		int childOneIndex = index.getCommunityIndex(childOne);
+		int childTwoIndex = index.getCommunityIndex(childTwo);
+		assertEquals(0, rootIndex);
+		assertEquals(1, childTwoIndex);
+		assertEquals(2, childOneIndex);
+		assertSame(childOne, index.getCommunityNode(childOneIndex));
+
+		assertArrayEquals(new int[]{childTwoIndex, childOneIndex},
+				index.getChildCommunities(rootIndex));
+		assertEquals(0, index.getChildCommunities(childOneIndex).length);
+		assertEquals(1, index.getDirectMembers(rootIndex).length);
+		assertSame(memberTwo, index.getMemberNode(index.getDirectMembers(rootIndex)[0]));
+		assertEquals(1, index.getDirectMembers(childOneIndex).length);
+		assertEquals(0, index.getDirectMembers(childTwoIndex).length);
+	}
+
+	@Test
+	public void testMembersIncludeDescendants(){
+		CyNetwork hierarchyNetwork = _nts.getNetwork();
+		CyNetwork parentNetwork = _nts.getNetwork();
+		CyNode root = hierarchyNetwork.addNode();
+		CyNode mid = hierarchyNetwork.addNode();
+		CyNode leafOne = hierarchyNetwork.addNode();
+		CyNode leafTwo = hierarchyNetwork.addNode();
+		CyNode memberOne = parentNetwork.addNode();
+		CyNode memberTwo = parentNetwork.addNode();
+		CyNode memberThree = parentNetwork.addNode();
+
+		HierarchyIndex.Builder builder = new HierarchyIndex.Builder();
+		builder.addChildCommunity(root, mid);
+		builder.addChildCommunity(mid, leafOne);
+		builder.addChildCommunity(mid, leafTwo);
+		builder.addChildCommunity(root, leafTwo);
+		builder.addMember(leafOne, memberOne);
+		builder.addMember(leafTwo, memberTwo);
+		builder.addMember(leafTwo, memberOne);
+		builder.addMember(root, memberThree);
+		HierarchyIndex index = builder.build();
+
+		List<CyNode> rootMembers = index.getMemberNodes(root);
+		assertEquals(3, rootMembers.size());
+		assertTrue(rootMembers.contains(memberOne));
+		assertTrue(rootMembers.contains(memberTwo));
+		assertTrue(rootMembers.contains(memberThree));
+
+		List<CyNode> midMembers = index.getMemberNodes(mid);
+		assertEquals(2, midMembers.size());
+		assertFalse(midMembers.contains(memberThree));
+		assertEquals(2, index.getMemberNodes(leafTwo).size());
+		assertEquals(1, index.getMemberNodes(leafOne).size());
+
+		// returned bitset is a copy
+		BitSet members = index.getMembers(index.getCommunityIndex(leafOne));
+		members.clear();
+		assertEquals(1, index.getMemberNodes(leafOne).size());
+	}
+
+	@Test
+	public void testCycleDoesNotLoopForever(){
+		CyNetwork hierarchyNetwork = _nts.getNetwork();
+		CyNode one = hierarchyNetwork.addNode();
+		CyNode two = hierarchyNetwork.addNode();
+		CyNode member = _nts.getNetwork().addNode();
+		HierarchyIndex.Builder builder = new HierarchyIndex.Builder();
+		builder.addChildCommunity(one, two);
+		builder.addChildCommunity(two, one);
+		builder.addMember(two, member);
+		HierarchyIndex index = builder.build();
+		assertEquals(1, index.getMemberNodes(one).size());
+		assertEquals(1, index.getMemberNodes(two).size());
+	}
+
+	@Test
+	public void testDagSharesMembersAcrossParents(){
+		CyNetwork hierarchyNetwork = _nts.getNetwork();
+		CyNetwork parentNetwork = _nts.getNetwork();
+		CyNode root = hierarchyNetwork.addNode();
+		CyNode parentOne = hierarchyNetwork.addNode();
+		CyNode parentTwo = hierarchyNetwork.addNode();
+		CyNode shared = hierarchyNetwork.addNode();
+		CyNode memberOne = parentNetwork.addNode();
+		CyNode memberTwo = parentNetwork.addNode();
+		HierarchyIndex.Builder builder = new HierarchyIndex.Builder();
+		builder.addChildCommunity(root, parentOne);
+		builder.addChildCommunity(root, parentTwo);
+		builder.addChildCommunity(parentOne, shared);
+		builder.addChildCommunity(parentTwo, shared);
+		builder.addMember(shared, memberOne);
+		builder.addMember(parentTwo, memberTwo);
+		HierarchyIndex index = builder.build();
+
+		assertEquals(2, index.getMembersSize(index.getCommunityIndex(root)));
+		assertEquals(1, index.getMembersSize(index.getCommunityIndex(parentOne)));
+		assertEquals(2, index.getMembersSize(index.getCommunityIndex(parentTwo)));
+		assertEquals(1, index.getMembersSize(index.getCommunityIndex(shared)));
+		assertEquals(index.getMembers(index.getCommunityIndex(shared)),
+				index.getMembers(index.getCommunityIndex(parentOne)));
+	}
+
+	/**
+	 * Prints time taken to build an index, only
+	 * if run with {@code -Dcd.benchmark=true}
+	 */
+	private void printBuildTime(final String description, long startTime){
+		if (Boolean.getBoolean("cd.benchmark")){
+			System.out.println("Built index for hierarchy " + description + " in "
+					+ (System.currentTimeMillis() - startTime) + " ms");
+		}
+	}
+
+	/**
+	 * Chain of 10,000 communities each with one direct member which would
+	 * overflow the stack if members were computed recursively
+	 */
+	@Test(timeout = 30000)
+	public void testDeepHierarchy(){
+		int depth = 10000;
+		CyNetwork hierarchyNetwork = _nts.getNetwork();
+		CyNetwork parentNetwork = _nts.getNetwork();
+		List<CyNode> communities = new ArrayList<>();
+		for (int i = 0; i < depth; i++){
+			communities.add(hierarchyNetwork.addNode());
+		}
+		HierarchyIndex.Builder builder = new HierarchyIndex.Builder();
+		for (int i = 0; i < depth; i++){
+			if (i + 1 < depth){
+				builder.addChildCommunity(communities.get(i), communities.get(i + 1));
+			}
+			builder.addMember(communities.get(i), parentNetwork.addNode());
+		}
+		long start = System.currentTimeMillis();
+		HierarchyIndex index = builder.build();
+		printBuildTime(depth + " levels deep", start);
+		for (int i = 0; i < depth; i += 997){
+			assertEquals(depth - i, index.getMembersSize(index.getCommunityIndex(communities.get(i))));
+		}
+		assertEquals(depth, index.getMemberNodes(communities.get(0)).size());
+		assertEquals(1, index.getMemberNodes(communities.get(depth - 1)).size());
+	}
+
+	/**
+	 * Root with 100,000 child communities each with two members, one of
+	 * them shared with the next child
+	 */
+	@Test(timeout = 30000)
+	public void testWideHierarchy(){
+		int width = 100000;
+		CyNetwork hierarchyNetwork = _nts.getNetwork();
+		CyNetwork parentNetwork = _nts.getNetwork();
+		CyNode root = hierarchyNetwork.addNode();
+		List<CyNode> members = new ArrayList<>();
+		for (int i = 0; i <= width; i++){
+			members.add(parentNetwork.addNode());
+		}
+		HierarchyIndex.Builder builder = new HierarchyIndex.Builder();
+		List<CyNode> communities = new ArrayList<>();
+		for (int i = 0; i < width; i++){
+			CyNode community = hierarchyNetwork.addNode();
+			communities.add(community);
+			builder.addChildCommunity(root, community);
+			builder.addMember(community, members.get(i));
+			builder.addMember(community, members.get(i + 1));
+		}
+		long start = System.currentTimeMillis();
+		HierarchyIndex index = builder.build();
+		printBuildTime(width + " communities wide", start);
+		assertEquals(width + 1, index.getCommunityCount());
+		assertEquals(width + 1, index.getMembersSize(index.getCommunityIndex(root)));
+		assertEquals(width + 1, index.getMemberNodes(root).size());
+		for (int i = 0; i < width; i += 9973){
+			List<CyNode> memberNodes = index.getMemberNodes(communities.get(i));
+			assertEquals(2, memberNodes.size());
+			assertTrue(memberNodes.contains(members.get(i)));
+			assertTrue(memberNodes.contains(members.get(i + 1)));
+		}
+	}
+
+	@Test
+	public void testSeparateBuildsDoNotShareState(){
+		CyNetwork hierarchyNetwork = _nts.getNetwork();
+		CyNode community = hierarchyNetwork.addNode();
+		CyNode member = _nts.getNetwork().addNode();
+		HierarchyIndex.Builder builderOne = new HierarchyIndex.Builder();
+		HierarchyIndex.Builder builderTwo = new HierarchyIndex.Builder();
+		builderOne.addMember(community, member);
+		builderTwo.addCommunity(community);
+		assertEquals(1, builderOne.build().getMemberNodes(community).size());
+		assertEquals(0, builderTwo.build().getMemberNodes(community).size());
+	}
+}
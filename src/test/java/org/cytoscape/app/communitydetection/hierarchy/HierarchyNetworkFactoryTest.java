@@ -1,13 +1,18 @@
 package org.cytoscape.app.communitydetection.hierarchy;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.TextNode;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import org.cytoscape.app.communitydetection.util.AppUtils;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNetworkFactory;
 import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.model.CyNode;
 import org.cytoscape.model.NetworkTestSupport;
 import org.cytoscape.model.subnetwork.CyRootNetworkManager;
 import org.cytoscape.session.CyNetworkNaming;
@@ -104,9 +109,8 @@ public class HierarchyNetworkFactoryTest {
 		CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
 		Map<String, String> customParameters = new HashMap<>();
 		
-		String edgeStr = tn.asText().trim();
 		EdgeStringNetworkUpdator mockEdgeUpdator = mock(EdgeStringNetworkUpdator.class);
-		when(mockEdgeUpdator.updateNetworkWithEdgeString(eq(parentNetwork), any(CyNetwork.class), eq(edgeStr))).thenReturn(null);
+		when(mockEdgeUpdator.updateNetworkWithEdgeList(eq(parentNetwork), any(CyNetwork.class), eq((JsonNode)tn), isNull(), any(HierarchyIndex.Builder.class))).thenReturn(null);
 		hnf.setAlternateEdgeStringNetworkUpdator(mockEdgeUpdator);
 
 		MemberListNetworkUpdator mockMemberUpdator = mock(MemberListNetworkUpdator.class);
@@ -117,6 +121,7 @@ public class HierarchyNetworkFactoryTest {
 		
 		CyNetwork newNet = hnf.getHierarchyNetwork(parentNetwork, cdResult,
 				              	"weight", cda, customParameters);
+		verify(mockEdgeUpdator).updateNetworkWithEdgeList(eq(parentNetwork), any(CyNetwork.class), eq((JsonNode)tn), isNull(), any(HierarchyIndex.Builder.class));
 	}
 	
 	@Test
@@ -141,7 +146,7 @@ public class HierarchyNetworkFactoryTest {
 		hnf.setAlternateCustomDataNetworkUpdator(mockCustomUpdator);
 		
 		EdgeStringNetworkUpdator mockEdgeUpdator = mock(EdgeStringNetworkUpdator.class);
-		when(mockEdgeUpdator.updateNetworkWithEdgeString(eq(parentNetwork), any(CyNetwork.class), eq("11022"))).thenReturn(null);
+		when(mockEdgeUpdator.updateNetworkWithEdgeList(eq(parentNetwork), any(CyNetwork.class), eq(res.get("communityDetectionResult")), isNull(), any(HierarchyIndex.Builder.class))).thenReturn(null);
 		hnf.setAlternateEdgeStringNetworkUpdator(mockEdgeUpdator);
 
 		MemberListNetworkUpdator mockMemberUpdator = mock(MemberListNetworkUpdator.class);
@@ -152,5 +157,163 @@ public class HierarchyNetworkFactoryTest {
 		
 		CyNetwork newNet = hnf.getHierarchyNetwork(parentNetwork, cdResult,
 				              	"weight", cda, customParameters);
+		verify(mockEdgeUpdator).updateNetworkWithEdgeList(eq(parentNetwork), any(CyNetwork.class), eq(res.get("communityDetectionResult")), isNull(), any(HierarchyIndex.Builder.class));
+		verify(mockCustomUpdator).updateNetworkWithNodeAttributes(any(CyNetwork.class), eq(res.get("nodeAttributesAsCX2")), isNull());
+	}
+	
+	private JsonParser getResultParser(final String jsonStr) throws IOException {
+		JsonParser parser = new ObjectMapper().getFactory().createParser(jsonStr);
+		parser.nextToken();
+		return parser;
+	}
+	
+	private CyNode getNodeByName(CyNetwork network, final String name){
+		for (CyNode node : network.getNodeList()){
+			if (name.equals(network.getRow(node).get(CyNetwork.NAME, String.class))){
+				return node;
+			}
+		}
+		return null;
+	}
+	
+	@Test
+	public void testGetHierarchyNetworkFromParserWithInvalidArgs() throws Exception {
+		HierarchyNetworkFactory hnf = new HierarchyNetworkFactory(_nts.getNetworkFactory(),
+				mock(CyNetworkNaming.class), mock(CyRootNetworkManager.class),
+				_nts.getNetworkManager());
+		CyNetwork parentNetwork = _nts.getNetwork();
+		CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
+		StageTimer timer = new StageTimer(null);
+		try {
+			hnf.getHierarchyNetwork(null, getResultParser("\"\""), "weight", cda, null, null, timer);
+			fail("Expected exception");
+		} catch(CommunityDetectionException cde){
+			assertEquals("parent network is null", cde.getMessage());
+		}
+		try {
+			hnf.getHierarchyNetwork(parentNetwork, null, "weight", cda, null, null, timer);
+			fail("Expected exception");
+		} catch(CommunityDetectionException cde){
+			assertEquals("result parser is null", cde.getMessage());
+		}
+		try {
+			hnf.getHierarchyNetwork(parentNetwork, getResultParser("\"\""), "weight", null, null, null, timer);
+			fail("Expected exception");
+		} catch(CommunityDetectionException cde){
+			assertEquals("algorithm is null", cde.getMessage());
+		}
+		try {
+			hnf.getHierarchyNetwork(parentNetwork, getResultParser("\"\""), "weight", cda, null, null, null);
+			fail("Expected exception");
+		} catch(CommunityDetectionException cde){
+			assertEquals("stage timer is null", cde.getMessage());
+		}
+		try {
+			hnf.getHierarchyNetwork(parentNetwork, getResultParser("null"), "weight", cda, null, null, timer);
+			fail("Expected exception");
+		} catch(CommunityDetectionException cde){
+			assertEquals("community detection result is null", cde.getMessage());
+		}
+		try {
+			hnf.getHierarchyNetwork(parentNetwork, getResultParser("{\"foo\": [1, 2]}"),
+					"weight", cda, null, null, timer);
+			fail("Expected exception");
+		} catch(CommunityDetectionException cde){
+			assertEquals("No communityDetectionResult found in JSON output", cde.getMessage());
+		}
+	}
+	
+	@Test
+	public void testGetHierarchyNetworkFromParser() throws Exception {
+		CyNetwork parentNetwork = _nts.getNetwork();
+		CyNode nodeA = parentNetwork.addNode();
+		parentNetwork.getRow(nodeA).set(CyNetwork.NAME, "a");
+		CyNode nodeB = parentNetwork.addNode();
+		parentNetwork.getRow(nodeB).set(CyNetwork.NAME, "b");
+		
+		CyNetworkManager networkManager = mock(CyNetworkManager.class);
+		HierarchyNetworkFactory hnf = new HierarchyNetworkFactory(_nts.getNetworkFactory(),
+				mock(CyNetworkNaming.class), mock(CyRootNetworkManager.class),
+				networkManager);
+		AttributeNetworkUpdator mockAttribUpdator = mock(AttributeNetworkUpdator.class);
+		hnf.setAlternateAttributeNetworkUpdator(mockAttribUpdator);
+		
+		// node attributes come before the edge list so they are held
+		// until the edge list has been read
+		String jsonStr = "{\"nodeAttributesAsCX2\": {\"attributeDeclarations\": [{\"nodes\": "
+				+ "{ \"col\": { \"d\": \"integer\", \"a\": \"p1\", \"v\": 0}}}],"
+				+ "\"nodes\": [{\"id\": 100,\"v\": { \"p1\": 5}}]},"
+				+ "\"other\": [1, {\"x\": 2}],"
+				+ "\"communityDetectionResult\": \"100,101,c-c;100," + nodeA.getSUID()
+				+ ",c-m;101," + nodeB.getSUID() + ",c-m;\"}";
+		JsonParser parser = getResultParser(jsonStr);
+		CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
+		Map<String, String> customParameters = new HashMap<>();
+		StageTimer timer = new StageTimer(null);
+		CyNetwork newNet = hnf.getHierarchyNetwork(parentNetwork, parser,
+				"weight", cda, customParameters, null, timer);
+		assertEquals(JsonToken.END_OBJECT, parser.currentToken());
+		assertNull(parser.nextToken());
+		
+		assertEquals(2, newNet.getNodeCount());
+		assertEquals(1, newNet.getEdgeCount());
+		CyNode parent = getNodeByName(newNet, "C100");
+		CyNode child = getNodeByName(newNet, "C101");
+		assertEquals("a b", newNet.getRow(parent).get(AppUtils.COLUMN_CD_MEMBER_LIST, String.class));
+		assertEquals(2, (int)newNet.getRow(parent).get(AppUtils.COLUMN_CD_MEMBER_LIST_SIZE, Integer.class));
+		assertEquals(5, (int)newNet.getRow(parent).get("col", Integer.class));
+		assertEquals("b", newNet.getRow(child).get(AppUtils.COLUMN_CD_MEMBER_LIST, String.class));
+		assertEquals(0, (int)newNet.getRow(child).get("col", Integer.class));
+		assertEquals(parentNetwork.getSUID(), newNet.getRow(newNet).get(AppUtils.COLUMN_CD_ORIGINAL_NETWORK, Long.class));
+		
+		verify(networkManager).addNetwork(newNet);
+		verify(mockAttribUpdator).setNetworkAttributes(parentNetwork, newNet, "weight",
+				cda, null, customParameters);
+		Map<String, Long> durations = timer.getDurations();
+		assertTrue(durations.containsKey(HierarchyNetworkFactory.READ_STAGE));
+		assertTrue(durations.containsKey(HierarchyNetworkFactory.NODE_ATTRIBUTES_STAGE));
+		assertTrue(durations.containsKey(HierarchyNetworkFactory.NETWORK_ATTRIBUTES_STAGE));
+		assertTrue(durations.containsKey(HierarchyNetworkFactory.BUILD_MEMBER_LISTS_STAGE));
+		assertTrue(durations.containsKey(HierarchyNetworkFactory.WRITE_MEMBER_LISTS_STAGE));
+	}
+	
+	@Test
+	public void testGetHierarchyNetworkFromParserOldEdgeListFormat() throws Exception {
+		CyNetwork parentNetwork = _nts.getNetwork();
+		CyNode nodeA = parentNetwork.addNode();
+		parentNetwork.getRow(nodeA).set(CyNetwork.NAME, "a");
+		HierarchyNetworkFactory hnf = new HierarchyNetworkFactory(_nts.getNetworkFactory(),
+				mock(CyNetworkNaming.class), mock(CyRootNetworkManager.class),
+				mock(CyNetworkManager.class));
+		hnf.setAlternateAttributeNetworkUpdator(mock(AttributeNetworkUpdator.class));
+		JsonParser parser = getResultParser("\"5," + nodeA.getSUID() + ",c-m;\"");
+		CyNetwork newNet = hnf.getHierarchyNetwork(parentNetwork, parser,
+				null, new CommunityDetectionAlgorithm(), null, null, new StageTimer(null));
+		assertEquals(JsonToken.VALUE_STRING, parser.currentToken());
+		assertEquals(1, newNet.getNodeCount());
+		assertEquals("a", newNet.getRow(getNodeByName(newNet, "C5"))
+				.get(AppUtils.COLUMN_CD_MEMBER_LIST, String.class));
+	}
+	
+	@Test
+	public void testGetHierarchyNetworkFromParserMemberListsFail() throws Exception {
+		CyNetwork parentNetwork = _nts.getNetwork();
+		CyNode nodeA = parentNetwork.addNode();
+		HierarchyNetworkFactory hnf = new HierarchyNetworkFactory(_nts.getNetworkFactory(),
+				mock(CyNetworkNaming.class), mock(CyRootNetworkManager.class),
+				mock(CyNetworkManager.class));
+		hnf.setAlternateAttributeNetworkUpdator(mock(AttributeNetworkUpdator.class));
+		MemberListNetworkUpdator mockMemberUpdator = mock(MemberListNetworkUpdator.class);
+		when(mockMemberUpdator.buildMemberLists(any(), any(), any()))
+				.thenThrow(new CommunityDetectionException("build failed"));
+		hnf.setAlternateMemberListNetworkUpdator(mockMemberUpdator);
+		try {
+			hnf.getHierarchyNetwork(parentNetwork, getResultParser("\"5," + nodeA.getSUID() + ",c-m;\""),
+					null, new CommunityDetectionAlgorithm(), null, null, new StageTimer(null));
+			fail("Expected exception");
+		} catch(CommunityDetectionException cde){
+			assertEquals("build failed", cde.getMessage());
+		}
+		verify(mockMemberUpdator, never()).writeMemberLists(any(), any());
 	}
 }
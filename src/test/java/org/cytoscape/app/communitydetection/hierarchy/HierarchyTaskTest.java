@@ -1,20 +1,35 @@
 package org.cytoscape.app.communitydetection.hierarchy;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.cytoscape.app.communitydetection.PropertiesHelper;
+import org.cytoscape.app.communitydetection.edgelist.NodeIndexMap;
 import org.cytoscape.app.communitydetection.edgelist.WriterTaskFactory;
+import org.cytoscape.app.communitydetection.rest.CDRequestDataWriter;
+import org.cytoscape.app.communitydetection.rest.CDResultReader;
 import org.cytoscape.app.communitydetection.rest.CDRestClient;
+import org.cytoscape.app.communitydetection.rest.CancellationToken;
 import org.cytoscape.io.write.CyWriter;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.work.TaskMonitor;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionException;
 
 /**
  *
@@ -22,6 +37,9 @@ import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
  */
 public class HierarchyTaskTest {
 	
+	@Rule
+	public TemporaryFolder _folder = new TemporaryFolder();
+	
 	@Test
 	public void testRunAlgorithmIsNull() throws Exception {
 		HierarchyTask task = new HierarchyTask(null, null, null, null,
@@ -32,11 +50,11 @@ public class HierarchyTaskTest {
 	@Test
 	public void testRunTaskIsCanceledAfterPost() throws Exception {
 		CDRestClient mockRestClient = mock(CDRestClient.class);
-		when(mockRestClient.postCDData(any(), any(), any())).thenReturn(null);
+		when(mockRestClient.postCDData(any(), any(), any(CDRequestDataWriter.class), any(CancellationToken.class))).thenReturn(null);
 		
 		CyWriter mockCyWriter = mock(CyWriter.class);
 		WriterTaskFactory mockWriterFac = mock(WriterTaskFactory.class);
-		when(mockWriterFac.createWriter(any(),any(), any())).thenReturn(mockCyWriter);
+		when(mockWriterFac.createWriter(any(),any(), any(), any())).thenReturn(mockCyWriter);
 		CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
 		HierarchyTask task = new HierarchyTask(null, null, null, null, null, cda , null, null);
 		task.setAlternateWriterTaskFactory(mockWriterFac);
@@ -46,7 +64,8 @@ public class HierarchyTaskTest {
 		task.run(mockMonitor);
 		verify(mockMonitor).setTitle("Community Detection: Creating Hierarchy Network");
 		verify(mockMonitor).setStatusMessage("Exporting the network");
-		verify(mockRestClient).setTaskCanceled(false);
+		verify(mockRestClient, never()).getCDResult(any(), any(), anyFloat(), anyFloat(),
+				anyInt(), any(CancellationToken.class));
 	}
 	
 	@Test
@@ -55,9 +74,9 @@ public class HierarchyTaskTest {
 		CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
 		HierarchyTask task = new HierarchyTask(null, null, null, null, null, cda , null, null);	
 		CDRestClient mockRestClient = mock(CDRestClient.class);
-		when(mockRestClient.postCDData(any(), any(), any())).thenReturn("resultuuid");
+		when(mockRestClient.postCDData(any(), any(), any(CDRequestDataWriter.class), any(CancellationToken.class))).thenReturn("resultuuid");
 		when(mockRestClient.getCDResult(eq("resultuuid"), eq(mockMonitor), eq(0.1f), eq(0.8f), 
-				eq(PropertiesHelper.getInstance().getCommunityDetectionTimeoutMillis()))).thenAnswer(new Answer() {
+				eq(PropertiesHelper.getInstance().getCommunityDetectionTimeoutMillis()), any(CancellationToken.class))).thenAnswer(new Answer() {
          public Object answer(InvocationOnMock invocation) {
 			 task.cancel();
              return new CommunityDetectionResult();
@@ -65,7 +84,7 @@ public class HierarchyTaskTest {
  });
 		CyWriter mockCyWriter = mock(CyWriter.class);
 		WriterTaskFactory mockWriterFac = mock(WriterTaskFactory.class);
-		when(mockWriterFac.createWriter(any(),any(), any())).thenReturn(mockCyWriter);
+		when(mockWriterFac.createWriter(any(),any(), any(), any())).thenReturn(mockCyWriter);
 								
 		task.setAlternateWriterTaskFactory(mockWriterFac);
 		task.setAlternateCDRestClient(mockRestClient);
@@ -74,24 +93,24 @@ public class HierarchyTaskTest {
 		verify(mockMonitor).setTitle("Community Detection: Creating Hierarchy Network");
 		verify(mockMonitor).setStatusMessage("Exporting the network");
 		verify(mockMonitor).setStatusMessage("Network exported, retrieving the hierarchy");
-		verify(mockRestClient).setTaskCanceled(false);
+		verify(mockMonitor, never()).setProgress(0.9);
 	}
 	
 	@Test
 	public void testRunNetworkFactoryReturnsNull() throws Exception {
 		CDRestClient mockRestClient = mock(CDRestClient.class);
-		when(mockRestClient.postCDData(any(), any(), any())).thenReturn("taskid");
+		when(mockRestClient.postCDData(any(), any(), any(CDRequestDataWriter.class), any(CancellationToken.class))).thenReturn("taskid");
 		CommunityDetectionResult cdRes = new CommunityDetectionResult();
 		TaskMonitor mockMonitor = mock(TaskMonitor.class);
 		when(mockRestClient.getCDResult(eq("resultuuid"), eq(mockMonitor), eq(0.1f), eq(0.8f), 
-				eq(PropertiesHelper.getInstance().getCommunityDetectionTimeoutMillis()))).thenReturn(cdRes);
+				eq(PropertiesHelper.getInstance().getCommunityDetectionTimeoutMillis()), any(CancellationToken.class))).thenReturn(cdRes);
 		CyNetwork mockNetwork = mock(CyNetwork.class);		
 		when(mockRestClient.getCDResult(anyString(), eq(mockMonitor), anyFloat(), anyFloat(),
-				anyInt())).thenReturn(cdRes);
+				anyInt(), any(CancellationToken.class))).thenReturn(cdRes);
 		
 		CyWriter mockCyWriter = mock(CyWriter.class);
 		WriterTaskFactory mockWriterFac = mock(WriterTaskFactory.class);
-		when(mockWriterFac.createWriter(any(),any(), any())).thenReturn(mockCyWriter);
+		when(mockWriterFac.createWriter(any(),any(), any(), any())).thenReturn(mockCyWriter);
 		CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
 		HierarchyNetworkFactory mockNetworkFactory = mock(HierarchyNetworkFactory.class);
 		HierarchyNetworkViewFactory mockNetworkViewFactory = mock(HierarchyNetworkViewFactory.class);
@@ -127,22 +146,22 @@ public class HierarchyTaskTest {
 	@Test
 	public void testRunNetworkViewFactoryIsNull() throws Exception {
 		CDRestClient mockRestClient = mock(CDRestClient.class);
-		when(mockRestClient.postCDData(any(), any(), any())).thenReturn("taskid");
+		when(mockRestClient.postCDData(any(), any(), any(CDRequestDataWriter.class), any(CancellationToken.class))).thenReturn("taskid");
 		CommunityDetectionResult cdRes = new CommunityDetectionResult();
 		TaskMonitor mockMonitor = mock(TaskMonitor.class);
 		when(mockRestClient.getCDResult(eq("resultuuid"), eq(mockMonitor), eq(0.1f), eq(0.8f), 
-				eq(PropertiesHelper.getInstance().getCommunityDetectionTimeoutMillis()))).thenReturn(cdRes);
+				eq(PropertiesHelper.getInstance().getCommunityDetectionTimeoutMillis()), any(CancellationToken.class))).thenReturn(cdRes);
 		CyNetwork mockNetwork = mock(CyNetwork.class);		
 		when(mockRestClient.getCDResult(anyString(), eq(mockMonitor), anyFloat(), anyFloat(),
-				anyInt())).thenReturn(cdRes);
+				anyInt(), any(CancellationToken.class))).thenReturn(cdRes);
 		
 		CyWriter mockCyWriter = mock(CyWriter.class);
 		WriterTaskFactory mockWriterFac = mock(WriterTaskFactory.class);
-		when(mockWriterFac.createWriter(any(),any(), any())).thenReturn(mockCyWriter);
+		when(mockWriterFac.createWriter(any(),any(), any(), any())).thenReturn(mockCyWriter);
 		CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
 		CyNetwork mockHierarchyNetwork = mock(CyNetwork.class);
 		HierarchyNetworkFactory mockNetworkFactory = mock(HierarchyNetworkFactory.class);
-		when(mockNetworkFactory.getHierarchyNetwork(eq(mockNetwork), eq(cdRes), eq("weight"), eq(cda), eq(null))).thenReturn(mockHierarchyNetwork);
+		when(mockNetworkFactory.getHierarchyNetwork(eq(mockNetwork), eq(cdRes), eq("weight"), eq(cda), eq(null), isNull())).thenReturn(mockHierarchyNetwork);
 		VisualStyleFactory mockStyleFactory = mock(VisualStyleFactory.class);
 		LayoutFactory mockLayoutFactory = mock(LayoutFactory.class);
 		HierarchyTask task = new HierarchyTask(mockNetworkFactory,
@@ -159,23 +178,23 @@ public class HierarchyTaskTest {
 	@Test
 	public void testRunStyleFactoryIsNull() throws Exception {
 		CDRestClient mockRestClient = mock(CDRestClient.class);
-		when(mockRestClient.postCDData(any(), any(), any())).thenReturn("taskid");
+		when(mockRestClient.postCDData(any(), any(), any(CDRequestDataWriter.class), any(CancellationToken.class))).thenReturn("taskid");
 		CommunityDetectionResult cdRes = new CommunityDetectionResult();
 		TaskMonitor mockMonitor = mock(TaskMonitor.class);
 		when(mockRestClient.getCDResult(eq("resultuuid"), eq(mockMonitor), eq(0.1f), eq(0.8f), 
-				eq(PropertiesHelper.getInstance().getCommunityDetectionTimeoutMillis()))).thenReturn(cdRes);
+				eq(PropertiesHelper.getInstance().getCommunityDetectionTimeoutMillis()), any(CancellationToken.class))).thenReturn(cdRes);
 		CyNetwork mockNetwork = mock(CyNetwork.class);		
 		when(mockRestClient.getCDResult(anyString(), eq(mockMonitor), anyFloat(), anyFloat(),
-				anyInt())).thenReturn(cdRes);
+				anyInt(), any(CancellationToken.class))).thenReturn(cdRes);
 		
 		CyWriter mockCyWriter = mock(CyWriter.class);
 		WriterTaskFactory mockWriterFac = mock(WriterTaskFactory.class);
-		when(mockWriterFac.createWriter(any(),any(), any())).thenReturn(mockCyWriter);
+		when(mockWriterFac.createWriter(any(),any(), any(), any())).thenReturn(mockCyWriter);
 		CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
 		CyNetwork mockHierarchyNetwork = mock(CyNetwork.class);
 		HierarchyNetworkFactory mockNetworkFactory = mock(HierarchyNetworkFactory.class);
 		HierarchyNetworkViewFactory mockNetworkViewFactory = mock(HierarchyNetworkViewFactory.class);
-		when(mockNetworkFactory.getHierarchyNetwork(eq(mockNetwork), eq(cdRes), eq("weight"), eq(cda), eq(null))).thenReturn(mockHierarchyNetwork);
+		when(mockNetworkFactory.getHierarchyNetwork(eq(mockNetwork), eq(cdRes), eq("weight"), eq(cda), eq(null), isNull())).thenReturn(mockHierarchyNetwork);
 		LayoutFactory mockLayoutFactory = mock(LayoutFactory.class);
 		HierarchyTask task = new HierarchyTask(mockNetworkFactory,
 				mockNetworkViewFactory, null, mockLayoutFactory, mockNetwork, cda , null, "weight");
@@ -191,24 +210,24 @@ public class HierarchyTaskTest {
 	@Test
 	public void testRunLayoutFactoryIsNull() throws Exception {
 		CDRestClient mockRestClient = mock(CDRestClient.class);
-		when(mockRestClient.postCDData(any(), any(), any())).thenReturn("taskid");
+		when(mockRestClient.postCDData(any(), any(), any(CDRequestDataWriter.class), any(CancellationToken.class))).thenReturn("taskid");
 		CommunityDetectionResult cdRes = new CommunityDetectionResult();
 		TaskMonitor mockMonitor = mock(TaskMonitor.class);
 		when(mockRestClient.getCDResult(eq("resultuuid"), eq(mockMonitor), eq(0.1f), eq(0.8f), 
-				eq(PropertiesHelper.getInstance().getCommunityDetectionTimeoutMillis()))).thenReturn(cdRes);
+				eq(PropertiesHelper.getInstance().getCommunityDetectionTimeoutMillis()), any(CancellationToken.class))).thenReturn(cdRes);
 		CyNetwork mockNetwork = mock(CyNetwork.class);		
 		when(mockRestClient.getCDResult(anyString(), eq(mockMonitor), anyFloat(), anyFloat(),
-				anyInt())).thenReturn(cdRes);
+				anyInt(), any(CancellationToken.class))).thenReturn(cdRes);
 		
 		CyWriter mockCyWriter = mock(CyWriter.class);
 		WriterTaskFactory mockWriterFac = mock(WriterTaskFactory.class);
-		when(mockWriterFac.createWriter(any(),any(), any())).thenReturn(mockCyWriter);
+		when(mockWriterFac.createWriter(any(),any(), any(), any())).thenReturn(mockCyWriter);
 		CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
 		CyNetwork mockHierarchyNetwork = mock(CyNetwork.class);
 		HierarchyNetworkFactory mockNetworkFactory = mock(HierarchyNetworkFactory.class);
 		HierarchyNetworkViewFactory mockNetworkViewFactory = mock(HierarchyNetworkViewFactory.class);
 		
-		when(mockNetworkFactory.getHierarchyNetwork(eq(mockNetwork), eq(cdRes), eq("weight"), eq(cda), eq(null))).thenReturn(mockHierarchyNetwork);
+		when(mockNetworkFactory.getHierarchyNetwork(eq(mockNetwork), eq(cdRes), eq("weight"), eq(cda), eq(null), isNull())).thenReturn(mockHierarchyNetwork);
 		VisualStyleFactory mockStyleFactory = mock(VisualStyleFactory.class);
 		HierarchyTask task = new HierarchyTask(mockNetworkFactory,
 				mockNetworkViewFactory, mockStyleFactory, null, mockNetwork, cda , null, "weight");
@@ -224,22 +243,22 @@ public class HierarchyTaskTest {
 	@Test
 	public void testRunSuccess() throws Exception {
 		CDRestClient mockRestClient = mock(CDRestClient.class);
-		when(mockRestClient.postCDData(any(), any(), any())).thenReturn("taskid");
+		when(mockRestClient.postCDData(any(), any(), any(CDRequestDataWriter.class), any(CancellationToken.class))).thenReturn("taskid");
 		CommunityDetectionResult cdRes = new CommunityDetectionResult();
 		TaskMonitor mockMonitor = mock(TaskMonitor.class);
 		when(mockRestClient.getCDResult(eq("resultuuid"), eq(mockMonitor), eq(0.1f), eq(0.8f), 
-				eq(PropertiesHelper.getInstance().getCommunityDetectionTimeoutMillis()))).thenReturn(cdRes);
+				eq(PropertiesHelper.getInstance().getCommunityDetectionTimeoutMillis()), any(CancellationToken.class))).thenReturn(cdRes);
 		CyNetwork mockNetwork = mock(CyNetwork.class);		
 		when(mockRestClient.getCDResult(anyString(), eq(mockMonitor), anyFloat(), anyFloat(),
-				anyInt())).thenReturn(cdRes);
+				anyInt(), any(CancellationToken.class))).thenReturn(cdRes);
 		
 		CyWriter mockCyWriter = mock(CyWriter.class);
 		WriterTaskFactory mockWriterFac = mock(WriterTaskFactory.class);
-		when(mockWriterFac.createWriter(any(),any(), any())).thenReturn(mockCyWriter);
+		when(mockWriterFac.createWriter(any(),any(), any(), any())).thenReturn(mockCyWriter);
 		CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
 		CyNetwork mockHierarchyNetwork = mock(CyNetwork.class);
 		HierarchyNetworkFactory mockNetworkFactory = mock(HierarchyNetworkFactory.class);
-		when(mockNetworkFactory.getHierarchyNetwork(eq(mockNetwork), eq(cdRes), eq("weight"), eq(cda), eq(null))).thenReturn(mockHierarchyNetwork);
+		when(mockNetworkFactory.getHierarchyNetwork(eq(mockNetwork), eq(cdRes), eq("weight"), eq(cda), eq(null), isNull())).thenReturn(mockHierarchyNetwork);
 		HierarchyNetworkViewFactory mockNetworkViewFactory = mock(HierarchyNetworkViewFactory.class);
 		VisualStyleFactory mockStyleFactory = mock(VisualStyleFactory.class);
 		LayoutFactory mockLayoutFactory = mock(LayoutFactory.class);
@@ -270,4 +289,324 @@ public class HierarchyTaskTest {
 		
 		verify(mockMonitor).setTitle("Community Detection: Creating Hierarchy Network");
 	}
+	
+	@Test
+	public void testRunDataWriterInvokesWriterTask() throws Exception {
+		CDRestClient mockRestClient = mock(CDRestClient.class);
+		when(mockRestClient.postCDData(any(), any(), any(CDRequestDataWriter.class), any(CancellationToken.class))).thenReturn(null);
+		CyNetwork mockNetwork = mock(CyNetwork.class);
+		CyWriter mockCyWriter = mock(CyWriter.class);
+		WriterTaskFactory mockWriterFac = mock(WriterTaskFactory.class);
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		when(mockWriterFac.createWriter(eq(bos), eq(mockNetwork), eq("weight"), isNull())).thenReturn(mockCyWriter);
+		CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
+		cda.setName("algo");
+		HierarchyTask task = new HierarchyTask(null, null, null, null, mockNetwork, cda , null, "weight");
+		task.setAlternateWriterTaskFactory(mockWriterFac);
+		task.setAlternateCDRestClient(mockRestClient);
+		task.cancel();
+		TaskMonitor mockMonitor = mock(TaskMonitor.class);
+		task.run(mockMonitor);
+		ArgumentCaptor<CDRequestDataWriter> writerCaptor = ArgumentCaptor.forClass(CDRequestDataWriter.class);
+		verify(mockRestClient).postCDData(eq("algo"), eq(null), writerCaptor.capture(), any(CancellationToken.class));
+		
+		writerCaptor.getValue().writeData(bos);
+		verify(mockCyWriter).run(mockMonitor);
+	}
+	
+	@Test
+	public void testRunDataWriterWrapsWriterTaskException() throws Exception {
+		CDRestClient mockRestClient = mock(CDRestClient.class);
+		when(mockRestClient.postCDData(any(), any(), any(CDRequestDataWriter.class), any(CancellationToken.class))).thenReturn(null);
+		CyWriter mockCyWriter = mock(CyWriter.class);
+		TaskMonitor mockMonitor = mock(TaskMonitor.class);
+		doThrow(new Exception("foo contains negative values.")).when(mockCyWriter).run(mockMonitor);
+		WriterTaskFactory mockWriterFac = mock(WriterTaskFactory.class);
+		when(mockWriterFac.createWriter(any(),any(), any(), any())).thenReturn(mockCyWriter);
+		CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
+		HierarchyTask task = new HierarchyTask(null, null, null, null, null, cda , null, null);
+		task.setAlternateWriterTaskFactory(mockWriterFac);
+		task.setAlternateCDRestClient(mockRestClient);
+		task.cancel();
+		task.run(mockMonitor);
+		ArgumentCaptor<CDRequestDataWriter> writerCaptor = ArgumentCaptor.forClass(CDRequestDataWriter.class);
+		verify(mockRestClient).postCDData(any(), any(), writerCaptor.capture(), any(CancellationToken.class));
+		try {
+			writerCaptor.getValue().writeData(new ByteArrayOutputStream());
+			fail("Expected IOException");
+		} catch(IOException io){
+			assertEquals("foo contains negative values.", io.getMessage());
+		}
+	}
+	
+	@Test
+	public void testRunWithDenseNodeIdsPassesNodeIndexMap() throws Exception {
+		PropertiesHelper.getInstance().setEdgeListDenseNodeIds(true);
+		try {
+			CDRestClient mockRestClient = mock(CDRestClient.class);
+			when(mockRestClient.postCDData(any(), any(), any(CDRequestDataWriter.class), any(CancellationToken.class))).thenReturn("taskid");
+			CommunityDetectionResult cdRes = new CommunityDetectionResult();
+			TaskMonitor mockMonitor = mock(TaskMonitor.class);
+			when(mockRestClient.getCDResult(anyString(), eq(mockMonitor), anyFloat(), anyFloat(),
+					anyInt(), any(CancellationToken.class))).thenReturn(cdRes);
+			CyNetwork mockNetwork = mock(CyNetwork.class);
+			CyWriter mockCyWriter = mock(CyWriter.class);
+			WriterTaskFactory mockWriterFac = mock(WriterTaskFactory.class);
+			when(mockWriterFac.createWriter(any(),any(), any(), any())).thenReturn(mockCyWriter);
+			CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
+			cda.setName("algo");
+			HierarchyNetworkFactory mockNetworkFactory = mock(HierarchyNetworkFactory.class);
+			HierarchyTask task = new HierarchyTask(mockNetworkFactory,
+					null, null, null, mockNetwork, cda , null, "weight");
+			task.setAlternateWriterTaskFactory(mockWriterFac);
+			task.setAlternateCDRestClient(mockRestClient);
+			try {
+				task.run(mockMonitor);
+				fail("Expected exception");
+			} catch(Exception e){
+				assertEquals("Error creating hierarchy from result", e.getMessage());
+			}
+			ArgumentCaptor<CDRequestDataWriter> writerCaptor = ArgumentCaptor.forClass(CDRequestDataWriter.class);
+			verify(mockRestClient).postCDData(eq("algo"), eq(null), writerCaptor.capture(), any(CancellationToken.class));
+			writerCaptor.getValue().writeData(new ByteArrayOutputStream());
+			
+			ArgumentCaptor<NodeIndexMap> writerMapCaptor = ArgumentCaptor.forClass(NodeIndexMap.class);
+			verify(mockWriterFac).createWriter(any(), eq(mockNetwork), eq("weight"), writerMapCaptor.capture());
+			assertNotNull(writerMapCaptor.getValue());
+			verify(mockNetworkFactory).getHierarchyNetwork(eq(mockNetwork), eq(cdRes),
+					eq("weight"), eq(cda), eq(null), same(writerMapCaptor.getValue()));
+		} finally {
+			PropertiesHelper.getInstance().setEdgeListDenseNodeIds(false);
+		}
+	}
+	
+	private CDRestClient getPipelinedMockRestClient(TaskMonitor mockMonitor) throws Exception {
+		CDRestClient mockRestClient = mock(CDRestClient.class);
+		when(mockRestClient.postCDData(any(), any(), any(CDRequestDataWriter.class), any(CancellationToken.class))).thenReturn("taskid");
+		when(mockRestClient.getCDResult(eq("taskid"), eq(mockMonitor), eq(0.1f), eq(0.8f),
+				anyInt(), any(CancellationToken.class), any(CDResultReader.class), any())).thenAnswer(new Answer() {
+			public Object answer(InvocationOnMock invocation) throws Exception {
+				CDResultReader reader = invocation.getArgument(6);
+				OutputStream responseCopy = invocation.getArgument(7);
+				if (responseCopy != null){
+					responseCopy.write("{\"id\": \"taskid\", \"status\": \"complete\", \"result\": \"1,2,c-m;\"}"
+							.getBytes(StandardCharsets.UTF_8));
+				}
+				JsonParser parser = new ObjectMapper().getFactory().createParser("\"1,2,c-m;\"");
+				parser.nextToken();
+				return reader.readResult(parser);
+			}
+		});
+		return mockRestClient;
+	}
+	
+	@Test
+	public void testRunPipelinedSuccess() throws Exception {
+		PropertiesHelper.getInstance().setHierarchyPipelined(true);
+		try {
+			TaskMonitor mockMonitor = mock(TaskMonitor.class);
+			CDRestClient mockRestClient = getPipelinedMockRestClient(mockMonitor);
+			CyNetwork mockNetwork = mock(CyNetwork.class);
+			CyWriter mockCyWriter = mock(CyWriter.class);
+			WriterTaskFactory mockWriterFac = mock(WriterTaskFactory.class);
+			when(mockWriterFac.createWriter(any(),any(), any(), any())).thenReturn(mockCyWriter);
+			CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
+			CyNetwork mockHierarchyNetwork = mock(CyNetwork.class);
+			HierarchyNetworkFactory mockNetworkFactory = mock(HierarchyNetworkFactory.class);
+			when(mockNetworkFactory.getHierarchyNetwork(eq(mockNetwork), any(JsonParser.class),
+					eq("weight"), eq(cda), isNull(), isNull(), any(StageTimer.class))).thenReturn(mockHierarchyNetwork);
+			HierarchyNetworkViewFactory mockNetworkViewFactory = mock(HierarchyNetworkViewFactory.class);
+			VisualStyleFactory mockStyleFactory = mock(VisualStyleFactory.class);
+			LayoutFactory mockLayoutFactory = mock(LayoutFactory.class);
+			HierarchyTask task = new HierarchyTask(mockNetworkFactory,
+					mockNetworkViewFactory, mockStyleFactory, mockLayoutFactory, mockNetwork, cda , null, "weight");
+			task.setAlternateWriterTaskFactory(mockWriterFac);
+			task.setAlternateCDRestClient(mockRestClient);
+			
+			task.run(mockMonitor);
+			
+			ArgumentCaptor<JsonParser> parserCaptor = ArgumentCaptor.forClass(JsonParser.class);
+			verify(mockNetworkFactory).getHierarchyNetwork(eq(mockNetwork), parserCaptor.capture(),
+					eq("weight"), eq(cda), isNull(), isNull(), any(StageTimer.class));
+			assertEquals("1,2,c-m;", parserCaptor.getValue().getText());
+			verify(mockNetworkViewFactory).getHierarchyNetworkView(eq(mockHierarchyNetwork), any(), any());
+			verify(mockRestClient, never()).getCDResult(any(), any(), anyFloat(), anyFloat(),
+					anyInt(), any(CancellationToken.class));
+			
+			ArgumentCaptor<Double> progressCaptor = ArgumentCaptor.forClass(Double.class);
+			verify(mockMonitor, times(4)).setProgress(progressCaptor.capture());
+			List<Double> progressValues = progressCaptor.getAllValues();
+			assertEquals(0.1, progressValues.get(0), 0.01);
+			assertEquals(0.9, progressValues.get(1), 0.01);
+			assertEquals(0.95, progressValues.get(2), 0.01);
+			assertEquals(1.0, progressValues.get(3), 0.01);
+			
+			ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+			verify(mockMonitor, atLeastOnce()).setStatusMessage(messageCaptor.capture());
+			List<String> messageValues = messageCaptor.getAllValues();
+			assertEquals(HierarchyTask.EXPORT_STAGE, messageValues.get(0));
+			String summary = messageValues.get(messageValues.size() - 1);
+			assertTrue(summary, summary.startsWith("Total time "));
+			assertTrue(summary, summary.contains(HierarchyTask.EXPORT_STAGE + ": "));
+			assertTrue(summary, summary.contains(HierarchyTask.WAIT_STAGE + ": "));
+			assertTrue(summary, summary.contains(HierarchyTask.VIEW_STAGE + ": "));
+			verify(mockMonitor).setTitle("Community Detection: Creating Hierarchy Network");
+		} finally {
+			PropertiesHelper.getInstance().setHierarchyPipelined(false);
+		}
+	}
+	
+	@Test
+	public void testRunPipelinedNetworkFactoryFails() throws Exception {
+		PropertiesHelper.getInstance().setHierarchyPipelined(true);
+		try {
+			TaskMonitor mockMonitor = mock(TaskMonitor.class);
+			CDRestClient mockRestClient = getPipelinedMockRestClient(mockMonitor);
+			CyNetwork mockNetwork = mock(CyNetwork.class);
+			WriterTaskFactory mockWriterFac = mock(WriterTaskFactory.class);
+			CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
+			HierarchyNetworkFactory mockNetworkFactory = mock(HierarchyNetworkFactory.class);
+			when(mockNetworkFactory.getHierarchyNetwork(any(), any(JsonParser.class),
+					any(), any(), any(), any(), any(StageTimer.class)))
+					.thenThrow(new CommunityDetectionException("bad result"));
+			HierarchyNetworkViewFactory mockNetworkViewFactory = mock(HierarchyNetworkViewFactory.class);
+			HierarchyTask task = new HierarchyTask(mockNetworkFactory,
+					mockNetworkViewFactory, mock(VisualStyleFactory.class),
+					mock(LayoutFactory.class), mockNetwork, cda , null, "weight");
+			task.setAlternateWriterTaskFactory(mockWriterFac);
+			task.setAlternateCDRestClient(mockRestClient);
+			try {
+				task.run(mockMonitor);
+				fail("Expected exception");
+			} catch(Exception e){
+				assertTrue(e.getCause() instanceof CommunityDetectionException);
+				assertEquals("bad result", e.getCause().getMessage());
+			}
+			verifyNoInteractions(mockNetworkViewFactory);
+		} finally {
+			PropertiesHelper.getInstance().setHierarchyPipelined(false);
+		}
+	}
+	
+	@Test
+	public void testRunPipelinedNetworkViewFactoryIsNull() throws Exception {
+		PropertiesHelper.getInstance().setHierarchyPipelined(true);
+		try {
+			TaskMonitor mockMonitor = mock(TaskMonitor.class);
+			CDRestClient mockRestClient = getPipelinedMockRestClient(mockMonitor);
+			HierarchyTask task = new HierarchyTask(mock(HierarchyNetworkFactory.class),
+					null, mock(VisualStyleFactory.class), mock(LayoutFactory.class),
+					mock(CyNetwork.class), new CommunityDetectionAlgorithm(), null, "weight");
+			task.setAlternateCDRestClient(mockRestClient);
+			try {
+				task.run(mockMonitor);
+				fail("Expected exception");
+			} catch(Exception e){
+				assertEquals("networkViewFactory is null", e.getMessage());
+			}
+			// nothing is sent to the service if the hierarchy cannot be displayed
+			verifyNoInteractions(mockRestClient);
+		} finally {
+			PropertiesHelper.getInstance().setHierarchyPipelined(false);
+		}
+	}
+	
+	@Test
+	public void testRunUsesCachedResult() throws Exception {
+		CommunityDetectionResultCache resultCache = new CommunityDetectionResultCache(10, 0);
+		resultCache.setCacheDirectory(_folder.getRoot());
+		CDRestClient mockRestClient = mock(CDRestClient.class);
+		when(mockRestClient.postCDData(any(), any(), any(CDRequestDataWriter.class), any(CancellationToken.class))).thenReturn("taskid");
+		CommunityDetectionResult cdRes = new CommunityDetectionResult();
+		cdRes.setResult(new ObjectMapper().getNodeFactory().textNode("1,2,c-m;"));
+		TaskMonitor mockMonitor = mock(TaskMonitor.class);
+		when(mockRestClient.getCDResult(anyString(), eq(mockMonitor), anyFloat(), anyFloat(),
+				anyInt(), any(CancellationToken.class))).thenReturn(cdRes);
+		CyNetwork mockNetwork = mock(CyNetwork.class);
+		CyWriter mockCyWriter = mock(CyWriter.class);
+		WriterTaskFactory mockWriterFac = mock(WriterTaskFactory.class);
+		when(mockWriterFac.createWriter(any(),any(), any(), any())).thenReturn(mockCyWriter);
+		CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
+		cda.setName("algo");
+		CyNetwork mockHierarchyNetwork = mock(CyNetwork.class);
+		HierarchyNetworkFactory mockNetworkFactory = mock(HierarchyNetworkFactory.class);
+		when(mockNetworkFactory.getHierarchyNetwork(eq(mockNetwork), any(CommunityDetectionResult.class),
+				eq("weight"), eq(cda), isNull(), any(NodeIndexMap.class))).thenReturn(mockHierarchyNetwork);
+		HierarchyNetworkViewFactory mockNetworkViewFactory = mock(HierarchyNetworkViewFactory.class);
+		for (int i = 0; i < 2; i++){
+			HierarchyTask task = new HierarchyTask(mockNetworkFactory,
+					mockNetworkViewFactory, mock(VisualStyleFactory.class),
+					mock(LayoutFactory.class), mockNetwork, cda , null, "weight");
+			task.setAlternateWriterTaskFactory(mockWriterFac);
+			task.setAlternateCDRestClient(mockRestClient);
+			task.setAlternateResultCache(resultCache);
+			task.run(mockMonitor);
+		}
+		// both runs hash the edge list with node ids that do not depend
+		// on SUIDs, the second run is created from the cached result
+		// without contacting the service
+		verify(mockWriterFac, times(2)).createWriter(any(), eq(mockNetwork), eq("weight"), any(NodeIndexMap.class));
+		verify(mockRestClient, times(1)).postCDData(any(), any(), any(CDRequestDataWriter.class), any(CancellationToken.class));
+		verify(mockRestClient, times(1)).getCDResult(anyString(), any(), anyFloat(), anyFloat(),
+				anyInt(), any(CancellationToken.class));
+		verify(mockRestClient, never()).deleteTask(anyString());
+		ArgumentCaptor<CommunityDetectionResult> resultCaptor = ArgumentCaptor.forClass(CommunityDetectionResult.class);
+		verify(mockNetworkFactory, times(2)).getHierarchyNetwork(eq(mockNetwork), resultCaptor.capture(),
+				eq("weight"), eq(cda), isNull(), any(NodeIndexMap.class));
+		assertSame(cdRes, resultCaptor.getAllValues().get(0));
+		assertEquals("1,2,c-m;", resultCaptor.getAllValues().get(1).getResult().asText());
+		verify(mockNetworkViewFactory, times(2)).getHierarchyNetworkView(eq(mockHierarchyNetwork), any(), any());
+	}
+	
+	@Test
+	public void testRunPipelinedUsesCachedResult() throws Exception {
+		PropertiesHelper.getInstance().setHierarchyPipelined(true);
+		try {
+			CommunityDetectionResultCache resultCache = new CommunityDetectionResultCache(10, 0);
+			resultCache.setCacheDirectory(_folder.getRoot());
+			TaskMonitor mockMonitor = mock(TaskMonitor.class);
+			CDRestClient mockRestClient = getPipelinedMockRestClient(mockMonitor);
+			CyNetwork mockNetwork = mock(CyNetwork.class);
+			CyWriter mockCyWriter = mock(CyWriter.class);
+			WriterTaskFactory mockWriterFac = mock(WriterTaskFactory.class);
+			when(mockWriterFac.createWriter(any(),any(), any(), any())).thenReturn(mockCyWriter);
+			CommunityDetectionAlgorithm cda = new CommunityDetectionAlgorithm();
+			CyNetwork mockHierarchyNetwork = mock(CyNetwork.class);
+			HierarchyNetworkFactory mockNetworkFactory = mock(HierarchyNetworkFactory.class);
+			final List<String> edgeLists = new ArrayList<>();
+			when(mockNetworkFactory.getHierarchyNetwork(eq(mockNetwork), any(JsonParser.class),
+					eq("weight"), eq(cda), isNull(), any(NodeIndexMap.class), any(StageTimer.class))).thenAnswer((invocation) -> {
+						edgeLists.add(((JsonParser)invocation.getArgument(1)).getText());
+						return mockHierarchyNetwork;
+					});
+			HierarchyNetworkViewFactory mockNetworkViewFactory = mock(HierarchyNetworkViewFactory.class);
+			for (int i = 0; i < 2; i++){
+				HierarchyTask task = new HierarchyTask(mockNetworkFactory,
+						mockNetworkViewFactory, mock(VisualStyleFactory.class),
+						mock(LayoutFactory.class), mockNetwork, cda , null, "weight");
+				task.setAlternateWriterTaskFactory(mockWriterFac);
+				task.setAlternateCDRestClient(mockRestClient);
+				task.setAlternateResultCache(resultCache);
+				task.run(mockMonitor);
+			}
+			// second run reads the response copied into the cache by the first
+			assertEquals(Arrays.asList("1,2,c-m;", "1,2,c-m;"), edgeLists);
+			verify(mockWriterFac, times(2)).createWriter(any(), eq(mockNetwork), eq("weight"), any(NodeIndexMap.class));
+			verify(mockRestClient, times(1)).postCDData(any(), any(), any(CDRequestDataWriter.class), any(CancellationToken.class));
+			verify(mockRestClient, times(1)).getCDResult(anyString(), any(), anyFloat(), anyFloat(),
+					anyInt(), any(CancellationToken.class), any(CDResultReader.class),
+					any(CommunityDetectionResultCache.ResultCopy.class));
+			verify(mockRestClient, never()).deleteTask(anyString());
+			verify(mockNetworkViewFactory, times(2)).getHierarchyNetworkView(eq(mockHierarchyNetwork), any(), any());
+			
+			ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+			verify(mockMonitor, atLeastOnce()).setStatusMessage(messageCaptor.capture());
+			String summary = messageCaptor.getValue();
+			assertTrue(summary, summary.contains(HierarchyTask.FINGERPRINT_STAGE + ": "));
+			assertFalse(summary, summary.contains(HierarchyTask.EXPORT_STAGE + ": "));
+			assertFalse(summary, summary.contains(HierarchyTask.WAIT_STAGE + ": "));
+		} finally {
+			PropertiesHelper.getInstance().setHierarchyPipelined(false);
+		}
+	}
 }
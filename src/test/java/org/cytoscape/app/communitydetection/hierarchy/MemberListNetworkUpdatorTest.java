@@ -1,13 +1,17 @@
 package org.cytoscape.app.communitydetection.hierarchy;
 
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import org.cytoscape.app.communitydetection.util.AppUtils;
 import org.cytoscape.app.communitydetection.util.CyNetworkUtil;
+import org.cytoscape.app.communitydetection.util.MemberListLookup;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyRow;
 import org.cytoscape.model.NetworkTestSupport;
 import static org.junit.Assert.*;
+import static org.junit.Assume.*;
 import static org.mockito.Mockito.*;
 import org.junit.Test;
 import org.ndexbio.communitydetection.rest.model.exceptions.CommunityDetectionException;
@@ -25,16 +29,16 @@ public class MemberListNetworkUpdatorTest {
 		
 		CyNetwork hierarchyNetwork = mock(CyNetwork.class);
 		CyNetwork parentNetwork = mock(CyNetwork.class);
-		HierarchyHelper helper = mock(HierarchyHelper.class);
+		HierarchyIndex index = new HierarchyIndex.Builder().build();
 		MemberListNetworkUpdator updator = new MemberListNetworkUpdator();
 		try {
-			updator.createMemberListsInNetwork(null, parentNetwork, helper);
+			updator.createMemberListsInNetwork(null, parentNetwork, index);
 		} catch(CommunityDetectionException cde){
 			assertEquals("hierarchy network is null", cde.getMessage());
 		}
 		
 		try {
-			updator.createMemberListsInNetwork(hierarchyNetwork, null, helper);
+			updator.createMemberListsInNetwork(hierarchyNetwork, null, index);
 		} catch(CommunityDetectionException cde){
 			assertEquals("parent network is null", cde.getMessage());
 		}
@@ -42,7 +46,7 @@ public class MemberListNetworkUpdatorTest {
 		try {
 			updator.createMemberListsInNetwork(hierarchyNetwork, parentNetwork, null);
 		} catch(CommunityDetectionException cde){
-			assertEquals("hierarchy helper is null", cde.getMessage());
+			assertEquals("hierarchy index is null", cde.getMessage());
 		}
 	}
 	
@@ -50,11 +54,11 @@ public class MemberListNetworkUpdatorTest {
 	public void testCreateMemberListsInNetworkEmptyNetwork() throws CommunityDetectionException {
 		CyNetwork hierarchyNetwork = _nts.getNetwork();
 		CyNetwork parentNetwork = mock(CyNetwork.class);
-		HierarchyHelper helper = mock(HierarchyHelper.class);
+		HierarchyIndex index = mock(HierarchyIndex.class);
 		MemberListNetworkUpdator updator = new MemberListNetworkUpdator();
-		updator.createMemberListsInNetwork(hierarchyNetwork, parentNetwork, helper);
+		updator.createMemberListsInNetwork(hierarchyNetwork, parentNetwork, index);
 		verifyNoInteractions(parentNetwork);
-		verifyNoInteractions(helper);	
+		verifyNoInteractions(index);	
 	}
 	
 	@Test
@@ -74,15 +78,12 @@ public class MemberListNetworkUpdatorTest {
 		CyNode pNodeTwo = parentNetwork.addNode();
 		parentNetwork.getRow(pNodeTwo).set(CyNetwork.NAME, "nodea");
 		
-		Set<CyNode> pNodes = new LinkedHashSet<>();
-		pNodes.add(pNodeOne);
-		pNodes.add(pNodeTwo);
-		
-		HierarchyHelper helper = mock(HierarchyHelper.class);
-		when(helper.getMemberList(hierarchyNetwork, hNode)).thenReturn(pNodes);
+		HierarchyIndex.Builder indexBuilder = new HierarchyIndex.Builder();
+		indexBuilder.addMember(hNode, pNodeOne);
+		indexBuilder.addMember(hNode, pNodeTwo);
 		
 		MemberListNetworkUpdator updator = new MemberListNetworkUpdator();
-		updator.createMemberListsInNetwork(hierarchyNetwork, parentNetwork, helper);
+		updator.createMemberListsInNetwork(hierarchyNetwork, parentNetwork, indexBuilder.build());
 		
 		String memberList = hierarchyNetwork.getRow(hNode).get(AppUtils.COLUMN_CD_MEMBER_LIST, String.class);
 		assertEquals("nodea nodeb", memberList);
@@ -92,4 +93,200 @@ public class MemberListNetworkUpdatorTest {
 		double logSize = hierarchyNetwork.getRow(hNode).get(AppUtils.COLUMN_CD_MEMBER_LIST_LOG_SIZE, Double.class);
 		assertEquals(1.0, logSize, 0.001);
 	}
+	
+	@Test
+	public void testCreateMemberListsInNetworkNestedCommunities() throws CommunityDetectionException {
+		CyNetwork hierarchyNetwork = _nts.getNetwork();
+		CyNetworkUtil netUtil = new CyNetworkUtil();
+		netUtil.createTableColumn(hierarchyNetwork.getDefaultNodeTable(),
+				AppUtils.COLUMN_CD_MEMBER_LIST , String.class, false, null);
+		netUtil.createTableColumn(hierarchyNetwork.getDefaultNodeTable(), AppUtils.COLUMN_CD_MEMBER_LIST_SIZE, Integer.class, false, 0);
+		netUtil.createTableColumn(hierarchyNetwork.getDefaultNodeTable(), AppUtils.COLUMN_CD_MEMBER_LIST_LOG_SIZE, Double.class, false, 0.0);
+		
+		CyNode root = hierarchyNetwork.addNode();
+		CyNode childOne = hierarchyNetwork.addNode();
+		CyNode childTwo = hierarchyNetwork.addNode();
+		
+		CyNetwork parentNetwork = _nts.getNetwork();
+		String[] names = {"d", "b", "e", "a", "c"};
+		HierarchyIndex.Builder indexBuilder = new HierarchyIndex.Builder();
+		indexBuilder.addChildCommunity(root, childOne);
+		indexBuilder.addChildCommunity(root, childTwo);
+		for (int i = 0; i < names.length; i++){
+			CyNode pNode = parentNetwork.addNode();
+			parentNetwork.getRow(pNode).set(CyNetwork.NAME, names[i]);
+			indexBuilder.addMember(i % 2 == 0 ? childOne : childTwo, pNode);
+		}
+		
+		MemberListNetworkUpdator updator = new MemberListNetworkUpdator();
+		updator.createMemberListsInNetwork(hierarchyNetwork, parentNetwork, indexBuilder.build());
+		
+		assertEquals("a b c d e", hierarchyNetwork.getRow(root).get(AppUtils.COLUMN_CD_MEMBER_LIST, String.class));
+		assertEquals("c d e", hierarchyNetwork.getRow(childOne).get(AppUtils.COLUMN_CD_MEMBER_LIST, String.class));
+		assertEquals("a b", hierarchyNetwork.getRow(childTwo).get(AppUtils.COLUMN_CD_MEMBER_LIST, String.class));
+		assertEquals(5, (int)hierarchyNetwork.getRow(root).get(AppUtils.COLUMN_CD_MEMBER_LIST_SIZE, Integer.class));
+	}
+	
+	@Test
+	public void testCreateMemberListsInNetworkDirectMembersOnly() throws CommunityDetectionException {
+		CyNetwork hierarchyNetwork = createHierarchyNetwork();
+		CyNode root = hierarchyNetwork.addNode();
+		CyNode childOne = hierarchyNetwork.addNode();
+		CyNode childTwo = hierarchyNetwork.addNode();
+		hierarchyNetwork.addEdge(root, childOne, true);
+		hierarchyNetwork.addEdge(root, childTwo, true);
+		
+		CyNetwork parentNetwork = _nts.getNetwork();
+		String[] names = {"d", "b", "e", "a", "c", "f"};
+		HierarchyIndex.Builder indexBuilder = new HierarchyIndex.Builder();
+		indexBuilder.addChildCommunity(root, childOne);
+		indexBuilder.addChildCommunity(root, childTwo);
+		for (int i = 0; i < names.length; i++){
+			CyNode pNode = parentNetwork.addNode();
+			parentNetwork.getRow(pNode).set(CyNetwork.NAME, names[i]);
+			indexBuilder.addMember(i == 5 ? root : (i % 2 == 0 ? childOne : childTwo), pNode);
+		}
+		
+		MemberListNetworkUpdator updator = new MemberListNetworkUpdator(0, true, new CyNetworkUtil());
+		updator.createMemberListsInNetwork(hierarchyNetwork, parentNetwork, indexBuilder.build());
+		
+		assertEquals(true, hierarchyNetwork.getRow(hierarchyNetwork)
+				.get(AppUtils.COLUMN_CD_MEMBER_LIST_DIRECT_ONLY, Boolean.class));
+		assertEquals("f", hierarchyNetwork.getRow(root).get(AppUtils.COLUMN_CD_MEMBER_LIST, String.class));
+		assertEquals("c d e", hierarchyNetwork.getRow(childOne).get(AppUtils.COLUMN_CD_MEMBER_LIST, String.class));
+		assertEquals("a b", hierarchyNetwork.getRow(childTwo).get(AppUtils.COLUMN_CD_MEMBER_LIST, String.class));
+		assertEquals(6, (int)hierarchyNetwork.getRow(root).get(AppUtils.COLUMN_CD_MEMBER_LIST_SIZE, Integer.class));
+		assertEquals(2.585, hierarchyNetwork.getRow(root).get(AppUtils.COLUMN_CD_MEMBER_LIST_LOG_SIZE, Double.class), 0.001);
+		assertEquals(3, (int)hierarchyNetwork.getRow(childOne).get(AppUtils.COLUMN_CD_MEMBER_LIST_SIZE, Integer.class));
+		
+		MemberListLookup lookup = new MemberListLookup(10);
+		assertEquals("a b c d e f", lookup.getMemberListAsString(hierarchyNetwork, root));
+		assertEquals("c d e", lookup.getMemberListAsString(hierarchyNetwork, childOne));
+	}
+	
+	@Test
+	public void testCreateMemberListsInNetworkDirectMembersOnlySharedNames() throws CommunityDetectionException {
+		CyNetwork hierarchyNetwork = createHierarchyNetwork();
+		CyNode root = hierarchyNetwork.addNode();
+		CyNode childOne = hierarchyNetwork.addNode();
+		CyNode childTwo = hierarchyNetwork.addNode();
+		hierarchyNetwork.addEdge(root, childOne, true);
+		hierarchyNetwork.addEdge(root, childTwo, true);
+		
+		CyNetwork parentNetwork = _nts.getNetwork();
+		String[] names = {"a", "b", "a", "c"};
+		HierarchyIndex.Builder indexBuilder = new HierarchyIndex.Builder();
+		indexBuilder.addChildCommunity(root, childOne);
+		indexBuilder.addChildCommunity(root, childTwo);
+		for (int i = 0; i < names.length; i++){
+			CyNode pNode = parentNetwork.addNode();
+			parentNetwork.getRow(pNode).set(CyNetwork.NAME, names[i]);
+			indexBuilder.addMember(i % 2 == 0 ? childOne : childTwo, pNode);
+		}
+		
+		MemberListNetworkUpdator updator = new MemberListNetworkUpdator(0, true, new CyNetworkUtil());
+		updator.createMemberListsInNetwork(hierarchyNetwork, parentNetwork, indexBuilder.build());
+		
+		// root has two members named a so every member is listed
+		assertEquals("a a b c", hierarchyNetwork.getRow(root).get(AppUtils.COLUMN_CD_MEMBER_LIST, String.class));
+		assertEquals("a a", hierarchyNetwork.getRow(childOne).get(AppUtils.COLUMN_CD_MEMBER_LIST, String.class));
+		assertEquals("b c", hierarchyNetwork.getRow(childTwo).get(AppUtils.COLUMN_CD_MEMBER_LIST, String.class));
+		
+		MemberListLookup lookup = new MemberListLookup(10);
+		for (CyNode node : Arrays.asList(root, childOne, childTwo)){
+			assertEquals((int)hierarchyNetwork.getRow(node).get(AppUtils.COLUMN_CD_MEMBER_LIST_SIZE, Integer.class),
+					lookup.getMemberList(hierarchyNetwork, node).size());
+		}
+	}
+	
+	private CyNetwork createHierarchyNetwork() throws CommunityDetectionException {
+		CyNetwork hierarchyNetwork = _nts.getNetwork();
+		CyNetworkUtil netUtil = new CyNetworkUtil();
+		netUtil.createTableColumn(hierarchyNetwork.getDefaultNodeTable(),
+				AppUtils.COLUMN_CD_MEMBER_LIST , String.class, false, null);
+		netUtil.createTableColumn(hierarchyNetwork.getDefaultNodeTable(), AppUtils.COLUMN_CD_MEMBER_LIST_SIZE, Integer.class, false, 0);
+		netUtil.createTableColumn(hierarchyNetwork.getDefaultNodeTable(), AppUtils.COLUMN_CD_MEMBER_LIST_LOG_SIZE, Double.class, false, 0.0);
+		return hierarchyNetwork;
+	}
+	
+	/**
+	 * Builds hierarchy of {@code numCommunities} communities under a
+	 * single root. Each community has 20 direct members and every 10th
+	 * community has the previous community as a child
+	 */
+	private HierarchyIndex buildLargeHierarchy(CyNetwork hierarchyNetwork,
+			CyNetwork parentNetwork, int numCommunities){
+		List<CyNode> members = new ArrayList<>();
+		for (int i = 0; i < numCommunities; i++){
+			CyNode pNode = parentNetwork.addNode();
+			parentNetwork.getRow(pNode).set(CyNetwork.NAME, "gene" + ((i * 7919) % numCommunities));
+			members.add(pNode);
+		}
+		HierarchyIndex.Builder indexBuilder = new HierarchyIndex.Builder();
+		CyNode root = hierarchyNetwork.addNode();
+		CyNode previous = null;
+		for (int i = 1; i < numCommunities; i++){
+			CyNode community = hierarchyNetwork.addNode();
+			indexBuilder.addChildCommunity(i % 10 == 0 ? previous : root, community);
+			for (int j = 0; j < 20; j++){
+				indexBuilder.addMember(community, members.get((i * 31 + j) % numCommunities));
+			}
+			previous = community;
+		}
+		return indexBuilder.build();
+	}
+	
+	@Test
+	public void testCreateMemberListsInParallelMatchesSingleThread() throws CommunityDetectionException {
+		CyNetwork parentNetwork = _nts.getNetwork();
+		CyNetwork singleNetwork = createHierarchyNetwork();
+		HierarchyIndex singleIndex = buildLargeHierarchy(singleNetwork, parentNetwork, 2000);
+		CyNetwork parallelNetwork = createHierarchyNetwork();
+		HierarchyIndex parallelIndex = buildLargeHierarchy(parallelNetwork, parentNetwork, 2000);
+		
+		new MemberListNetworkUpdator().createMemberListsInNetwork(singleNetwork, parentNetwork, singleIndex);
+		new MemberListNetworkUpdator(1).createMemberListsInNetwork(parallelNetwork, parentNetwork, parallelIndex);
+		
+		List<CyNode> singleNodes = singleNetwork.getNodeList();
+		List<CyNode> parallelNodes = parallelNetwork.getNodeList();
+		assertEquals(singleNodes.size(), parallelNodes.size());
+		for (int i = 0; i < singleNodes.size(); i++){
+			CyRow singleRow = singleNetwork.getRow(singleNodes.get(i));
+			CyRow parallelRow = parallelNetwork.getRow(parallelNodes.get(i));
+			assertEquals(singleRow.get(AppUtils.COLUMN_CD_MEMBER_LIST, String.class),
+					parallelRow.get(AppUtils.COLUMN_CD_MEMBER_LIST, String.class));
+			assertEquals(singleRow.get(AppUtils.COLUMN_CD_MEMBER_LIST_SIZE, Integer.class),
+					parallelRow.get(AppUtils.COLUMN_CD_MEMBER_LIST_SIZE, Integer.class));
+			assertEquals(singleRow.get(AppUtils.COLUMN_CD_MEMBER_LIST_LOG_SIZE, Double.class),
+					parallelRow.get(AppUtils.COLUMN_CD_MEMBER_LIST_LOG_SIZE, Double.class));
+		}
+		assertEquals(2000, (int)parallelNetwork.getRow(parallelNodes.get(0))
+				.get(AppUtils.COLUMN_CD_MEMBER_LIST_SIZE, Integer.class));
+	}
+	
+	/**
+	 * Reports time to build member lists of a 50,000 community hierarchy
+	 * on one thread and in parallel. This is skipped unless
+	 * {@code -Dcd.benchmark=true}
+	 */
+	@Test(timeout = 120000)
+	public void benchmarkCreateMemberLists() throws CommunityDetectionException {
+		assumeTrue(Boolean.getBoolean("cd.benchmark"));
+		int numCommunities = 50000;
+		CyNetwork parentNetwork = _nts.getNetwork();
+		CyNetwork hierarchyNetwork = createHierarchyNetwork();
+		HierarchyIndex index = buildLargeHierarchy(hierarchyNetwork, parentNetwork, numCommunities);
+		
+		// untimed run so neither timing includes JIT warm up
+		new MemberListNetworkUpdator().createMemberListsInNetwork(hierarchyNetwork, parentNetwork, index);
+		long start = System.nanoTime();
+		new MemberListNetworkUpdator().createMemberListsInNetwork(hierarchyNetwork, parentNetwork, index);
+		long singleNanos = System.nanoTime() - start;
+		start = System.nanoTime();
+		new MemberListNetworkUpdator(1).createMemberListsInNetwork(hierarchyNetwork, parentNetwork, index);
+		long parallelNanos = System.nanoTime() - start;
+		System.out.println("Member lists for " + numCommunities + " communities, single thread: "
+				+ singleNanos / 1000000 + " ms, parallel: " + parallelNanos / 1000000
+				+ " ms, speed up: " + String.format("%.2f", (double)singleNanos / parallelNanos));
+	}
 }
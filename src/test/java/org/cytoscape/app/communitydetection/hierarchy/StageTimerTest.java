@@ -0,0 +1,54 @@
+package org.cytoscape.app.communitydetection.hierarchy;
+
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Map;
+import org.cytoscape.work.TaskMonitor;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author churas
+ */
+public class StageTimerTest {
+
+	@Test
+	public void testNoStages(){
+		StageTimer timer = new StageTimer(null);
+		timer.stop();
+		assertTrue(timer.getDurations().isEmpty());
+		assertTrue(timer.getSummary().matches("Total time \\d+ ms \\(\\)"));
+	}
+
+	@Test
+	public void testStagesWithTaskMonitor(){
+		TaskMonitor mockMonitor = mock(TaskMonitor.class);
+		StageTimer timer = new StageTimer(mockMonitor);
+		timer.start("one");
+		timer.start("two");
+		timer.record("other", 5L);
+		timer.start("one");
+		timer.stop();
+		timer.stop();
+
+		Map<String, Long> durations = timer.getDurations();
+		// two ends after other is recorded
+		assertEquals(Arrays.asList("one", "other", "two"), new ArrayList<>(durations.keySet()));
+		assertEquals(5L, (long)durations.get("other"));
+
+		ArgumentCaptor<String> messageCaptor = ArgumentCaptor.forClass(String.class);
+		verify(mockMonitor, times(6)).setStatusMessage(messageCaptor.capture());
+		assertEquals("one", messageCaptor.getAllValues().get(0));
+		assertTrue(messageCaptor.getAllValues().get(1).matches("one took \\d+ ms"));
+		assertEquals("two", messageCaptor.getAllValues().get(2));
+		assertTrue(messageCaptor.getAllValues().get(3).matches("two took \\d+ ms"));
+		assertEquals("one", messageCaptor.getAllValues().get(4));
+		assertTrue(messageCaptor.getAllValues().get(5).matches("one took \\d+ ms"));
+
+		assertTrue(timer.getSummary().matches(
+				"Total time \\d+ ms \\(one: \\d+ ms, other: 5 ms, two: \\d+ ms\\)"));
+	}
+}
@@ -1,6 +1,7 @@
 package org.cytoscape.app.communitydetection.hierarchy;
 
 import java.io.File;
+import java.io.InputStream;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.Set;
@@ -54,15 +55,49 @@ public class VisualStyleFactoryTest {
 		when(mockVsTwo.getTitle()).thenReturn(VisualStyleFactory.DEFAULT_STYLE_NAME);
 		Set<VisualStyle> newStyleSet = new HashSet<>();
 		newStyleSet.add(mockVsTwo);
-		when(mockTaskFac.loadStyles(any(File.class))).thenReturn(newStyleSet);
+		when(mockTaskFac.loadStyles(any(InputStream.class))).thenReturn(newStyleSet);
 		
 		VisualStyleFactory vsf = new VisualStyleFactory(mapManager, mockTaskFac);
 		VisualStyle vs = vsf.getVisualStyle();
 		assertEquals(vs, mockVsTwo);
 		verify(mockVs, times(1)).getTitle();
 		verify(mapManager, times(1)).getAllVisualStyles();
+		verify(mockTaskFac, times(1)).loadStyles(any(InputStream.class));
+		verify(mockTaskFac, never()).loadStyles(any(File.class));
 		
+		// style is not in manager so it is added back instead of loaded again
+		assertEquals(mockVsTwo, vsf.getVisualStyle());
+		verify(mockTaskFac, times(1)).loadStyles(any(InputStream.class));
+		verify(mapManager, times(1)).addVisualStyle(mockVsTwo);
+	}
+	
+	@Test
+	public void testGetVisualStyleLoadFromResourcePicksDefaultStyle(){
+		VisualMappingManager mapManager = mock(VisualMappingManager.class);
+		when(mapManager.getAllVisualStyles()).thenReturn(new HashSet<>());
+		
+		VisualStyle mockVs = mock(VisualStyle.class);
+		when(mockVs.getTitle()).thenReturn("ha");
+		VisualStyle mockVsTwo = mock(VisualStyle.class);
+		when(mockVsTwo.getTitle()).thenReturn(VisualStyleFactory.DEFAULT_STYLE_NAME);
+		Set<VisualStyle> newStyleSet = new LinkedHashSet<>();
+		newStyleSet.add(mockVsTwo);
+		newStyleSet.add(mockVs);
+		LoadVizmapFileTaskFactory mockTaskFac = mock(LoadVizmapFileTaskFactory.class);
+		when(mockTaskFac.loadStyles(any(InputStream.class))).thenReturn(newStyleSet);
 		
+		VisualStyleFactory vsf = new VisualStyleFactory(mapManager, mockTaskFac);
+		assertEquals(mockVsTwo, vsf.getVisualStyle());
+	}
+	
+	@Test
+	public void testGetVisualStyleLoadFromResourceNoStyles(){
+		VisualMappingManager mapManager = mock(VisualMappingManager.class);
+		when(mapManager.getAllVisualStyles()).thenReturn(new HashSet<>());
+		LoadVizmapFileTaskFactory mockTaskFac = mock(LoadVizmapFileTaskFactory.class);
+		when(mockTaskFac.loadStyles(any(InputStream.class))).thenReturn(new HashSet<>());
 		
+		VisualStyleFactory vsf = new VisualStyleFactory(mapManager, mockTaskFac);
+		assertNull(vsf.getVisualStyle());
 	}
 }
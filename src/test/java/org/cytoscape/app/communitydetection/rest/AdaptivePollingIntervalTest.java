@@ -0,0 +1,102 @@
+package org.cytoscape.app.communitydetection.rest;
+
+import org.cytoscape.app.communitydetection.PropertiesHelper;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author churas
+ */
+public class AdaptivePollingIntervalTest {
+
+	@Test
+	public void testConstructorClampsValues(){
+		AdaptivePollingInterval api = new AdaptivePollingInterval(0, -5);
+		assertEquals(1, api.getInitialDelayMillis());
+		assertEquals(1, api.getNextDelayMillis(10, 0));
+
+		api = new AdaptivePollingInterval(100, 10);
+		assertEquals(100, api.getInitialDelayMillis());
+		assertEquals(100, api.getNextDelayMillis(10, 0));
+	}
+
+	@Test
+	public void testFromProperties(){
+		PropertiesHelper pHelper = PropertiesHelper.getInstance();
+		int initialMillis = pHelper.getPollingInitialIntervalMillis();
+		int intervalMillis = pHelper.getPollingIntervalTimeMillis();
+		int maxMillis = pHelper.getPollingMaxIntervalMillis();
+		try {
+			pHelper.setPollingInitialIntervalMillis(50);
+			pHelper.setPollingIntervalTimeMillis(300);
+			pHelper.setPollingMaxIntervalMillis(1000);
+			AdaptivePollingInterval api = AdaptivePollingInterval.fromProperties(pHelper);
+			assertEquals(50, api.getInitialDelayMillis());
+			assertEquals(100, api.getNextDelayMillis(50, 0));
+
+			// adaptive polling disabled gives fixed interval
+			pHelper.setPollingMaxIntervalMillis(0);
+			api = AdaptivePollingInterval.fromProperties(pHelper);
+			assertEquals(300, api.getInitialDelayMillis());
+			assertEquals(300, api.getNextDelayMillis(300, 0));
+			assertEquals(300, api.getNextDelayMillis(600, 90));
+		} finally {
+			pHelper.setPollingInitialIntervalMillis(initialMillis);
+			pHelper.setPollingIntervalTimeMillis(intervalMillis);
+			pHelper.setPollingMaxIntervalMillis(maxMillis);
+		}
+	}
+
+	@Test
+	public void testBackoffWithNoProgress(){
+		AdaptivePollingInterval api = new AdaptivePollingInterval(50, 1000);
+		assertEquals(50, api.getInitialDelayMillis());
+		assertEquals(100, api.getNextDelayMillis(50, 0));
+		assertEquals(200, api.getNextDelayMillis(150, 0));
+		assertEquals(400, api.getNextDelayMillis(350, 0));
+		assertEquals(800, api.getNextDelayMillis(750, 0));
+		assertEquals(1000, api.getNextDelayMillis(1550, 0));
+		assertEquals(1000, api.getNextDelayMillis(2550, 0));
+	}
+
+	@Test
+	public void testProgressAtOrAbove100IsIgnored(){
+		AdaptivePollingInterval api = new AdaptivePollingInterval(50, 1000);
+		assertEquals(100, api.getNextDelayMillis(50, 100));
+		assertEquals(200, api.getNextDelayMillis(150, 150));
+	}
+
+	@Test
+	public void testGetEstimatedRemainingMillis(){
+		AdaptivePollingInterval api = new AdaptivePollingInterval(50, 1000);
+		assertEquals(-1, api.getEstimatedRemainingMillis(0, 50));
+		assertEquals(-1, api.getEstimatedRemainingMillis(100, 0));
+		assertEquals(-1, api.getEstimatedRemainingMillis(100, 100));
+		assertEquals(100, api.getEstimatedRemainingMillis(100, 50));
+		assertEquals(900, api.getEstimatedRemainingMillis(100, 10));
+		assertEquals(33, api.getEstimatedRemainingMillis(100, 75));
+	}
+
+	@Test
+	public void testProgressEstimateShortensDelay(){
+		AdaptivePollingInterval api = new AdaptivePollingInterval(10, 100000);
+		for (int i = 0; i < 10; i++){
+			api.getNextDelayMillis(1000, 0);
+		}
+		// task is 90% done after 9 seconds so it should finish in about 1 second
+		assertEquals(1000, api.getNextDelayMillis(9000, 90));
+
+		// estimate is never below the initial delay
+		assertEquals(10, api.getNextDelayMillis(99, 99));
+	}
+
+	@Test
+	public void testProgressEstimateNeverExceedsBackoff(){
+		AdaptivePollingInterval api = new AdaptivePollingInterval(10, 100000);
+
+		// task is 1% done after 1 second so estimate is 99 seconds
+		assertEquals(20, api.getNextDelayMillis(1000, 1));
+		assertEquals(40, api.getNextDelayMillis(1020, 1));
+	}
+}
@@ -0,0 +1,317 @@
+package org.cytoscape.app.communitydetection.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.StatusLine;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.cytoscape.app.communitydetection.PropertiesHelper;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Mockito.*;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+import org.ndexbio.communitydetection.rest.model.Task;
+
+/**
+ *
+ * @author churas
+ */
+public class AsyncCDRestClientTest {
+
+	private ScheduledExecutorService _scheduler;
+	private HttpClient _mockClient;
+
+	/**
+	 * Number of times status of each task has been checked
+	 */
+	private Map<String, AtomicInteger> _pollCounts;
+	private ConcurrentLinkedQueue<String> _deletedTasks;
+
+	@Before
+	public void setUp() throws IOException {
+		_scheduler = Executors.newScheduledThreadPool(2);
+		_pollCounts = new ConcurrentHashMap<>();
+		_deletedTasks = new ConcurrentLinkedQueue<>();
+		PropertiesHelper.getInstance().setBaseurl("http://foo");
+		PropertiesHelper.getInstance().setSubmitRetryCount(1);
+		PropertiesHelper.getInstance().setPollingInitialIntervalMillis(1);
+		PropertiesHelper.getInstance().setPollingIntervalTimeMillis(4);
+		PropertiesHelper.getInstance().setPollingMaxIntervalMillis(4);
+
+		HttpClientFactory mockFac = mock(HttpClientFactory.class);
+		_mockClient = mock(HttpClient.class);
+		when(mockFac.getHttpClient(any(RequestConfig.class))).thenReturn(_mockClient);
+		CDRestClient.getInstance().setAlternateHttpClientFactory(mockFac);
+	}
+
+	@After
+	public void tearDown(){
+		_scheduler.shutdownNow();
+		PropertiesHelper.getInstance().updateViaProperties(null);
+	}
+
+	private HttpResponse getMockHttpResponse(Object body, int httpStatus) throws IOException {
+		HttpResponse mockRes = mock(HttpResponse.class);
+		StatusLine mockStatus = mock(StatusLine.class);
+		HttpEntity mockEntity = mock(HttpEntity.class);
+		ObjectMapper mapper = new ObjectMapper();
+		when(mockEntity.getContent()).thenReturn(new ByteArrayInputStream(mapper.writeValueAsBytes(body)));
+		when(mockRes.getEntity()).thenReturn(mockEntity);
+		when(mockStatus.getStatusCode()).thenReturn(httpStatus);
+		when(mockRes.getStatusLine()).thenReturn(mockStatus);
+		return mockRes;
+	}
+
+	private String getTaskId(HttpUriRequest request){
+		String url = request.getURI().toString();
+		return url.substring(url.lastIndexOf('/') + 1);
+	}
+
+	/**
+	 * Sets up mock client so each POST creates a new task and each task
+	 * reports {@code 40 * checks} progress until it has been checked
+	 * {@code completeAfter} times at which point it is complete
+	 * @param completeAfter number of checks before task completes, if
+	 *                      negative task never completes
+	 * @param failAfter number of checks before task fails, if negative
+	 *                  task never fails
+	 */
+	private void setUpMockService(int completeAfter, int failAfter) throws IOException {
+		final AtomicInteger taskCounter = new AtomicInteger(0);
+		when(_mockClient.execute(any(HttpPost.class))).thenAnswer((invocation) -> {
+			Task task = new Task();
+			task.setId("task" + taskCounter.incrementAndGet());
+			return getMockHttpResponse(task, HttpStatus.SC_ACCEPTED);
+		});
+		when(_mockClient.execute(any(HttpGet.class))).thenAnswer((invocation) -> {
+			String taskId = getTaskId(invocation.getArgument(0));
+			int count = _pollCounts.computeIfAbsent(taskId, (k) -> new AtomicInteger(0)).incrementAndGet();
+			CommunityDetectionResult cdRes = new CommunityDetectionResult();
+			cdRes.setId(taskId);
+			if (completeAfter >= 0 && count >= completeAfter){
+				cdRes.setStatus(CommunityDetectionResult.COMPLETE_STATUS);
+				cdRes.setProgress(100);
+			} else if (failAfter >= 0 && count >= failAfter){
+				cdRes.setStatus(CommunityDetectionResult.FAILED_STATUS);
+				cdRes.setMessage("failed " + taskId);
+			} else {
+				cdRes.setStatus(CommunityDetectionResult.PROCESSING_STATUS);
+				cdRes.setProgress(Math.min(99, 40 * count));
+			}
+			return getMockHttpResponse(cdRes, HttpStatus.SC_OK);
+		});
+		when(_mockClient.execute(any(HttpDelete.class))).thenAnswer((invocation) -> {
+			_deletedTasks.add(getTaskId(invocation.getArgument(0)));
+			return getMockHttpResponse("", HttpStatus.SC_OK);
+		});
+	}
+
+	@Test
+	public void testAwaitResultNullTaskId(){
+		AsyncCDRestClient client = new AsyncCDRestClient(CDRestClient.getInstance(), _scheduler);
+		try {
+			client.awaitResult(null, 0, null, null);
+			fail("Expected IllegalArgumentException");
+		} catch(IllegalArgumentException iae){
+			assertEquals("task id cannot be null", iae.getMessage());
+		}
+	}
+
+	@Test
+	public void testSubmitAndAwaitSuccess() throws Exception {
+		setUpMockService(3, -1);
+		AsyncCDRestClient client = new AsyncCDRestClient(CDRestClient.getInstance(), _scheduler);
+		List<Integer> progress = new ArrayList<>();
+		CompletableFuture<CommunityDetectionResult> future = client.submitAndAwait("algo",
+				null, "data", 10000, (p) -> progress.add(p), null);
+		CommunityDetectionResult res = future.get(10, TimeUnit.SECONDS);
+		assertEquals(CommunityDetectionResult.COMPLETE_STATUS, res.getStatus());
+		assertEquals("task1", res.getId());
+		assertEquals(3, _pollCounts.get("task1").get());
+		assertEquals(2, progress.size());
+		assertEquals(40, (int)progress.get(0));
+		assertEquals(80, (int)progress.get(1));
+		assertTrue(_deletedTasks.contains("task1"));
+	}
+
+	@Test
+	public void testSubmitAndAwaitWithDataWriterSuccess() throws Exception {
+		setUpMockService(1, -1);
+		AsyncCDRestClient client = new AsyncCDRestClient(CDRestClient.getInstance(), _scheduler);
+		CompletableFuture<CommunityDetectionResult> future = client.submitAndAwait("algo",
+				null, (out) -> out.write("data".getBytes()), 10000, null, null);
+		assertEquals(CommunityDetectionResult.COMPLETE_STATUS,
+				future.get(10, TimeUnit.SECONDS).getStatus());
+	}
+
+	@Test
+	public void testSubmitFails() throws Exception {
+		when(_mockClient.execute(any(HttpPost.class))).thenAnswer((invocation) -> {
+			return getMockHttpResponse("", HttpStatus.SC_INTERNAL_SERVER_ERROR);
+		});
+		AsyncCDRestClient client = new AsyncCDRestClient(CDRestClient.getInstance(), _scheduler);
+		CompletableFuture<CommunityDetectionResult> future = client.submitAndAwait("algo",
+				null, "data", 10000, null, null);
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail("Expected ExecutionException");
+		} catch(ExecutionException ee){
+			assertTrue(ee.getCause() instanceof CDRestClientException);
+			assertTrue(ee.getCause().getMessage().contains("Error code: 500"));
+		}
+	}
+
+	@Test
+	public void testTaskFails() throws Exception {
+		setUpMockService(-1, 2);
+		AsyncCDRestClient client = new AsyncCDRestClient(CDRestClient.getInstance(), _scheduler);
+		CompletableFuture<CommunityDetectionResult> future = client.awaitResult("task5", 10000, null, null);
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail("Expected ExecutionException");
+		} catch(ExecutionException ee){
+			CDRestClientException ce = (CDRestClientException)ee.getCause();
+			assertEquals(CommunityDetectionResult.FAILED_STATUS, ce.getResult().getStatus());
+			assertEquals("failed task5", ce.getResult().getMessage());
+		}
+		assertTrue(_deletedTasks.contains("task5"));
+	}
+
+	@Test
+	public void testTaskTimesOut() throws Exception {
+		setUpMockService(-1, -1);
+		AsyncCDRestClient client = new AsyncCDRestClient(CDRestClient.getInstance(), _scheduler);
+		CompletableFuture<CommunityDetectionResult> future = client.awaitResult("task7", 50, null, null);
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail("Expected ExecutionException");
+		} catch(ExecutionException ee){
+			CDRestClientException ce = (CDRestClientException)ee.getCause();
+			assertEquals(CDRestClient.TIMEOUT_ERROR_MESSAGE, ce.getMessage());
+			assertEquals(CommunityDetectionResult.PROCESSING_STATUS, ce.getResult().getStatus());
+		}
+		assertTrue(_pollCounts.get("task7").get() >= 2);
+		assertTrue(_deletedTasks.contains("task7"));
+	}
+
+	@Test
+	public void testTaskCanceledViaAlreadyCanceledToken() throws Exception {
+		setUpMockService(-1, -1);
+		AsyncCDRestClient client = new AsyncCDRestClient(CDRestClient.getInstance(), _scheduler);
+		CancellationToken cancelToken = new CancellationToken();
+		cancelToken.cancel();
+		CompletableFuture<CommunityDetectionResult> future = client.awaitResult("task8",
+				10000, null, cancelToken);
+		assertNull(future.get(10, TimeUnit.SECONDS));
+		waitForDelete("task8");
+		assertNull(_pollCounts.get("task8"));
+		
+		// submission with canceled token is never sent
+		future = client.submitAndAwait("algo", null, "data", 10000, null, cancelToken);
+		assertNull(future.get(10, TimeUnit.SECONDS));
+		verify(_mockClient, never()).execute(any(HttpPost.class));
+	}
+	
+	@Test
+	public void testCancelTokenOnlyAffectsItsOwnTasks() throws Exception {
+		setUpMockService(-1, -1);
+		PropertiesHelper.getInstance().setPollingInitialIntervalMillis(20);
+		PropertiesHelper.getInstance().setPollingIntervalTimeMillis(60000);
+		PropertiesHelper.getInstance().setPollingMaxIntervalMillis(60000);
+		AsyncCDRestClient client = new AsyncCDRestClient(CDRestClient.getInstance(), _scheduler);
+		CancellationToken cancelToken = new CancellationToken();
+		CancellationToken otherToken = new CancellationToken();
+		CompletableFuture<CommunityDetectionResult> future = client.awaitResult("task10",
+				-1, null, cancelToken);
+		CompletableFuture<CommunityDetectionResult> otherFuture = client.awaitResult("task11",
+				-1, null, otherToken);
+		while (_pollCounts.get("task10") == null){
+			Thread.sleep(5);
+		}
+		
+		// cancel while waiting on a long backoff
+		cancelToken.cancel();
+		assertNull(future.get(10, TimeUnit.SECONDS));
+		waitForDelete("task10");
+		assertFalse(otherFuture.isDone());
+		assertFalse(_deletedTasks.contains("task11"));
+		otherToken.cancel();
+		assertNull(otherFuture.get(10, TimeUnit.SECONDS));
+		waitForDelete("task11");
+	}
+	
+	private void waitForDelete(final String taskId) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!_deletedTasks.contains(taskId) && System.currentTimeMillis() < deadline){
+			Thread.sleep(5);
+		}
+		assertTrue(_deletedTasks.contains(taskId));
+	}
+
+	@Test
+	public void testFutureCanceledDeletesTask() throws Exception {
+		setUpMockService(-1, -1);
+		PropertiesHelper.getInstance().setPollingInitialIntervalMillis(60000);
+		PropertiesHelper.getInstance().setPollingIntervalTimeMillis(60000);
+		PropertiesHelper.getInstance().setPollingMaxIntervalMillis(60000);
+		AsyncCDRestClient client = new AsyncCDRestClient(CDRestClient.getInstance(), _scheduler);
+		CompletableFuture<CommunityDetectionResult> future = client.awaitResult("task9", -1, null, null);
+		assertTrue(future.cancel(true));
+		try {
+			future.get();
+			fail("Expected CancellationException");
+		} catch(CancellationException ce){
+			// expected
+		}
+		waitForDelete("task9");
+		assertNull(_pollCounts.get("task9"));
+	}
+
+	@Test
+	public void testManyOutstandingTasksWithTwoThreads() throws Exception {
+		setUpMockService(4, -1);
+		AsyncCDRestClient client = new AsyncCDRestClient(CDRestClient.getInstance(), _scheduler);
+		List<CompletableFuture<CommunityDetectionResult>> futures = new ArrayList<>();
+		for (int i = 0; i < 500; i++){
+			futures.add(client.submitAndAwait("algo", null, "data" + i, 60000, null, null));
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+		for (CompletableFuture<CommunityDetectionResult> future : futures){
+			assertEquals(CommunityDetectionResult.COMPLETE_STATUS, future.get().getStatus());
+		}
+		assertEquals(500, _pollCounts.size());
+		assertEquals(500, _deletedTasks.size());
+	}
+
+	@Test
+	public void testShutdown() throws Exception {
+		AsyncCDRestClient client = new AsyncCDRestClient(CDRestClient.getInstance(), _scheduler);
+		client.shutdown();
+		assertTrue(_scheduler.isShutdown());
+		CompletableFuture<CommunityDetectionResult> future = client.submitAndAwait("algo",
+				null, "data", 10000, null, null);
+		assertTrue(future.isCompletedExceptionally());
+	}
+}
@@ -1,24 +1,38 @@
 package org.cytoscape.app.communitydetection.rest;
 
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.BooleanNode;
 import com.fasterxml.jackson.databind.node.TextNode;
+import com.sun.net.httpserver.HttpServer;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
+import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.cytoscape.app.communitydetection.PropertiesHelper;
+import org.cytoscape.app.communitydetection.event.BaseurlUpdatedEvent;
 import org.cytoscape.work.TaskMonitor;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -27,7 +41,9 @@ import org.mockito.AdditionalMatchers;
 import org.mockito.ArgumentCaptor;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithms;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
 import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResultStatus;
 import org.ndexbio.communitydetection.rest.model.ErrorResponse;
 import org.ndexbio.communitydetection.rest.model.Task;
 
@@ -281,18 +297,6 @@ public class CDRestClientTest {
 		assertEquals("http://foo/algorithms", hget.getValue().getURI().toString());
     }
 	
-    @Test
-    public void testGetIsTaskCanceled(){
-		CDRestClient client = CDRestClient.getInstance();
-		try {
-			client.setTaskCanceled(false);
-			assertFalse(client.getIsTaskCanceled());
-			client.setTaskCanceled(true);
-			assertTrue(client.getIsTaskCanceled());
-		} finally {
-			client.setTaskCanceled(false);
-		}
-    }
     @Test
     public void testgetErrorMessageFromResultWithNullRequest(){
 	CDRestClient client = CDRestClient.getInstance();
@@ -406,24 +410,120 @@ public class CDRestClientTest {
 	@Test
 	public void testGetCDResultTaskIsCanceled() throws CDRestClientException, IOException {
 		CDRestClient client = CDRestClient.getInstance();
+		HttpClientFactory mockFac = mock(HttpClientFactory.class);
+		HttpClient mockClient = mock(HttpClient.class);
+		HttpResponse mockRes = mock(HttpResponse.class);
+		StatusLine mockStatus = mock(StatusLine.class);
+
+		PropertiesHelper.getInstance().setBaseurl("http://foo");
+		when(mockStatus.getStatusCode()).thenReturn(HttpStatus.SC_INTERNAL_SERVER_ERROR);
+		when(mockRes.getStatusLine()).thenReturn(mockStatus);
+
+		when(mockClient.execute(any(HttpDelete.class))).thenReturn(mockRes);
+		when(mockFac.getHttpClient(any(RequestConfig.class))).thenReturn(mockClient);
+
+		client.setAlternateHttpClientFactory(mockFac);
+		CancellationToken cancelToken = new CancellationToken();
+		cancelToken.cancel();
+		assertNull(client.getCDResult("testGetCDResultTaskIsCanceled", null,
+				0.0f, 0.0f, 0, cancelToken));
+		verify(mockClient, never()).execute(any(HttpGet.class));
+		verify(mockClient).execute(any(HttpDelete.class));
+	}
+	
+	@Test
+	public void testGetCDResultCanceledWhileWaiting() throws Exception {
+		CDRestClient client = CDRestClient.getInstance();
+		HttpClientFactory mockFac = mock(HttpClientFactory.class);
+		HttpClient mockClient = mock(HttpClient.class);
+		HttpResponse mockDeleteRes = mock(HttpResponse.class);
+		StatusLine mockDeleteStatus = mock(StatusLine.class);
+
+		PropertiesHelper.getInstance().setBaseurl("http://foo");
+		PropertiesHelper.getInstance().setPollingInitialIntervalMillis(60000);
 		try {
-			HttpClientFactory mockFac = mock(HttpClientFactory.class);
-			HttpClient mockClient = mock(HttpClient.class);
-			HttpResponse mockRes = mock(HttpResponse.class);
-			StatusLine mockStatus = mock(StatusLine.class);
-		
-			PropertiesHelper.getInstance().setBaseurl("http://foo");
-			when(mockStatus.getStatusCode()).thenReturn(HttpStatus.SC_INTERNAL_SERVER_ERROR);
-			when(mockRes.getStatusLine()).thenReturn(mockStatus);
-		
-			when(mockClient.execute(any(HttpDelete.class))).thenReturn(mockRes);
+			when(mockDeleteStatus.getStatusCode()).thenReturn(HttpStatus.SC_OK);
+			when(mockDeleteRes.getStatusLine()).thenReturn(mockDeleteStatus);
+			when(mockClient.execute(any(HttpDelete.class))).thenReturn(mockDeleteRes);
+			when(mockFac.getHttpClient(any(RequestConfig.class))).thenReturn(mockClient);
+			client.setAlternateHttpClientFactory(mockFac);
+
+			CancellationToken cancelToken = new CancellationToken();
+			CancellationToken otherToken = new CancellationToken();
+			Thread canceler = new Thread(() -> {
+				try {
+					Thread.sleep(100);
+				} catch(InterruptedException ie){
+				}
+				cancelToken.cancel();
+			});
+			long startTime = System.currentTimeMillis();
+			canceler.start();
+			assertNull(client.getCDResult("testGetCDResultCanceledWhileWaiting", null,
+					0.0f, 0.0f, -1, cancelToken));
+			long duration = System.currentTimeMillis() - startTime;
+			canceler.join();
+			assertTrue("took " + duration + "ms", duration < 30000);
+			assertFalse(otherToken.isCanceled());
+			verify(mockClient, never()).execute(any(HttpGet.class));
+			ArgumentCaptor<HttpDelete> hdel = ArgumentCaptor.forClass(HttpDelete.class);
+			verify(mockClient).execute(hdel.capture());
+			assertEquals("http://foo/testGetCDResultCanceledWhileWaiting", hdel.getValue().getURI().toString());
+		} finally {
+			PropertiesHelper.getInstance().updateViaProperties(null);
+		}
+	}
+	
+	@Test
+	public void testGetCDResultInterruptedWhilePolling() throws Exception {
+		CDRestClient client = CDRestClient.getInstance();
+		HttpClientFactory mockFac = mock(HttpClientFactory.class);
+		HttpClient mockClient = mock(HttpClient.class);
+		HttpResponse mockDeleteRes = mock(HttpResponse.class);
+		StatusLine mockDeleteStatus = mock(StatusLine.class);
+
+		CommunityDetectionResult cdRes = new CommunityDetectionResult();
+		cdRes.setStatus(CommunityDetectionResult.PROCESSING_STATUS);
+		cdRes.setProgress(10);
+
+		PropertiesHelper.getInstance().setBaseurl("http://foo");
+		PropertiesHelper.getInstance().setPollingInitialIntervalMillis(1);
+		PropertiesHelper.getInstance().setPollingIntervalTimeMillis(50);
+		PropertiesHelper.getInstance().setPollingMaxIntervalMillis(50);
+		try {
+			when(mockDeleteStatus.getStatusCode()).thenReturn(HttpStatus.SC_OK);
+			when(mockDeleteRes.getStatusLine()).thenReturn(mockDeleteStatus);
+			when(mockClient.execute(any(HttpDelete.class))).thenAnswer((invocation) -> {
+				assertFalse(Thread.currentThread().isInterrupted());
+				return mockDeleteRes;
+			});
+			// first status check interrupts the polling thread
+			when(mockClient.execute(any(HttpGet.class))).thenAnswer((invocation) -> {
+				Thread.currentThread().interrupt();
+				return getMockHttpResponseWithResult(cdRes, HttpStatus.SC_OK);
+			});
 			when(mockFac.getHttpClient(any(RequestConfig.class))).thenReturn(mockClient);
-		
 			client.setAlternateHttpClientFactory(mockFac);
-			client.setTaskCanceled(true);
-			assertNull(client.getCDResult("testGetCDResultTaskIsCanceled", 0));
+
+			CancellationToken cancelToken = new CancellationToken();
+			try {
+				assertNull(client.getCDResult("testGetCDResultInterruptedWhilePolling", null,
+						0.0f, 0.0f, 5000, cancelToken));
+				assertTrue(Thread.currentThread().isInterrupted());
+			} finally {
+				Thread.interrupted();
+			}
+			assertTrue(cancelToken.isCanceled());
+			
+			// no more status checks once interrupted
+			ArgumentCaptor<HttpUriRequest> requests = ArgumentCaptor.forClass(HttpUriRequest.class);
+			verify(mockClient, times(2)).execute(requests.capture());
+			assertTrue(requests.getAllValues().get(0) instanceof HttpGet);
+			assertTrue(requests.getAllValues().get(1) instanceof HttpDelete);
+			assertEquals("http://foo/testGetCDResultInterruptedWhilePolling",
+					requests.getAllValues().get(1).getURI().toString());
 		} finally {
-			client.setTaskCanceled(false);
+			PropertiesHelper.getInstance().updateViaProperties(null);
 		}
 	}
 	
@@ -532,18 +632,19 @@ public class CDRestClientTest {
 		cdRes.setStatus(CommunityDetectionResult.SUBMITTED_STATUS);
 		cdRes.setMessage("some message");
 		cdRes.setProgress(50);
-		
-		HttpResponse mockGetResOne = getMockHttpResponseWithResult(cdRes, HttpStatus.SC_OK);
-		HttpResponse mockGetResTwo = getMockHttpResponseWithResult(cdRes, HttpStatus.SC_OK);
 
 		HttpResponse mockDeleteRes = mock(HttpResponse.class);
 		StatusLine mockDeleteStatus = mock(StatusLine.class);
 
 		PropertiesHelper.getInstance().setBaseurl("http://foo");
+		PropertiesHelper.getInstance().setPollingInitialIntervalMillis(1);
 		PropertiesHelper.getInstance().setPollingIntervalTimeMillis(1);
+		PropertiesHelper.getInstance().setPollingMaxIntervalMillis(1);
 		when(mockDeleteStatus.getStatusCode()).thenReturn(HttpStatus.SC_OK);
 		when(mockDeleteRes.getStatusLine()).thenReturn(mockDeleteStatus);
-		when(mockClient.execute(any(HttpGet.class))).thenReturn(mockGetResOne, mockGetResTwo);
+		when(mockClient.execute(any(HttpGet.class))).thenAnswer((invocation) -> {
+			return getMockHttpResponseWithResult(cdRes, HttpStatus.SC_OK);
+		});
 		when(mockClient.execute(any(HttpDelete.class))).thenReturn(mockDeleteRes);
 		when(mockFac.getHttpClient(any(RequestConfig.class))).thenReturn(mockClient);
 
@@ -572,7 +673,6 @@ public class CDRestClientTest {
 		
 		HttpResponse mockGetResOne = getMockHttpResponseWithResult(cdRes, HttpStatus.SC_OK);
 		cdRes.setProgress(60);
-		HttpResponse mockGetResTwo = getMockHttpResponseWithResult(cdRes, HttpStatus.SC_OK);
 
 		HttpResponse mockDeleteRes = mock(HttpResponse.class);
 		StatusLine mockDeleteStatus = mock(StatusLine.class);
@@ -581,17 +681,22 @@ public class CDRestClientTest {
 		
 		
 		PropertiesHelper.getInstance().setBaseurl("http://foo");
+		PropertiesHelper.getInstance().setPollingInitialIntervalMillis(1);
 		PropertiesHelper.getInstance().setPollingIntervalTimeMillis(1);
+		PropertiesHelper.getInstance().setPollingMaxIntervalMillis(1);
 		when(mockDeleteStatus.getStatusCode()).thenReturn(HttpStatus.SC_OK);
 		when(mockDeleteRes.getStatusLine()).thenReturn(mockDeleteStatus);
-		when(mockClient.execute(any(HttpGet.class))).thenReturn(mockGetResOne, mockGetResTwo);
+		when(mockClient.execute(any(HttpGet.class))).thenReturn(mockGetResOne)
+				.thenAnswer((invocation) -> {
+			return getMockHttpResponseWithResult(cdRes, HttpStatus.SC_OK);
+		});
 		when(mockClient.execute(any(HttpDelete.class))).thenReturn(mockDeleteRes);
 		when(mockFac.getHttpClient(any(RequestConfig.class))).thenReturn(mockClient);
 
 		client.setAlternateHttpClientFactory(mockFac);
 		try {
 			client.getCDResult("testGetCDResultTaskTimesOutWithTaskMonitor",
-					mockMonitor, 0.1f, 0.8f, 2);
+					mockMonitor, 0.1f, 0.8f, 20);
 			fail("Expected CDRestClientException");
 		} catch(CDRestClientException ce){
 			CommunityDetectionResult res = ce.getResult();
@@ -599,8 +704,99 @@ public class CDRestClientTest {
 			assertEquals(CommunityDetectionResult.SUBMITTED_STATUS, res.getStatus());
 			assertEquals("some message", res.getMessage());
 		}
-		verify(mockMonitor).setProgress(AdditionalMatchers.eq(0.24f, 0.1f));
-		verify(mockMonitor).setProgress(AdditionalMatchers.eq(0.52f, 0.1f));
+		verify(mockMonitor).setProgress(AdditionalMatchers.eq(0.24f, 0.01f));
+		verify(mockMonitor, atLeastOnce()).setProgress(AdditionalMatchers.eq(0.52f, 0.01f));
+	}
+	
+	@Test
+	public void testGetCDResultFastTaskNotDelayedByMaxPollingInterval() throws CDRestClientException, IOException {
+		CDRestClient client = CDRestClient.getInstance();
+		HttpClientFactory mockFac = mock(HttpClientFactory.class);
+		HttpClient mockClient = mock(HttpClient.class);
+
+		CommunityDetectionResult runningRes = new CommunityDetectionResult();
+		runningRes.setStatus(CommunityDetectionResult.PROCESSING_STATUS);
+		runningRes.setProgress(50);
+		CommunityDetectionResult doneRes = new CommunityDetectionResult();
+		doneRes.setStatus(CommunityDetectionResult.COMPLETE_STATUS);
+		doneRes.setProgress(100);
+		HttpResponse mockGetResOne = getMockHttpResponseWithResult(runningRes, HttpStatus.SC_OK);
+		HttpResponse mockGetResTwo = getMockHttpResponseWithResult(runningRes, HttpStatus.SC_OK);
+		HttpResponse mockGetResThree = getMockHttpResponseWithResult(doneRes, HttpStatus.SC_OK);
+
+		HttpResponse mockDeleteRes = mock(HttpResponse.class);
+		StatusLine mockDeleteStatus = mock(StatusLine.class);
+		
+		PropertiesHelper.getInstance().setBaseurl("http://foo");
+		PropertiesHelper.getInstance().setPollingInitialIntervalMillis(5);
+		PropertiesHelper.getInstance().setPollingIntervalTimeMillis(60000);
+		PropertiesHelper.getInstance().setPollingMaxIntervalMillis(60000);
+		try {
+			when(mockDeleteStatus.getStatusCode()).thenReturn(HttpStatus.SC_OK);
+			when(mockDeleteRes.getStatusLine()).thenReturn(mockDeleteStatus);
+			when(mockClient.execute(any(HttpGet.class))).thenReturn(mockGetResOne,
+					mockGetResTwo, mockGetResThree);
+			when(mockClient.execute(any(HttpDelete.class))).thenReturn(mockDeleteRes);
+			when(mockFac.getHttpClient(any(RequestConfig.class))).thenReturn(mockClient);
+
+			client.setAlternateHttpClientFactory(mockFac);
+			long startTime = System.currentTimeMillis();
+			CommunityDetectionResult res = client.getCDResult("testGetCDResultFastTask", 60000);
+			long duration = System.currentTimeMillis() - startTime;
+			assertEquals(CommunityDetectionResult.COMPLETE_STATUS, res.getStatus());
+			
+			// checks are at most 5ms, 10ms and 20ms apart
+			assertTrue("took " + duration + "ms", duration < 5000);
+			verify(mockClient, times(3)).execute(any(HttpGet.class));
+		} finally {
+			PropertiesHelper.getInstance().updateViaProperties(null);
+		}
+	}
+	
+	@Test
+	public void testGetCDResultTimeoutIsWallClockDeadline() throws CDRestClientException, IOException {
+		CDRestClient client = CDRestClient.getInstance();
+		HttpClientFactory mockFac = mock(HttpClientFactory.class);
+		HttpClient mockClient = mock(HttpClient.class);
+
+		CommunityDetectionResult cdRes = new CommunityDetectionResult();
+		cdRes.setStatus(CommunityDetectionResult.PROCESSING_STATUS);
+		cdRes.setProgress(1);
+
+		HttpResponse mockDeleteRes = mock(HttpResponse.class);
+		StatusLine mockDeleteStatus = mock(StatusLine.class);
+		
+		PropertiesHelper.getInstance().setBaseurl("http://foo");
+		PropertiesHelper.getInstance().setPollingInitialIntervalMillis(10);
+		PropertiesHelper.getInstance().setPollingIntervalTimeMillis(60000);
+		PropertiesHelper.getInstance().setPollingMaxIntervalMillis(60000);
+		try {
+			when(mockDeleteStatus.getStatusCode()).thenReturn(HttpStatus.SC_OK);
+			when(mockDeleteRes.getStatusLine()).thenReturn(mockDeleteStatus);
+			when(mockClient.execute(any(HttpGet.class))).thenAnswer((invocation) -> {
+				return getMockHttpResponseWithResult(cdRes, HttpStatus.SC_OK);
+			});
+			when(mockClient.execute(any(HttpDelete.class))).thenReturn(mockDeleteRes);
+			when(mockFac.getHttpClient(any(RequestConfig.class))).thenReturn(mockClient);
+
+			client.setAlternateHttpClientFactory(mockFac);
+			long startTime = System.currentTimeMillis();
+			try {
+				client.getCDResult("testGetCDResultTimeoutIsWallClockDeadline", 300);
+				fail("Expected CDRestClientException");
+			} catch(CDRestClientException ce){
+				assertEquals(1, ce.getResult().getProgress());
+			}
+			long duration = System.currentTimeMillis() - startTime;
+			assertTrue("took " + duration + "ms", duration >= 300);
+			
+			// last wait is cut short by deadline instead of waiting 60 seconds
+			assertTrue("took " + duration + "ms", duration < 5000);
+			verify(mockClient, atLeast(2)).execute(any(HttpGet.class));
+			verify(mockClient, times(1)).execute(any(HttpDelete.class));
+		} finally {
+			PropertiesHelper.getInstance().updateViaProperties(null);
+		}
 	}
 	
 	@Test
@@ -647,12 +843,44 @@ public class CDRestClientTest {
 		PropertiesHelper.getInstance().setSubmitRetryCount(1);
 		CDRestClient client = CDRestClient.getInstance();
 		client.setAlternateHttpClientFactory(mockFac);
-		try {
-			client.setTaskCanceled(true);
-			assertNull(client.postCDData("foo", null, "somedata"));
-		} finally {
-			client.setTaskCanceled(true);			
-		}
+		CancellationToken cancelToken = new CancellationToken();
+		cancelToken.cancel();
+		assertNull(client.postCDData("foo", null, "somedata", cancelToken));
+	}
+	
+	@Test
+	public void testPostCDDataCancelAbortsInflightRequest() throws Exception {
+		HttpClientFactory mockFac = mock(HttpClientFactory.class);
+		HttpClient mockClient = mock(HttpClient.class);
+		PropertiesHelper.getInstance().setBaseurl("http://foo");
+		PropertiesHelper.getInstance().setSubmitRetryCount(1);
+		when(mockFac.getHttpClient(any(RequestConfig.class))).thenReturn(mockClient);
+		
+		// POST blocks until the request is aborted like a slow upload would
+		when(mockClient.execute(any(HttpPost.class))).thenAnswer((invocation) -> {
+			HttpPost post = invocation.getArgument(0);
+			long deadline = System.currentTimeMillis() + 30000;
+			while (!post.isAborted() && System.currentTimeMillis() < deadline){
+				Thread.sleep(5);
+			}
+			throw new IOException("Request aborted");
+		});
+		CDRestClient client = CDRestClient.getInstance();
+		client.setAlternateHttpClientFactory(mockFac);
+		CancellationToken cancelToken = new CancellationToken();
+		Thread canceler = new Thread(() -> {
+			try {
+				Thread.sleep(100);
+			} catch(InterruptedException ie){
+			}
+			cancelToken.cancel();
+		});
+		long startTime = System.currentTimeMillis();
+		canceler.start();
+		assertNull(client.postCDData("foo", null, (out) -> out.write(1), cancelToken));
+		canceler.join();
+		long duration = System.currentTimeMillis() - startTime;
+		assertTrue("took " + duration + "ms", duration < 30000);
 	}
 	
 	@Test
@@ -686,4 +914,493 @@ public class CDRestClientTest {
 		String taskId = client.postCDData("foo", customParams, "somedata");
 		assertEquals("taskid", taskId);
 	}
+	
+	@Test
+	public void testPostCDDataWithDataWriterNullAlgo() throws CDRestClientException, IOException{
+		CDRestClient client = CDRestClient.getInstance();
+		try {
+			client.postCDData(null, null, (out) -> {});
+			fail("Expected IllegalArgumentException");
+		} catch(IllegalArgumentException iae){
+			assertEquals("algorithm cannot be null", iae.getMessage());
+		}
+	}
+	
+	@Test
+	public void testPostCDDataWithNullDataWriter() throws CDRestClientException, IOException{
+		CDRestClient client = CDRestClient.getInstance();
+		try {
+			client.postCDData("foo", null, (CDRequestDataWriter)null);
+			fail("Expected IllegalArgumentException");
+		} catch(IllegalArgumentException iae){
+			assertEquals("data writer cannot be null", iae.getMessage());
+		}
+	}
+	
+	@Test
+	public void testPostCDDataWithDataWriterSuccessAfterRetry() throws IOException, CDRestClientException {
+		HttpClientFactory mockFac = mock(HttpClientFactory.class);
+		HttpClient mockClient = mock(HttpClient.class);
+		HttpResponse mockFailRes = mock(HttpResponse.class);
+		StatusLine mockFailStatus = mock(StatusLine.class);
+		when(mockFailStatus.getStatusCode()).thenReturn(HttpStatus.SC_INTERNAL_SERVER_ERROR);
+		when(mockFailRes.getStatusLine()).thenReturn(mockFailStatus);
+		
+		HttpResponse mockRes = mock(HttpResponse.class);
+		StatusLine mockStatus = mock(StatusLine.class);
+		HttpEntity mockEntity = mock(HttpEntity.class);
+		Task myTask = new Task();
+		myTask.setId("taskid");
+		ObjectMapper mapper = new ObjectMapper();
+		InputStream iStream = new ByteArrayInputStream(mapper.writeValueAsBytes(myTask));
+		when(mockEntity.getContent()).thenReturn(iStream);
+		when(mockRes.getEntity()).thenReturn(mockEntity);
+		when(mockStatus.getStatusCode()).thenReturn(HttpStatus.SC_ACCEPTED);
+		when(mockRes.getStatusLine()).thenReturn(mockStatus);
+		
+		PropertiesHelper.getInstance().setBaseurl("http://foo");
+		PropertiesHelper.getInstance().setSubmitRetryCount(2);
+		
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		when(mockFac.getHttpClient(any(RequestConfig.class))).thenReturn(mockClient);
+		when(mockClient.execute(any(HttpPost.class))).thenAnswer((invocation) -> {
+			HttpPost post = invocation.getArgument(0);
+			bos.reset();
+			post.getEntity().writeTo(bos);
+			return mockFailRes;
+		}).thenAnswer((invocation) -> {
+			HttpPost post = invocation.getArgument(0);
+			bos.reset();
+			post.getEntity().writeTo(bos);
+			return mockRes;
+		});
+		
+		CDRestClient client = CDRestClient.getInstance();
+		client.setAlternateHttpClientFactory(mockFac);
+		String taskId = client.postCDData("foo", null, (out) -> {
+			out.write("1\t2\n".getBytes());
+		});
+		assertEquals("taskid", taskId);
+		verify(mockClient, times(2)).execute(any(HttpPost.class));
+		CommunityDetectionRequest request = mapper.readValue(bos.toByteArray(),
+				CommunityDetectionRequest.class);
+		assertEquals("foo", request.getAlgorithm());
+		assertEquals("1\t2\n", request.getData().asText());
+	}
+	
+	@Test
+	public void testPostCDDataWithDataWriterThatFails() throws IOException, CDRestClientException {
+		HttpClientFactory mockFac = mock(HttpClientFactory.class);
+		HttpClient mockClient = mock(HttpClient.class);
+		
+		PropertiesHelper.getInstance().setBaseurl("http://foo");
+		PropertiesHelper.getInstance().setSubmitRetryCount(1);
+		
+		when(mockFac.getHttpClient(any(RequestConfig.class))).thenReturn(mockClient);
+		when(mockClient.execute(any(HttpPost.class))).thenAnswer((invocation) -> {
+			HttpPost post = invocation.getArgument(0);
+			try {
+				post.getEntity().writeTo(new ByteArrayOutputStream());
+			} catch(IOException io){
+				throw new ClientProtocolException("wrapped", io);
+			}
+			return null;
+		});
+		
+		CDRestClient client = CDRestClient.getInstance();
+		client.setAlternateHttpClientFactory(mockFac);
+		try {
+			client.postCDData("foo", null, (out) -> {
+				throw new IOException("weight column contains negative values");
+			});
+			fail("Expected IOException");
+		} catch(IOException io){
+			assertEquals("weight column contains negative values", io.getMessage());
+		}
+	}
+	
+	/**
+	 * Starts a local server that mimics the CD Service and records
+	 * the number of bytes received and sent for each request
+	 * @param wireBytes map updated with bytes on the wire. Keys are
+	 *        {@code post}, {@code get} and {@code getEncoding}
+	 * @param resultJson JSON of result returned by GET
+	 * @return running server, caller must stop it
+	 */
+	private HttpServer startStubCDServer(final Map<String, Object> wireBytes,
+			final byte[] resultJson) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/cd", (exchange) -> {
+			String method = exchange.getRequestMethod();
+			if (method.equals("POST")){
+				ByteArrayOutputStream requestBytes = new ByteArrayOutputStream();
+				InputStream in = exchange.getRequestBody();
+				byte[] buf = new byte[8192];
+				int numRead;
+				while ((numRead = in.read(buf)) != -1){
+					requestBytes.write(buf, 0, numRead);
+				}
+				wireBytes.put("post", requestBytes.size());
+				wireBytes.put("postEncoding", exchange.getRequestHeaders().getFirst("Content-Encoding"));
+				wireBytes.put("postBody", requestBytes.toByteArray());
+				byte[] task = "{\"id\": \"taskid\"}".getBytes(StandardCharsets.UTF_8);
+				exchange.sendResponseHeaders(HttpStatus.SC_ACCEPTED, task.length);
+				exchange.getResponseBody().write(task);
+			} else if (method.equals("GET")){
+				String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+				byte[] resBytes = resultJson;
+				if (exchange.getRequestURI().getPath().endsWith("/status")){
+					resBytes = "{\"status\": \"complete\"}".getBytes(StandardCharsets.UTF_8);
+				}
+				if (acceptEncoding != null && acceptEncoding.contains("gzip")){
+					ByteArrayOutputStream gzipBytes = new ByteArrayOutputStream();
+					try (GZIPOutputStream gzipStream = new GZIPOutputStream(gzipBytes)){
+						gzipStream.write(resBytes);
+					}
+					resBytes = gzipBytes.toByteArray();
+					exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+				}
+				wireBytes.put("get", resBytes.length);
+				wireBytes.put("getEncoding", acceptEncoding);
+				exchange.sendResponseHeaders(HttpStatus.SC_OK, resBytes.length);
+				exchange.getResponseBody().write(resBytes);
+			} else {
+				byte[] empty = "{}".getBytes(StandardCharsets.UTF_8);
+				exchange.sendResponseHeaders(HttpStatus.SC_OK, empty.length);
+				exchange.getResponseBody().write(empty);
+			}
+			exchange.close();
+		});
+		server.start();
+		return server;
+	}
+	
+	@Test
+	public void testCompressionBytesOnWireWithStubServer() throws Exception {
+		StringBuilder edgeList = new StringBuilder();
+		for (int i = 0; i < 20000; i++){
+			edgeList.append(100000 + i).append("\t").append(200000 + (i % 500)).append("\n");
+		}
+		final byte[] edgeListBytes = edgeList.toString().getBytes(StandardCharsets.UTF_8);
+		ObjectMapper mapper = new ObjectMapper();
+		CommunityDetectionResult cdr = new CommunityDetectionResult();
+		cdr.setStatus(CommunityDetectionResultStatus.COMPLETE_STATUS);
+		cdr.setResult(new TextNode(edgeList.toString().replace("\n", ",c-m;")));
+		byte[] resultJson = mapper.writeValueAsBytes(cdr);
+		
+		Map<String, Object> wireBytes = new HashMap<>();
+		HttpServer server = startStubCDServer(wireBytes, resultJson);
+		PropertiesHelper pHelper = PropertiesHelper.getInstance();
+		try {
+			pHelper.setBaseurl("http://localhost:" + server.getAddress().getPort() + "/cd");
+			pHelper.setSubmitRetryCount(1);
+			pHelper.setPollingIntervalTimeMillis(1);
+			pHelper.setPollingMaxIntervalMillis(1);
+			CDRestClient client = CDRestClient.getInstance();
+			client.setAlternateHttpClientFactory(new HttpClientFactoryImpl());
+			
+			pHelper.setHttpGzipRequest(false);
+			assertEquals("taskid", client.postCDData("foo", null, (out) -> {
+				out.write(edgeListBytes);
+			}));
+			int uncompressedPost = (Integer)wireBytes.get("post");
+			assertNull(wireBytes.get("postEncoding"));
+			assertTrue(uncompressedPost > edgeListBytes.length);
+			
+			pHelper.setHttpGzipRequest(true);
+			assertEquals("taskid", client.postCDData("foo", null, (out) -> {
+				out.write(edgeListBytes);
+			}));
+			int compressedPost = (Integer)wireBytes.get("post");
+			assertEquals("gzip", wireBytes.get("postEncoding"));
+			assertTrue("gzip request was " + compressedPost + " bytes vs "
+					+ uncompressedPost + " uncompressed",
+					compressedPost * 4 < uncompressedPost);
+			CommunityDetectionRequest request = mapper.readValue(
+					new GZIPInputStream(new ByteArrayInputStream((byte[])wireBytes.get("postBody"))),
+					CommunityDetectionRequest.class);
+			assertEquals("foo", request.getAlgorithm());
+			assertEquals(edgeList.toString(), request.getData().asText());
+			
+			CommunityDetectionResult res = client.getCDResult("taskid", 1000);
+			assertEquals(cdr.getResult().asText(), res.getResult().asText());
+			assertTrue(((String)wireBytes.get("getEncoding")).contains("gzip"));
+			int compressedGet = (Integer)wireBytes.get("get");
+			assertTrue("gzip response was " + compressedGet + " bytes vs "
+					+ resultJson.length + " uncompressed",
+					compressedGet * 4 < resultJson.length);
+		} finally {
+			pHelper.setHttpGzipRequest(false);
+			server.stop(0);
+		}
+	}
+	
+	@Test
+	public void testConnectionsReleasedToPoolWithStubServer() throws Exception {
+		ObjectMapper mapper = new ObjectMapper();
+		CommunityDetectionResult cdr = new CommunityDetectionResult();
+		cdr.setStatus(CommunityDetectionResultStatus.COMPLETE_STATUS);
+		cdr.setResult(new TextNode("1,2,c-m;"));
+		Map<String, Object> wireBytes = new HashMap<>();
+		HttpServer server = startStubCDServer(wireBytes, mapper.writeValueAsBytes(cdr));
+		PropertiesHelper pHelper = PropertiesHelper.getInstance();
+		HttpClientFactoryImpl fac = new HttpClientFactoryImpl();
+		try {
+			pHelper.setBaseurl("http://localhost:" + server.getAddress().getPort() + "/cd");
+			pHelper.setSubmitRetryCount(1);
+			pHelper.setPollingIntervalTimeMillis(1);
+			pHelper.setPollingMaxIntervalMillis(1);
+			pHelper.setHttpConnectionRequestTimeoutMillis(2000);
+			
+			// with a single pooled connection any response that is not
+			// consumed would cause the next request to time out
+			pHelper.setHttpMaxConnectionsPerRoute(1);
+			CDRestClient client = CDRestClient.getInstance();
+			client.setAlternateHttpClientFactory(fac);
+			for (int i = 0; i < 3; i++){
+				assertEquals("taskid", client.postCDData("foo", null, (out) -> {
+					out.write("1\t2\n".getBytes(StandardCharsets.UTF_8));
+				}));
+				assertEquals("1,2,c-m;", client.getCDResult("taskid", 1000).getResult().asText());
+				client.deleteTask("taskid");
+			}
+		} finally {
+			fac.shutdown();
+			server.stop(0);
+		}
+	}
+	
+	@Test
+	public void testGetCDResultCopiesResponseWithStubServer() throws Exception {
+		byte[] resultJson = ("{\"status\": \"complete\", \"result\": \"1,2,c-m;\","
+				+ " \"message\": \"done\", \"progress\": 100}").getBytes(StandardCharsets.UTF_8);
+		HttpServer server = startStubCDServer(new HashMap<>(), resultJson);
+		PropertiesHelper pHelper = PropertiesHelper.getInstance();
+		HttpClientFactoryImpl fac = new HttpClientFactoryImpl();
+		try {
+			pHelper.setBaseurl("http://localhost:" + server.getAddress().getPort() + "/cd");
+			pHelper.setPollingIntervalTimeMillis(1);
+			pHelper.setPollingMaxIntervalMillis(1);
+			CDRestClient client = CDRestClient.getInstance();
+			client.setAlternateHttpClientFactory(fac);
+			ByteArrayOutputStream responseCopy = new ByteArrayOutputStream();
+			String res = client.getCDResult("taskid", null, 0.0f, 0.0f, 1000,
+					new CancellationToken(), (parser) -> parser.getText(), responseCopy);
+			assertEquals("1,2,c-m;", res);
+			
+			// copy holds the whole response including fields after result
+			assertArrayEquals(resultJson, responseCopy.toByteArray());
+		} finally {
+			fac.shutdown();
+			server.stop(0);
+		}
+	}
+	
+	@Test
+	public void testShutdown(){
+		CDRestClient client = CDRestClient.getInstance();
+		HttpClientFactory mockFac = mock(HttpClientFactory.class);
+		client.setAlternateHttpClientFactory(mockFac);
+		client.shutdown();
+		verify(mockFac).shutdown();
+		
+		// url change should only close idle connections
+		client.urlUpdatedEvent(new BaseurlUpdatedEvent("http://old", "http://new"));
+		verify(mockFac).closeIdleConnections();
+		verify(mockFac, times(1)).shutdown();
+		client.setAlternateHttpClientFactory(null);
+		client.shutdown();
+	}
+	
+	private HttpResponse getMockHttpResponseWithJson(final String json) throws IOException {
+		HttpResponse mockRes = mock(HttpResponse.class);
+		HttpEntity mockEntity = mock(HttpEntity.class);
+		when(mockEntity.getContent()).thenReturn(new ByteArrayInputStream(
+				json.getBytes(StandardCharsets.UTF_8)));
+		when(mockRes.getEntity()).thenReturn(mockEntity);
+		return mockRes;
+	}
+	
+	/**
+	 * Creates client whose status requests return {@code statusJson} and
+	 * other GET requests return {@code resultJson}
+	 */
+	private HttpClient getMockClientForStreamedResult(CDRestClient client,
+			final String statusJson, final String resultJson) throws IOException {
+		return getMockClientForStreamedResult(client, statusJson, resultJson, new ArrayList<>());
+	}
+	
+	private HttpClient getMockClientForStreamedResult(CDRestClient client,
+			final String statusJson, final String resultJson,
+			List<HttpGet> getRequests) throws IOException {
+		HttpClientFactory mockFac = mock(HttpClientFactory.class);
+		HttpClient mockClient = mock(HttpClient.class);
+		HttpResponse mockDeleteRes = mock(HttpResponse.class);
+		StatusLine mockDeleteStatus = mock(StatusLine.class);
+		when(mockDeleteStatus.getStatusCode()).thenReturn(HttpStatus.SC_OK);
+		when(mockDeleteRes.getStatusLine()).thenReturn(mockDeleteStatus);
+		when(mockClient.execute(any(HttpDelete.class))).thenReturn(mockDeleteRes);
+		when(mockClient.execute(any(HttpGet.class))).thenAnswer((invocation) -> {
+			HttpGet getRequest = invocation.getArgument(0);
+			getRequests.add(getRequest);
+			if (getRequest.getURI().toString().endsWith("/status")){
+				return getMockHttpResponseWithJson(statusJson);
+			}
+			return getMockHttpResponseWithJson(resultJson);
+		});
+		when(mockFac.getHttpClient(any(RequestConfig.class))).thenReturn(mockClient);
+		PropertiesHelper.getInstance().setBaseurl("http://foo");
+		client.setAlternateHttpClientFactory(mockFac);
+		return mockClient;
+	}
+	
+	@Test
+	public void testGetCDResultWithReaderNullReader() throws CDRestClientException, IOException {
+		try {
+			CDRestClient.getInstance().getCDResult("task", null, 0.0f, 0.0f, 0,
+					new CancellationToken(), null);
+			fail("Expected exception");
+		} catch(IllegalArgumentException iae){
+			assertEquals("result reader cannot be null", iae.getMessage());
+		}
+	}
+	
+	@Test
+	public void testGetCDResultWithReaderSuccess() throws CDRestClientException, IOException {
+		CDRestClient client = CDRestClient.getInstance();
+		List<HttpGet> getRequests = new ArrayList<>();
+		HttpClient mockClient = getMockClientForStreamedResult(client,
+				"{\"status\": \"complete\", \"progress\": 100}",
+				"{\"id\": \"task\", \"message\": {\"x\": [1]}, \"result\": {\"a\": [1, 2]}, \"status\": \"complete\"}",
+				getRequests);
+		String res = client.getCDResult("task", null, 0.0f, 0.0f, 0,
+				new CancellationToken(), (parser) -> {
+					assertEquals(JsonToken.START_OBJECT, parser.currentToken());
+					return parser.readValueAsTree().toString();
+				});
+		assertEquals("{\"a\":[1,2]}", res);
+		assertEquals(2, getRequests.size());
+		assertEquals("http://foo/task/status", getRequests.get(0).getURI().toString());
+		assertEquals("http://foo/task", getRequests.get(1).getURI().toString());
+		assertEquals(CDRestClient.ACCEPT_ENCODING,
+				getRequests.get(1).getFirstHeader("Accept-Encoding").getValue());
+		verify(mockClient).execute(any(HttpDelete.class));
+	}
+	
+	@Test
+	public void testGetCDResultWithReaderStreamsStringResult() throws Exception {
+		CDRestClient client = CDRestClient.getInstance();
+		StringBuilder edgeList = new StringBuilder();
+		for (int i = 0; i < 20000; i++){
+			edgeList.append(i).append(",").append(i + 1).append(",c-m;");
+		}
+		byte[] resultJson = ("{\"id\": \"task\", \"result\": \"" + edgeList
+				+ "\", \"status\": \"complete\"}").getBytes(StandardCharsets.UTF_8);
+		final int[] bytesRead = {0};
+		InputStream resultStream = new ByteArrayInputStream(resultJson){
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				int numRead = super.read(b, off, Math.min(len, 1024));
+				bytesRead[0] += Math.max(0, numRead);
+				return numRead;
+			}
+		};
+		HttpClient mockClient = getMockClientForStreamedResult(client,
+				"{\"status\": \"complete\", \"progress\": 100}", "{}");
+		HttpResponse mockRes = mock(HttpResponse.class);
+		HttpEntity mockEntity = mock(HttpEntity.class);
+		when(mockEntity.getContent()).thenReturn(resultStream);
+		when(mockRes.getEntity()).thenReturn(mockEntity);
+		when(mockClient.execute(argThat((HttpUriRequest request) -> request instanceof HttpGet
+				&& request.getURI().toString().equals("http://foo/task")))).thenReturn(mockRes);
+
+		List<Integer> bytesReadAtEachWrite = new ArrayList<>();
+		StringBuilder received = new StringBuilder();
+		client.getCDResult("task", null, 0.0f, 0.0f, 0, new CancellationToken(), (parser) -> {
+			return parser.getText(new Writer(){
+				@Override
+				public void write(char[] cbuf, int off, int len) {
+					bytesReadAtEachWrite.add(bytesRead[0]);
+					received.append(cbuf, off, len);
+				}
+
+				@Override
+				public void flush() {
+				}
+
+				@Override
+				public void close() {
+				}
+			});
+		});
+		assertEquals(edgeList.toString(), received.toString());
+		// the first part of the edge list was passed on before the
+		// rest of the response was read
+		assertTrue(bytesReadAtEachWrite.size() > 1);
+		assertTrue(bytesReadAtEachWrite.get(0) < resultJson.length / 2);
+	}
+	
+	@Test
+	public void testGetCDResultWithReaderNoResult() throws CDRestClientException, IOException {
+		CDRestClient client = CDRestClient.getInstance();
+		HttpClient mockClient = getMockClientForStreamedResult(client,
+				"{\"status\": \"complete\"}", "{\"status\": \"complete\"}");
+		try {
+			client.getCDResult("task", null, 0.0f, 0.0f, 0,
+					new CancellationToken(), (parser) -> "foo");
+			fail("Expected exception");
+		} catch(CDRestClientException ce){
+			assertEquals("No result found in response for task task", ce.getMessage());
+		}
+		verify(mockClient).execute(any(HttpDelete.class));
+	}
+	
+	@Test
+	public void testGetCDResultWithReaderThatFails() throws CDRestClientException, IOException {
+		CDRestClient client = CDRestClient.getInstance();
+		HttpClient mockClient = getMockClientForStreamedResult(client,
+				"{\"status\": \"complete\"}", "{\"result\": \"foo\"}");
+		try {
+			client.getCDResult("task", null, 0.0f, 0.0f, 0,
+					new CancellationToken(), (parser) -> {
+						throw new IOException("bad result");
+					});
+			fail("Expected exception");
+		} catch(IOException io){
+			assertEquals("bad result", io.getMessage());
+		}
+		verify(mockClient).execute(any(HttpDelete.class));
+	}
+	
+	@Test
+	public void testGetCDResultWithReaderTaskFailed() throws CDRestClientException, IOException {
+		CDRestClient client = CDRestClient.getInstance();
+		HttpClient mockClient = getMockClientForStreamedResult(client,
+				"{\"status\": \"failed\"}",
+				"{\"status\": \"failed\", \"message\": \"i failed\", \"result\": \"oops\"}");
+		try {
+			client.getCDResult("task", null, 0.0f, 0.0f, 0,
+					new CancellationToken(), (parser) -> {
+						fail("reader should not be invoked");
+						return null;
+					});
+			fail("Expected exception");
+		} catch(CDRestClientException ce){
+			assertEquals("i failed : oops", ce.getMessage());
+			assertEquals(CommunityDetectionResultStatus.FAILED_STATUS, ce.getResult().getStatus());
+		}
+	}
+	
+	@Test
+	public void testGetCDResultWithReaderIsCanceled() throws CDRestClientException, IOException {
+		CDRestClient client = CDRestClient.getInstance();
+		HttpClient mockClient = getMockClientForStreamedResult(client,
+				"{\"status\": \"complete\"}", "{\"result\": \"foo\"}");
+		CancellationToken cancelToken = new CancellationToken();
+		cancelToken.cancel();
+		assertNull(client.getCDResult("task", null, 0.0f, 0.0f, 0,
+				cancelToken, (parser) -> "foo"));
+		verify(mockClient, never()).execute(any(HttpGet.class));
+		verify(mockClient).execute(any(HttpDelete.class));
+	}
 }
@@ -0,0 +1,114 @@
+package org.cytoscape.app.communitydetection.rest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.client.methods.HttpGet;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author churas
+ */
+public class CancellationTokenTest {
+
+	@Test
+	public void testCancel(){
+		CancellationToken token = new CancellationToken();
+		CancellationToken otherToken = new CancellationToken();
+		assertFalse(token.isCanceled());
+		token.cancel();
+		assertTrue(token.isCanceled());
+		token.cancel();
+		assertTrue(token.isCanceled());
+		assertFalse(otherToken.isCanceled());
+	}
+
+	@Test
+	public void testCancelListeners(){
+		CancellationToken token = new CancellationToken();
+		AtomicInteger count = new AtomicInteger(0);
+		Runnable listener = () -> count.incrementAndGet();
+		Runnable removedListener = () -> count.addAndGet(100);
+		token.addCancelListener(listener);
+		token.addCancelListener(removedListener);
+		token.addCancelListener(() -> {
+			throw new IllegalStateException("should be logged");
+		});
+		token.removeCancelListener(removedListener);
+		assertEquals(0, count.get());
+		token.cancel();
+		assertEquals(1, count.get());
+
+		// listeners are only run once
+		token.cancel();
+		assertEquals(1, count.get());
+
+		// listener added after cancel is run right away
+		token.addCancelListener(listener);
+		assertEquals(2, count.get());
+	}
+
+	@Test
+	public void testRegisteredRequestIsAborted(){
+		CancellationToken token = new CancellationToken();
+		HttpGet getOne = new HttpGet("http://foo/1");
+		HttpGet getTwo = new HttpGet("http://foo/2");
+		token.registerRequest(getOne);
+		token.registerRequest(getTwo);
+		token.unregisterRequest(getTwo);
+		token.cancel();
+		assertTrue(getOne.isAborted());
+		assertFalse(getTwo.isAborted());
+
+		// requests registered after cancel are aborted right away
+		HttpGet getThree = new HttpGet("http://foo/3");
+		token.registerRequest(getThree);
+		assertTrue(getThree.isAborted());
+	}
+
+	@Test
+	public void testAwaitCancelTimesOut(){
+		CancellationToken token = new CancellationToken();
+		long startTime = System.currentTimeMillis();
+		assertFalse(token.awaitCancel(50));
+		assertTrue(System.currentTimeMillis() - startTime >= 50);
+		assertFalse(token.awaitCancel(0));
+		assertFalse(token.awaitCancel(-1));
+	}
+
+	@Test
+	public void testAwaitCancelInterruptedCancels(){
+		CancellationToken token = new CancellationToken();
+		HttpGet get = new HttpGet("http://foo/1");
+		token.registerRequest(get);
+		Thread.currentThread().interrupt();
+		long startTime = System.currentTimeMillis();
+		try {
+			assertTrue(token.awaitCancel(60000));
+			assertTrue(System.currentTimeMillis() - startTime < 30000);
+			assertTrue(token.isCanceled());
+			assertTrue(get.isAborted());
+			assertTrue(Thread.currentThread().isInterrupted());
+		} finally {
+			Thread.interrupted();
+		}
+	}
+
+	@Test
+	public void testAwaitCancelWokenByCancel() throws InterruptedException {
+		CancellationToken token = new CancellationToken();
+		Thread canceler = new Thread(() -> {
+			try {
+				Thread.sleep(50);
+			} catch(InterruptedException ie){
+			}
+			token.cancel();
+		});
+		long startTime = System.currentTimeMillis();
+		canceler.start();
+		assertTrue(token.awaitCancel(60000));
+		assertTrue(System.currentTimeMillis() - startTime < 30000);
+		canceler.join();
+		assertTrue(token.awaitCancel(60000));
+	}
+}
@@ -1,7 +1,22 @@
 package org.cytoscape.app.communitydetection.rest;
 
+import com.sun.net.httpserver.HttpServer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.cytoscape.app.communitydetection.PropertiesHelper;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -23,4 +38,121 @@ public class HttpClientFactoryImplTest {
 	client = fac.getHttpClient(config);
 	assertNotNull("client is null", client);
     }
+    
+    @Test
+    public void testGetClientReturnsSharedClient(){
+	PropertiesHelper pHelper = PropertiesHelper.getInstance();
+	pHelper.setHttpMaxConnectionsPerRoute(5);
+	pHelper.setHttpIdleConnectionTimeoutMillis(1000);
+	HttpClientFactoryImpl fac = new HttpClientFactoryImpl();
+	try {
+	    RequestConfig config = RequestConfig.custom().setConnectTimeout(45).build();
+	    HttpClient client = fac.getHttpClient(config);
+	    
+	    // same timeouts in a new config object should give same client
+	    assertSame(client, fac.getHttpClient(RequestConfig.custom().setConnectTimeout(45).build()));
+	    
+	    // different timeouts should give a new client
+	    HttpClient newClient = fac.getHttpClient(RequestConfig.custom().setConnectTimeout(46).build());
+	    assertNotSame(client, newClient);
+	    
+	    // different pool settings should give a new client
+	    pHelper.setHttpMaxConnectionsPerRoute(6);
+	    client = fac.getHttpClient(RequestConfig.custom().setConnectTimeout(46).build());
+	    assertNotSame(client, newClient);
+	    
+	    // shutdown should give a new client
+	    fac.shutdown();
+	    assertNotSame(client, fac.getHttpClient(RequestConfig.custom().setConnectTimeout(46).build()));
+	} finally {
+	    fac.shutdown();
+	}
+	// calling shutdown again should be fine
+	fac.shutdown();
+    }
+    
+    @Test
+    public void testRequestInFlightSurvivesClientReplacement() throws Exception {
+	final CountDownLatch requestReceived = new CountDownLatch(1);
+	final CountDownLatch sendResponse = new CountDownLatch(1);
+	HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+	server.setExecutor(Executors.newCachedThreadPool());
+	server.createContext("/", (exchange) -> {
+	    requestReceived.countDown();
+	    try {
+		sendResponse.await(10, TimeUnit.SECONDS);
+	    } catch(InterruptedException ie){
+		// ignored
+	    }
+	    byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+	    exchange.sendResponseHeaders(200, body.length);
+	    exchange.getResponseBody().write(body);
+	    exchange.close();
+	});
+	server.start();
+	PropertiesHelper pHelper = PropertiesHelper.getInstance();
+	pHelper.setHttpMaxConnectionsPerRoute(2);
+	pHelper.setHttpIdleConnectionTimeoutMillis(30000);
+	HttpClientFactoryImpl fac = new HttpClientFactoryImpl();
+	ExecutorService executor = Executors.newSingleThreadExecutor();
+	try {
+	    final String url = "http://localhost:" + server.getAddress().getPort() + "/foo";
+	    final HttpClient client = fac.getHttpClient(RequestConfig.custom().setSocketTimeout(10000).build());
+	    Future<Integer> status = executor.submit(() -> {
+		HttpResponse res = client.execute(new HttpGet(url));
+		EntityUtils.consume(res.getEntity());
+		return res.getStatusLine().getStatusCode();
+	    });
+	    assertTrue(requestReceived.await(10, TimeUnit.SECONDS));
+	    
+	    // url change and new settings must not abort the request in flight
+	    fac.closeIdleConnections();
+	    HttpClient newClient = fac.getHttpClient(RequestConfig.custom().setSocketTimeout(9000).build());
+	    assertNotSame(client, newClient);
+	    assertEquals(1, fac.getRetiredClientCount());
+	    
+	    sendResponse.countDown();
+	    assertEquals(200, (int)status.get(10, TimeUnit.SECONDS));
+	    
+	    // replaced client is closed once its connection is released
+	    assertSame(newClient, fac.getHttpClient(RequestConfig.custom().setSocketTimeout(9000).build()));
+	    assertEquals(0, fac.getRetiredClientCount());
+	} finally {
+	    sendResponse.countDown();
+	    executor.shutdownNow();
+	    fac.shutdown();
+	    server.stop(0);
+	}
+    }
+    
+    @Test
+    public void testPooledConnectionsAreReused() throws Exception {
+	final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<>());
+	HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+	server.createContext("/", (exchange) -> {
+	    clientPorts.add(exchange.getRemoteAddress().getPort());
+	    byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+	    exchange.sendResponseHeaders(200, body.length);
+	    exchange.getResponseBody().write(body);
+	    exchange.close();
+	});
+	server.start();
+	PropertiesHelper pHelper = PropertiesHelper.getInstance();
+	pHelper.setHttpMaxConnectionsPerRoute(1);
+	pHelper.setHttpIdleConnectionTimeoutMillis(30000);
+	HttpClientFactoryImpl fac = new HttpClientFactoryImpl();
+	try {
+	    RequestConfig config = RequestConfig.custom().setConnectionRequestTimeout(5000).build();
+	    String url = "http://localhost:" + server.getAddress().getPort() + "/foo";
+	    for (int i = 0; i < 10; i++){
+		HttpResponse res = fac.getHttpClient(config).execute(new HttpGet(url));
+		assertEquals(200, res.getStatusLine().getStatusCode());
+		EntityUtils.consume(res.getEntity());
+	    }
+	    assertEquals(1, clientPorts.size());
+	} finally {
+	    fac.shutdown();
+	    server.stop(0);
+	}
+    }
 }
@@ -0,0 +1,120 @@
+package org.cytoscape.app.communitydetection.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionRequest;
+
+/**
+ *
+ * @author churas
+ */
+public class StreamingCDRequestEntityTest {
+	
+	@Test
+	public void testAttributes() throws IOException {
+		StreamingCDRequestEntity entity = new StreamingCDRequestEntity(new ObjectMapper(),
+				"algo", null, (out) -> {});
+		assertTrue(entity.isChunked());
+		assertFalse(entity.isRepeatable());
+		assertFalse(entity.isStreaming());
+		assertEquals(-1, entity.getContentLength());
+		assertEquals("application/json", entity.getContentType().getValue());
+		try {
+			entity.getContent();
+			fail("Expected UnsupportedOperationException");
+		} catch(UnsupportedOperationException uoe){
+			assertTrue(uoe.getMessage().contains("does not implement getContent()"));
+		}
+	}
+	
+	@Test
+	public void testWriteToNoCustomParametersNoData() throws IOException {
+		ObjectMapper mapper = new ObjectMapper();
+		StreamingCDRequestEntity entity = new StreamingCDRequestEntity(mapper,
+				"algo", null, (out) -> {});
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		entity.writeTo(bos);
+		assertEquals("{\"algorithm\":\"algo\",\"data\":\"\"}", bos.toString("UTF-8"));
+		CommunityDetectionRequest request = mapper.readValue(bos.toByteArray(),
+				CommunityDetectionRequest.class);
+		assertEquals("algo", request.getAlgorithm());
+		assertEquals("", request.getData().asText());
+		assertNull(request.getCustomParameters());
+	}
+	
+	@Test
+	public void testWriteToWithEdgeListAndCustomParameters() throws IOException {
+		ObjectMapper mapper = new ObjectMapper();
+		LinkedHashMap<String, String> customParams = new LinkedHashMap<>();
+		customParams.put("--x", "some \"val\"");
+		final String data = "1\t2\n3\t4\t0.5\n";
+		StreamingCDRequestEntity entity = new StreamingCDRequestEntity(mapper,
+				"algo", customParams, (out) -> {
+					out.write(data.getBytes(StandardCharsets.UTF_8));
+				});
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		entity.writeTo(bos);
+		CommunityDetectionRequest request = mapper.readValue(bos.toByteArray(),
+				CommunityDetectionRequest.class);
+		assertEquals("algo", request.getAlgorithm());
+		assertEquals(data, request.getData().asText());
+		assertEquals("some \"val\"", request.getCustomParameters().get("--x"));
+		assertNull(entity.getDataWriterException());
+	}
+	
+	@Test
+	public void testWriteToEscapesSpecialCharacters() throws IOException {
+		ObjectMapper mapper = new ObjectMapper();
+		final String data = "quote\" back\\slash \r\b\u0001 \u00e9\u4e2d";
+		StreamingCDRequestEntity entity = new StreamingCDRequestEntity(mapper,
+				"algo", null, (out) -> {
+					byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+					out.write(bytes[0]);
+					out.write(bytes, 1, bytes.length - 1);
+				});
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		entity.writeTo(bos);
+		CommunityDetectionRequest request = mapper.readValue(bos.toByteArray(),
+				CommunityDetectionRequest.class);
+		assertEquals(data, request.getData().asText());
+	}
+	
+	@Test
+	public void testWriteToLargerThenBuffer() throws IOException {
+		ObjectMapper mapper = new ObjectMapper();
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 10000; i++){
+			sb.append(i).append("\t").append(i+1).append("\n");
+		}
+		final String data = sb.toString();
+		StreamingCDRequestEntity entity = new StreamingCDRequestEntity(mapper,
+				"algo", null, (out) -> {
+					out.write(data.getBytes(StandardCharsets.UTF_8));
+				});
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		entity.writeTo(bos);
+		CommunityDetectionRequest request = mapper.readValue(bos.toByteArray(),
+				CommunityDetectionRequest.class);
+		assertEquals(data, request.getData().asText());
+	}
+	
+	@Test
+	public void testWriteToDataWriterRaisesException() throws IOException {
+		StreamingCDRequestEntity entity = new StreamingCDRequestEntity(new ObjectMapper(),
+				"algo", null, (out) -> {
+					throw new IOException("bad weight");
+				});
+		try {
+			entity.writeTo(new ByteArrayOutputStream());
+			fail("Expected IOException");
+		} catch(IOException io){
+			assertEquals("bad weight", io.getMessage());
+		}
+		assertEquals("bad weight", entity.getDataWriterException().getMessage());
+	}
+}
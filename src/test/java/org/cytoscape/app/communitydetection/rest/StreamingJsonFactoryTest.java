@@ -0,0 +1,239 @@
+package org.cytoscape.app.communitydetection.rest;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author churas
+ */
+public class StreamingJsonFactoryTest {
+
+	/**
+	 * Returns at most 100 bytes per read and counts bytes read
+	 */
+	private static class TrickleInputStream extends ByteArrayInputStream {
+		private int _bytesRead = 0;
+
+		TrickleInputStream(byte[] data){
+			super(data);
+		}
+
+		@Override
+		public synchronized int read(byte[] b, int off, int len) {
+			int numRead = super.read(b, off, Math.min(len, 100));
+			if (numRead > 0){
+				_bytesRead += numRead;
+			}
+			return numRead;
+		}
+
+		int getBytesRead(){
+			return _bytesRead;
+		}
+	}
+
+	/**
+	 * Records each chunk written and how many bytes of input were read
+	 * when the first chunk was written
+	 */
+	private static class ChunkWriter extends Writer {
+		private final TrickleInputStream _in;
+		private final StringBuilder _text = new StringBuilder();
+		private final List<Integer> _chunkSizes = new ArrayList<>();
+		private int _bytesReadAtFirstChunk = -1;
+
+		ChunkWriter(TrickleInputStream in){
+			_in = in;
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			if (_bytesReadAtFirstChunk < 0 && _in != null){
+				_bytesReadAtFirstChunk = _in.getBytesRead();
+			}
+			_chunkSizes.add(len);
+			_text.append(cbuf, off, len);
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private String getLongString(){
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 5000; i++){
+			sb.append(i).append(",").append(i + 1).append(",c-m;");
+			if (i % 1000 == 0){
+				sb.append("é€😀\"\\\n\t");
+			}
+		}
+		return sb.toString();
+	}
+
+	private byte[] getJson(String value) throws IOException {
+		Map<String, Object> map = new LinkedHashMap<>();
+		map.put("message", "hi");
+		map.put("result", value);
+		map.put("list", new int[]{1, 2});
+		map.put("status", "complete");
+		return new ObjectMapper().writeValueAsBytes(map);
+	}
+
+	@Test
+	public void testGetTextStreamsStringInChunks() throws Exception {
+		String value = getLongString();
+		byte[] json = getJson(value);
+		TrickleInputStream in = new TrickleInputStream(json);
+		StreamingJsonFactory factory = new StreamingJsonFactory();
+		try (JsonParser parser = factory.createParser(in)){
+			assertEquals(JsonToken.START_OBJECT, parser.nextToken());
+			assertEquals("message", parser.nextFieldName());
+			assertEquals("hi", parser.nextTextValue());
+			assertEquals("result", parser.nextFieldName());
+			assertEquals(JsonToken.VALUE_STRING, parser.nextToken());
+			ChunkWriter writer = new ChunkWriter(in);
+			assertEquals(value.length(), parser.getText(writer));
+			assertEquals(value, writer._text.toString());
+			assertTrue(writer._chunkSizes.size() > 1);
+			for (Integer chunkSize : writer._chunkSizes){
+				assertTrue(chunkSize <= StreamingUTF8JsonParser.CHUNK_SIZE);
+			}
+			// first chunk was passed on before the value was all read
+			assertTrue(writer._bytesReadAtFirstChunk < json.length / 2);
+			assertEquals("", parser.getText());
+
+			// parser carries on after the value
+			assertEquals("list", parser.nextFieldName());
+			assertEquals(JsonToken.START_ARRAY, parser.nextToken());
+			assertEquals(1, parser.nextIntValue(-1));
+			assertEquals(2, parser.nextIntValue(-1));
+			assertEquals(JsonToken.END_ARRAY, parser.nextToken());
+			assertEquals("status", parser.nextFieldName());
+			assertEquals(JsonToken.VALUE_STRING, parser.nextToken());
+			StringWriter statusWriter = new StringWriter();
+			assertEquals(8, parser.getText(statusWriter));
+			assertEquals("complete", statusWriter.toString());
+			assertEquals(JsonToken.END_OBJECT, parser.nextToken());
+			assertNull(parser.nextToken());
+		}
+	}
+
+	@Test
+	public void testGetTextFromByteArray() throws Exception {
+		String value = getLongString();
+		StreamingJsonFactory factory = new StreamingJsonFactory();
+		try (JsonParser parser = factory.createParser(getJson(value))){
+			while (parser.nextToken() != JsonToken.VALUE_STRING
+					|| !"result".equals(parser.getCurrentName())){
+			}
+			ChunkWriter writer = new ChunkWriter(null);
+			assertEquals(value.length(), parser.getText(writer));
+			assertEquals(value, writer._text.toString());
+			assertEquals("list", parser.nextFieldName());
+		}
+	}
+
+	@Test
+	public void testGetTextWithUnicodeEscapes() throws Exception {
+		StreamingJsonFactory factory = new StreamingJsonFactory();
+		byte[] json = "[\"a\\u0042\\ud83d\\ude00c\"]".getBytes(StandardCharsets.UTF_8);
+		try (JsonParser parser = factory.createParser(new ByteArrayInputStream(json))){
+			parser.nextToken();
+			parser.nextToken();
+			StringWriter writer = new StringWriter();
+			assertEquals(5, parser.getText(writer));
+			assertEquals("aB😀c", writer.toString());
+			assertEquals(JsonToken.END_ARRAY, parser.nextToken());
+		}
+	}
+
+	@Test
+	public void testGetTextOnOtherTokens() throws Exception {
+		StreamingJsonFactory factory = new StreamingJsonFactory();
+		byte[] json = "{\"foo\":123}".getBytes(StandardCharsets.UTF_8);
+		try (JsonParser parser = factory.createParser(new ByteArrayInputStream(json))){
+			parser.nextToken();
+			parser.nextToken();
+			StringWriter writer = new StringWriter();
+			assertEquals(3, parser.getText(writer));
+			assertEquals("foo", writer.toString());
+			parser.nextToken();
+			writer = new StringWriter();
+			assertEquals(3, parser.getText(writer));
+			assertEquals("123", writer.toString());
+		}
+	}
+
+	@Test
+	public void testGetTextAfterValueWasRead() throws Exception {
+		StreamingJsonFactory factory = new StreamingJsonFactory();
+		byte[] json = "[\"hello\"]".getBytes(StandardCharsets.UTF_8);
+		try (JsonParser parser = factory.createParser(new ByteArrayInputStream(json))){
+			parser.nextToken();
+			parser.nextToken();
+			assertEquals("hello", parser.getText());
+			StringWriter writer = new StringWriter();
+			assertEquals(5, parser.getText(writer));
+			assertEquals("hello", writer.toString());
+		}
+	}
+
+	@Test
+	public void testGetTextInvalidStrings() throws Exception {
+		StreamingJsonFactory factory = new StreamingJsonFactory();
+		List<byte[]> invalidJson = new ArrayList<>();
+		invalidJson.add("[\"no closing quote".getBytes(StandardCharsets.UTF_8));
+		invalidJson.add("[\"control\u0001char\"]".getBytes(StandardCharsets.UTF_8));
+		invalidJson.add(new byte[]{'[', '"', 'a', (byte)0xC3, 'b', '"', ']'});
+		invalidJson.add(new byte[]{'[', '"', 'a', (byte)0xFF, '"', ']'});
+		invalidJson.add(new byte[]{'[', '"', 'a', (byte)0xE2, (byte)0x82});
+		for (byte[] json : invalidJson){
+			try (JsonParser parser = factory.createParser(new ByteArrayInputStream(json))){
+				parser.nextToken();
+				parser.nextToken();
+				parser.getText(new StringWriter());
+				fail("Expected JsonParseException for " + new String(json, StandardCharsets.ISO_8859_1));
+			} catch(JsonParseException jpe){
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testCopy(){
+		StreamingJsonFactory factory = new StreamingJsonFactory(new ObjectMapper());
+		assertTrue(factory.copy() instanceof StreamingJsonFactory);
+	}
+
+	@Test
+	public void testReadTreeWithCodec() throws Exception {
+		ObjectMapper mapper = new ObjectMapper();
+		StreamingJsonFactory factory = new StreamingJsonFactory(mapper);
+		InputStream in = new ByteArrayInputStream(getJson("1,2,c-m;"));
+		try (JsonParser parser = factory.createParser(in)){
+			JsonNode node = parser.readValueAsTree();
+			assertEquals("1,2,c-m;", node.get("result").asText());
+		}
+	}
+}
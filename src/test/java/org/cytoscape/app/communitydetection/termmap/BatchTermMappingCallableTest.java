@@ -0,0 +1,408 @@
+package org.cytoscape.app.communitydetection.termmap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.cytoscape.app.communitydetection.PropertiesHelper;
+import org.cytoscape.app.communitydetection.rest.AsyncCDRestClient;
+import org.cytoscape.app.communitydetection.rest.CDRequestDataWriter;
+import org.cytoscape.app.communitydetection.rest.CancellationToken;
+import org.cytoscape.app.communitydetection.util.AppUtils;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.NetworkTestSupport;
+import org.cytoscape.work.TaskMonitor;
+import org.junit.After;
+import org.junit.Before;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.mockito.InOrder;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionResult;
+
+/**
+ *
+ * @author churas
+ */
+public class BatchTermMappingCallableTest {
+
+	private NetworkTestSupport _nts = new NetworkTestSupport();
+	private ObjectMapper _mapper = new ObjectMapper();
+
+	@Before
+	public void setUp(){
+		// limits of the shared result cache are read from PropertiesHelper
+		PropertiesHelper.getInstance().updateViaProperties(null);
+	}
+
+	@After
+	public void tearDown(){
+		PropertiesHelper.getInstance().updateViaProperties(null);
+		TermMappingResultCache.getInstance().clear();
+	}
+
+	private CyNetwork getNetworkWithMemberLists(){
+		CyNetwork network = _nts.getNetwork();
+		network.getDefaultNodeTable().createColumn(AppUtils.COLUMN_CD_MEMBER_LIST,
+				String.class, false, null);
+		network.getDefaultNodeTable().createColumn(AppUtils.COLUMN_CD_MEMBER_LIST_SIZE,
+				Integer.class, false, null);
+		addNode(network, "A B");
+		addNode(network, "C D E");
+		addNode(network, "F");
+		return network;
+	}
+
+	private CyNode addNode(CyNetwork network, final String memberList){
+		CyNode node = network.addNode();
+		network.getRow(node).set(AppUtils.COLUMN_CD_MEMBER_LIST, memberList);
+		network.getRow(node).set(AppUtils.COLUMN_CD_MEMBER_LIST_SIZE,
+				memberList.split(" ").length);
+		return node;
+	}
+
+	private CommunityDetectionAlgorithm getAlgorithm(final String inputDataFormat){
+		CommunityDetectionAlgorithm algo = new CommunityDetectionAlgorithm();
+		algo.setName("enrich");
+		algo.setDisplayName("Enrich");
+		algo.setInputDataFormat(inputDataFormat);
+		return algo;
+	}
+
+	private ObjectNode getTerm(final String name, String... intersections){
+		ObjectNode term = _mapper.createObjectNode();
+		term.put("name", name);
+		term.put("p_value", 0.01);
+		term.putArray("intersections");
+		for (String member : intersections){
+			((ArrayNode)term.get("intersections")).add(member);
+		}
+		return term;
+	}
+
+	@Test
+	public void testIsBatchAlgorithm(){
+		assertFalse(BatchTermMappingCallable.isBatchAlgorithm(null));
+		assertFalse(BatchTermMappingCallable.isBatchAlgorithm(getAlgorithm(null)));
+		assertFalse(BatchTermMappingCallable.isBatchAlgorithm(getAlgorithm(AppUtils.TM_ALGORITHM_INPUT_TYPE)));
+		assertTrue(BatchTermMappingCallable.isBatchAlgorithm(getAlgorithm(AppUtils.TM_ALGORITHM_BATCH_INPUT_TYPE)));
+	}
+
+	@Test
+	public void testRequestDataWriter() throws Exception {
+		CyNetwork network = getNetworkWithMemberLists();
+		List<CyNode> nodes = network.getNodeList();
+		BatchTermMappingCallable callable = new BatchTermMappingCallable(network,
+				getAlgorithm(AppUtils.TM_ALGORITHM_BATCH_INPUT_TYPE), null, nodes,
+				new CancellationToken());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		callable.getRequestDataWriter(callable.getRawMemberLists()).writeData(out);
+		JsonNode data = _mapper.readTree(out.toByteArray());
+		assertEquals(3, data.size());
+		assertEquals("A,B", data.get(Long.toString(nodes.get(0).getSUID())).asText());
+		assertEquals("C,D,E", data.get(Long.toString(nodes.get(1).getSUID())).asText());
+		assertEquals("F", data.get(Long.toString(nodes.get(2).getSUID())).asText());
+	}
+
+	@Test
+	public void testUpdateNodesWithResults(){
+		CyNetwork network = getNetworkWithMemberLists();
+		List<CyNode> nodes = network.getNodeList();
+		createTermMappingColumns(network);
+		BatchTermMappingCallable callable = new BatchTermMappingCallable(network,
+				getAlgorithm(AppUtils.TM_ALGORITHM_BATCH_INPUT_TYPE), null, nodes,
+				new CancellationToken());
+		ObjectNode batchResult = _mapper.createObjectNode();
+		batchResult.set(Long.toString(nodes.get(0).getSUID()), getTerm("term1", "A"));
+		batchResult.putNull(Long.toString(nodes.get(1).getSUID()));
+		CommunityDetectionResult cdResult = new CommunityDetectionResult();
+		cdResult.setResult(batchResult);
+		Map<CyNode, String> rawMemberLists = callable.getRawMemberLists();
+		callable.updateNodesWithResults(callable.getNodeResults(cdResult,
+				rawMemberLists.keySet()), rawMemberLists);
+
+		assertEquals("term1", network.getRow(nodes.get(0)).get(AppUtils.COLUMN_CD_COMMUNITY_NAME, String.class));
+		assertEquals("A", network.getRow(nodes.get(0)).get(AppUtils.COLUMN_CD_ANNOTATED_MEMBERS, String.class));
+		assertEquals("B", network.getRow(nodes.get(0)).get(AppUtils.COLUMN_CD_NONANNOTATED_MEMBERS, String.class));
+		assertTrue(network.getRow(nodes.get(0)).get(AppUtils.COLUMN_CD_LABELED, Boolean.class));
+		for (int i = 1; i < 3; i++){
+			assertEquals(AppUtils.TYPE_NONE_VALUE,
+					network.getRow(nodes.get(i)).get(AppUtils.COLUMN_CD_COMMUNITY_NAME, String.class));
+			assertFalse(network.getRow(nodes.get(i)).get(AppUtils.COLUMN_CD_LABELED, Boolean.class));
+		}
+
+		// result that is not an object leaves every node without a term
+		cdResult.setResult(_mapper.createArrayNode());
+		assertTrue(callable.getNodeResults(cdResult, rawMemberLists.keySet()).isEmpty());
+		callable.updateNodesWithResults(callable.getNodeResults(cdResult,
+				rawMemberLists.keySet()), rawMemberLists);
+		assertEquals(AppUtils.TYPE_NONE_VALUE,
+				network.getRow(nodes.get(0)).get(AppUtils.COLUMN_CD_COMMUNITY_NAME, String.class));
+	}
+
+	@Test
+	public void testCallAsyncWhenCanceled() throws Exception {
+		CyNetwork network = getNetworkWithMemberLists();
+		CancellationToken token = new CancellationToken();
+		token.cancel();
+		AsyncCDRestClient mockAsyncClient = mock(AsyncCDRestClient.class);
+		BatchTermMappingCallable callable = new BatchTermMappingCallable(network,
+				getAlgorithm(AppUtils.TM_ALGORITHM_BATCH_INPUT_TYPE), null,
+				network.getNodeList(), token);
+		assertFalse(callable.callAsync(mockAsyncClient).get());
+		verifyNoInteractions(mockAsyncClient);
+	}
+
+	@Test
+	public void testTermMappingTaskSubmitsBatches() throws Exception {
+		PropertiesHelper.getInstance().setFunctionalEnrichmentBatchSize(2);
+		CyNetwork network = getNetworkWithMemberLists();
+		AsyncCDRestClient mockAsyncClient = mock(AsyncCDRestClient.class);
+		final List<JsonNode> requests = new ArrayList<>();
+		when(mockAsyncClient.submitAndAwait(eq("enrich"), isNull(),
+				any(CDRequestDataWriter.class), anyInt(), isNull(),
+				any(CancellationToken.class))).thenAnswer((invocation) -> {
+					ByteArrayOutputStream out = new ByteArrayOutputStream();
+					((CDRequestDataWriter)invocation.getArgument(2)).writeData(out);
+					JsonNode data = _mapper.readTree(out.toByteArray());
+					requests.add(data);
+					ObjectNode batchResult = _mapper.createObjectNode();
+					data.fieldNames().forEachRemaining((suid) -> {
+						batchResult.set(suid, getTerm("term" + suid));
+					});
+					CommunityDetectionResult cdResult = new CommunityDetectionResult();
+					cdResult.setResult(batchResult);
+					return CompletableFuture.completedFuture(cdResult);
+				});
+		TermMappingTask task = new TermMappingTask(network,
+				getAlgorithm(AppUtils.TM_ALGORITHM_BATCH_INPUT_TYPE), null, false);
+		task.setAlternateAsyncCDRestClient(mockAsyncClient);
+		TaskMonitor mockMonitor = mock(TaskMonitor.class);
+		task.run(mockMonitor);
+
+		assertEquals(2, requests.size());
+		assertEquals(2, requests.get(0).size());
+		assertEquals(1, requests.get(1).size());
+		for (CyNode node : network.getNodeList()){
+			assertEquals("term" + node.getSUID(),
+					network.getRow(node).get(AppUtils.COLUMN_CD_COMMUNITY_NAME, String.class));
+		}
+		verify(mockMonitor).setProgress(1.0);
+		verify(mockAsyncClient, never()).submitAndAwait(anyString(), any(),
+				anyString(), anyInt(), any(), any());
+	}
+
+	@Test
+	public void testTermMappingTaskFallsBackToRequestPerNode() throws Exception {
+		CyNetwork network = getNetworkWithMemberLists();
+		AsyncCDRestClient mockAsyncClient = mock(AsyncCDRestClient.class);
+		CommunityDetectionResult cdResult = new CommunityDetectionResult();
+		cdResult.setResult(getTerm("single", "A"));
+		when(mockAsyncClient.submitAndAwait(eq("enrich"), isNull(), anyString(),
+				anyInt(), isNull(), any(CancellationToken.class)))
+				.thenReturn(CompletableFuture.completedFuture(cdResult));
+		TermMappingTask task = new TermMappingTask(network,
+				getAlgorithm(AppUtils.TM_ALGORITHM_INPUT_TYPE), null, false);
+		task.setAlternateAsyncCDRestClient(mockAsyncClient);
+		task.run(mock(TaskMonitor.class));
+
+		for (String memberList : Arrays.asList("A,B", "C,D,E", "F")){
+			verify(mockAsyncClient).submitAndAwait(eq("enrich"), isNull(), eq(memberList),
+				anyInt(), isNull(), any(CancellationToken.class));
+		}
+		for (CyNode node : network.getNodeList()){
+			assertEquals("single",
+					network.getRow(node).get(AppUtils.COLUMN_CD_COMMUNITY_NAME, String.class));
+		}
+	}
+
+	@Test
+	public void testCallAsyncOnlySubmitsUncachedNodes() throws Exception {
+		CyNetwork network = getNetworkWithMemberLists();
+		List<CyNode> nodes = network.getNodeList();
+		createTermMappingColumns(network);
+		CommunityDetectionAlgorithm algo = getAlgorithm(AppUtils.TM_ALGORITHM_BATCH_INPUT_TYPE);
+		TermMappingResultCache cache = TermMappingResultCache.getInstance();
+		// member order does not matter
+		cache.put(cache.getKey(algo, null, "B A"), getTerm("cached", "A"));
+
+		AsyncCDRestClient mockAsyncClient = mock(AsyncCDRestClient.class);
+		final List<JsonNode> requests = new ArrayList<>();
+		when(mockAsyncClient.submitAndAwait(eq("enrich"), isNull(),
+				any(CDRequestDataWriter.class), anyInt(), isNull(),
+				any(CancellationToken.class))).thenAnswer((invocation) -> {
+					ByteArrayOutputStream out = new ByteArrayOutputStream();
+					((CDRequestDataWriter)invocation.getArgument(2)).writeData(out);
+					JsonNode data = _mapper.readTree(out.toByteArray());
+					requests.add(data);
+					ObjectNode batchResult = _mapper.createObjectNode();
+					data.fieldNames().forEachRemaining((suid) -> {
+						batchResult.set(suid, getTerm("term" + suid));
+					});
+					CommunityDetectionResult cdResult = new CommunityDetectionResult();
+					cdResult.setResult(batchResult);
+					return CompletableFuture.completedFuture(cdResult);
+				});
+		BatchTermMappingCallable callable = new BatchTermMappingCallable(network,
+				algo, null, nodes, new CancellationToken());
+		assertTrue(callable.callAsync(mockAsyncClient).get());
+		assertEquals(1, requests.size());
+		assertEquals(2, requests.get(0).size());
+		assertFalse(requests.get(0).has(Long.toString(nodes.get(0).getSUID())));
+		assertEquals("cached", network.getRow(nodes.get(0)).get(AppUtils.COLUMN_CD_COMMUNITY_NAME, String.class));
+		assertEquals("B", network.getRow(nodes.get(0)).get(AppUtils.COLUMN_CD_NONANNOTATED_MEMBERS, String.class));
+		for (int i = 1; i < 3; i++){
+			assertEquals("term" + nodes.get(i).getSUID(),
+					network.getRow(nodes.get(i)).get(AppUtils.COLUMN_CD_COMMUNITY_NAME, String.class));
+		}
+
+		// every node is now cached so no request is made
+		network.getRow(nodes.get(1)).set(AppUtils.COLUMN_CD_COMMUNITY_NAME, null);
+		assertTrue(callable.callAsync(mockAsyncClient).get());
+		assertEquals(1, requests.size());
+		assertEquals("term" + nodes.get(1).getSUID(),
+				network.getRow(nodes.get(1)).get(AppUtils.COLUMN_CD_COMMUNITY_NAME, String.class));
+	}
+
+	@Test
+	public void testTermMappingCallableUsesCachedResult() throws Exception {
+		CyNetwork network = getNetworkWithMemberLists();
+		CyNode node = network.getNodeList().get(1);
+		createTermMappingColumns(network);
+		CommunityDetectionAlgorithm algo = getAlgorithm(AppUtils.TM_ALGORITHM_INPUT_TYPE);
+		AsyncCDRestClient mockAsyncClient = mock(AsyncCDRestClient.class);
+		CommunityDetectionResult cdResult = new CommunityDetectionResult();
+		cdResult.setResult(getTerm("single", "C"));
+		when(mockAsyncClient.submitAndAwait(eq("enrich"), isNull(), eq("C,D,E"),
+				anyInt(), isNull(), any(CancellationToken.class)))
+				.thenReturn(CompletableFuture.completedFuture(cdResult));
+
+		TermMappingCallable callable = new TermMappingCallable(network, algo, null, node);
+		assertTrue(callable.callAsync(mockAsyncClient).get());
+		assertEquals("single", network.getRow(node).get(AppUtils.COLUMN_CD_COMMUNITY_NAME, String.class));
+
+		network.getRow(node).set(AppUtils.COLUMN_CD_COMMUNITY_NAME, null);
+		assertTrue(callable.callAsync(mockAsyncClient).get());
+		assertEquals("single", network.getRow(node).get(AppUtils.COLUMN_CD_COMMUNITY_NAME, String.class));
+		assertEquals("D E", network.getRow(node).get(AppUtils.COLUMN_CD_NONANNOTATED_MEMBERS, String.class));
+		verify(mockAsyncClient, times(1)).submitAndAwait(anyString(), any(), anyString(),
+				anyInt(), any(), any());
+	}
+
+	@Test
+	public void testTermMappingTaskSubmitsDuplicateMemberListsOnce() throws Exception {
+		CyNetwork network = getNetworkWithMemberLists();
+		CyNode duplicate = addNode(network, "B A A");
+		CyNode first = network.getNodeList().get(0);
+		AsyncCDRestClient mockAsyncClient = mock(AsyncCDRestClient.class);
+		final List<JsonNode> requests = new ArrayList<>();
+		when(mockAsyncClient.submitAndAwait(eq("enrich"), isNull(),
+				any(CDRequestDataWriter.class), anyInt(), isNull(),
+				any(CancellationToken.class))).thenAnswer((invocation) -> {
+					ByteArrayOutputStream out = new ByteArrayOutputStream();
+					((CDRequestDataWriter)invocation.getArgument(2)).writeData(out);
+					JsonNode data = _mapper.readTree(out.toByteArray());
+					requests.add(data);
+					ObjectNode batchResult = _mapper.createObjectNode();
+					data.fieldNames().forEachRemaining((suid) -> {
+						batchResult.set(suid, getTerm("term" + suid, "A"));
+					});
+					CommunityDetectionResult cdResult = new CommunityDetectionResult();
+					cdResult.setResult(batchResult);
+					return CompletableFuture.completedFuture(cdResult);
+				});
+		TermMappingTask task = new TermMappingTask(network,
+				getAlgorithm(AppUtils.TM_ALGORITHM_BATCH_INPUT_TYPE), null, false);
+		task.setAlternateAsyncCDRestClient(mockAsyncClient);
+		TaskMonitor mockMonitor = mock(TaskMonitor.class);
+		task.run(mockMonitor);
+
+		assertEquals(1, requests.size());
+		assertEquals(3, requests.get(0).size());
+		assertFalse(requests.get(0).has(Long.toString(duplicate.getSUID())));
+		assertEquals("term" + first.getSUID(),
+				network.getRow(duplicate).get(AppUtils.COLUMN_CD_COMMUNITY_NAME, String.class));
+		// duplicate still gets values computed from its own members
+		assertEquals("B", network.getRow(duplicate).get(AppUtils.COLUMN_CD_NONANNOTATED_MEMBERS, String.class));
+		verify(mockMonitor).setStatusMessage("Submitting 3 member lists for 4 nodes");
+		verify(mockMonitor).setProgress(1.0);
+	}
+
+	@Test
+	public void testTermMappingTaskSubmitsDuplicateMemberListsOncePerNode() throws Exception {
+		CyNetwork network = getNetworkWithMemberLists();
+		CyNode duplicate = addNode(network, "E D C");
+		AsyncCDRestClient mockAsyncClient = mock(AsyncCDRestClient.class);
+		CommunityDetectionResult cdResult = new CommunityDetectionResult();
+		cdResult.setResult(getTerm("single", "C"));
+		when(mockAsyncClient.submitAndAwait(eq("enrich"), isNull(), anyString(),
+				anyInt(), isNull(), any(CancellationToken.class)))
+				.thenReturn(CompletableFuture.completedFuture(cdResult));
+		TermMappingTask task = new TermMappingTask(network,
+				getAlgorithm(AppUtils.TM_ALGORITHM_INPUT_TYPE), null, false);
+		task.setAlternateAsyncCDRestClient(mockAsyncClient);
+		TaskMonitor mockMonitor = mock(TaskMonitor.class);
+		task.run(mockMonitor);
+
+		verify(mockAsyncClient, times(3)).submitAndAwait(anyString(), any(), anyString(),
+				anyInt(), any(), any());
+		verify(mockAsyncClient, never()).submitAndAwait(anyString(), any(), eq("E,D,C"),
+				anyInt(), any(), any());
+		assertEquals("single",
+				network.getRow(duplicate).get(AppUtils.COLUMN_CD_COMMUNITY_NAME, String.class));
+		verify(mockMonitor).setProgress(1.0);
+	}
+
+	@Test
+	public void testTermMappingTaskSubmitsInPriorityOrder() throws Exception {
+		PropertiesHelper.getInstance().setFunctionalEnrichmentMaxInFlight(1);
+		CyNetwork network = getNetworkWithMemberLists();
+		network.getRow(network.getNodeList().get(2)).set(CyNetwork.SELECTED, true);
+		AsyncCDRestClient mockAsyncClient = mock(AsyncCDRestClient.class);
+		CommunityDetectionResult cdResult = new CommunityDetectionResult();
+		cdResult.setResult(getTerm("single", "A"));
+		when(mockAsyncClient.submitAndAwait(eq("enrich"), isNull(), anyString(),
+				anyInt(), isNull(), any(CancellationToken.class)))
+				.thenReturn(CompletableFuture.completedFuture(cdResult));
+		TermMappingTask task = new TermMappingTask(network,
+				getAlgorithm(AppUtils.TM_ALGORITHM_INPUT_TYPE), null, false);
+		task.setAlternateAsyncCDRestClient(mockAsyncClient);
+		TaskMonitor mockMonitor = mock(TaskMonitor.class);
+		task.run(mockMonitor);
+
+		// selected node first, then largest member list first
+		InOrder inOrder = inOrder(mockAsyncClient);
+		for (String memberList : Arrays.asList("F", "C,D,E", "A,B")){
+			inOrder.verify(mockAsyncClient).submitAndAwait(eq("enrich"), isNull(), eq(memberList),
+				anyInt(), isNull(), any(CancellationToken.class));
+		}
+		verify(mockMonitor).setStatusMessage("Running Enrich (1 of 3 complete)");
+		verify(mockMonitor).setProgress(1.0);
+	}
+
+	private void createTermMappingColumns(CyNetwork network){
+		for (String colName : Arrays.asList(AppUtils.COLUMN_CD_COMMUNITY_NAME,
+				AppUtils.COLUMN_CD_ANNOTATED_ALGORITHM, AppUtils.COLUMN_CD_NONANNOTATED_MEMBERS,
+				AppUtils.COLUMN_CD_ANNOTATED_MEMBERS, AppUtils.COLUMN_CD_ANNOTATED_SOURCE,
+				AppUtils.COLUMN_CD_ANNOTATED_SOURCE_TERM)){
+			network.getDefaultNodeTable().createColumn(colName, String.class, false, null);
+		}
+		network.getDefaultNodeTable().createColumn(AppUtils.COLUMN_CD_ANNOTATED_MEMBERS_SIZE,
+				Integer.class, false, null);
+		network.getDefaultNodeTable().createColumn(AppUtils.COLUMN_CD_ANNOTATED_OVERLAP,
+				Double.class, false, 0.0);
+		network.getDefaultNodeTable().createColumn(AppUtils.COLUMN_CD_ANNOTATED_PVALUE,
+				Double.class, false, 0.0);
+		network.getDefaultNodeTable().createColumn(AppUtils.COLUMN_CD_LABELED,
+				Boolean.class, true, false);
+	}
+}
@@ -0,0 +1,167 @@
+package org.cytoscape.app.communitydetection.termmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.NetworkTestSupport;
+import org.cytoscape.model.events.RowsSetEvent;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author churas
+ */
+public class TermMappingResultApplierTest {
+
+	private NetworkTestSupport _nts = new NetworkTestSupport();
+
+	private CyNetwork getNetwork(int numNodes){
+		CyNetwork network = _nts.getNetwork();
+		network.getDefaultNodeTable().createColumn("count", Integer.class, false, 0);
+		for (int i = 0; i < numNodes; i++){
+			network.addNode();
+		}
+		return network;
+	}
+
+	private List<TermMappingResultApplier.NodeResult> getResults(CyNetwork network){
+		List<TermMappingResultApplier.NodeResult> results = new ArrayList<>();
+		int count = 1;
+		for (CyNode node : network.getNodeList()){
+			Map<String, Object> values = new HashMap<>();
+			values.put(CyNetwork.NAME, "node" + count);
+			values.put("count", count);
+			results.add(new TermMappingResultApplier.NodeResult(node, values));
+			count++;
+		}
+		return results;
+	}
+
+	private void assertResultsWritten(CyNetwork network){
+		int count = 1;
+		for (CyNode node : network.getNodeList()){
+			assertEquals("node" + count, network.getRow(node).get(CyNetwork.NAME, String.class));
+			assertEquals(count, (int)network.getRow(node).get("count", Integer.class));
+			count++;
+		}
+	}
+
+	@Test
+	public void testNodeResultIsImmutable(){
+		CyNetwork network = getNetwork(1);
+		Map<String, Object> values = new HashMap<>();
+		values.put("count", 1);
+		TermMappingResultApplier.NodeResult result = new TermMappingResultApplier.NodeResult(
+				network.getNodeList().get(0), values);
+		values.put("count", 2);
+		assertEquals(1, result.getValues().get("count"));
+		try {
+			result.getValues().put("count", 3);
+			fail("Expected exception");
+		} catch(UnsupportedOperationException uoe){
+			// expected
+		}
+	}
+
+	@Test
+	public void testCloseWithoutStart(){
+		CyNetwork network = getNetwork(1);
+		TermMappingResultApplier applier = new TermMappingResultApplier(
+				network.getDefaultNodeTable(), null, 10, 10);
+		applier.close();
+		assertEquals(0, applier.getBatchCount());
+	}
+
+	@Test
+	public void testStartTwice(){
+		CyNetwork network = getNetwork(1);
+		try (TermMappingResultApplier applier = new TermMappingResultApplier(
+				network.getDefaultNodeTable(), null, 10, 10)){
+			applier.start();
+			try {
+				applier.start();
+				fail("Expected exception");
+			} catch(IllegalStateException ise){
+				assertEquals("Applier already started", ise.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void testCloseWritesQueuedResultsInOneBatch(){
+		CyNetwork network = getNetwork(5);
+		CyEventHelper mockHelper = mock(CyEventHelper.class);
+		TermMappingResultApplier applier = new TermMappingResultApplier(
+				network.getDefaultNodeTable(), mockHelper, 0, 60000);
+		applier.start();
+		List<TermMappingResultApplier.NodeResult> results = getResults(network);
+		applier.add(results.subList(0, 2));
+		applier.add(results.subList(2, 5));
+		applier.close();
+		assertResultsWritten(network);
+		assertEquals(1, applier.getBatchCount());
+		verify(mockHelper, times(1)).fireEvent(any(RowsSetEvent.class));
+	}
+
+	@Test
+	public void testResultsWrittenInBatchesOfBatchSize(){
+		CyNetwork network = getNetwork(5);
+		List<TermMappingResultApplier.NodeResult> results = getResults(network);
+		TermMappingResultApplier applier = new TermMappingResultApplier(
+				network.getDefaultNodeTable(), null, 2, 60000);
+		// queue everything before the applier thread starts so batches
+		// are only cut by size
+		applier.add(results);
+		applier.start();
+		applier.close();
+		assertResultsWritten(network);
+		assertEquals(3, applier.getBatchCount());
+	}
+
+	@Test
+	public void testResultsWrittenAfterFlushInterval() throws Exception {
+		CyNetwork network = getNetwork(2);
+		List<TermMappingResultApplier.NodeResult> results = getResults(network);
+		try (TermMappingResultApplier applier = new TermMappingResultApplier(
+				network.getDefaultNodeTable(), null, 0, 10)){
+			applier.start();
+			applier.add(Collections.singletonList(results.get(0)));
+			long deadline = System.currentTimeMillis() + 10000;
+			while (applier.getBatchCount() == 0 && System.currentTimeMillis() < deadline){
+				Thread.sleep(5);
+			}
+			assertEquals(1, applier.getBatchCount());
+			assertEquals("node1", network.getRow(results.get(0).getNode())
+					.get(CyNetwork.NAME, String.class));
+			applier.add(Arrays.asList(results.get(1)));
+		}
+		assertResultsWritten(network);
+	}
+
+	@Test
+	public void testCloseThrowsWriteError(){
+		CyNetwork network = getNetwork(1);
+		Map<String, Object> values = new HashMap<>();
+		values.put("nosuchcolumn", 1);
+		TermMappingResultApplier applier = new TermMappingResultApplier(
+				network.getDefaultNodeTable(), null, 0, 0);
+		applier.start();
+		applier.add(Collections.singletonList(new TermMappingResultApplier.NodeResult(
+				network.getNodeList().get(0), values)));
+		try {
+			applier.close();
+			fail("Expected exception");
+		} catch(IllegalArgumentException iae){
+			// expected
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package org.cytoscape.app.communitydetection.termmap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ndexbio.communitydetection.rest.model.CommunityDetectionAlgorithm;
+
+/**
+ *
+ * @author churas
+ */
+public class TermMappingResultCacheTest {
+
+	@Rule
+	public TemporaryFolder _folder = new TemporaryFolder();
+
+	private ObjectMapper _mapper = new ObjectMapper();
+
+	private CommunityDetectionAlgorithm getAlgorithm(final String name, final String dockerImage){
+		CommunityDetectionAlgorithm algo = new CommunityDetectionAlgorithm();
+		algo.setName(name);
+		algo.setDockerImage(dockerImage);
+		return algo;
+	}
+
+	private JsonNode getResult(final String name){
+		return _mapper.createObjectNode().put("name", name);
+	}
+
+	@Test
+	public void testGetKey(){
+		TermMappingResultCache cache = new TermMappingResultCache(10, 0, 0);
+		CommunityDetectionAlgorithm algo = getAlgorithm("enrich", "image:1");
+		Map<String, String> params = new HashMap<>();
+		params.put("--a", "1");
+		params.put("--b", "2");
+		String key = cache.getKey(algo, params, "B A C");
+		assertTrue(key.matches("[0-9a-f]{64}"));
+
+		// member order, duplicates and parameter order do not matter
+		Map<String, String> otherParams = new HashMap<>();
+		otherParams.put("--b", "2");
+		otherParams.put("--a", "1");
+		assertEquals(key, cache.getKey(algo, otherParams, "C B A A"));
+
+		assertNotEquals(key, cache.getKey(algo, params, "B A"));
+		assertNotEquals(key, cache.getKey(algo, null, "B A C"));
+		assertNotEquals(key, cache.getKey(getAlgorithm("enrich", "image:2"), params, "B A C"));
+		assertNotEquals(key, cache.getKey(getAlgorithm("other", "image:1"), params, "B A C"));
+		params.put("--a", "3");
+		assertNotEquals(key, cache.getKey(algo, params, "B A C"));
+		assertEquals(cache.getKey(algo, null, null), cache.getKey(algo, null, ""));
+	}
+
+	@Test
+	public void testMemoryCacheEvictsLeastRecentlyUsed(){
+		TermMappingResultCache cache = new TermMappingResultCache(2, 0, 0);
+		assertNull(cache.get("one"));
+		cache.put("one", getResult("1"));
+		cache.put("two", getResult("2"));
+		cache.put("null", null);
+		assertEquals(getResult("1"), cache.get("one"));
+		cache.put("three", getResult("3"));
+		assertNull(cache.get("two"));
+		assertEquals(getResult("1"), cache.get("one"));
+		assertEquals(getResult("3"), cache.get("three"));
+		assertNull(cache.get("null"));
+
+		cache.clear();
+		assertNull(cache.get("one"));
+	}
+
+	@Test
+	public void testMemoryCacheDisabled(){
+		TermMappingResultCache cache = new TermMappingResultCache(0, 0, 0);
+		cache.put("one", getResult("1"));
+		assertNull(cache.get("one"));
+	}
+
+	@Test
+	public void testResultsExpire(){
+		final long[] now = {1000L};
+		TermMappingResultCache cache = new TermMappingResultCache(10, 0, 100){
+			@Override
+			protected long getCurrentTimeMillis(){
+				return now[0];
+			}
+		};
+		cache.put("one", getResult("1"));
+		now[0] = 1100L;
+		assertEquals(getResult("1"), cache.get("one"));
+		now[0] = 1101L;
+		assertNull(cache.get("one"));
+		now[0] = 1000L;
+		assertNull(cache.get("one"));
+	}
+
+	@Test
+	public void testDiskCache() throws Exception {
+		File cacheDir = new File(_folder.getRoot(), "cache");
+		TermMappingResultCache cache = new TermMappingResultCache(10, 10, 0);
+		cache.setCacheDirectory(cacheDir);
+		cache.put("one", getResult("1"));
+		File cacheFile = new File(cacheDir, "one" + TermMappingResultCache.CACHE_FILE_SUFFIX);
+		assertTrue(cacheFile.isFile());
+		assertEquals(getResult("1"), _mapper.readTree(cacheFile));
+
+		// a new cache with no results in memory reads the file
+		TermMappingResultCache otherCache = new TermMappingResultCache(0, 10, 0);
+		otherCache.setCacheDirectory(cacheDir);
+		assertEquals(getResult("1"), otherCache.get("one"));
+		assertNull(otherCache.get("two"));
+
+		// unreadable files are removed
+		File badFile = new File(cacheDir, "bad" + TermMappingResultCache.CACHE_FILE_SUFFIX);
+		Files.write(badFile.toPath(), "{".getBytes());
+		assertNull(otherCache.get("bad"));
+		assertFalse(badFile.exists());
+
+		// without a directory nothing is read from disk
+		otherCache.setCacheDirectory(null);
+		assertNull(otherCache.get("one"));
+	}
+
+	@Test
+	public void testDiskCacheDisabled() throws Exception {
+		File cacheDir = new File(_folder.getRoot(), "cache");
+		TermMappingResultCache cache = new TermMappingResultCache(10, 0, 0);
+		cache.setCacheDirectory(cacheDir);
+		cache.put("one", getResult("1"));
+		assertFalse(cacheDir.exists());
+	}
+
+	@Test
+	public void testDiskCacheExpiredFileIsRemoved() throws Exception {
+		File cacheDir = new File(_folder.getRoot(), "cache");
+		TermMappingResultCache cache = new TermMappingResultCache(0, 10, 1000);
+		cache.setCacheDirectory(cacheDir);
+		cache.put("one", getResult("1"));
+		File cacheFile = new File(cacheDir, "one" + TermMappingResultCache.CACHE_FILE_SUFFIX);
+		assertEquals(getResult("1"), cache.get("one"));
+		assertTrue(cacheFile.setLastModified(System.currentTimeMillis() - 5000L));
+		assertNull(cache.get("one"));
+		assertFalse(cacheFile.exists());
+	}
+
+	@Test
+	public void testDiskCacheRemovesOldestFiles() throws Exception {
+		File cacheDir = new File(_folder.getRoot(), "cache");
+		TermMappingResultCache cache = new TermMappingResultCache(0, 10, 0);
+		cache.setCacheDirectory(cacheDir);
+		long lastModified = System.currentTimeMillis() - 100000L;
+		for (int i = 0; i < 10; i++){
+			cache.put("key" + i, getResult(Integer.toString(i)));
+			File cacheFile = new File(cacheDir, "key" + i + TermMappingResultCache.CACHE_FILE_SUFFIX);
+			assertTrue(cacheFile.setLastModified(lastModified + i * 1000L));
+		}
+		// replacing a result does not add a file
+		cache.put("key9", getResult("9"));
+		assertEquals(10, cacheDir.listFiles().length);
+
+		cache.put("key10", getResult("10"));
+		assertEquals(9, cacheDir.listFiles().length);
+		assertNull(cache.get("key0"));
+		assertNull(cache.get("key1"));
+		assertEquals(getResult("2"), cache.get("key2"));
+		assertEquals(getResult("10"), cache.get("key10"));
+	}
+}
@@ -0,0 +1,141 @@
+package org.cytoscape.app.communitydetection.termmap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.cytoscape.app.communitydetection.rest.CancellationToken;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author churas
+ */
+public class TermMappingSchedulerTest {
+
+	@Test
+	public void testRunWithNoJobs() throws Exception {
+		TermMappingScheduler scheduler = new TermMappingScheduler(2, new CancellationToken());
+		assertTrue(scheduler.run(null));
+	}
+
+	@Test
+	public void testRunLimitsJobsInFlight() throws Exception {
+		final AtomicInteger inFlight = new AtomicInteger(0);
+		final AtomicInteger maxInFlight = new AtomicInteger(0);
+		final List<Integer> startOrder = new ArrayList<>();
+		TermMappingScheduler scheduler = new TermMappingScheduler(2, new CancellationToken());
+		for (int i = 0; i < 5; i++){
+			final int jobNum = i;
+			scheduler.add(() -> {
+				startOrder.add(jobNum);
+				maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+				return CompletableFuture.supplyAsync(() -> {
+					try {
+						Thread.sleep(20);
+					} catch(InterruptedException ie){
+						// ignored
+					}
+					inFlight.decrementAndGet();
+					return true;
+				});
+			}, 2);
+		}
+		final List<Integer> progress = new ArrayList<>();
+		assertTrue(scheduler.run((completed) -> progress.add(completed)));
+		assertEquals(2, maxInFlight.get());
+		assertEquals(Arrays.asList(0, 1, 2, 3, 4), startOrder);
+		assertEquals(Arrays.asList(2, 4, 6, 8, 10), progress);
+	}
+
+	@Test
+	public void testRunReportsProgressInCompletionOrder() throws Exception {
+		CompletableFuture<Boolean> slowJob = new CompletableFuture<>();
+		TermMappingScheduler scheduler = new TermMappingScheduler(0, new CancellationToken());
+		scheduler.add(() -> slowJob, 5);
+		scheduler.add(() -> CompletableFuture.completedFuture(true), 1);
+		scheduler.add(() -> CompletableFuture.completedFuture(true), 2);
+		final List<Integer> progress = new ArrayList<>();
+		assertTrue(scheduler.run((completed) -> {
+			progress.add(completed);
+			if (completed == 3){
+				slowJob.complete(true);
+			}
+		}));
+		assertEquals(Arrays.asList(1, 3, 8), progress);
+	}
+
+	@Test
+	public void testRunStopsWhenJobIsCanceled() throws Exception {
+		final AtomicInteger started = new AtomicInteger(0);
+		TermMappingScheduler scheduler = new TermMappingScheduler(1, new CancellationToken());
+		scheduler.add(() -> {
+			started.incrementAndGet();
+			return CompletableFuture.completedFuture(false);
+		}, 1);
+		scheduler.add(() -> {
+			started.incrementAndGet();
+			return CompletableFuture.completedFuture(true);
+		}, 1);
+		assertFalse(scheduler.run(null));
+		assertEquals(1, started.get());
+	}
+
+	@Test
+	public void testRunDoesNotStartJobsOnceCanceled() throws Exception {
+		CancellationToken cancelToken = new CancellationToken();
+		TermMappingScheduler scheduler = new TermMappingScheduler(1, cancelToken);
+		scheduler.add(() -> {
+			fail("Job should not be started");
+			return null;
+		}, 1);
+		cancelToken.cancel();
+		assertFalse(scheduler.run(null));
+	}
+
+	@Test
+	public void testRunWhenJobFails() throws Exception {
+		CancellationToken cancelToken = new CancellationToken();
+		final AtomicInteger started = new AtomicInteger(0);
+		TermMappingScheduler scheduler = new TermMappingScheduler(1, cancelToken);
+		scheduler.add(() -> {
+			started.incrementAndGet();
+			CompletableFuture<Boolean> future = new CompletableFuture<>();
+			future.completeExceptionally(new IOException("failed"));
+			return future;
+		}, 1);
+		scheduler.add(() -> {
+			started.incrementAndGet();
+			return CompletableFuture.completedFuture(true);
+		}, 1);
+		try {
+			scheduler.run(null);
+			fail("Expected exception");
+		} catch(ExecutionException ee){
+			assertTrue(ee.getCause() instanceof IOException);
+			assertEquals("failed", ee.getCause().getMessage());
+		}
+		assertEquals(1, started.get());
+		assertTrue(cancelToken.isCanceled());
+	}
+
+	@Test
+	public void testRunWhenJobThrowsOnStart() throws Exception {
+		CancellationToken cancelToken = new CancellationToken();
+		TermMappingScheduler scheduler = new TermMappingScheduler(1, cancelToken);
+		scheduler.add(() -> {
+			throw new IllegalStateException("bad");
+		}, 1);
+		try {
+			scheduler.run(null);
+			fail("Expected exception");
+		} catch(ExecutionException ee){
+			assertTrue(ee.getCause() instanceof IllegalStateException);
+		}
+		assertTrue(cancelToken.isCanceled());
+	}
+}
@@ -0,0 +1,29 @@
+package org.cytoscape.app.communitydetection.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author churas
+ */
+public class BundledPropertiesTest {
+
+	@Test
+	public void testGetInstance(){
+		BundledProperties properties = BundledProperties.getInstance();
+		assertSame(properties, BundledProperties.getInstance());
+		assertNull(properties.getErrorMessage());
+		assertNotNull(properties.getProperty(AppUtils.PROP_PROJECT_VERSION, null));
+		assertEquals("4", properties.getProperty(AppUtils.PROP_APP_THREADCOUNT, null));
+		assertEquals("default", properties.getProperty("doesnotexist", "default"));
+	}
+
+	@Test
+	public void testResourceNotFound(){
+		BundledProperties properties = new BundledProperties(getClass().getClassLoader(),
+				"doesnotexist.props");
+		assertEquals("Resource doesnotexist.props not found", properties.getErrorMessage());
+		assertEquals("default", properties.getProperty(AppUtils.PROP_PROJECT_VERSION, "default"));
+	}
+}
@@ -0,0 +1,105 @@
+package org.cytoscape.app.communitydetection.util;
+
+import org.cytoscape.event.CyEventHelper;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.NetworkTestSupport;
+import org.cytoscape.model.events.RowSetRecord;
+import org.cytoscape.model.events.RowsSetEvent;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author churas
+ */
+public class ColumnBatchWriterTest {
+
+	private NetworkTestSupport _nts = new NetworkTestSupport();
+
+	private CyNetwork getNetwork(){
+		CyNetwork network = _nts.getNetwork();
+		network.getDefaultNodeTable().createColumn("count", Integer.class, false, 0);
+		return network;
+	}
+
+	@Test
+	public void testFlushWithoutEventHelper(){
+		CyNetwork network = getNetwork();
+		CyNode nodeOne = network.addNode();
+		CyNode nodeTwo = network.addNode();
+		ColumnBatchWriter writer = new ColumnBatchWriter(network.getDefaultNodeTable(), null);
+
+		// nothing queued
+		writer.flush();
+
+		writer.set(nodeOne, CyNetwork.NAME, "one");
+		writer.set(nodeOne, "count", 1);
+		writer.set(nodeTwo, CyNetwork.NAME, "two");
+		assertEquals(3, writer.size());
+		assertNull(network.getRow(nodeOne).get(CyNetwork.NAME, String.class));
+
+		writer.flush();
+		assertEquals(0, writer.size());
+		assertEquals("one", network.getRow(nodeOne).get(CyNetwork.NAME, String.class));
+		assertEquals(1, (int)network.getRow(nodeOne).get("count", Integer.class));
+		assertEquals("two", network.getRow(nodeTwo).get(CyNetwork.NAME, String.class));
+		assertEquals(0, (int)network.getRow(nodeTwo).get("count", Integer.class));
+	}
+
+	@Test
+	public void testFlushWithEventHelperFiresOneEvent(){
+		CyNetwork network = getNetwork();
+		CyNode nodeOne = network.addNode();
+		CyNode nodeTwo = network.addNode();
+		CyEventHelper mockHelper = mock(CyEventHelper.class);
+		ColumnBatchWriter writer = new ColumnBatchWriter(network.getDefaultNodeTable(), mockHelper);
+
+		// nothing queued so no events
+		writer.flush();
+		verifyNoInteractions(mockHelper);
+
+		writer.set(nodeOne, CyNetwork.NAME, "one");
+		writer.set(nodeTwo, CyNetwork.NAME, "two");
+		writer.set(nodeTwo, "count", 2);
+		writer.flush();
+
+		InOrder inOrder = inOrder(mockHelper);
+		inOrder.verify(mockHelper).flushPayloadEvents();
+		inOrder.verify(mockHelper).silenceEventSource(network.getDefaultNodeTable());
+		inOrder.verify(mockHelper).unsilenceEventSource(network.getDefaultNodeTable());
+		ArgumentCaptor<RowsSetEvent> captor = ArgumentCaptor.forClass(RowsSetEvent.class);
+		inOrder.verify(mockHelper).fireEvent(captor.capture());
+		verifyNoMoreInteractions(mockHelper);
+
+		RowsSetEvent event = captor.getValue();
+		assertSame(network.getDefaultNodeTable(), event.getSource());
+		assertEquals(3, event.getPayloadCollection().size());
+		RowSetRecord record = event.getPayloadCollection().iterator().next();
+		assertEquals(CyNetwork.NAME, record.getColumn());
+		assertEquals("one", record.getValue());
+		assertSame(network.getRow(nodeOne), record.getRow());
+		assertEquals(2, (int)network.getRow(nodeTwo).get("count", Integer.class));
+	}
+
+	@Test
+	public void testFlushUnsilencesTableOnError(){
+		CyNetwork network = getNetwork();
+		CyNode node = network.addNode();
+		CyEventHelper mockHelper = mock(CyEventHelper.class);
+		ColumnBatchWriter writer = new ColumnBatchWriter(network.getDefaultNodeTable(), mockHelper);
+		writer.set(node, "count", "not an integer");
+		try {
+			writer.flush();
+			fail("Expected exception");
+		} catch(IllegalArgumentException iae){
+			// expected
+		}
+		verify(mockHelper).unsilenceEventSource(network.getDefaultNodeTable());
+		verify(mockHelper, never()).fireEvent(any());
+		assertEquals(0, writer.size());
+	}
+}
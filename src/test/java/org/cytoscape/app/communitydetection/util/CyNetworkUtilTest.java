@@ -41,6 +41,19 @@ public class CyNetworkUtilTest {
 
 	}
 	
+	@Test
+	public void testGetColumnBatchWriter() throws CommunityDetectionException {
+		CyNetworkUtil util = new CyNetworkUtil();
+		try {
+			util.getColumnBatchWriter(null);
+			fail("Expected exception");
+		} catch(CommunityDetectionException cde){
+			assertEquals("table is null", cde.getMessage());
+		}
+		CyNetwork network = _nts.getNetwork();
+		assertNotNull(util.getColumnBatchWriter(network.getDefaultNodeTable()));
+	}
+	
 	@Test
 	public void testCreateTableValid() throws CommunityDetectionException {
 		CyNetwork network = _nts.getNetwork();
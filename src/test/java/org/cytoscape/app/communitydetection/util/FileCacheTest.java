@@ -0,0 +1,111 @@
+package org.cytoscape.app.communitydetection.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author churas
+ */
+public class FileCacheTest {
+
+	@Rule
+	public TemporaryFolder _folder = new TemporaryFolder();
+
+	private String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testGetKey(){
+		MessageDigest digest = FileCache.getKeyDigest();
+		digest.update("abc".getBytes(StandardCharsets.UTF_8));
+		assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+				FileCache.getKey(digest));
+	}
+
+	@Test
+	public void testPutGetAndRemove() throws Exception {
+		File cacheDir = new File(_folder.getRoot(), "cache");
+		FileCache cache = new FileCache(cacheDir, 10, 0, ".txt");
+		assertNull(cache.get("key"));
+		cache.put("key", (out) -> out.write("one".getBytes(StandardCharsets.UTF_8)));
+		File cacheFile = cache.get("key");
+		assertEquals(new File(cacheDir, "key.txt"), cacheFile);
+		assertEquals("one", read(cacheFile));
+
+		cache.put("key", (out) -> out.write("two".getBytes(StandardCharsets.UTF_8)));
+		assertEquals("two", read(cache.get("key")));
+		assertEquals(1, cacheDir.listFiles().length);
+
+		cache.remove("key");
+		assertNull(cache.get("key"));
+		cache.remove("key");
+	}
+
+	@Test
+	public void testFailedWriteKeepsExistingFile() throws Exception {
+		File cacheDir = new File(_folder.getRoot(), "cache");
+		FileCache cache = new FileCache(cacheDir, 10, 0, ".txt");
+		cache.put("key", (out) -> out.write("one".getBytes(StandardCharsets.UTF_8)));
+		try {
+			cache.put("key", (out) -> {
+				out.write("partial".getBytes(StandardCharsets.UTF_8));
+				throw new IOException("failed");
+			});
+			fail("Expected exception");
+		} catch(IOException io){
+			assertEquals("failed", io.getMessage());
+		}
+		assertEquals("one", read(cache.get("key")));
+		assertEquals(1, cacheDir.listFiles().length);
+	}
+
+	@Test
+	public void testPendingFile() throws Exception {
+		File cacheDir = new File(_folder.getRoot(), "cache");
+		FileCache cache = new FileCache(cacheDir, 10, 0, ".txt");
+		cache.put("key", (out) -> out.write("one".getBytes(StandardCharsets.UTF_8)));
+
+		// closing without commit keeps existing file
+		try (FileCache.PendingFile pendingFile = cache.newPendingFile("key")){
+			pendingFile.getOutputStream().write("partial".getBytes(StandardCharsets.UTF_8));
+		}
+		assertEquals("one", read(cache.get("key")));
+		assertEquals(1, cacheDir.listFiles().length);
+
+		try (FileCache.PendingFile pendingFile = cache.newPendingFile("key")){
+			pendingFile.getOutputStream().write("two".getBytes(StandardCharsets.UTF_8));
+			assertEquals("one", read(cache.get("key")));
+			pendingFile.commit();
+			pendingFile.commit();
+		}
+		assertEquals("two", read(cache.get("key")));
+
+		try (FileCache.PendingFile pendingFile = cache.newPendingFile("other")){
+			pendingFile.getOutputStream().write("three".getBytes(StandardCharsets.UTF_8));
+			pendingFile.commit();
+		}
+		assertEquals("three", read(cache.get("other")));
+		assertEquals(2, cacheDir.listFiles().length);
+	}
+
+	@Test
+	public void testExpiredFileIsRemoved() throws Exception {
+		File cacheDir = new File(_folder.getRoot(), "cache");
+		FileCache cache = new FileCache(cacheDir, 10, 1000, ".txt");
+		cache.put("key", (out) -> out.write(1));
+		File cacheFile = cache.get("key");
+		assertNotNull(cacheFile);
+		assertTrue(cacheFile.setLastModified(System.currentTimeMillis() - 5000L));
+		assertNull(cache.get("key"));
+		assertFalse(cacheFile.exists());
+	}
+}
@@ -0,0 +1,232 @@
+package org.cytoscape.app.communitydetection.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.NetworkTestSupport;
+import org.cytoscape.model.events.AddedEdgesEvent;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedEvent;
+import org.cytoscape.model.events.RemovedEdgesEvent;
+import org.cytoscape.model.events.RemovedNodesEvent;
+import org.cytoscape.model.events.RowSetRecord;
+import org.cytoscape.model.events.RowsSetEvent;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author churas
+ */
+public class MemberListLookupTest {
+
+	private NetworkTestSupport _nts = new NetworkTestSupport();
+
+	private CyNetwork getHierarchyNetwork(boolean directOnly){
+		CyNetwork network = _nts.getNetwork();
+		network.getDefaultNodeTable().createColumn(AppUtils.COLUMN_CD_MEMBER_LIST,
+				String.class, false, null);
+		if (directOnly){
+			network.getDefaultNetworkTable().createColumn(AppUtils.COLUMN_CD_MEMBER_LIST_DIRECT_ONLY,
+					Boolean.class, false, false);
+			network.getRow(network).set(AppUtils.COLUMN_CD_MEMBER_LIST_DIRECT_ONLY, true);
+		}
+		return network;
+	}
+
+	private CyNode addCommunity(CyNetwork network, final String memberList){
+		CyNode node = network.addNode();
+		network.getRow(node).set(AppUtils.COLUMN_CD_MEMBER_LIST, memberList);
+		return node;
+	}
+
+	@Test
+	public void testNoColumnOrValue(){
+		MemberListLookup lookup = new MemberListLookup(10);
+		CyNetwork network = _nts.getNetwork();
+		CyNode node = network.addNode();
+		assertFalse(lookup.isDirectMemberList(network));
+		assertNull(lookup.getMemberList(network, node));
+		assertNull(lookup.getMemberListAsString(network, node));
+
+		network = getHierarchyNetwork(true);
+		node = addCommunity(network, null);
+		assertNull(lookup.getMemberList(network, node));
+		assertNull(lookup.getMemberListAsString(network, node));
+	}
+
+	@Test
+	public void testFullMemberList(){
+		MemberListLookup lookup = new MemberListLookup(10);
+		CyNetwork network = getHierarchyNetwork(false);
+		CyNode node = addCommunity(network, "b a,c");
+		CyNode child = addCommunity(network, "x");
+		network.addEdge(node, child, true);
+		assertFalse(lookup.isDirectMemberList(network));
+		assertEquals(Arrays.asList("b", "a", "c"), lookup.getMemberList(network, node));
+		assertEquals("b a,c", lookup.getMemberListAsString(network, node));
+	}
+
+	@Test
+	public void testDirectMemberListIncludesDescendants(){
+		MemberListLookup lookup = new MemberListLookup(10);
+		CyNetwork network = getHierarchyNetwork(true);
+		CyNode root = addCommunity(network, "z");
+		CyNode parentOne = addCommunity(network, "");
+		CyNode parentTwo = addCommunity(network, "b");
+		CyNode shared = addCommunity(network, "c a");
+		CyNode other = addCommunity(network, "q");
+		network.addEdge(root, parentOne, true);
+		network.addEdge(root, parentTwo, true);
+		network.addEdge(parentOne, shared, true);
+		network.addEdge(parentTwo, shared, true);
+		network.addEdge(shared, parentTwo, true);
+		network.addEdge(other, root, true);
+
+		assertTrue(lookup.isDirectMemberList(network));
+		assertEquals(Arrays.asList("a", "b", "c", "z"), lookup.getMemberList(network, root));
+		// parentTwo is reachable from parentOne via the cycle through shared
+		assertEquals(Arrays.asList("a", "b", "c"), lookup.getMemberList(network, parentOne));
+		assertEquals(Arrays.asList("a", "b", "c"), lookup.getMemberList(network, parentTwo));
+		assertEquals(Arrays.asList("a", "b", "c"), lookup.getMemberList(network, shared));
+		assertEquals("a b c q z", lookup.getMemberListAsString(network, other));
+	}
+
+	@Test
+	public void testDirectMemberListIsCached(){
+		MemberListLookup lookup = new MemberListLookup(10);
+		CyNetwork network = getHierarchyNetwork(true);
+		CyNode root = addCommunity(network, "b");
+		CyNode child = addCommunity(network, "a");
+		network.addEdge(root, child, true);
+
+		List<String> memberList = lookup.getMemberList(network, root);
+		assertSame(memberList, lookup.getMemberList(network, root));
+
+		// cached values are not updated until cleared
+		network.getRow(root).set(AppUtils.COLUMN_CD_MEMBER_LIST, "c");
+		assertEquals(Arrays.asList("a", "b"), lookup.getMemberList(network, root));
+		lookup.clear();
+		assertEquals(Arrays.asList("a", "c"), lookup.getMemberList(network, root));
+
+		try {
+			memberList.add("x");
+			fail("Expected exception");
+		} catch(UnsupportedOperationException uoe){
+			// expected
+		}
+	}
+
+	@Test
+	public void testDirectMemberListCacheEvictsLeastRecentlyUsed(){
+		MemberListLookup lookup = new MemberListLookup(1);
+		CyNetwork network = getHierarchyNetwork(true);
+		CyNode one = addCommunity(network, "a");
+		CyNode two = addCommunity(network, "b");
+		List<String> memberList = lookup.getMemberList(network, one);
+		assertSame(memberList, lookup.getMemberList(network, one));
+		lookup.getMemberList(network, two);
+		assertNotSame(memberList, lookup.getMemberList(network, one));
+		assertEquals(memberList, lookup.getMemberList(network, one));
+	}
+
+	@Test
+	public void testGetCanonicalMemberList(){
+		assertNull(MemberListLookup.getCanonicalMemberList(null));
+		assertEquals("", MemberListLookup.getCanonicalMemberList(""));
+		assertEquals("a", MemberListLookup.getCanonicalMemberList("a"));
+		assertEquals("a b c", MemberListLookup.getCanonicalMemberList("c a b"));
+		assertEquals("a b c", MemberListLookup.getCanonicalMemberList("b  c a c"));
+	}
+
+	@Test
+	public void testDirectMemberListKeepsDuplicateNames(){
+		MemberListLookup lookup = new MemberListLookup(10);
+		CyNetwork network = getHierarchyNetwork(true);
+		CyNode root = addCommunity(network, "");
+		CyNode parentOne = addCommunity(network, "b");
+		CyNode parentTwo = addCommunity(network, "c");
+		CyNode shared = addCommunity(network, "a");
+		network.addEdge(root, parentOne, true);
+		network.addEdge(root, parentTwo, true);
+		network.addEdge(parentOne, shared, true);
+		network.addEdge(parentTwo, shared, true);
+		// member reachable by two paths is listed once
+		assertEquals(Arrays.asList("a", "b", "c"), lookup.getMemberList(network, root));
+
+		// different members with the same name are all listed
+		CyNode dupes = addCommunity(network, "a a b c");
+		CyNode dupesChild = addCommunity(network, "a");
+		network.addEdge(dupes, dupesChild, true);
+		assertEquals(Arrays.asList("a", "a", "b", "c"), lookup.getMemberList(network, dupes));
+		assertEquals("a a b c", lookup.getMemberListAsString(network, dupes));
+		CyNode dupesParent = addCommunity(network, "d");
+		network.addEdge(dupesParent, dupes, true);
+		assertEquals(Arrays.asList("a", "a", "b", "c", "d"), lookup.getMemberList(network, dupesParent));
+	}
+
+	@Test
+	public void testCacheClearedOnNetworkChanges(){
+		MemberListLookup lookup = new MemberListLookup(10);
+		CyNetwork network = getHierarchyNetwork(true);
+		CyNode root = addCommunity(network, "b");
+		CyNode child = addCommunity(network, "a");
+		CyEdge edge = network.addEdge(root, child, true);
+		CyNetwork otherNetwork = getHierarchyNetwork(true);
+		CyNode otherNode = addCommunity(otherNetwork, "x");
+
+		List<String> otherMemberList = lookup.getMemberList(otherNetwork, otherNode);
+		List<String> memberList = lookup.getMemberList(network, root);
+		lookup.handleEvent(new AddedEdgesEvent(network, Collections.singletonList(edge)));
+		assertNotSame(memberList, lookup.getMemberList(network, root));
+		assertSame(otherMemberList, lookup.getMemberList(otherNetwork, otherNode));
+
+		memberList = lookup.getMemberList(network, root);
+		lookup.handleEvent(new RemovedEdgesEvent(network));
+		assertNotSame(memberList, lookup.getMemberList(network, root));
+		assertSame(otherMemberList, lookup.getMemberList(otherNetwork, otherNode));
+
+		memberList = lookup.getMemberList(network, root);
+		lookup.handleEvent(new RemovedNodesEvent(network));
+		assertNotSame(memberList, lookup.getMemberList(network, root));
+		assertSame(otherMemberList, lookup.getMemberList(otherNetwork, otherNode));
+
+		memberList = lookup.getMemberList(network, root);
+		lookup.handleEvent(new NetworkAboutToBeDestroyedEvent(mock(CyNetworkManager.class), network));
+		assertNotSame(memberList, lookup.getMemberList(network, root));
+		assertSame(otherMemberList, lookup.getMemberList(otherNetwork, otherNode));
+	}
+
+	@Test
+	public void testCacheClearedWhenMemberListSet(){
+		MemberListLookup lookup = new MemberListLookup(10);
+		CyNetwork network = getHierarchyNetwork(true);
+		CyNode root = addCommunity(network, "b");
+		List<String> memberList = lookup.getMemberList(network, root);
+
+		lookup.handleEvent(new RowsSetEvent(network.getDefaultNodeTable(),
+				Collections.singletonList(new RowSetRecord(network.getRow(root),
+						CyNetwork.NAME, "foo", "foo"))));
+		assertSame(memberList, lookup.getMemberList(network, root));
+
+		network.getRow(root).set(AppUtils.COLUMN_CD_MEMBER_LIST, "c");
+		lookup.handleEvent(new RowsSetEvent(network.getDefaultNodeTable(),
+				Collections.singletonList(new RowSetRecord(network.getRow(root),
+						AppUtils.COLUMN_CD_MEMBER_LIST, "c", "c"))));
+		assertEquals(Arrays.asList("c"), lookup.getMemberList(network, root));
+	}
+
+	@Test
+	public void testDirectMemberListWithCachingDisabled(){
+		MemberListLookup lookup = new MemberListLookup(0);
+		CyNetwork network = getHierarchyNetwork(true);
+		CyNode one = addCommunity(network, "a");
+		List<String> memberList = lookup.getMemberList(network, one);
+		assertNotSame(memberList, lookup.getMemberList(network, one));
+		assertEquals(memberList, lookup.getMemberList(network, one));
+	}
+}